@@ -1,14 +1,20 @@
 package gltf;
 
 import gltf.accessor.GLTFAccessor;
+import gltf.animation.GLTFAnimation;
 import gltf.buffer.GLTFBuffer;
 import gltf.buffer.GLTFBufferView;
+import gltf.draco.GLTFDracoDecoder;
 import gltf.exception.GLTFException;
 import gltf.material.GLTFImage;
+import gltf.material.GLTFImageDecoder;
+import gltf.material.GLTFImageDeduplicator;
+import gltf.material.GLTFImageResidency;
 import gltf.material.GLTFMaterial;
 import gltf.material.GLTFTexture;
 import gltf.material.GLTFTextureSampler;
 import gltf.mesh.GLTFMesh;
+import gltf.mesh.GLTFTextureTransformBaker;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
@@ -20,19 +26,6 @@ import java.util.Scanner;
 public class GLTFAsset {
     private final File gltfFile;
     private final String gltfDir;
-    private final JSONObject obj;
-    private final JSONArray buffersJSON;
-    private final JSONArray bufferViewsJSON;
-    private final JSONArray accessorsJSON;
-    private final JSONArray imagesJSON;
-    private final JSONArray samplersJSON;
-    private final JSONArray texturesJSON;
-    private final JSONArray materialsJSON;
-    private final JSONArray meshesJSON;
-    private final JSONArray skinsJSON;
-    private final JSONArray camerasJSON;
-    private final JSONArray nodesJSON;
-    private final JSONArray scenesJSON;
 
     public final GLTFBuffer[] buffers;
     public final GLTFBufferView[] bufferViews;
@@ -45,36 +38,58 @@ public class GLTFAsset {
     public final GLTFSkin[] skins;
     public final GLTFCamera[] cameras;
     public final GLTFNode[] nodes;
+    /** the node hierarchy as parent and children index arrays */
+    public final GLTFNodeTraversal nodeTraversal;
+    /** the nodes as packed arrays, only when loaded with compactNodes */
+    public final GLTFNodeStore nodeStore;
     public final GLTFScene[] scenes;
+    public final GLTFAnimation[] animations;
 
 
 
     public GLTFAsset(String filePath) throws IOException, GLTFException {
+        this(filePath, false);
+    }
+
+    /**
+     * @param compactNodes whether to read the nodes into a {@link GLTFNodeStore}
+     *                     instead of GLTFNode objects, for scenes with millions
+     *                     of nodes. The nodes array is then empty, the scenes
+     *                     only have node indices and the store, and skin joints
+     *                     and animation targets are to be resolved through the
+     *                     store. {@link GLTFScene#getWorldBounds()} reads the
+     *                     store, while the methods which work on GLTFNode
+     *                     objects, such as {@link GLTFSkin#getJoints()} or the
+     *                     mesh batcher, throw on a compact asset.
+     */
+    public GLTFAsset(String filePath, boolean compactNodes) throws IOException, GLTFException {
         this.gltfFile = new File(filePath);
         this.gltfDir = this.gltfFile.getParent();
         String content = new Scanner(this.gltfFile).useDelimiter("\\Z").next();
 
         // 获取根对象
-        this.obj = JSON.parseObject(content);
+        // the JSON tree is only referenced by locals, so that it can be
+        // collected once the asset is read rather than live as long as it
+        JSONObject obj = JSON.parseObject(content);
         
         // 解析 buffers
-        this.buffersJSON = this.obj.getJSONArray("buffers");
+        JSONArray buffersJSON = obj.getJSONArray("buffers");
         if (buffersJSON != null) {
             this.buffers = new GLTFBuffer[buffersJSON.size()];
-            for (int i = 0; i < this.buffersJSON.size(); i++) {
-                buffers[i] = getBufferFromIndex(i);
+            for (int i = 0; i < buffersJSON.size(); i++) {
+                buffers[i] = getBufferFromIndex(buffersJSON, i);
             }
         } else {
             this.buffers = new GLTFBuffer[0];
         }
 
         // 解析 bufferViews
-        this.bufferViewsJSON = this.obj.getJSONArray("bufferViews");
+        JSONArray bufferViewsJSON = obj.getJSONArray("bufferViews");
         if (bufferViewsJSON != null) {
-            this.bufferViews = new GLTFBufferView[this.bufferViewsJSON.size()];
+            this.bufferViews = new GLTFBufferView[bufferViewsJSON.size()];
             for (int i = 0; i < bufferViewsJSON.size(); i++) {
                 this.bufferViews[i] = new GLTFBufferView(
-                        (JSONObject) this.bufferViewsJSON.get(i),
+                        (JSONObject) bufferViewsJSON.get(i),
                         this.buffers);
             }
         } else {
@@ -82,12 +97,12 @@ public class GLTFAsset {
         }
 
         // 解析 accessors
-        this.accessorsJSON = obj.getJSONArray("accessors");
+        JSONArray accessorsJSON = obj.getJSONArray("accessors");
         if (accessorsJSON != null) {
-            this.accessors = new GLTFAccessor[this.accessorsJSON.size()];
+            this.accessors = new GLTFAccessor[accessorsJSON.size()];
             for (int i = 0; i < accessorsJSON.size(); i++) {
                 this.accessors[i] = GLTFAccessor.fromJSONObject(
-                        this.accessorsJSON.getJSONObject(i),
+                        accessorsJSON.getJSONObject(i),
                         this.bufferViews);
             }
         } else {
@@ -95,12 +110,12 @@ public class GLTFAsset {
         }
 
         // 解析 images
-        this.imagesJSON = obj.getJSONArray("images");
+        JSONArray imagesJSON = obj.getJSONArray("images");
         if (imagesJSON != null) {
-            this.images = new GLTFImage[this.imagesJSON.size()];
+            this.images = new GLTFImage[imagesJSON.size()];
             for (int i = 0; i < imagesJSON.size(); i++) {
                 this.images[i] = GLTFImage.fromJSONObject(
-                        this.imagesJSON.getJSONObject(i),
+                        imagesJSON.getJSONObject(i),
                         bufferViews,
                         gltfDir
                 );
@@ -110,12 +125,12 @@ public class GLTFAsset {
         }
 
         // 解析 samplers
-        this.samplersJSON = obj.getJSONArray("samplers");
+        JSONArray samplersJSON = obj.getJSONArray("samplers");
         if (samplersJSON != null) {
-            this.samplers = new GLTFTextureSampler[this.samplersJSON.size()];
-            for (int i = 0; i < this.samplersJSON.size(); i++) {
+            this.samplers = new GLTFTextureSampler[samplersJSON.size()];
+            for (int i = 0; i < samplersJSON.size(); i++) {
                 this.samplers[i] = GLTFTextureSampler.fromJSONObject(
-                        this.samplersJSON.getJSONObject(i)
+                        samplersJSON.getJSONObject(i)
                 );
             }
         } else {
@@ -123,12 +138,12 @@ public class GLTFAsset {
         }
 
         // 解析 textures
-        this.texturesJSON = obj.getJSONArray("textures");
+        JSONArray texturesJSON = obj.getJSONArray("textures");
         if (texturesJSON != null) {
-            this.textures = new GLTFTexture[this.texturesJSON.size()];
-            for (int i = 0; i < this.texturesJSON.size(); i++) {
+            this.textures = new GLTFTexture[texturesJSON.size()];
+            for (int i = 0; i < texturesJSON.size(); i++) {
                 this.textures[i] = GLTFTexture.fromJSONObject(
-                        this.texturesJSON.getJSONObject(i),
+                        texturesJSON.getJSONObject(i),
                         this.images,
                         this.samplers
                 );
@@ -138,12 +153,12 @@ public class GLTFAsset {
         }
 
         // 解析 materials
-        this.materialsJSON = obj.getJSONArray("materials");
+        JSONArray materialsJSON = obj.getJSONArray("materials");
         if (materialsJSON != null) {
-            this.materials = new GLTFMaterial[this.materialsJSON.size()];
-            for (int i = 0; i < this.materialsJSON.size(); i++) {
+            this.materials = new GLTFMaterial[materialsJSON.size()];
+            for (int i = 0; i < materialsJSON.size(); i++) {
                 this.materials[i] = GLTFMaterial.fromJSONObject(
-                        this.materialsJSON.getJSONObject(i),
+                        materialsJSON.getJSONObject(i),
                         this.textures
                 );
             }
@@ -152,26 +167,35 @@ public class GLTFAsset {
         }
 
         // 解析 meshes
-        this.meshesJSON = obj.getJSONArray("meshes");
+        JSONArray meshesJSON = obj.getJSONArray("meshes");
         if (meshesJSON != null) {
-            this.meshes = new GLTFMesh[this.meshesJSON.size()];
-            for (int i = 0; i < this.meshesJSON.size(); i++) {
+            this.meshes = new GLTFMesh[meshesJSON.size()];
+            for (int i = 0; i < meshesJSON.size(); i++) {
                 this.meshes[i] = GLTFMesh.fromJSONObject(
-                        this.meshesJSON.getJSONObject(i),
+                        meshesJSON.getJSONObject(i),
                         this.accessors,
-                        this.materials
+                        this.materials,
+                        this.bufferViews
                 );
             }
+            GLTFDracoDecoder.decodeAll(this.meshes);
+            GLTFTextureTransformBaker.bakeAll(this.meshes);
         } else {
             this.meshes = new GLTFMesh[0];
         }
+        // the nodes array is allocated here, as skins reference their joints
+        JSONArray nodesJSON = obj.getJSONArray("nodes");
+        this.nodes = new GLTFNode[nodesJSON != null && !compactNodes ? nodesJSON.size() : 0];
+
         // 解析 skins
-        this.skinsJSON = obj.getJSONArray("skins");
+        JSONArray skinsJSON = obj.getJSONArray("skins");
         if (skinsJSON != null) {
-            this.skins = new GLTFSkin[this.skinsJSON.size()];
-            for (int i = 0; i < this.skinsJSON.size(); i++) {
+            this.skins = new GLTFSkin[skinsJSON.size()];
+            for (int i = 0; i < skinsJSON.size(); i++) {
                 this.skins[i] = GLTFSkin.fromJSONObject(
-                        this.skinsJSON.getJSONObject(i)
+                        skinsJSON.getJSONObject(i),
+                        this.accessors,
+                        compactNodes ? null : this.nodes
                 );
             }
         } else {
@@ -179,12 +203,12 @@ public class GLTFAsset {
         }
 
         // 解析 cameras
-        this.camerasJSON = obj.getJSONArray("cameras");
+        JSONArray camerasJSON = obj.getJSONArray("cameras");
         if (camerasJSON != null) {
-            this.cameras = new GLTFCamera[this.camerasJSON.size()];
-            for (int i = 0; i < this.camerasJSON.size(); i++) {
+            this.cameras = new GLTFCamera[camerasJSON.size()];
+            for (int i = 0; i < camerasJSON.size(); i++) {
                 this.cameras[i] = GLTFCamera.fromJSONObject(
-                        this.camerasJSON.getJSONObject(i)
+                        camerasJSON.getJSONObject(i)
                 );
             }
         } else {
@@ -192,39 +216,108 @@ public class GLTFAsset {
         }
 
         // 解析 nodes
-        this.nodesJSON = obj.getJSONArray("nodes");
-        if (nodesJSON != null) {
-            this.nodes = new GLTFNode[this.nodesJSON.size()];
-            for (int i = 0; i < this.nodesJSON.size(); i++) {
+        if (nodesJSON != null && compactNodes) {
+            this.nodeStore = GLTFNodeStore.fromJSONArray(
+                    nodesJSON,
+                    this.cameras,
+                    this.meshes,
+                    this.skins
+            );
+        } else {
+            this.nodeStore = null;
+        }
+        if (nodesJSON != null && !compactNodes) {
+            for (int i = 0; i < nodesJSON.size(); i++) {
                 this.nodes[i] = GLTFNode.fromJSONObject(
-                        this.nodesJSON.getJSONObject(i),
+                        nodesJSON.getJSONObject(i),
                         this.cameras,
                         this.nodes,
                         this.meshes,
                         this.skins
                 );
             }
-        } else {
-            this.nodes = new GLTFNode[0];
+            GLTFNode.linkParents(this.nodes);
         }
+        this.nodeTraversal = new GLTFNodeTraversal(this.nodes);
 
         // 解析 scenes
-        this.scenesJSON = obj.getJSONArray("scenes");
+        JSONArray scenesJSON = obj.getJSONArray("scenes");
         if (scenesJSON != null) {
-            this.scenes = new GLTFScene[this.scenesJSON.size()];
-            for (int i = 0; i < this.scenesJSON.size(); i++) {
+            this.scenes = new GLTFScene[scenesJSON.size()];
+            for (int i = 0; i < scenesJSON.size(); i++) {
                 this.scenes[i] = GLTFScene.fromJSONObject(
-                        this.scenesJSON.getJSONObject(i),
-                        this.nodes
+                        scenesJSON.getJSONObject(i),
+                        compactNodes ? null : this.nodes,
+                        this.nodeStore
                 );
             }
         } else {
             this.scenes = new GLTFScene[0];
         }
+
+        // 解析 animations
+        JSONArray animationsJSON = obj.getJSONArray("animations");
+        if (animationsJSON != null) {
+            this.animations = new GLTFAnimation[animationsJSON.size()];
+            for (int i = 0; i < animationsJSON.size(); i++) {
+                this.animations[i] = GLTFAnimation.fromJSONObject(
+                        animationsJSON.getJSONObject(i),
+                        this.accessors
+                );
+            }
+        } else {
+            this.animations = new GLTFAnimation[0];
+        }
+    }
+
+    /**
+     * limits the size of all the images once decoded, for machines which
+     * gain nothing from very large textures. See {@link GLTFImage#setMaxDimension(int)}.
+     * It must be called before {@link #deduplicateImages()}.
+     * @param maxDimension the maximum width and height, 0 for no limit
+     * @throws IllegalStateException if an image was deduplicated already
+     * with another maximum dimension
+     */
+    public void setMaxTextureDimension(int maxDimension){
+        for (GLTFImage image : this.images) {
+            if(image != null)
+                image.setMaxDimension(maxDimension);
+        }
+    }
+
+    /**
+     * accounts the decoded images of the asset in a residency, which may
+     * be shared with other assets, and evicts them to stay within its budget.
+     * @param residency the residency, or null to keep the images decoded
+     */
+    public void setImageResidency(GLTFImageResidency residency){
+        for (GLTFImage image : this.images) {
+            if(image != null)
+                image.setResidency(residency);
+        }
+    }
+
+    /**
+     * maps the images of the asset whose encoded bytes are identical to
+     * those of an image already seen in the process to that image, so
+     * that they are decoded once. See {@link GLTFImageDeduplicator}.
+     * @throws IOException if an image cannot be read
+     */
+    public void deduplicateImages() throws IOException {
+        GLTFImageDeduplicator.getShared().deduplicateAll(this.images);
+    }
+
+    /**
+     * decodes all the images concurrently with a {@link GLTFImageDecoder},
+     * instead of one by one on first use.
+     * @throws IOException if an image cannot be read
+     */
+    public void decodeImages() throws IOException {
+        new GLTFImageDecoder().decodeAll(this.images);
     }
 
-    private GLTFBuffer getBufferFromIndex(int i) throws IOException {
-        JSONObject bObj = (JSONObject)this.buffersJSON.get(i);
+    private GLTFBuffer getBufferFromIndex(JSONArray buffersJSON, int i) throws IOException {
+        JSONObject bObj = (JSONObject)buffersJSON.get(i);
         return GLTFBuffer.fromBuffer(bObj, this.gltfDir);
     }
     public static void main(String[] args) throws IOException, GLTFException {
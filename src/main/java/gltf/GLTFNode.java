@@ -2,11 +2,17 @@ package gltf;
 
 import gltf.accessor.GLTFAccessor;
 import gltf.exception.GLTFException;
+import gltf.mesh.GLTFBounds;
+import gltf.math.Mat4f;
 import gltf.mesh.GLTFMesh;
 import gltf.utils.JSONUtils;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
 public class GLTFNode {
     public static final float[] DEFAULT_TRANSFORMATION_MATRIX = {
         1.0f, 0.0f, 0.0f, 0.0f,
@@ -50,11 +56,16 @@ public class GLTFNode {
         this.childrenIdxes = childrenIdxes;
         this.nodes = nodes;
         this.skin = skin;
-        this.transformationMatrix = transformationMatrix;
+        // the transform arrays may be modified through the setters below,
+        // so the shared default arrays are never referenced directly
+        this.hasMatrix = transformationMatrix != DEFAULT_TRANSFORMATION_MATRIX;
+        this.transformationMatrix = this.hasMatrix ?
+            transformationMatrix
+            : DEFAULT_TRANSFORMATION_MATRIX.clone();
         this.mesh = mesh;
-        this.rotation = rotation;
-        this.scale = scale;
-        this.translation = translation;
+        this.rotation = rotation == DEFAULT_ROTATION ? DEFAULT_ROTATION.clone() : rotation;
+        this.scale = scale == DEFAULT_SCALE ? DEFAULT_SCALE.clone() : scale;
+        this.translation = translation == DEFAULT_TRANSLATION ? DEFAULT_TRANSLATION.clone() : translation;
         this.weights = weights;
         this.extras = extras;
         this.name = name;
@@ -169,6 +180,224 @@ public class GLTFNode {
         return null;
     }
 
+    /**
+     * computes the local transform of the node, relative to its parent.
+     * As per the GLTF specification, a node has either a matrix or
+     * TRS properties: the matrix is used if it was specified,
+     * the TRS properties otherwise.
+     * @param out the column-major float[16] to write the matrix into
+     * @return out
+     */
+    public float[] computeLocalMatrix(float[] out){
+        computeLocalMatrix(out, 0);
+        return out;
+    }
+
+    /**
+     * computes the local transform of the node into an array of matrices.
+     * @param out the array to write the column-major matrix into
+     * @param offset the offset of the matrix in out
+     */
+    public void computeLocalMatrix(float[] out, int offset){
+        if(this.hasMatrix)
+            System.arraycopy(this.transformationMatrix, 0, out, offset, 16);
+        else
+            Mat4f.fromTRS(this.translation, 0, this.rotation, 0, this.scale, 0, out, offset);
+    }
+
+    /**
+     * sets the parent of every node referenced as a child in the nodes array.
+     * @param nodes all the nodes of the asset
+     */
+    static void linkParents(GLTFNode[] nodes){
+        for (GLTFNode node : nodes) {
+            if(node == null)
+                continue;
+            for (GLTFNode child : node.getChildren()) {
+                child.parent = node;
+            }
+        }
+    }
+
+    public GLTFNode getParent(){
+        return this.parent;
+    }
+
+    /**
+     * sets the translation of the node. If the node was defined
+     * by a matrix, it switches to its TRS properties.
+     */
+    public void setTranslation(float x, float y, float z){
+        this.translation[0] = x;
+        this.translation[1] = y;
+        this.translation[2] = z;
+        this.hasMatrix = false;
+        invalidateTransform();
+    }
+
+    /**
+     * sets the rotation quaternion (x, y, z, w) of the node. If the
+     * node was defined by a matrix, it switches to its TRS properties.
+     */
+    public void setRotation(float x, float y, float z, float w){
+        this.rotation[0] = x;
+        this.rotation[1] = y;
+        this.rotation[2] = z;
+        this.rotation[3] = w;
+        this.hasMatrix = false;
+        invalidateTransform();
+    }
+
+    /**
+     * sets the scale of the node. If the node was defined
+     * by a matrix, it switches to its TRS properties.
+     */
+    public void setScale(float x, float y, float z){
+        this.scale[0] = x;
+        this.scale[1] = y;
+        this.scale[2] = z;
+        this.hasMatrix = false;
+        invalidateTransform();
+    }
+
+    /**
+     * sets the local matrix of the node, which then takes
+     * precedence over its TRS properties.
+     * @param matrix a column-major float[16]
+     */
+    public void setMatrix(float[] matrix){
+        System.arraycopy(matrix, 0, this.transformationMatrix, 0, 16);
+        this.hasMatrix = true;
+        invalidateTransform();
+    }
+
+    /**
+     * marks the cached world transforms and bounds as dirty after a
+     * change of the local transform. The world transforms of the whole
+     * subtree change, as do the hierarchical bounds of the ancestors.
+     * Must be called after modifying the transform arrays directly.
+     */
+    public void invalidateTransform(){
+        this.transformVersion++;
+        invalidateSubtree(this);
+        for (GLTFNode n = this.parent; n != null && !n.worldBoundsDirty; n = n.parent) {
+            n.worldBoundsDirty = true;
+        }
+    }
+
+    private static void invalidateSubtree(GLTFNode node){
+        // a dirty world matrix implies a dirty subtree, so the walk stops there.
+        // An explicit stack keeps very deep hierarchies from overflowing the call stack
+        if(node.worldMatrixDirty)
+            return;
+        ArrayDeque<GLTFNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            GLTFNode n = stack.pop();
+            if(n.worldMatrixDirty)
+                continue;
+            n.worldMatrixDirty = true;
+            n.worldBoundsDirty = true;
+            for (GLTFNode child : n.getChildren()) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * returns the transform of the node relative to the scene root,
+     * recomputed only when the node or one of its ancestors changed.
+     * @return the cached column-major float[16]. Do not modify it.
+     */
+    public float[] getWorldMatrix(){
+        if(!this.worldMatrixDirty)
+            return this.worldMatrix;
+        if(this.parent == null || !this.parent.worldMatrixDirty){
+            computeWorldMatrix();
+            return this.worldMatrix;
+        }
+        // the dirty ancestors are computed from the top down, without recursion
+        ArrayDeque<GLTFNode> dirty = new ArrayDeque<>();
+        for (GLTFNode n = this; n != null && n.worldMatrixDirty; n = n.parent) {
+            dirty.push(n);
+        }
+        while (!dirty.isEmpty()) {
+            dirty.pop().computeWorldMatrix();
+        }
+        return this.worldMatrix;
+    }
+
+    /**
+     * computes the world matrix from a clean parent world matrix.
+     */
+    private void computeWorldMatrix(){
+        computeLocalMatrix(this.worldMatrix);
+        if(this.parent != null)
+            Mat4f.mul(this.parent.worldMatrix, 0, this.worldMatrix, 0, this.worldMatrix, 0);
+        this.worldMatrixDirty = false;
+    }
+
+    /**
+     * returns the world-space bounds of the node and all its descendants,
+     * recomputed only when a transform in the subtree changed.
+     * @return the bounds, or null if the subtree has no geometry
+     */
+    public GLTFBounds getWorldBounds(){
+        if(!this.worldBoundsDirty)
+            return this.worldBounds;
+        // the dirty nodes of the subtree in pre-order, so that walking the
+        // list backwards computes the children before their parent
+        List<GLTFNode> dirty = new ArrayList<>();
+        dirty.add(this);
+        for (int i = 0; i < dirty.size(); i++) {
+            for (GLTFNode child : dirty.get(i).getChildren()) {
+                if(child.worldBoundsDirty)
+                    dirty.add(child);
+            }
+        }
+        for (int i = dirty.size() - 1; i >= 0; i--) {
+            dirty.get(i).computeWorldBounds();
+        }
+        return this.worldBounds;
+    }
+
+    /**
+     * computes the bounds from the clean bounds of the children.
+     */
+    private void computeWorldBounds(){
+        // always refreshing the world matrix keeps clean bounds implying
+        // a clean world matrix, which invalidateSubtree relies on
+        float[] world = getWorldMatrix();
+        GLTFBounds returnVal = null;
+        if(this.mesh != null){
+            GLTFBounds local = this.mesh.getLocalBounds();
+            if(local != null)
+                returnVal = local.transform(world);
+        }
+        for (GLTFNode child : getChildren()) {
+            returnVal = GLTFBounds.union(returnVal, child.worldBounds);
+        }
+        this.worldBounds = returnVal;
+        this.worldBoundsDirty = false;
+    }
+
+    /**
+     * returns a counter incremented on every change of the local
+     * transform, which lets caches such as {@link GLTFSceneTransformCache}
+     * detect changed nodes without being notified.
+     */
+    public int getTransformVersion(){
+        return this.transformVersion;
+    }
+
+    private boolean hasMatrix;
+    private int transformVersion = 0;
+    private GLTFNode parent = null;
+    private final float[] worldMatrix = new float[16];
+    private boolean worldMatrixDirty = true;
+    private GLTFBounds worldBounds = null;
+    private boolean worldBoundsDirty = true;
+
     private GLTFNode[] children = null;
     public GLTFNode[] getChildren(){
         if(children == null){
@@ -0,0 +1,342 @@
+package gltf;
+
+import gltf.exception.GLTFException;
+import gltf.math.Mat4f;
+import gltf.mesh.GLTFBounds;
+import gltf.mesh.GLTFMesh;
+import gltf.utils.JSONUtils;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * A compact store of the nodes of an asset, as packed parallel arrays
+ * instead of one {@link GLTFNode} object per node: the TRS properties,
+ * the mesh, skin and camera indices, and the hierarchy as parent,
+ * first child and next sibling indices. Matrices are only stored for
+ * the nodes which have one. This takes less than 100 bytes per node,
+ * which lets scenes with millions of nodes fit in memory.
+ * <p>
+ * Single nodes are accessed through a {@link GLTFNodeView}, a reusable
+ * cursor over the store.
+ */
+public class GLTFNodeStore {
+    public final int nodeCount;
+    /** 3 floats per node */
+    public final float[] translations;
+    /** 4 floats per node, (x, y, z, w) quaternions */
+    public final float[] rotations;
+    /** 3 floats per node */
+    public final float[] scales;
+    /** the index of the matrix of each node in the matrices, -1 if the node uses its TRS properties */
+    public final int[] matrixIdxes;
+    /** -1 if the node has no mesh */
+    public final int[] meshIdxes;
+    /** -1 if the node has no skin */
+    public final int[] skinIdxes;
+    /** -1 if the node has no camera */
+    public final int[] cameraIdxes;
+    /** -1 for the roots */
+    public final int[] parentIdxes;
+    /** -1 for the leaves */
+    public final int[] firstChildIdxes;
+    /** -1 for the last child */
+    public final int[] nextSiblingIdxes;
+    /** null for the unnamed nodes */
+    public final String[] names;
+    /** the morph weights of each node, null for the nodes without */
+    public final float[][] weights;
+    /** null for the nodes without extras */
+    public final JSONObject[] extras;
+
+    public final GLTFMesh[] meshes;
+    public final GLTFSkin[] skins;
+    public final GLTFCamera[] cameras;
+
+    /** 16 floats per node with a matrix, grown as matrices are set */
+    private float[] matrices;
+    private int matrixCount = 0;
+    private int[] order = null;
+
+    /**
+     * creates a store of nodes without transforms, meshes or children.
+     */
+    public GLTFNodeStore(int nodeCount, GLTFMesh[] meshes, GLTFSkin[] skins, GLTFCamera[] cameras) {
+        this.nodeCount = nodeCount;
+        this.meshes = meshes;
+        this.skins = skins;
+        this.cameras = cameras;
+        this.translations = new float[3 * nodeCount];
+        this.rotations = new float[4 * nodeCount];
+        this.scales = new float[3 * nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            this.rotations[4 * i + 3] = 1;
+            this.scales[3 * i] = 1;
+            this.scales[3 * i + 1] = 1;
+            this.scales[3 * i + 2] = 1;
+        }
+        this.matrixIdxes = filled(nodeCount);
+        this.meshIdxes = filled(nodeCount);
+        this.skinIdxes = filled(nodeCount);
+        this.cameraIdxes = filled(nodeCount);
+        this.parentIdxes = filled(nodeCount);
+        this.firstChildIdxes = filled(nodeCount);
+        this.nextSiblingIdxes = filled(nodeCount);
+        this.names = new String[nodeCount];
+        this.weights = new float[nodeCount][];
+        this.extras = new JSONObject[nodeCount];
+        this.matrices = new float[0];
+    }
+
+    private static int[] filled(int n){
+        int[] returnVal = new int[n];
+        Arrays.fill(returnVal, -1);
+        return returnVal;
+    }
+
+    /**
+     * reads the nodes of an asset without creating a GLTFNode per node.
+     * @param jArr the nodes array of the asset
+     */
+    public static GLTFNodeStore fromJSONArray(JSONArray jArr,
+                                              GLTFCamera[] cameras,
+                                              GLTFMesh[] meshes,
+                                              GLTFSkin[] skins)
+        throws GLTFException
+    {
+        GLTFNodeStore returnVal = new GLTFNodeStore(jArr.size(), meshes, skins, cameras);
+        for (int i = 0; i < returnVal.nodeCount; i++) {
+            JSONObject jObj = jArr.getJSONObject(i);
+            try{
+                returnVal.read(i, jObj);
+            }catch(Exception e){
+                e.printStackTrace();
+                GLTFException.throwGLTFExceptionWithCause(jObj);
+            }
+        }
+        return returnVal;
+    }
+
+    private void read(int i, JSONObject jObj) throws GLTFException {
+        if(jObj.containsKey("translation"))
+            copy(jObj.getJSONArray("translation"), this.translations, 3 * i, 3);
+        if(jObj.containsKey("rotation"))
+            copy(jObj.getJSONArray("rotation"), this.rotations, 4 * i, 4);
+        if(jObj.containsKey("scale"))
+            copy(jObj.getJSONArray("scale"), this.scales, 3 * i, 3);
+        if(jObj.containsKey("matrix")){
+            float[] matrix = JSONUtils.JSONToFloatArray(jObj.getJSONArray("matrix"));
+            if(matrix.length != 16)
+                throw new GLTFException("a node matrix must have 16 elements");
+            setMatrix(i, matrix);
+        }
+        this.meshIdxes[i] = readIndex(jObj, "mesh", this.meshes.length);
+        this.skinIdxes[i] = readIndex(jObj, "skin", this.skins.length);
+        this.cameraIdxes[i] = readIndex(jObj, "camera", this.cameras.length);
+        if(jObj.containsKey("weights"))
+            this.weights[i] = JSONUtils.JSONToFloatArray(jObj.getJSONArray("weights"));
+        if(jObj.containsKey("name"))
+            this.names[i] = jObj.getString("name");
+        if(jObj.containsKey("extras"))
+            this.extras[i] = jObj.getJSONObject("extras");
+        if(jObj.containsKey("children"))
+            addChildren(i, JSONUtils.JSONToIntArray(jObj.getJSONArray("children")));
+    }
+
+    private static void copy(JSONArray jArr, float[] out, int offset, int n) throws GLTFException {
+        if(jArr.size() != n)
+            throw new GLTFException("expected " + n + " elements, got " + jArr.size());
+        for (int k = 0; k < n; k++) {
+            out[offset + k] = jArr.getFloatValue(k);
+        }
+    }
+
+    private static int readIndex(JSONObject jObj, String key, int count) throws GLTFException {
+        if(!jObj.containsKey(key))
+            return -1;
+        int returnVal = jObj.getIntValue(key);
+        if(returnVal < 0 || returnVal >= count)
+            throw new GLTFException(key + " index " + returnVal + " out of range");
+        return returnVal;
+    }
+
+    /**
+     * links children to a node, after its current ones. A node which
+     * already has a parent, or the node itself, is skipped, as it would
+     * not make a valid GLTF hierarchy.
+     */
+    public void addChildren(int nodeIdx, int[] childrenIdxes) throws GLTFException {
+        int last = -1;
+        for (int child = this.firstChildIdxes[nodeIdx]; child != -1; child = this.nextSiblingIdxes[child]) {
+            last = child;
+        }
+        for (int child : childrenIdxes) {
+            if(child < 0 || child >= this.nodeCount)
+                throw new GLTFException("child index " + child + " out of range");
+            if(child == nodeIdx || this.parentIdxes[child] != -1)
+                continue;
+            this.parentIdxes[child] = nodeIdx;
+            if(last == -1)
+                this.firstChildIdxes[nodeIdx] = child;
+            else
+                this.nextSiblingIdxes[last] = child;
+            last = child;
+        }
+        this.order = null;
+    }
+
+    public GLTFMesh getMesh(int nodeIdx){
+        return this.meshIdxes[nodeIdx] != -1 ? this.meshes[this.meshIdxes[nodeIdx]] : null;
+    }
+
+    public GLTFSkin getSkin(int nodeIdx){
+        return this.skinIdxes[nodeIdx] != -1 ? this.skins[this.skinIdxes[nodeIdx]] : null;
+    }
+
+    public GLTFCamera getCamera(int nodeIdx){
+        return this.cameraIdxes[nodeIdx] != -1 ? this.cameras[this.cameraIdxes[nodeIdx]] : null;
+    }
+
+    public boolean hasMatrix(int nodeIdx){
+        return this.matrixIdxes[nodeIdx] != -1;
+    }
+
+    /**
+     * sets the translation of a node. If the node was defined
+     * by a matrix, it switches to its TRS properties.
+     */
+    public void setTranslation(int nodeIdx, float x, float y, float z){
+        int o = 3 * nodeIdx;
+        this.translations[o] = x;
+        this.translations[o + 1] = y;
+        this.translations[o + 2] = z;
+        this.matrixIdxes[nodeIdx] = -1;
+    }
+
+    /**
+     * sets the rotation quaternion (x, y, z, w) of a node. If the
+     * node was defined by a matrix, it switches to its TRS properties.
+     */
+    public void setRotation(int nodeIdx, float x, float y, float z, float w){
+        int o = 4 * nodeIdx;
+        this.rotations[o] = x;
+        this.rotations[o + 1] = y;
+        this.rotations[o + 2] = z;
+        this.rotations[o + 3] = w;
+        this.matrixIdxes[nodeIdx] = -1;
+    }
+
+    /**
+     * sets the scale of a node. If the node was defined
+     * by a matrix, it switches to its TRS properties.
+     */
+    public void setScale(int nodeIdx, float x, float y, float z){
+        int o = 3 * nodeIdx;
+        this.scales[o] = x;
+        this.scales[o + 1] = y;
+        this.scales[o + 2] = z;
+        this.matrixIdxes[nodeIdx] = -1;
+    }
+
+    /**
+     * sets the local matrix of a node, which then takes
+     * precedence over its TRS properties.
+     * @param matrix a column-major float[16]
+     */
+    public void setMatrix(int nodeIdx, float[] matrix){
+        if(this.matrixIdxes[nodeIdx] == -1){
+            // the slot of a node which switched to TRS is not reclaimed
+            if(16 * (this.matrixCount + 1) > this.matrices.length)
+                this.matrices = Arrays.copyOf(this.matrices, Math.max(16, 2 * this.matrices.length));
+            this.matrixIdxes[nodeIdx] = this.matrixCount++;
+        }
+        System.arraycopy(matrix, 0, this.matrices, 16 * this.matrixIdxes[nodeIdx], 16);
+    }
+
+    /**
+     * computes the local transform of a node, relative to its parent:
+     * its matrix if it has one, its TRS properties otherwise.
+     * @param out the array to write the column-major matrix into
+     * @param offset the offset of the matrix in out
+     */
+    public void computeLocalMatrix(int nodeIdx, float[] out, int offset){
+        int m = this.matrixIdxes[nodeIdx];
+        if(m != -1)
+            System.arraycopy(this.matrices, 16 * m, out, offset, 16);
+        else
+            Mat4f.fromTRS(this.translations, 3 * nodeIdx, this.rotations, 4 * nodeIdx, this.scales, 3 * nodeIdx, out, offset);
+    }
+
+    /**
+     * returns the nodes reachable from the roots, every parent before
+     * its children. It is computed once, and again only after the
+     * hierarchy changed.
+     */
+    public int[] getOrder(){
+        if(this.order == null){
+            int[] returnVal = new int[this.nodeCount];
+            int n = 0;
+            for (int i = 0; i < this.nodeCount; i++) {
+                if(this.parentIdxes[i] == -1)
+                    returnVal[n++] = i;
+            }
+            // nodes in a cycle are unreachable from the roots, and left out
+            for (int k = 0; k < n; k++) {
+                for (int child = this.firstChildIdxes[returnVal[k]]; child != -1; child = this.nextSiblingIdxes[child]) {
+                    returnVal[n++] = child;
+                }
+            }
+            this.order = n == this.nodeCount ? returnVal : Arrays.copyOf(returnVal, n);
+        }
+        return this.order;
+    }
+
+    /**
+     * computes the world matrices of all the nodes reachable from the
+     * roots. Nothing is allocated once the order is known.
+     * @param out the column-major world matrix of node i is written at
+     *            offset 16 * i, out must hold 16 * nodeCount floats
+     */
+    public void computeWorldMatrices(float[] out){
+        for (int i : getOrder()) {
+            computeLocalMatrix(i, out, 16 * i);
+            int parent = this.parentIdxes[i];
+            if(parent != -1)
+                Mat4f.mul(out, 16 * parent, out, 16 * i, out, 16 * i);
+        }
+    }
+
+    /**
+     * computes the world-space bounds of the meshes of the nodes reachable
+     * from some roots, such as those of a scene. The world matrices are
+     * computed for the whole store, in a temporary array of 64 bytes per node.
+     * @param rootIdxes the indices of the roots
+     * @return the bounds, or null if the nodes have no geometry
+     */
+    public GLTFBounds getWorldBounds(int[] rootIdxes){
+        boolean[] reached = new boolean[this.nodeCount];
+        for (int root : rootIdxes) {
+            reached[root] = true;
+        }
+        float[] world = new float[16 * this.nodeCount];
+        computeWorldMatrices(world);
+        float[] matrix = new float[16];
+        GLTFBounds returnVal = null;
+        // parents come before their children in the order
+        for (int i : getOrder()) {
+            int parent = this.parentIdxes[i];
+            if(parent != -1 && reached[parent])
+                reached[i] = true;
+            GLTFMesh mesh = getMesh(i);
+            if(!reached[i] || mesh == null)
+                continue;
+            GLTFBounds local = mesh.getLocalBounds();
+            if(local == null)
+                continue;
+            System.arraycopy(world, 16 * i, matrix, 0, 16);
+            returnVal = GLTFBounds.union(returnVal, local.transform(matrix));
+        }
+        return returnVal;
+    }
+}
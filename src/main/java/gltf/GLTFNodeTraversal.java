@@ -0,0 +1,312 @@
+package gltf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks node hierarchies with an explicit stack, so that hierarchies
+ * of any depth can be traversed without overflowing the call stack.
+ * <p>
+ * The hierarchy is stored as index arrays: the parent of each node, and
+ * the children of each node as ranges of one flat array. Visitors get
+ * the index of the node, of its parent and its depth. A traversal only
+ * allocates its stacks, nothing per node; the parallel traversal also
+ * allocates one task per subtree it forks.
+ */
+public class GLTFNodeTraversal {
+    /**
+     * visits a node during a traversal.
+     */
+    public interface Visitor {
+        /**
+         * @param nodeIdx the index of the node
+         * @param parentIdx the index of its parent, -1 for a root
+         * @param depth the depth of the node, 0 for a root
+         */
+        void visit(int nodeIdx, int parentIdx, int depth);
+    }
+
+    public final GLTFNode[] nodes;
+    /** the index of the parent of each node, -1 for the roots */
+    public final int[] parentIdxes;
+    /** the children of node i are childrenIdxes[childrenStarts[i]] to childrenIdxes[childrenStarts[i + 1] - 1] */
+    public final int[] childrenStarts;
+    public final int[] childrenIdxes;
+    /** the nodes without a parent */
+    public final int[] rootIdxes;
+    /** the number of nodes in the subtree of each node, itself included */
+    public final int[] subtreeSizes;
+    /** the depth of the deepest node */
+    public final int maxDepth;
+
+    private final Map<GLTFNode, Integer> indexes;
+
+    /**
+     * @param nodes all the nodes of the hierarchy, such as the nodes of an
+     *              asset. The children of a node must be in the array.
+     */
+    public GLTFNodeTraversal(GLTFNode[] nodes) {
+        int n = nodes.length;
+        this.nodes = nodes;
+        this.indexes = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if(nodes[i] != null)
+                this.indexes.put(nodes[i], i);
+        }
+        this.parentIdxes = new int[n];
+        Arrays.fill(this.parentIdxes, -1);
+        int nChildren = 0;
+        for (GLTFNode node : nodes) {
+            if(node != null)
+                nChildren += node.getChildren().length;
+        }
+        // a node reachable twice is not a valid GLTF hierarchy: keep the first parent
+        this.childrenStarts = new int[n + 1];
+        int[] children = new int[nChildren];
+        int c = 0;
+        for (int i = 0; i < n; i++) {
+            this.childrenStarts[i] = c;
+            if(nodes[i] == null)
+                continue;
+            for (GLTFNode child : nodes[i].getChildren()) {
+                Integer childIdx = this.indexes.get(child);
+                if(childIdx == null || childIdx == i || this.parentIdxes[childIdx] != -1)
+                    continue;
+                this.parentIdxes[childIdx] = i;
+                children[c++] = childIdx;
+            }
+        }
+        this.childrenStarts[n] = c;
+        this.childrenIdxes = Arrays.copyOf(children, c);
+
+        int nRoots = 0;
+        for (int i = 0; i < n; i++) {
+            if(this.parentIdxes[i] == -1)
+                nRoots++;
+        }
+        this.rootIdxes = new int[nRoots];
+        nRoots = 0;
+        for (int i = 0; i < n; i++) {
+            if(this.parentIdxes[i] == -1)
+                this.rootIdxes[nRoots++] = i;
+        }
+
+        // sizes and depths, from a pre-order without recursion
+        this.subtreeSizes = new int[n];
+        int[] order = new int[n];
+        int[] depths = new int[n];
+        int nOrdered = 0;
+        int maxDepth = 0;
+        for (int root : this.rootIdxes) {
+            int first = nOrdered;
+            order[nOrdered++] = root;
+            for (int k = first; k < nOrdered; k++) {
+                int node = order[k];
+                maxDepth = Math.max(maxDepth, depths[node]);
+                for (int j = this.childrenStarts[node]; j < this.childrenStarts[node + 1]; j++) {
+                    depths[this.childrenIdxes[j]] = depths[node] + 1;
+                    order[nOrdered++] = this.childrenIdxes[j];
+                }
+            }
+        }
+        // nodes in a cycle are unreachable from the roots, and form no subtree
+        for (int k = nOrdered - 1; k >= 0; k--) {
+            int node = order[k];
+            this.subtreeSizes[node] += 1;
+            if(this.parentIdxes[node] != -1)
+                this.subtreeSizes[this.parentIdxes[node]] += this.subtreeSizes[node];
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * creates the traversal of the hierarchies below some root nodes,
+     * such as the nodes of a scene.
+     * @param roots the root nodes
+     * @return the traversal, whose nodes are those reachable from the roots
+     */
+    public static GLTFNodeTraversal fromRoots(GLTFNode[] roots){
+        List<GLTFNode> nodes = new ArrayList<>();
+        Map<GLTFNode, Boolean> seen = new IdentityHashMap<>();
+        for (GLTFNode root : roots) {
+            if(root != null && seen.put(root, Boolean.TRUE) == null)
+                nodes.add(root);
+        }
+        for (int k = 0; k < nodes.size(); k++) {
+            for (GLTFNode child : nodes.get(k).getChildren()) {
+                if(child != null && seen.put(child, Boolean.TRUE) == null)
+                    nodes.add(child);
+            }
+        }
+        return new GLTFNodeTraversal(nodes.toArray(new GLTFNode[0]));
+    }
+
+    /**
+     * returns the index of a node.
+     * @return the index, or -1 if the node is not in the hierarchy
+     */
+    public int indexOf(GLTFNode node){
+        Integer returnVal = this.indexes.get(node);
+        return returnVal != null ? returnVal : -1;
+    }
+
+    /**
+     * traverses all the hierarchies, depth first, in the order of the
+     * roots and of the children.
+     * @param pre called before the children of a node, or null
+     * @param post called after the children of a node, or null
+     */
+    public void traverse(Visitor pre, Visitor post){
+        int[] stack = new int[this.maxDepth + 1];
+        int[] cursors = new int[this.maxDepth + 1];
+        for (int root : this.rootIdxes) {
+            walk(root, -1, 0, pre, post, stack, cursors, null);
+        }
+    }
+
+    /**
+     * traverses the subtree of a node, depth first.
+     * @param nodeIdx the index of the subtree root
+     * @param pre called before the children of a node, or null
+     * @param post called after the children of a node, or null
+     */
+    public void traverse(int nodeIdx, Visitor pre, Visitor post){
+        int[] stack = new int[this.maxDepth + 1];
+        int[] cursors = new int[this.maxDepth + 1];
+        walk(nodeIdx, this.parentIdxes[nodeIdx], getDepth(nodeIdx), pre, post, stack, cursors, null);
+    }
+
+    /**
+     * traverses all the hierarchies, splitting large subtrees across a
+     * ForkJoinPool. A node is still visited by pre before, and by post
+     * after, all of its subtree, but sibling subtrees may be visited
+     * concurrently and in any order: the visitors must be thread-safe.
+     * @param pre called before the children of a node, or null
+     * @param post called after the children of a node, or null
+     * @param pool the pool to run the traversal in
+     * @param minSubtreeSize the smallest subtree visited by a task of its own
+     */
+    public void traverseParallel(Visitor pre, Visitor post, ForkJoinPool pool, int minSubtreeSize){
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<Task> tasks = new ArrayList<>();
+                for (int root : rootIdxes) {
+                    Task task = new Task(root, -1, 0, pre, post, Math.max(1, minSubtreeSize));
+                    tasks.add(task);
+                    task.fork();
+                }
+                for (Task task : tasks) {
+                    task.join();
+                }
+            }
+        });
+    }
+
+    private int getDepth(int nodeIdx){
+        int returnVal = 0;
+        for (int p = this.parentIdxes[nodeIdx]; p != -1; p = this.parentIdxes[p]) {
+            returnVal++;
+        }
+        return returnVal;
+    }
+
+    /**
+     * the explicit-stack depth-first walk shared by both traversals. If
+     * a task is given, large child subtrees are forked to it instead of
+     * being walked.
+     */
+    private void walk(int root, int rootParent, int rootDepth,
+                      Visitor pre, Visitor post,
+                      int[] stack, int[] cursors,
+                      Task task){
+        if(pre != null)
+            pre.visit(root, rootParent, rootDepth);
+        int sp = 0;
+        stack[0] = root;
+        cursors[0] = this.childrenStarts[root];
+        if(task != null)
+            task.enter(0);
+        while (sp >= 0) {
+            int node = stack[sp];
+            if(cursors[sp] < this.childrenStarts[node + 1]){
+                int child = this.childrenIdxes[cursors[sp]++];
+                if(task != null && task.fork(child, node, rootDepth + sp + 1))
+                    continue;
+                if(pre != null)
+                    pre.visit(child, node, rootDepth + sp + 1);
+                sp++;
+                stack[sp] = child;
+                cursors[sp] = this.childrenStarts[child];
+                if(task != null)
+                    task.enter(sp);
+            }else{
+                if(task != null)
+                    task.joinForks(sp);
+                if(post != null)
+                    post.visit(node, sp == 0 ? rootParent : stack[sp - 1], rootDepth + sp);
+                sp--;
+            }
+        }
+    }
+
+    /**
+     * walks one subtree. Child subtrees of at least minSubtreeSize nodes
+     * and at most half of the task's subtree are forked, which keeps the
+     * nesting of tasks logarithmic even for very deep hierarchies.
+     */
+    private class Task extends RecursiveAction {
+        final int root;
+        final int rootParent;
+        final int rootDepth;
+        final Visitor pre;
+        final Visitor post;
+        final int minSubtreeSize;
+        final List<Task> forks = new ArrayList<>();
+        /** the size of forks when each frame of the stack was entered */
+        int[] forkMarks;
+
+        Task(int root, int rootParent, int rootDepth, Visitor pre, Visitor post, int minSubtreeSize) {
+            this.root = root;
+            this.rootParent = rootParent;
+            this.rootDepth = rootDepth;
+            this.pre = pre;
+            this.post = post;
+            this.minSubtreeSize = minSubtreeSize;
+        }
+
+        @Override
+        protected void compute() {
+            int size = maxDepth - this.rootDepth + 1;
+            this.forkMarks = new int[size];
+            walk(this.root, this.rootParent, this.rootDepth, this.pre, this.post,
+                new int[size], new int[size], this);
+        }
+
+        void enter(int sp){
+            this.forkMarks[sp] = this.forks.size();
+        }
+
+        boolean fork(int child, int parent, int depth){
+            int childSize = subtreeSizes[child];
+            if(childSize < this.minSubtreeSize || 2 * childSize > subtreeSizes[this.root])
+                return false;
+            Task task = new Task(child, parent, depth, this.pre, this.post, this.minSubtreeSize);
+            this.forks.add(task);
+            task.fork();
+            return true;
+        }
+
+        void joinForks(int sp){
+            // the forks of the frame being left are the last ones added
+            while (this.forks.size() > this.forkMarks[sp]) {
+                this.forks.remove(this.forks.size() - 1).join();
+            }
+        }
+    }
+}
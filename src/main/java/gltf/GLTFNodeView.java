@@ -0,0 +1,163 @@
+package gltf;
+
+import gltf.mesh.GLTFMesh;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * A flyweight over one node of a {@link GLTFNodeStore}: a cursor which
+ * is moved from node to node instead of an object per node. It mirrors
+ * the accessors and setters of {@link GLTFNode}, reading and writing the
+ * packed arrays of the store.
+ * <pre>
+ * GLTFNodeView view = new GLTFNodeView(store);
+ * for (int i = 0; i &lt; store.nodeCount; i++) {
+ *     view.moveTo(i);
+ *     ...
+ * }
+ * </pre>
+ */
+public class GLTFNodeView {
+    public final GLTFNodeStore store;
+    private int index = -1;
+
+    public GLTFNodeView(GLTFNodeStore store) {
+        this.store = store;
+    }
+
+    /**
+     * moves the view to a node.
+     * @return this view
+     */
+    public GLTFNodeView moveTo(int nodeIdx){
+        if(nodeIdx < 0 || nodeIdx >= this.store.nodeCount)
+            throw new IndexOutOfBoundsException("node index " + nodeIdx + " out of range");
+        this.index = nodeIdx;
+        return this;
+    }
+
+    /**
+     * moves the view to the parent of the node.
+     * @return false, without moving, if the node is a root
+     */
+    public boolean moveToParent(){
+        return moveIfValid(this.store.parentIdxes[this.index]);
+    }
+
+    /**
+     * moves the view to the first child of the node.
+     * @return false, without moving, if the node has no children
+     */
+    public boolean moveToFirstChild(){
+        return moveIfValid(this.store.firstChildIdxes[this.index]);
+    }
+
+    /**
+     * moves the view to the next child of the parent of the node.
+     * @return false, without moving, if the node is the last child
+     */
+    public boolean moveToNextSibling(){
+        return moveIfValid(this.store.nextSiblingIdxes[this.index]);
+    }
+
+    private boolean moveIfValid(int nodeIdx){
+        if(nodeIdx == -1)
+            return false;
+        this.index = nodeIdx;
+        return true;
+    }
+
+    public int getIndex(){
+        return this.index;
+    }
+
+    public int getParentIdx(){
+        return this.store.parentIdxes[this.index];
+    }
+
+    public GLTFMesh getMesh(){
+        return this.store.getMesh(this.index);
+    }
+
+    public GLTFSkin getSkin(){
+        return this.store.getSkin(this.index);
+    }
+
+    public GLTFCamera getCamera(){
+        return this.store.getCamera(this.index);
+    }
+
+    public String getName(){
+        return this.store.names[this.index];
+    }
+
+    /**
+     * @return the morph weights of the node, or null
+     */
+    public float[] getWeights(){
+        return this.store.weights[this.index];
+    }
+
+    public JSONObject getExtras(){
+        return this.store.extras[this.index];
+    }
+
+    public boolean hasMatrix(){
+        return this.store.hasMatrix(this.index);
+    }
+
+    /**
+     * copies the translation of the node.
+     * @param out a float[3]
+     * @return out
+     */
+    public float[] getTranslation(float[] out){
+        System.arraycopy(this.store.translations, 3 * this.index, out, 0, 3);
+        return out;
+    }
+
+    /**
+     * copies the rotation quaternion (x, y, z, w) of the node.
+     * @param out a float[4]
+     * @return out
+     */
+    public float[] getRotation(float[] out){
+        System.arraycopy(this.store.rotations, 4 * this.index, out, 0, 4);
+        return out;
+    }
+
+    /**
+     * copies the scale of the node.
+     * @param out a float[3]
+     * @return out
+     */
+    public float[] getScale(float[] out){
+        System.arraycopy(this.store.scales, 3 * this.index, out, 0, 3);
+        return out;
+    }
+
+    public void setTranslation(float x, float y, float z){
+        this.store.setTranslation(this.index, x, y, z);
+    }
+
+    public void setRotation(float x, float y, float z, float w){
+        this.store.setRotation(this.index, x, y, z, w);
+    }
+
+    public void setScale(float x, float y, float z){
+        this.store.setScale(this.index, x, y, z);
+    }
+
+    public void setMatrix(float[] matrix){
+        this.store.setMatrix(this.index, matrix);
+    }
+
+    /**
+     * computes the local transform of the node, relative to its parent.
+     * @param out the column-major float[16] to write the matrix into
+     * @return out
+     */
+    public float[] computeLocalMatrix(float[] out){
+        this.store.computeLocalMatrix(this.index, out, 0);
+        return out;
+    }
+}
@@ -1,28 +1,86 @@
 package gltf;
 
 import gltf.exception.GLTFException;
-import com.alibaba.fastjson.JSONArray;
+import gltf.mesh.GLTFBounds;
+import gltf.utils.JSONUtils;
 import com.alibaba.fastjson.JSONObject;
 
 public class GLTFScene {
+    /** the root nodes, empty if the nodes are kept in a {@link GLTFNodeStore} */
     public final GLTFNode[] nodes;
+    /** the indices of the root nodes in the asset, or null if unknown */
+    public final int[] nodesIdxes;
+    /** the store holding the nodes of a compact asset, or null */
+    public final GLTFNodeStore nodeStore;
 
     public GLTFScene(GLTFNode[] nodes) {
+        this(null, nodes);
+    }
+
+    public GLTFScene(int[] nodesIdxes, GLTFNode[] nodes) {
+        this(nodesIdxes, nodes, null);
+    }
+
+    public GLTFScene(int[] nodesIdxes, GLTFNode[] nodes, GLTFNodeStore nodeStore) {
+        this.nodesIdxes = nodesIdxes;
         this.nodes = nodes;
+        this.nodeStore = nodeStore;
+    }
+
+    /**
+     * @return whether the nodes of the scene are kept in a {@link GLTFNodeStore}
+     * rather than in GLTFNode objects
+     */
+    public boolean isCompact(){
+        return this.nodeStore != null;
+    }
+
+    /**
+     * returns the world-space bounds of the whole scene, from the
+     * cached world bounds of its root nodes, or from the node store
+     * of a compact asset.
+     * @return the scene bounds, or null if the scene has no geometry
+     */
+    public GLTFBounds getWorldBounds(){
+        if(this.nodeStore != null)
+            return this.nodeStore.getWorldBounds(this.nodesIdxes);
+        GLTFBounds returnVal = null;
+        for (GLTFNode node : this.nodes) {
+            returnVal = GLTFBounds.union(returnVal, node.getWorldBounds());
+        }
+        return returnVal;
     }
 
     public static GLTFScene fromJSONObject(JSONObject jObj, GLTFNode[] nodes) throws GLTFException {
+        return fromJSONObject(jObj, nodes, null);
+    }
+
+    /**
+     * @param nodes the nodes of the asset, or null if they are kept in a
+     *              {@link GLTFNodeStore}: the scene then only has indices
+     * @param nodeStore the store of the nodes, or null
+     */
+    public static GLTFScene fromJSONObject(JSONObject jObj,
+                                           GLTFNode[] nodes,
+                                           GLTFNodeStore nodeStore)
+        throws GLTFException
+    {
         try{
-            GLTFNode[] sceneNodes = new GLTFNode[]{};
+            int[] nodesIdxes = new int[]{};
             if(jObj.containsKey("nodes")){
-                JSONArray jarr = jObj.getJSONArray("nodes");
-                sceneNodes = new GLTFNode[jarr.size()];
-                for (int i = 0; i < jarr.size(); i++) {
-                    sceneNodes[i] = nodes[jarr.getIntValue(i)];
+                nodesIdxes = JSONUtils.JSONToIntArray(jObj.getJSONArray("nodes"));
+            }
+            GLTFNode[] sceneNodes = new GLTFNode[]{};
+            if(nodes != null){
+                sceneNodes = new GLTFNode[nodesIdxes.length];
+                for (int i = 0; i < nodesIdxes.length; i++) {
+                    sceneNodes[i] = nodes[nodesIdxes[i]];
                 }
             }
             return new GLTFScene(
-                sceneNodes
+                nodesIdxes,
+                sceneNodes,
+                nodeStore
             );
         }catch(Exception e){
             e.printStackTrace();
@@ -0,0 +1,159 @@
+package gltf;
+
+import gltf.math.Mat4f;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the world matrices of all the nodes of a scene in one flat
+ * array, the nodes being sorted level by level from the roots, so that
+ * every parent comes before its children.
+ * <p>
+ * {@link #update()} sweeps the levels in order: a node is recomputed only
+ * if its local transform changed since the last update, which is detected
+ * through {@link GLTFNode#getTransformVersion()}, or if its parent was
+ * recomputed. Large levels are swept in parallel chunks, by a
+ * {@link ParallelUtils.ChunkRunner} whose tasks are re-armed for every
+ * level. The constructor runs a first update, which creates the tasks,
+ * so nothing is allocated after the cache is created.
+ */
+public class GLTFSceneTransformCache {
+    private static final int MIN_CHUNK = 1024;
+
+    /** the nodes, level by level */
+    public final GLTFNode[] nodes;
+    /** the column-major world matrix of nodes[i] at offset 16 * i */
+    public final float[] worldMatrices;
+    /** the index in nodes of the parent of each node, -1 for the roots */
+    public final int[] parentIdxes;
+    /** the first index of each level in nodes, followed by nodes.length */
+    public final int[] levelStarts;
+
+    private final Map<GLTFNode, Integer> indexes;
+    private final int[] versions;
+    private final boolean[] changed;
+    private int levelStart;
+    private final ParallelUtils.ChunkRunner levelTask = new ParallelUtils.ChunkRunner(MIN_CHUNK, this::updateRange);
+
+    /**
+     * @throws IllegalArgumentException if the scene is of a compact asset:
+     * its store computes the world matrices itself, see
+     * {@link GLTFNodeStore#computeWorldMatrices(float[])}
+     */
+    public GLTFSceneTransformCache(GLTFScene scene) {
+        this(roots(scene));
+    }
+
+    private static GLTFNode[] roots(GLTFScene scene){
+        if(scene.isCompact())
+            throw new IllegalArgumentException("the nodes of the scene are in a GLTFNodeStore");
+        return scene.nodes;
+    }
+
+    /**
+     * @param roots the root nodes of the hierarchy to cache
+     */
+    public GLTFSceneTransformCache(GLTFNode[] roots) {
+        List<GLTFNode> order = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        List<Integer> levels = new ArrayList<>();
+        this.indexes = new IdentityHashMap<>();
+        for (GLTFNode root : roots) {
+            if(root != null && !this.indexes.containsKey(root)){
+                this.indexes.put(root, order.size());
+                order.add(root);
+                parents.add(-1);
+            }
+        }
+        int start = 0;
+        while (start < order.size()) {
+            levels.add(start);
+            int end = order.size();
+            for (int i = start; i < end; i++) {
+                for (GLTFNode child : order.get(i).getChildren()) {
+                    // a node reachable twice is not a valid GLTF hierarchy: keep the first
+                    if(child == null || this.indexes.containsKey(child))
+                        continue;
+                    this.indexes.put(child, order.size());
+                    order.add(child);
+                    parents.add(i);
+                }
+            }
+            start = end;
+        }
+        levels.add(order.size());
+
+        int n = order.size();
+        this.nodes = order.toArray(new GLTFNode[0]);
+        this.parentIdxes = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.parentIdxes[i] = parents.get(i);
+        }
+        this.levelStarts = new int[levels.size()];
+        for (int i = 0; i < this.levelStarts.length; i++) {
+            this.levelStarts[i] = levels.get(i);
+        }
+        this.worldMatrices = new float[16 * n];
+        this.versions = new int[n];
+        this.changed = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            // forces the first update to compute everything
+            this.versions[i] = this.nodes[i].getTransformVersion() - 1;
+        }
+        update();
+    }
+
+    /**
+     * recomputes the world matrices of the nodes whose local transform,
+     * or the transform of an ancestor, changed since the last update.
+     */
+    public void update(){
+        for (int l = 0; l < this.levelStarts.length - 1; l++) {
+            this.levelStart = this.levelStarts[l];
+            this.levelTask.run(this.levelStarts[l + 1] - this.levelStart);
+        }
+    }
+
+    private void updateRange(int start, int end){
+        float[] world = this.worldMatrices;
+        for (int i = this.levelStart + start; i < this.levelStart + end; i++) {
+            GLTFNode node = this.nodes[i];
+            int parent = this.parentIdxes[i];
+            int version = node.getTransformVersion();
+            boolean nodeChanged = version != this.versions[i] || (parent != -1 && this.changed[parent]);
+            this.changed[i] = nodeChanged;
+            if(!nodeChanged)
+                continue;
+            this.versions[i] = version;
+            node.computeLocalMatrix(world, 16 * i);
+            if(parent != -1)
+                Mat4f.mulAffine(world, 16 * parent, world, 16 * i, world, 16 * i);
+        }
+    }
+
+    /**
+     * returns the index of a node in the cache.
+     * @return the index, or -1 if the node is not in the cached hierarchy
+     */
+    public int indexOf(GLTFNode node){
+        Integer returnVal = this.indexes.get(node);
+        return returnVal != null ? returnVal : -1;
+    }
+
+    /**
+     * copies the cached world matrix of a node, as of the last update.
+     * @param out the column-major float[16] to write the matrix into
+     * @return out, or null if the node is not in the cached hierarchy
+     */
+    public float[] getWorldMatrix(GLTFNode node, float[] out){
+        int i = indexOf(node);
+        if(i == -1)
+            return null;
+        System.arraycopy(this.worldMatrices, 16 * i, out, 0, 16);
+        return out;
+    }
+}
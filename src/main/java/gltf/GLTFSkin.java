@@ -1,11 +1,121 @@
 package gltf;
 
+import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFFloatAccessor;
+import gltf.exception.GLTFException;
+import gltf.exception.InvalidGLTFTypeException;
+import gltf.type.GLTFAccessorType;
+import gltf.type.GLTFComponentType;
+import gltf.utils.JSONUtils;
 import com.alibaba.fastjson.JSONObject;
 
+/**
+ * a skin: the joints (nodes) of a skeleton and their inverse bind
+ * matrices. The joints are resolved lazily, as skins are read before
+ * the nodes that reference them.
+ */
 public class GLTFSkin {
-    //TODO code this class
-    public static GLTFSkin fromJSONObject(JSONObject jObj){
-        //TODO code this method
+    public final int[] jointsIdxes;
+    /** the index of the skeleton root node, or -1 */
+    public final int skeletonIdx;
+    /** one column-major matrix per joint, identities if not specified */
+    public final float[] inverseBindMatrices;
+    public final String name;
+    /** the nodes of the asset, null for a compact asset */
+    private final GLTFNode[] nodes;
+
+    public GLTFSkin(int[] jointsIdxes,
+                    int skeletonIdx,
+                    int inverseBindMatricesIdx,
+                    String name,
+                    GLTFAccessor[] accessors,
+                    GLTFNode[] nodes)
+        throws InvalidGLTFTypeException
+    {
+        this.jointsIdxes = jointsIdxes;
+        this.skeletonIdx = skeletonIdx;
+        this.name = name;
+        this.nodes = nodes;
+        if(inverseBindMatricesIdx != -1){
+            GLTFFloatAccessor accessor = (GLTFFloatAccessor)(accessors[inverseBindMatricesIdx].assertType(
+                new GLTFAccessorType[]{
+                        GLTFAccessorType.MAT4
+                },
+                new GLTFComponentType[]{
+                        GLTFComponentType.FLOAT
+                }));
+            if(accessor.data.length < 16 * jointsIdxes.length)
+                throw new InvalidGLTFTypeException("not enough inverseBindMatrices for the joints of skin " + name);
+            this.inverseBindMatrices = accessor.data;
+        }else{
+            this.inverseBindMatrices = new float[16 * jointsIdxes.length];
+            for (int j = 0; j < jointsIdxes.length; j++) {
+                System.arraycopy(GLTFNode.DEFAULT_TRANSFORMATION_MATRIX, 0,
+                    this.inverseBindMatrices, 16 * j, 16);
+            }
+        }
+    }
+
+    public static GLTFSkin fromJSONObject(JSONObject jObj,
+                                          GLTFAccessor[] accessors,
+                                          GLTFNode[] nodes)
+        throws GLTFException
+    {
+        try{
+            return new GLTFSkin(
+                JSONUtils.JSONToIntArray(jObj.getJSONArray("joints")),
+                jObj.containsKey("skeleton") ?
+                    jObj.getIntValue("skeleton")
+                    : -1,
+                jObj.containsKey("inverseBindMatrices") ?
+                    jObj.getIntValue("inverseBindMatrices")
+                    : -1,
+                jObj.containsKey("name") ?
+                    jObj.getString("name")
+                    : null,
+                accessors,
+                nodes
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
         return null;
     }
+
+    /**
+     * @throws IllegalStateException if the skin belongs to a compact asset,
+     * whose joints are to be found in its {@link GLTFNodeStore} from the
+     * skeletonIdx
+     */
+    public GLTFNode getSkeleton(){
+        if(this.skeletonIdx == -1)
+            return null;
+        assertNodes();
+        return this.nodes[this.skeletonIdx];
+    }
+
+    private GLTFNode[] joints = null;
+    /**
+     * @throws IllegalStateException if the skin belongs to a compact asset,
+     * whose joints are to be found in its {@link GLTFNodeStore} from the
+     * jointsIdxes
+     */
+    public GLTFNode[] getJoints(){
+        if(joints == null){
+            assertNodes();
+            int len = this.jointsIdxes.length;
+            joints = new GLTFNode[len];
+            for (int i = 0; i < len; i++) {
+                joints[i] = nodes[jointsIdxes[i]];
+            }
+        }
+        return joints;
+    }
+
+    private void assertNodes(){
+        if(this.nodes == null)
+            throw new IllegalStateException("the joints of skin " + this.name
+                + " are in a GLTFNodeStore: use jointsIdxes");
+    }
 }
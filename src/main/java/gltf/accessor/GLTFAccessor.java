@@ -1,6 +1,7 @@
 package gltf.accessor;
 
 import gltf.buffer.GLTFBufferView;
+import gltf.exception.GLTFException;
 import gltf.exception.InvalidGLTFTypeException;
 import gltf.type.GLTFAccessorType;
 import gltf.type.GLTFComponentType;
@@ -35,6 +36,16 @@ public class GLTFAccessor {
      */
     public static GLTFAccessor fromJSONObject(JSONObject jObj,
                                               GLTFBufferView[] bufferViews)
+            throws GLTFException {
+        GLTFAccessor accessor = fromDenseJSONObject(jObj, bufferViews);
+        JSONObject sparse = jObj.getJSONObject("sparse");
+        if(accessor != null && sparse != null)
+            accessor.applySparse(sparse, bufferViews);
+        return accessor;
+    }
+
+    private static GLTFAccessor fromDenseJSONObject(JSONObject jObj,
+                                                    GLTFBufferView[] bufferViews)
             throws InvalidGLTFTypeException {
         GLTFComponentType componentType = GLTFComponentType.fromTypeId(
                 jObj.getIntValue("componentType")
@@ -44,6 +55,8 @@ public class GLTFAccessor {
         );
 
         int bufferViewIdx = jObj.containsKey("bufferView") ? jObj.getIntValue("bufferView") : -1;
+        // an accessor without a bufferView is zero-filled, unless an extension
+        // such as KHR_draco_mesh_compression provides its data
         GLTFBufferView bufferView = bufferViewIdx != -1 ? bufferViews[bufferViewIdx] : null;
 
         int byteOffset = jObj.containsKey("byteOffset") ? jObj.getIntValue("byteOffset") : 0;
@@ -55,9 +68,23 @@ public class GLTFAccessor {
         switch (componentType) {
             case BYTE:
             case UNSIGNED_BYTE:
-                //edit if a case is seen where
-                //an accessor uses the BYTE componentType
-                return null;
+                byte[] minByte = null;
+                byte[] maxByte = null;
+                if (minArray != null && maxArray != null) {
+                    minByte = new byte[dataType.size];
+                    maxByte = new byte[dataType.size];
+                    for (int i = 0; i < dataType.size; i++) {
+                        minByte[i] = i < minArray.size() ? (byte) minArray.getIntValue(i) : (byte) 0;
+                        maxByte[i] = i < maxArray.size() ? (byte) maxArray.getIntValue(i) : (byte) 0;
+                    }
+                }
+                return new GLTFByteAccessor(bufferView,
+                        componentType,
+                        byteOffset,
+                        nElem,
+                        minByte,
+                        maxByte,
+                        dataType);
             case SHORT:
             case UNSIGNED_SHORT:
                 short[] minShort = null;
@@ -117,6 +144,76 @@ public class GLTFAccessor {
         return null;
     }
 
+    /**
+     * replaces the elements listed by the "sparse" property of the
+     * accessor with their values, as per the GLTF specification.
+     * @param sparse the "sparse" JSONObject of the accessor
+     * @param bufferViews the bufferViews array
+     * @throws GLTFException if an index is out of the accessor's range
+     */
+    protected void applySparse(JSONObject sparse, GLTFBufferView[] bufferViews) throws GLTFException {
+        int count = sparse.getIntValue("count");
+        JSONObject jIndices = sparse.getJSONObject("indices");
+        JSONObject jValues = sparse.getJSONObject("values");
+        GLTFBufferView indicesView = bufferViews[jIndices.getIntValue("bufferView")];
+        int indicesOffset = jIndices.containsKey("byteOffset") ? jIndices.getIntValue("byteOffset") : 0;
+        int[] indices;
+        switch (GLTFComponentType.fromTypeId(jIndices.getIntValue("componentType"))){
+            case UNSIGNED_BYTE: {
+                byte[] data = indicesView.getBytes(indicesOffset, count);
+                indices = new int[count];
+                for (int i = 0; i < count; i++) {
+                    indices[i] = data[i] & 0xFF;
+                }
+                break;
+            }
+            case UNSIGNED_SHORT: {
+                short[] data = indicesView.getShorts(indicesOffset, count);
+                indices = new int[count];
+                for (int i = 0; i < count; i++) {
+                    indices[i] = data[i] & 0xFFFF;
+                }
+                break;
+            }
+            case UNSIGNED_INT:
+                indices = indicesView.getInts(indicesOffset, count);
+                break;
+            default:
+                throw new InvalidGLTFTypeException("invalid componentType for sparse indices");
+        }
+        for (int index : indices) {
+            if(index < 0 || index >= this.nElem)
+                throw new GLTFException("sparse index " + index + " out of range for accessor " + this);
+        }
+        setSparseValues(indices,
+            bufferViews[jValues.getIntValue("bufferView")],
+            jValues.containsKey("byteOffset") ? jValues.getIntValue("byteOffset") : 0);
+    }
+
+    /**
+     * writes the sparse values over the elements at the specified indices.
+     * @param indices the indices of the substituted elements
+     * @param valuesView the bufferView holding the values
+     * @param valuesOffset the offset of the values in valuesView
+     */
+    protected void setSparseValues(int[] indices, GLTFBufferView valuesView, int valuesOffset){
+    }
+
+    public GLTFComponentType getComponentType(){
+        return this.componentType;
+    }
+
+    public GLTFAccessorType getType(){
+        return this.type;
+    }
+
+    /**
+     * returns the number of elements (not components) of the accessor.
+     */
+    public int getCount(){
+        return this.nElem;
+    }
+
     /**
      * ensures that the accessor is of the expected types.
      * @param accessorTypes the expected types of the accessor:
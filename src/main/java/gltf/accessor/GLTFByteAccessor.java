@@ -0,0 +1,37 @@
+package gltf.accessor;
+
+import gltf.buffer.GLTFBufferView;
+import gltf.type.GLTFAccessorType;
+import gltf.type.GLTFComponentType;
+
+/**
+ * an accessor of BYTE or UNSIGNED_BYTE components. The data is kept
+ * as read from the buffer: mask the values with 0xFF for UNSIGNED_BYTE.
+ */
+public class GLTFByteAccessor extends GLTFAccessor {
+    public final byte[] min;
+    public final byte[] max;
+    public final byte[] data;
+
+    public GLTFByteAccessor(GLTFBufferView bufferView,
+                            GLTFComponentType componentType,
+                            int byteOffset, int nElem,
+                            byte[] min, byte[] max,
+                            GLTFAccessorType dataType) {
+        super(bufferView, componentType, byteOffset, nElem, dataType);
+        this.min = min;
+        this.max = max;
+        this.data = this.bufferView != null ?
+            this.bufferView.getBytes(this.byteOffset, this.nElem*this.type.size)
+            : new byte[this.nElem*this.type.size];
+    }
+
+    @Override
+    protected void setSparseValues(int[] indices, GLTFBufferView valuesView, int valuesOffset){
+        int size = this.type.size;
+        byte[] values = valuesView.getBytes(valuesOffset, indices.length*size);
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(values, i*size, this.data, indices[i]*size, size);
+        }
+    }
+}
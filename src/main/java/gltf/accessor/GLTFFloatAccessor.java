@@ -16,6 +16,17 @@ public class GLTFFloatAccessor extends GLTFAccessor {
         super(bufferView, componentType, byteOffset, nElem, dataType);
         this.min = min;
         this.max = max;
-        this.data = this.bufferView.getFloats(this.byteOffset, this.nElem*this.type.size);
+        this.data = this.bufferView != null ?
+            this.bufferView.getFloats(this.byteOffset, this.nElem*this.type.size)
+            : new float[this.nElem*this.type.size];
+    }
+
+    @Override
+    protected void setSparseValues(int[] indices, GLTFBufferView valuesView, int valuesOffset){
+        int size = this.type.size;
+        float[] values = valuesView.getFloats(valuesOffset, indices.length*size);
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(values, i*size, this.data, indices[i]*size, size);
+        }
     }
 }
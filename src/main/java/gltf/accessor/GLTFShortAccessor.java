@@ -18,6 +18,17 @@ public class GLTFShortAccessor extends GLTFAccessor {
         super(bufferView, componentType, byteOffset, nElem, dataType);
         this.min = min;
         this.max = max;
-        this.data = this.bufferView.getShorts(this.byteOffset, this.nElem*this.type.size);
+        this.data = this.bufferView != null ?
+            this.bufferView.getShorts(this.byteOffset, this.nElem*this.type.size)
+            : new short[this.nElem*this.type.size];
+    }
+
+    @Override
+    protected void setSparseValues(int[] indices, GLTFBufferView valuesView, int valuesOffset){
+        int size = this.type.size;
+        short[] values = valuesView.getShorts(valuesOffset, indices.length*size);
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(values, i*size, this.data, indices[i]*size, size);
+        }
     }
 }
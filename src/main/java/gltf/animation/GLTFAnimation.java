@@ -0,0 +1,55 @@
+package gltf.animation;
+
+import gltf.accessor.GLTFAccessor;
+import gltf.exception.GLTFException;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+public class GLTFAnimation {
+    public final GLTFAnimationSampler[] samplers;
+    public final GLTFAnimationChannel[] channels;
+    public final String name;
+    /** the end time of the last keyframe, in seconds */
+    public final float duration;
+
+    public GLTFAnimation(GLTFAnimationSampler[] samplers,
+                         GLTFAnimationChannel[] channels,
+                         String name) {
+        this.samplers = samplers;
+        this.channels = channels;
+        this.name = name;
+        float duration = 0;
+        for (GLTFAnimationSampler sampler : samplers) {
+            duration = Math.max(duration, sampler.getEndTime());
+        }
+        this.duration = duration;
+    }
+
+    public static GLTFAnimation fromJSONObject(JSONObject jObj, GLTFAccessor[] accessors)
+        throws GLTFException
+    {
+        try{
+            JSONArray jSamplers = jObj.getJSONArray("samplers");
+            GLTFAnimationSampler[] samplers = new GLTFAnimationSampler[jSamplers.size()];
+            for (int i = 0; i < samplers.length; i++) {
+                samplers[i] = GLTFAnimationSampler.fromJSONObject(jSamplers.getJSONObject(i), accessors);
+            }
+            JSONArray jChannels = jObj.getJSONArray("channels");
+            GLTFAnimationChannel[] channels = new GLTFAnimationChannel[jChannels.size()];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = GLTFAnimationChannel.fromJSONObject(jChannels.getJSONObject(i), samplers);
+            }
+            return new GLTFAnimation(
+                samplers,
+                channels,
+                jObj.containsKey("name") ?
+                    jObj.getString("name")
+                    : null
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
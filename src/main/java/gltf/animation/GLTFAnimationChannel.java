@@ -0,0 +1,41 @@
+package gltf.animation;
+
+import gltf.exception.GLTFException;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * a channel of an animation: the node property animated by a sampler.
+ */
+public class GLTFAnimationChannel {
+    public final GLTFAnimationSampler sampler;
+    /** the index of the animated node, or -1 if the target node is not specified */
+    public final int targetNodeIdx;
+    public final GLTFAnimationPath path;
+
+    public GLTFAnimationChannel(GLTFAnimationSampler sampler,
+                                int targetNodeIdx,
+                                GLTFAnimationPath path) {
+        this.sampler = sampler;
+        this.targetNodeIdx = targetNodeIdx;
+        this.path = path;
+    }
+
+    public static GLTFAnimationChannel fromJSONObject(JSONObject jObj, GLTFAnimationSampler[] samplers)
+        throws GLTFException
+    {
+        try{
+            JSONObject target = jObj.getJSONObject("target");
+            return new GLTFAnimationChannel(
+                samplers[jObj.getIntValue("sampler")],
+                target.containsKey("node") ?
+                    target.getIntValue("node")
+                    : -1,
+                GLTFAnimationPath.fromValue(target.getString("path"))
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package gltf.animation;
+
+public enum GLTFAnimationInterpolation {
+    LINEAR,
+    STEP,
+    CUBICSPLINE
+}
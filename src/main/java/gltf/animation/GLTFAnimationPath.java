@@ -0,0 +1,22 @@
+package gltf.animation;
+
+public enum GLTFAnimationPath {
+    TRANSLATION("translation"),
+    ROTATION("rotation"),
+    SCALE("scale"),
+    WEIGHTS("weights");
+
+    public final String value;
+
+    GLTFAnimationPath(String value) {
+        this.value = value;
+    }
+
+    public static GLTFAnimationPath fromValue(String value){
+        for (GLTFAnimationPath path : values()) {
+            if(path.value.equals(value))
+                return path;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package gltf.animation;
+
+import gltf.GLTFNode;
+import gltf.math.Quatf;
+import gltf.utils.ParallelUtils;
+
+/**
+ * Plays an animation for one animated instance. Every channel keeps a
+ * cursor on the keyframe sampled last, so that sampling times which
+ * move forward, as they do during playback, only has to look at the
+ * next keyframes instead of searching the whole input; seeking or
+ * looping back falls back to a binary search. The sampled values are
+ * written into arrays allocated once, when the player is created.
+ */
+public class GLTFAnimationPlayer {
+    /** the number of keyframes the cursor may step over before searching */
+    private static final int MAX_CURSOR_STEPS = 4;
+    private static final int MIN_PLAYERS_PER_CHUNK = 8;
+
+    public final GLTFAnimation animation;
+    /** the value sampled for each channel, of its sampler's elementSize */
+    public final float[][] outputs;
+    private final GLTFNode[] nodes;
+    private final int[] cursors;
+
+    /**
+     * @param animation the animation to play
+     * @param nodes the nodes targeted by the channels, usually those of the
+     *              asset the animation belongs to
+     */
+    public GLTFAnimationPlayer(GLTFAnimation animation, GLTFNode[] nodes) {
+        this.animation = animation;
+        this.nodes = nodes;
+        this.outputs = new float[animation.channels.length][];
+        for (int c = 0; c < this.outputs.length; c++) {
+            this.outputs[c] = new float[animation.channels[c].sampler.elementSize];
+        }
+        this.cursors = new int[animation.channels.length];
+    }
+
+    /**
+     * samples every channel at the specified time into the outputs.
+     * @param time the time, in seconds
+     */
+    public void sample(float time){
+        GLTFAnimationChannel[] channels = this.animation.channels;
+        for (int c = 0; c < channels.length; c++) {
+            sampleChannel(c, channels[c], time);
+        }
+    }
+
+    /**
+     * writes the sampled outputs into the target nodes. Animated weights
+     * are copied into the node weights if the node has as many, they can
+     * be read from the outputs otherwise.
+     */
+    public void apply(){
+        GLTFAnimationChannel[] channels = this.animation.channels;
+        for (int c = 0; c < channels.length; c++) {
+            GLTFAnimationChannel channel = channels[c];
+            if(channel.targetNodeIdx == -1 || channel.path == null)
+                continue;
+            GLTFNode node = this.nodes[channel.targetNodeIdx];
+            float[] o = this.outputs[c];
+            switch (channel.path){
+                case TRANSLATION:
+                    node.setTranslation(o[0], o[1], o[2]);
+                    break;
+                case ROTATION:
+                    node.setRotation(o[0], o[1], o[2], o[3]);
+                    break;
+                case SCALE:
+                    node.setScale(o[0], o[1], o[2]);
+                    break;
+                case WEIGHTS:
+                    System.arraycopy(o, 0, node.weights, 0, Math.min(o.length, node.weights.length));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * samples many players in parallel. Applying the outputs to the nodes
+     * is left to the caller, as players may share their nodes.
+     * @param players the players
+     * @param times the time to sample each player at
+     */
+    public static void sampleAll(GLTFAnimationPlayer[] players, float[] times){
+        ParallelUtils.forEachChunk(players.length, MIN_PLAYERS_PER_CHUNK, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                players[i].sample(times[i]);
+            }
+        });
+    }
+
+    private void sampleChannel(int c, GLTFAnimationChannel channel, float time){
+        GLTFAnimationSampler sampler = channel.sampler;
+        float[] input = sampler.input;
+        float[] out = this.outputs[c];
+        int last = input.length - 1;
+        if(last == 0 || time <= input[0]){
+            this.cursors[c] = 0;
+            copyValue(sampler, 0, out);
+            return;
+        }
+        if(time >= input[last]){
+            this.cursors[c] = last - 1;
+            copyValue(sampler, last, out);
+            return;
+        }
+        int k = findKeyframe(input, this.cursors[c], time);
+        this.cursors[c] = k;
+        interpolate(sampler, channel.path == GLTFAnimationPath.ROTATION, k, time, out);
+    }
+
+    /**
+     * interpolates a sampler between its keyframes k and k + 1.
+     * @param rotation whether the values are rotation quaternions
+     * @param out the destination array, of the sampler's elementSize
+     */
+    static void interpolate(GLTFAnimationSampler sampler, boolean rotation, int k, float time, float[] out){
+        float t0 = sampler.input[k];
+        float dt = sampler.input[k + 1] - t0;
+        float u = dt > 0f ? (time - t0) / dt : 0f;
+        switch (sampler.interpolation){
+            case STEP:
+                copyValue(sampler, k, out);
+                break;
+            case LINEAR:
+                if(rotation)
+                    Quatf.slerp(sampler.output, 4 * k, sampler.output, 4 * (k + 1), u, out, 0);
+                else
+                    lerp(sampler.output, k * out.length, (k + 1) * out.length, u, out);
+                break;
+            case CUBICSPLINE:
+                hermite(sampler.output, k, out.length, u, dt, out);
+                if(rotation)
+                    Quatf.normalize(out, 0);
+                break;
+        }
+    }
+
+    /**
+     * returns k such that input[k] &lt;= time &lt; input[k + 1], starting
+     * from the cursor. input[0] &lt; time &lt; input[last] must hold.
+     */
+    static int findKeyframe(float[] input, int cursor, float time){
+        int k = cursor;
+        if(input[k] <= time){
+            for (int steps = 0; steps < MAX_CURSOR_STEPS; steps++) {
+                if(time < input[k + 1])
+                    return k;
+                k++;
+            }
+            return binarySearch(input, k, input.length - 1, time);
+        }
+        return binarySearch(input, 0, k, time);
+    }
+
+    /** the last k in [lo, hi) with input[k] &lt;= time */
+    static int binarySearch(float[] input, int lo, int hi, float time){
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if(input[mid] <= time)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    static void copyValue(GLTFAnimationSampler sampler, int k, float[] out){
+        int n = out.length;
+        int offset = sampler.interpolation == GLTFAnimationInterpolation.CUBICSPLINE ?
+            (3 * k + 1) * n
+            : k * n;
+        System.arraycopy(sampler.output, offset, out, 0, n);
+    }
+
+    static void lerp(float[] values, int a, int b, float u, float[] out){
+        for (int i = 0; i < out.length; i++) {
+            float v0 = values[a + i];
+            out[i] = v0 + (values[b + i] - v0) * u;
+        }
+    }
+
+    /**
+     * interpolates between the keyframes k and k + 1 of a CUBICSPLINE
+     * sampler, whose keyframes hold an in-tangent, a value and an
+     * out-tangent of n floats each.
+     */
+    private static void hermite(float[] values, int k, int n, float u, float dt, float[] out){
+        float u2 = u * u, u3 = u2 * u;
+        float h00 = 2 * u3 - 3 * u2 + 1;
+        float h10 = (u3 - 2 * u2 + u) * dt;
+        float h01 = -2 * u3 + 3 * u2;
+        float h11 = (u3 - u2) * dt;
+        int v0 = (3 * k + 1) * n;
+        int outTangent0 = (3 * k + 2) * n;
+        int inTangent1 = (3 * k + 3) * n;
+        int v1 = (3 * k + 4) * n;
+        for (int i = 0; i < n; i++) {
+            out[i] = h00 * values[v0 + i] + h10 * values[outTangent0 + i]
+                + h01 * values[v1 + i] + h11 * values[inTangent1 + i];
+        }
+    }
+}
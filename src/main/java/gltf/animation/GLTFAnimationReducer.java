@@ -0,0 +1,282 @@
+package gltf.animation;
+
+import gltf.exception.GLTFException;
+import gltf.math.Quatf;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reduces the keyframes of parsed animations. Samplers can first be
+ * resampled at a fixed rate, which turns CUBICSPLINE curves into LINEAR
+ * ones; the keyframes of LINEAR samplers which can be interpolated from
+ * their neighbours within a tolerance are then removed, as are the
+ * repeated values of STEP samplers. The animations are not modified:
+ * new ones are returned, with exactly sized arrays.
+ */
+public class GLTFAnimationReducer {
+    /** the maximum distance between a reduced translation and the original */
+    public final float translationTolerance;
+    /** the maximum angle, in radians, between a reduced rotation and the original */
+    public final float rotationTolerance;
+    /** the maximum difference between a reduced scale component and the original */
+    public final float scaleTolerance;
+    /** the maximum difference between a reduced morph weight and the original */
+    public final float weightsTolerance;
+
+    public GLTFAnimationReducer(float translationTolerance,
+                                float rotationTolerance,
+                                float scaleTolerance,
+                                float weightsTolerance) {
+        this.translationTolerance = translationTolerance;
+        this.rotationTolerance = rotationTolerance;
+        this.scaleTolerance = scaleTolerance;
+        this.weightsTolerance = weightsTolerance;
+    }
+
+    /**
+     * resamples the animation if a rate is specified, then reduces it.
+     * @param animation the animation
+     * @param sampleRate the rate to resample at, in keyframes per second,
+     *                   or 0 to keep the original keyframes
+     * @return the reduced animation
+     */
+    public GLTFAnimation reduce(GLTFAnimation animation, float sampleRate) throws GLTFException {
+        Map<GLTFAnimationSampler, GLTFAnimationPath> paths = getSamplerPaths(animation);
+        GLTFAnimationSampler[] samplers = new GLTFAnimationSampler[animation.samplers.length];
+        Map<GLTFAnimationSampler, GLTFAnimationSampler> reduced = new IdentityHashMap<>();
+        for (int i = 0; i < samplers.length; i++) {
+            GLTFAnimationSampler sampler = animation.samplers[i];
+            GLTFAnimationPath path = paths.get(sampler);
+            if(path != null){
+                if(sampleRate > 0f)
+                    sampler = resample(sampler, path == GLTFAnimationPath.ROTATION, sampleRate);
+                sampler = reduce(sampler, path);
+            }
+            samplers[i] = sampler;
+            reduced.put(animation.samplers[i], sampler);
+        }
+        GLTFAnimationChannel[] channels = new GLTFAnimationChannel[animation.channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            GLTFAnimationChannel channel = animation.channels[c];
+            channels[c] = new GLTFAnimationChannel(
+                reduced.get(channel.sampler),
+                channel.targetNodeIdx,
+                channel.path);
+        }
+        return new GLTFAnimation(samplers, channels, animation.name);
+    }
+
+    /**
+     * returns the path animated by each sampler used by a channel. A
+     * sampler used for rotations and something else is reduced as a
+     * rotation.
+     */
+    private static Map<GLTFAnimationSampler, GLTFAnimationPath> getSamplerPaths(GLTFAnimation animation){
+        Map<GLTFAnimationSampler, GLTFAnimationPath> returnVal = new IdentityHashMap<>();
+        for (GLTFAnimationChannel channel : animation.channels) {
+            if(channel.path == null)
+                continue;
+            if(returnVal.get(channel.sampler) != GLTFAnimationPath.ROTATION)
+                returnVal.put(channel.sampler, channel.path);
+        }
+        return returnVal;
+    }
+
+    /**
+     * resamples a sampler at a fixed rate into a LINEAR sampler. STEP
+     * samplers are returned as is, as resampling would move their steps.
+     * @param rotation whether the values are rotation quaternions
+     * @param sampleRate the number of keyframes per second
+     */
+    public static GLTFAnimationSampler resample(GLTFAnimationSampler sampler,
+                                                boolean rotation,
+                                                float sampleRate)
+        throws GLTFException
+    {
+        float[] input = sampler.input;
+        int last = input.length - 1;
+        if(last == 0 || sampler.interpolation == GLTFAnimationInterpolation.STEP)
+            return sampler;
+        float start = input[0];
+        float end = input[last];
+        int nKeys = Math.max(2, (int) Math.ceil((end - start) * sampleRate - 1e-3f) + 1);
+        int n = sampler.elementSize;
+        float[] times = new float[nKeys];
+        float[] values = new float[nKeys * n];
+        float[] value = new float[n];
+        for (int i = 0; i < nKeys; i++) {
+            float time = i == nKeys - 1 ? end : Math.min(end, start + i / sampleRate);
+            times[i] = time;
+            if(time >= end){
+                GLTFAnimationPlayer.copyValue(sampler, last, value);
+            }else{
+                int k = GLTFAnimationPlayer.binarySearch(input, 0, last, time);
+                GLTFAnimationPlayer.interpolate(sampler, rotation, k, time, value);
+            }
+            System.arraycopy(value, 0, values, i * n, n);
+        }
+        return new GLTFAnimationSampler(times, values, GLTFAnimationInterpolation.LINEAR);
+    }
+
+    /**
+     * removes the keyframes of a sampler which are not needed to stay
+     * within the tolerance of the path. CUBICSPLINE samplers are returned
+     * as is: resample them first.
+     */
+    public GLTFAnimationSampler reduce(GLTFAnimationSampler sampler, GLTFAnimationPath path)
+        throws GLTFException
+    {
+        int nKeys = sampler.input.length;
+        if(nKeys <= 2 || sampler.interpolation == GLTFAnimationInterpolation.CUBICSPLINE)
+            return sampler;
+        boolean rotation = path == GLTFAnimationPath.ROTATION;
+        float tolerance = getTolerance(path);
+        float[] values = sampler.output;
+        int n = sampler.elementSize;
+        boolean[] keep = new boolean[nKeys];
+        keep[0] = true;
+        keep[nKeys - 1] = true;
+
+        if(sampler.interpolation == GLTFAnimationInterpolation.STEP){
+            int anchor = 0;
+            for (int k = 1; k < nKeys - 1; k++) {
+                if(error(values, anchor * n, values, k * n, n, path) > tolerance){
+                    keep[k] = true;
+                    anchor = k;
+                }
+            }
+        }else{
+            float[] interpolated = new float[n];
+            int anchor = 0;
+            for (int j = 2; j < nKeys; j++) {
+                // can the keyframes between the anchor and j be dropped?
+                float ta = sampler.input[anchor];
+                float dt = sampler.input[j] - ta;
+                for (int m = anchor + 1; m < j; m++) {
+                    float u = dt > 0f ? (sampler.input[m] - ta) / dt : 0f;
+                    if(rotation)
+                        Quatf.slerp(values, anchor * n, values, j * n, u, interpolated, 0);
+                    else
+                        GLTFAnimationPlayer.lerp(values, anchor * n, j * n, u, interpolated);
+                    if(error(interpolated, 0, values, m * n, n, path) > tolerance){
+                        keep[j - 1] = true;
+                        anchor = j - 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // verify the result: re-sample the reduced curve at every original
+        // keyframe, as the player does, and keep back those it still misses
+        float[] value = new float[n];
+        while(true){
+            GLTFAnimationSampler returnVal = select(sampler, keep);
+            int last = returnVal.input.length - 1;
+            boolean missed = false;
+            for (int k = 1; k < nKeys - 1; k++) {
+                if(keep[k])
+                    continue;
+                float time = sampler.input[k];
+                if(time >= returnVal.input[last])
+                    GLTFAnimationPlayer.copyValue(returnVal, last, value);
+                else
+                    GLTFAnimationPlayer.interpolate(returnVal, rotation,
+                        GLTFAnimationPlayer.binarySearch(returnVal.input, 0, last, time), time, value);
+                if(error(value, 0, values, k * n, n, path) > tolerance){
+                    keep[k] = true;
+                    missed = true;
+                }
+            }
+            if(!missed)
+                return returnVal;
+        }
+    }
+
+    /**
+     * @return a sampler with the kept keyframes, or the sampler itself if
+     * all are kept
+     */
+    private static GLTFAnimationSampler select(GLTFAnimationSampler sampler, boolean[] keep)
+        throws GLTFException
+    {
+        int nKept = 0;
+        for (boolean k : keep) {
+            if(k)
+                nKept++;
+        }
+        int nKeys = keep.length;
+        if(nKept == nKeys)
+            return sampler;
+        int n = sampler.elementSize;
+        float[] times = new float[nKept];
+        float[] output = new float[nKept * n];
+        int i = 0;
+        for (int k = 0; k < nKeys; k++) {
+            if(!keep[k])
+                continue;
+            times[i] = sampler.input[k];
+            System.arraycopy(sampler.output, k * n, output, i * n, n);
+            i++;
+        }
+        return new GLTFAnimationSampler(times, output, sampler.interpolation);
+    }
+
+    private float getTolerance(GLTFAnimationPath path){
+        switch (path){
+            case TRANSLATION:
+                return this.translationTolerance;
+            case ROTATION:
+                return this.rotationTolerance;
+            case SCALE:
+                return this.scaleTolerance;
+            default:
+                return this.weightsTolerance;
+        }
+    }
+
+    /**
+     * the error between two values: the angle between two quaternions,
+     * the distance between two translations, or the largest difference
+     * between two components otherwise.
+     */
+    private static float error(float[] a, int aOffset, float[] b, int bOffset, int n, GLTFAnimationPath path){
+        if(path == GLTFAnimationPath.ROTATION)
+            return (float) angle(a, aOffset, b, bOffset);
+        if(path == GLTFAnimationPath.TRANSLATION){
+            float dx = a[aOffset] - b[bOffset];
+            float dy = a[aOffset + 1] - b[bOffset + 1];
+            float dz = a[aOffset + 2] - b[bOffset + 2];
+            return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        float returnVal = 0;
+        for (int i = 0; i < n; i++) {
+            returnVal = Math.max(returnVal, Math.abs(a[aOffset + i] - b[bOffset + i]));
+        }
+        return returnVal;
+    }
+
+    /**
+     * the angle of the rotation from a to b, in double precision. The
+     * quaternions are normalized, as keyframes are often slightly off the
+     * unit sphere, and the angle is taken from the vector and scalar parts
+     * of conj(a) * b with atan2, which stays accurate for small angles where
+     * acos of the dot product does not.
+     */
+    private static double angle(float[] a, int aOffset, float[] b, int bOffset){
+        double ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        double bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+        double aLen = Math.sqrt(ax * ax + ay * ay + az * az + aw * aw);
+        double bLen = Math.sqrt(bx * bx + by * by + bz * bz + bw * bw);
+        if(aLen == 0 || bLen == 0)
+            return aLen == bLen ? 0 : Math.PI;
+        ax /= aLen; ay /= aLen; az /= aLen; aw /= aLen;
+        bx /= bLen; by /= bLen; bz /= bLen; bw /= bLen;
+        double w = ax * bx + ay * by + az * bz + aw * bw;
+        double x = aw * bx - bw * ax - (ay * bz - az * by);
+        double y = aw * by - bw * ay - (az * bx - ax * bz);
+        double z = aw * bz - bw * az - (ax * by - ay * bx);
+        return 2 * Math.atan2(Math.sqrt(x * x + y * y + z * z), Math.abs(w));
+    }
+}
@@ -0,0 +1,110 @@
+package gltf.animation;
+
+import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFByteAccessor;
+import gltf.accessor.GLTFFloatAccessor;
+import gltf.accessor.GLTFShortAccessor;
+import gltf.exception.GLTFException;
+import gltf.exception.InvalidGLTFTypeException;
+import gltf.type.GLTFAccessorType;
+import gltf.type.GLTFComponentType;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * the keyframes of an animation sampler. The output values are always
+ * stored as floats: normalized integer outputs are converted when read.
+ */
+public class GLTFAnimationSampler {
+    /** the keyframe times, in seconds, increasing */
+    public final float[] input;
+    /**
+     * the keyframe values. For CUBICSPLINE, each keyframe holds an
+     * in-tangent, a value and an out-tangent, in that order.
+     */
+    public final float[] output;
+    public final GLTFAnimationInterpolation interpolation;
+    /** the number of floats of one value: 3, 4, or the number of morph targets */
+    public final int elementSize;
+
+    public GLTFAnimationSampler(float[] input,
+                                float[] output,
+                                GLTFAnimationInterpolation interpolation)
+        throws GLTFException
+    {
+        this.input = input;
+        this.output = output;
+        this.interpolation = interpolation;
+        int valuesPerKey = interpolation == GLTFAnimationInterpolation.CUBICSPLINE ? 3 : 1;
+        if(this.input.length == 0 || this.output.length % (this.input.length * valuesPerKey) != 0)
+            throw new GLTFException("animation sampler output does not match its input");
+        this.elementSize = this.output.length / (this.input.length * valuesPerKey);
+    }
+
+    public GLTFAnimationSampler(int inputIdx,
+                                int outputIdx,
+                                GLTFAnimationInterpolation interpolation,
+                                GLTFAccessor[] accessors)
+        throws GLTFException
+    {
+        this(((GLTFFloatAccessor)(accessors[inputIdx].assertType(
+                new GLTFAccessorType[]{
+                        GLTFAccessorType.SCALAR
+                },
+                new GLTFComponentType[]{
+                        GLTFComponentType.FLOAT
+                }))).data,
+            readOutput(accessors[outputIdx]),
+            interpolation);
+    }
+
+    private static float[] readOutput(GLTFAccessor accessor) throws InvalidGLTFTypeException {
+        if(accessor instanceof GLTFFloatAccessor)
+            return ((GLTFFloatAccessor) accessor).data;
+        boolean signed = accessor.getComponentType() == GLTFComponentType.BYTE
+            || accessor.getComponentType() == GLTFComponentType.SHORT;
+        if(accessor instanceof GLTFByteAccessor){
+            byte[] data = ((GLTFByteAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = signed ? Math.max(data[i] / 127f, -1f) : (data[i] & 0xFF) / 255f;
+            }
+            return returnVal;
+        }
+        if(accessor instanceof GLTFShortAccessor){
+            short[] data = ((GLTFShortAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = signed ? Math.max(data[i] / 32767f, -1f) : (data[i] & 0xFFFF) / 65535f;
+            }
+            return returnVal;
+        }
+        throw new InvalidGLTFTypeException("unsupported animation sampler output " + accessor);
+    }
+
+    public float getStartTime(){
+        return this.input[0];
+    }
+
+    public float getEndTime(){
+        return this.input[this.input.length - 1];
+    }
+
+    public static GLTFAnimationSampler fromJSONObject(JSONObject jObj, GLTFAccessor[] accessors)
+        throws GLTFException
+    {
+        try{
+            return new GLTFAnimationSampler(
+                jObj.getIntValue("input"),
+                jObj.getIntValue("output"),
+                jObj.containsKey("interpolation") ?
+                    GLTFAnimationInterpolation.valueOf(jObj.getString("interpolation"))
+                    : GLTFAnimationInterpolation.LINEAR,
+                accessors
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
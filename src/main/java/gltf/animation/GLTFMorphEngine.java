@@ -0,0 +1,196 @@
+package gltf.animation;
+
+import gltf.GLTFNode;
+import gltf.mesh.GLTFMeshPrimitive;
+import gltf.mesh.GLTFMorphTarget;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Blends the morph targets of a primitive on the CPU. The ranges of
+ * vertices where each target actually moves something are found once,
+ * when the engine is created; each call to {@link #apply(float[])} then
+ * copies the base attributes into the output arrays and adds the weighted
+ * deltas of the targets with a non-zero weight over those ranges only.
+ * The vertices are processed in chunks across cores, every target being
+ * added to a chunk while it is still in cache.
+ */
+public class GLTFMorphEngine {
+    private static final float WEIGHT_EPSILON = 1e-6f;
+    /** zero-delta runs shorter than this are kept inside the surrounding range */
+    private static final int MIN_GAP = 8;
+    private static final int MIN_CHUNK = 2048;
+
+    public final GLTFMeshPrimitive primitive;
+    public final int nVertices;
+    /** the morphed positions, laid out like the POSITION accessor, or null */
+    public final float[] positions;
+    /** the morphed normals, or null if the primitive has no normals */
+    public final float[] normals;
+    /** the morphed tangents (VEC4, w kept from the base), or null */
+    public final float[] tangents;
+
+    private final Channel[] channels;
+
+    public GLTFMorphEngine(GLTFMeshPrimitive primitive) {
+        this.primitive = primitive;
+        float[] basePositions = primitive.attributes.positionsAccessor != null ?
+            primitive.attributes.positionsAccessor.data
+            : new float[0];
+        this.nVertices = basePositions.length / 3;
+        GLTFMorphTarget[] targets = primitive.targets;
+
+        float[][] positionDeltas = new float[targets.length][];
+        float[][] normalDeltas = new float[targets.length][];
+        float[][] tangentDeltas = new float[targets.length][];
+        for (int t = 0; t < targets.length; t++) {
+            positionDeltas[t] = targets[t].positionsAccessor != null ? targets[t].positionsAccessor.data : null;
+            normalDeltas[t] = targets[t].normalsAccessor != null ? targets[t].normalsAccessor.data : null;
+            tangentDeltas[t] = targets[t].tangentsAccessor != null ? targets[t].tangentsAccessor.data : null;
+        }
+        Channel positionChannel = Channel.create(basePositions, 3, positionDeltas, this.nVertices);
+        Channel normalChannel = primitive.attributes.normalsAccessor != null ?
+            Channel.create(primitive.attributes.normalsAccessor.data, 3, normalDeltas, this.nVertices)
+            : null;
+        Channel tangentChannel = primitive.attributes.tangentsAccessor != null ?
+            Channel.create(primitive.attributes.tangentsAccessor.data, 4, tangentDeltas, this.nVertices)
+            : null;
+        this.positions = positionChannel.out;
+        this.normals = normalChannel != null ? normalChannel.out : null;
+        this.tangents = tangentChannel != null ? tangentChannel.out : null;
+        List<Channel> channels = new ArrayList<>();
+        channels.add(positionChannel);
+        if(normalChannel != null)
+            channels.add(normalChannel);
+        if(tangentChannel != null)
+            channels.add(tangentChannel);
+        this.channels = channels.toArray(new Channel[0]);
+    }
+
+    /**
+     * returns the morph weights of a node: its own weights if it has some,
+     * the default weights of its mesh otherwise.
+     * @param node the node
+     * @return the weights, empty if there are none
+     */
+    public static float[] getWeights(GLTFNode node){
+        if(node.weights.length > 0 || node.mesh == null)
+            return node.weights;
+        return node.mesh.weights;
+    }
+
+    /**
+     * blends the morph targets into the output arrays.
+     * @param weights the weight of each target; missing weights are zero
+     */
+    public void apply(float[] weights){
+        ParallelUtils.forEachChunk(this.nVertices, MIN_CHUNK, (start, end) -> {
+            for (Channel channel : this.channels) {
+                channel.blend(weights, start, end);
+            }
+        });
+    }
+
+    /**
+     * one morphed attribute: its base values, the deltas of each target
+     * (three per vertex) and the vertex ranges where they are not zero.
+     */
+    private static class Channel {
+        final float[] base;
+        final float[] out;
+        final int stride;
+        final float[][] deltas;
+        /** per target, sorted pairs of [start, end) vertex indices */
+        final int[][] ranges;
+
+        private Channel(float[] base, int stride, float[][] deltas, int[][] ranges) {
+            this.base = base;
+            this.out = base.clone();
+            this.stride = stride;
+            this.deltas = deltas;
+            this.ranges = ranges;
+        }
+
+        static Channel create(float[] base, int stride, float[][] deltas, int nVertices){
+            int[][] ranges = new int[deltas.length][];
+            for (int t = 0; t < deltas.length; t++) {
+                if(deltas[t] != null && deltas[t].length < nVertices * 3)
+                    deltas[t] = null;
+                ranges[t] = deltas[t] != null ? findRanges(deltas[t], nVertices) : new int[0];
+            }
+            return new Channel(base, stride, deltas, ranges);
+        }
+
+        private static int[] findRanges(float[] delta, int nVertices){
+            int[] returnVal = new int[16];
+            int n = 0;
+            int v = 0;
+            while (v < nVertices) {
+                while (v < nVertices && isZero(delta, v)) {
+                    v++;
+                }
+                if(v == nVertices)
+                    break;
+                int start = v;
+                int end = v + 1;
+                // extend the range until a gap of at least MIN_GAP zero vertices
+                for (v = end; v < nVertices && v - end < MIN_GAP; v++) {
+                    if(!isZero(delta, v))
+                        end = v + 1;
+                }
+                v = end;
+                if(n + 2 > returnVal.length)
+                    returnVal = Arrays.copyOf(returnVal, returnVal.length * 2);
+                returnVal[n++] = start;
+                returnVal[n++] = end;
+            }
+            return Arrays.copyOf(returnVal, n);
+        }
+
+        private static boolean isZero(float[] delta, int v){
+            return delta[3 * v] == 0f && delta[3 * v + 1] == 0f && delta[3 * v + 2] == 0f;
+        }
+
+        void blend(float[] weights, int start, int end){
+            System.arraycopy(this.base, start * this.stride, this.out, start * this.stride, (end - start) * this.stride);
+            int nTargets = Math.min(weights.length, this.deltas.length);
+            for (int t = 0; t < nTargets; t++) {
+                float w = weights[t];
+                if(this.deltas[t] == null || Math.abs(w) <= WEIGHT_EPSILON)
+                    continue;
+                int[] r = this.ranges[t];
+                // first range ending after start
+                int lo = 0, hi = r.length / 2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if(r[2 * mid + 1] <= start)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                for (int k = 2 * lo; k < r.length && r[k] < end; k += 2) {
+                    add(this.deltas[t], w, Math.max(r[k], start), Math.min(r[k + 1], end));
+                }
+            }
+        }
+
+        private void add(float[] delta, float w, int start, int end){
+            float[] out = this.out;
+            if(this.stride == 3){
+                for (int i = start * 3; i < end * 3; i++) {
+                    out[i] += w * delta[i];
+                }
+            }else{
+                for (int v = start; v < end; v++) {
+                    int o = v * this.stride;
+                    out[o] += w * delta[3 * v];
+                    out[o + 1] += w * delta[3 * v + 1];
+                    out[o + 2] += w * delta[3 * v + 2];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package gltf.animation;
+
+import gltf.GLTFNode;
+import gltf.GLTFSkin;
+import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFByteAccessor;
+import gltf.accessor.GLTFFloatAccessor;
+import gltf.accessor.GLTFShortAccessor;
+import gltf.exception.GLTFException;
+import gltf.math.Mat4f;
+import gltf.mesh.GLTFMeshPrimitive;
+import gltf.utils.ParallelUtils;
+
+/**
+ * Skins a primitive on the CPU with linear blend skinning. The joint
+ * indices and weights are unpacked once, when the engine is created;
+ * each frame, {@link #updatePalette(GLTFNode)} computes the joint
+ * matrices from the node hierarchy and {@link #skin()} transforms the
+ * vertices in parallel chunks into the output arrays, which are reused
+ * from frame to frame. Neither allocates: the chunk tasks of skin() are
+ * kept in a {@link ParallelUtils.ChunkRunner} and re-armed every frame.
+ */
+public class GLTFSkinningEngine {
+    private static final int MIN_CHUNK = 1024;
+
+    public final GLTFMeshPrimitive primitive;
+    public final GLTFSkin skin;
+    public final int nVertices;
+    /** the skinned positions, laid out like the POSITION accessor */
+    public final float[] positions;
+    /** the skinned normals, or null if the primitive has no normals */
+    public final float[] normals;
+    /** the column-major joint matrices computed by the last updatePalette */
+    public final float[] palette;
+
+    private final float[] basePositions;
+    private final float[] baseNormals;
+    /** four joint indices per vertex */
+    private final int[] joints;
+    /** four weights per vertex */
+    private final float[] weights;
+
+    private final float[] inverseMeshMatrix = new float[16];
+    private final float[] jointMatrix = new float[16];
+    private final ParallelUtils.ChunkRunner skinTask = new ParallelUtils.ChunkRunner(MIN_CHUNK, this::skinRange);
+
+    public GLTFSkinningEngine(GLTFMeshPrimitive primitive, GLTFSkin skin) throws GLTFException {
+        this(primitive, skin,
+            primitive.attributes.positionsAccessor != null ?
+                primitive.attributes.positionsAccessor.data
+                : null,
+            primitive.attributes.normalsAccessor != null ?
+                primitive.attributes.normalsAccessor.data
+                : null);
+    }
+
+    /**
+     * creates an engine skinning other base attributes than the ones of
+     * the primitive, such as the outputs of a {@link GLTFMorphEngine}.
+     * @param basePositions the positions to skin, 3 per vertex
+     * @param baseNormals the normals to skin, or null
+     */
+    public GLTFSkinningEngine(GLTFMeshPrimitive primitive,
+                              GLTFSkin skin,
+                              float[] basePositions,
+                              float[] baseNormals)
+        throws GLTFException
+    {
+        if(basePositions == null)
+            throw new GLTFException("cannot skin a primitive without positions");
+        if(primitive.attributes.joints0Accessor == null || primitive.attributes.weights0Accessor == null)
+            throw new GLTFException("cannot skin a primitive without JOINTS_0 and WEIGHTS_0");
+        this.primitive = primitive;
+        this.skin = skin;
+        this.nVertices = basePositions.length / 3;
+        this.basePositions = basePositions;
+        this.baseNormals = baseNormals;
+        this.positions = basePositions.clone();
+        this.normals = baseNormals != null ? baseNormals.clone() : null;
+        this.palette = skin.inverseBindMatrices.clone();
+
+        this.joints = readJoints(primitive.attributes.joints0Accessor);
+        this.weights = readWeights(primitive.attributes.weights0Accessor);
+        if(this.joints.length < 4 * this.nVertices || this.weights.length < 4 * this.nVertices)
+            throw new GLTFException("JOINTS_0 or WEIGHTS_0 has fewer elements than POSITION");
+        int nJoints = skin.jointsIdxes.length;
+        for (int v = 0; v < this.nVertices; v++) {
+            for (int k = 0; k < 4; k++) {
+                int i = 4 * v + k;
+                if(this.weights[i] == 0f)
+                    this.joints[i] = 0;
+                else if(this.joints[i] >= nJoints)
+                    throw new GLTFException("joint index " + this.joints[i] + " out of range for skin " + skin.name);
+            }
+        }
+    }
+
+    private static int[] readJoints(GLTFAccessor accessor) throws GLTFException {
+        if(accessor instanceof GLTFByteAccessor){
+            byte[] data = ((GLTFByteAccessor) accessor).data;
+            int[] returnVal = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = data[i] & 0xFF;
+            }
+            return returnVal;
+        }
+        if(accessor instanceof GLTFShortAccessor){
+            short[] data = ((GLTFShortAccessor) accessor).data;
+            int[] returnVal = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = data[i] & 0xFFFF;
+            }
+            return returnVal;
+        }
+        throw new GLTFException("unsupported JOINTS_0 accessor " + accessor);
+    }
+
+    /**
+     * reads the weights as floats. As per the GLTF specification,
+     * integer weights are normalized.
+     */
+    private static float[] readWeights(GLTFAccessor accessor) throws GLTFException {
+        if(accessor instanceof GLTFFloatAccessor)
+            return ((GLTFFloatAccessor) accessor).data;
+        if(accessor instanceof GLTFByteAccessor){
+            byte[] data = ((GLTFByteAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = (data[i] & 0xFF) / 255f;
+            }
+            return returnVal;
+        }
+        if(accessor instanceof GLTFShortAccessor){
+            short[] data = ((GLTFShortAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = (data[i] & 0xFFFF) / 65535f;
+            }
+            return returnVal;
+        }
+        throw new GLTFException("unsupported WEIGHTS_0 accessor " + accessor);
+    }
+
+    /**
+     * computes the joint matrices from the current world transforms:
+     * inverse(mesh node world) * joint world * inverse bind matrix.
+     * @param meshNode the node the skinned mesh is attached to, or null
+     *                 to skin in world space
+     */
+    public void updatePalette(GLTFNode meshNode){
+        if(meshNode != null)
+            Mat4f.invert(meshNode.getWorldMatrix(), 0, this.inverseMeshMatrix, 0);
+        else
+            Mat4f.identity(this.inverseMeshMatrix, 0);
+        GLTFNode[] jointNodes = this.skin.getJoints();
+        for (int j = 0; j < jointNodes.length; j++) {
+            Mat4f.mul(jointNodes[j].getWorldMatrix(), 0, this.skin.inverseBindMatrices, 16 * j, this.jointMatrix, 0);
+            Mat4f.mul(this.inverseMeshMatrix, 0, this.jointMatrix, 0, this.palette, 16 * j);
+        }
+    }
+
+    /**
+     * skins the base attributes with the current palette into the
+     * output arrays.
+     */
+    public void skin(){
+        this.skinTask.run(this.nVertices);
+    }
+
+    /**
+     * updates the palette, then skins the vertices.
+     * @param meshNode the node the skinned mesh is attached to
+     */
+    public void update(GLTFNode meshNode){
+        updatePalette(meshNode);
+        skin();
+    }
+
+    private void skinRange(int start, int end){
+        float[] palette = this.palette;
+        float[] bp = this.basePositions;
+        float[] bn = this.baseNormals;
+        float[] op = this.positions;
+        float[] on = this.normals;
+        for (int v = start; v < end; v++) {
+            // the weighted sum of the affine part of the joint matrices
+            float m0 = 0, m1 = 0, m2 = 0, m4 = 0, m5 = 0, m6 = 0;
+            float m8 = 0, m9 = 0, m10 = 0, m12 = 0, m13 = 0, m14 = 0;
+            for (int k = 4 * v; k < 4 * v + 4; k++) {
+                float w = this.weights[k];
+                if(w == 0f)
+                    continue;
+                int o = 16 * this.joints[k];
+                m0 += w * palette[o];
+                m1 += w * palette[o + 1];
+                m2 += w * palette[o + 2];
+                m4 += w * palette[o + 4];
+                m5 += w * palette[o + 5];
+                m6 += w * palette[o + 6];
+                m8 += w * palette[o + 8];
+                m9 += w * palette[o + 9];
+                m10 += w * palette[o + 10];
+                m12 += w * palette[o + 12];
+                m13 += w * palette[o + 13];
+                m14 += w * palette[o + 14];
+            }
+            int i = 3 * v;
+            float x = bp[i], y = bp[i + 1], z = bp[i + 2];
+            op[i] = m0 * x + m4 * y + m8 * z + m12;
+            op[i + 1] = m1 * x + m5 * y + m9 * z + m13;
+            op[i + 2] = m2 * x + m6 * y + m10 * z + m14;
+            if(on != null){
+                x = bn[i]; y = bn[i + 1]; z = bn[i + 2];
+                float nx = m0 * x + m4 * y + m8 * z;
+                float ny = m1 * x + m5 * y + m9 * z;
+                float nz = m2 * x + m6 * y + m10 * z;
+                float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if(len > 0f){
+                    nx /= len; ny /= len; nz /= len;
+                }
+                on[i] = nx;
+                on[i + 1] = ny;
+                on[i + 2] = nz;
+            }
+        }
+    }
+}
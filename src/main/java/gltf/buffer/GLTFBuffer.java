@@ -19,7 +19,18 @@ public class GLTFBuffer {
     public GLTFBuffer(String path, int length) throws  IOException{
         this(new FileInputStream(path), length);
     }
+    /**
+     * creates a zero-filled buffer, for buffers without an uri such as
+     * the fallback buffers of EXT_meshopt_compression, which are filled
+     * by decoding the bufferViews that refer to them.
+     * @param length the length of the buffer in bytes
+     */
+    protected GLTFBuffer(int length){
+        bytes = new byte[length];
+    }
     public static GLTFBuffer fromBuffer(JSONObject bObj, String gltfRootDir) throws IOException{
+        if(!bObj.containsKey("uri"))
+            return new GLTFBuffer(bObj.getIntValue("byteLength"));
         return new GLTFBuffer(new FileInputStream(gltfRootDir+"/"+bObj.getString("uri")),
                 bObj.getIntValue("byteLength"));
     }
@@ -1,8 +1,12 @@
 package gltf.buffer;
 
+import gltf.exception.GLTFException;
 import gltf.utils.ByteReader;
 import com.alibaba.fastjson.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 /**
  * A bufferView represents a subset of data in a buffer,
  * defined by a byte offset into the buffer specified
@@ -18,6 +22,13 @@ public class GLTFBufferView {
     public final int byteStride;
     public final int target;
     public final String name;
+    /**
+     * the EXT_meshopt_compression extension of the bufferView, or null.
+     * The buffer of a compressed bufferView is its fallback buffer, into
+     * which the compressed data is decoded on first use.
+     */
+    public final GLTFMeshoptCompression meshoptCompression;
+    private volatile boolean decoded = false;
 
     protected GLTFBufferView(GLTFBuffer buffer,
                              int byteOffset,
@@ -25,6 +36,17 @@ public class GLTFBufferView {
                              int byteStride,
                              int target,
                              String name){
+        this(buffer, byteOffset, byteLength, byteStride, target, name, null);
+    }
+
+    protected GLTFBufferView(GLTFBuffer buffer,
+                             int byteOffset,
+                             int byteLength,
+                             int byteStride,
+                             int target,
+                             String name,
+                             GLTFMeshoptCompression meshoptCompression){
+        this.meshoptCompression = meshoptCompression;
         this.buffer = buffer;
         this.byteOffset = byteOffset;
         this.byteLength = byteLength;
@@ -33,14 +55,71 @@ public class GLTFBufferView {
         this.name = name;
     }
 
-    public GLTFBufferView(JSONObject bvObj, GLTFBuffer[] buffers){
+    public GLTFBufferView(JSONObject bvObj, GLTFBuffer[] buffers) throws GLTFException {
         this(
                 buffers[bvObj.getIntValue("buffer")],
                 bvObj.containsKey("byteOffset") ? bvObj.getIntValue("byteOffset") : 0,
                 bvObj.getIntValue("byteLength"),
                 bvObj.containsKey("byteStride") ? bvObj.getIntValue("byteStride") : -1,
                 bvObj.containsKey("target") ? bvObj.getIntValue("target") : -1,
-                bvObj.getString("name"));
+                bvObj.getString("name"),
+                getMeshoptCompression(bvObj, buffers));
+    }
+
+    private static GLTFMeshoptCompression getMeshoptCompression(JSONObject bvObj, GLTFBuffer[] buffers)
+        throws GLTFException
+    {
+        JSONObject extensions = bvObj.getJSONObject("extensions");
+        JSONObject meshopt = extensions != null ?
+            extensions.getJSONObject("EXT_meshopt_compression")
+            : null;
+        return meshopt != null ? GLTFMeshoptCompression.fromJSONObject(meshopt, buffers) : null;
+    }
+
+    /**
+     * decodes the EXT_meshopt_compression data of the bufferView into its
+     * fallback buffer. It does nothing if the bufferView is not compressed
+     * or was already decoded. The getters call it, so a bufferView is
+     * decoded the first time its data is read.
+     * @throws GLTFException if the compressed data is invalid
+     */
+    public void decode() throws GLTFException {
+        if(this.meshoptCompression == null || this.decoded)
+            return;
+        synchronized (this){
+            if(this.decoded)
+                return;
+            GLTFMeshoptCompression mc = this.meshoptCompression;
+            if((long) mc.count * mc.byteStride > this.byteLength)
+                throw new GLTFException("meshopt data does not fit bufferView " + this.name);
+            byte[] src = mc.buffer.bytes;
+            switch (mc.mode){
+                case GLTFMeshoptCompression.MODE_ATTRIBUTES:
+                    GLTFMeshoptDecoder.decodeVertexBuffer(this.buffer.bytes, this.byteOffset, mc.count, mc.byteStride,
+                        src, mc.byteOffset, mc.byteLength);
+                    GLTFMeshoptDecoder.applyFilter(mc.filter, this.buffer.bytes, this.byteOffset, mc.count, mc.byteStride);
+                    break;
+                case GLTFMeshoptCompression.MODE_TRIANGLES:
+                    GLTFMeshoptDecoder.decodeIndexBuffer(this.buffer.bytes, this.byteOffset, mc.count, mc.byteStride,
+                        src, mc.byteOffset, mc.byteLength);
+                    break;
+                case GLTFMeshoptCompression.MODE_INDICES:
+                    GLTFMeshoptDecoder.decodeIndexSequence(this.buffer.bytes, this.byteOffset, mc.count, mc.byteStride,
+                        src, mc.byteOffset, mc.byteLength);
+                    break;
+                default:
+                    throw new GLTFException("unknown meshopt mode " + mc.mode);
+            }
+            this.decoded = true;
+        }
+    }
+
+    private void ensureDecoded(){
+        try{
+            decode();
+        }catch(GLTFException e){
+            throw new IllegalStateException(e.getMessage());
+        }
     }
 
     /**
@@ -50,13 +129,23 @@ public class GLTFBufferView {
      * @return
      */
     public float[] getFloats(int byteOffset, int nElem){
+        ensureDecoded();
         byte[] bytes = this.buffer.bytes;
         return ByteReader.readFloats(bytes,byteOffset+this.byteOffset, nElem);
     }
     public short[] getShorts(int byteOffset, int nElem){
+        ensureDecoded();
         byte[] bytes = this.buffer.bytes;
         return ByteReader.readShorts(bytes, byteOffset+this.byteOffset, nElem);
     }
+    /**
+     * returns a stream over the bytes of the bufferView, reading them in
+     * place instead of copying them.
+     */
+    public InputStream getInputStream(){
+        ensureDecoded();
+        return new ByteArrayInputStream(this.buffer.bytes, this.byteOffset, this.byteLength);
+    }
     /**
      * returns a byte array containing the bytes from index byteOffset to
      * index byteOfset+nElem. It calls System.arraycopy.
@@ -67,6 +156,7 @@ public class GLTFBufferView {
      * @return a copy of the buffer from byteOffset to byteOffset+nElem
      */
     public byte[] getBytes(int byteOffset, int nElem){
+        ensureDecoded();
         byte[] array = new byte[nElem];
         System.arraycopy(this.buffer.bytes,
                 this.byteOffset+byteOffset,
@@ -83,6 +173,7 @@ public class GLTFBufferView {
      * @return a copy of the buffer from byteOffset to byteOffset+nElem
      */
     public int[] getInts(int byteOffset, int nElem) {
+        ensureDecoded();
         byte[] bytes = this.buffer.bytes;
         return ByteReader.readInts(bytes,byteOffset+this.byteOffset, nElem);
     }
@@ -0,0 +1,65 @@
+package gltf.buffer;
+
+import gltf.exception.GLTFException;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * the EXT_meshopt_compression extension of a bufferView: where the
+ * compressed data lives, and how to decode it into the bufferView.
+ */
+public class GLTFMeshoptCompression {
+    public static final String MODE_ATTRIBUTES = "ATTRIBUTES";
+    public static final String MODE_TRIANGLES = "TRIANGLES";
+    public static final String MODE_INDICES = "INDICES";
+
+    public static final String FILTER_NONE = "NONE";
+    public static final String FILTER_OCTAHEDRAL = "OCTAHEDRAL";
+    public static final String FILTER_QUATERNION = "QUATERNION";
+    public static final String FILTER_EXPONENTIAL = "EXPONENTIAL";
+
+    public final GLTFBuffer buffer;
+    public final int byteOffset;
+    public final int byteLength;
+    /** the size of an element: a vertex, or an index */
+    public final int byteStride;
+    /** the number of elements */
+    public final int count;
+    public final String mode;
+    public final String filter;
+
+    public GLTFMeshoptCompression(GLTFBuffer buffer,
+                                  int byteOffset,
+                                  int byteLength,
+                                  int byteStride,
+                                  int count,
+                                  String mode,
+                                  String filter) {
+        this.buffer = buffer;
+        this.byteOffset = byteOffset;
+        this.byteLength = byteLength;
+        this.byteStride = byteStride;
+        this.count = count;
+        this.mode = mode;
+        this.filter = filter;
+    }
+
+    public static GLTFMeshoptCompression fromJSONObject(JSONObject jObj, GLTFBuffer[] buffers)
+        throws GLTFException
+    {
+        try{
+            return new GLTFMeshoptCompression(
+                buffers[jObj.getIntValue("buffer")],
+                jObj.containsKey("byteOffset") ? jObj.getIntValue("byteOffset") : 0,
+                jObj.getIntValue("byteLength"),
+                jObj.getIntValue("byteStride"),
+                jObj.getIntValue("count"),
+                jObj.getString("mode"),
+                jObj.containsKey("filter") ? jObj.getString("filter") : FILTER_NONE
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
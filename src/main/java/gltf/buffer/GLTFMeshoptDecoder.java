@@ -0,0 +1,436 @@
+package gltf.buffer;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * Decoders of the meshoptimizer codecs used by EXT_meshopt_compression:
+ * the vertex codec (ATTRIBUTES mode), the triangle index codec
+ * (TRIANGLES mode) and the index sequence codec (INDICES mode), and the
+ * OCTAHEDRAL, QUATERNION and EXPONENTIAL filters applied after the
+ * vertex codec.
+ * The inner loops work on plain arrays with no per-element bounds checks
+ * beyond the JVM's own, so that the JIT can unroll and vectorize them.
+ */
+public class GLTFMeshoptDecoder {
+    private static final int VERTEX_HEADER = 0xa0;
+    private static final int INDEX_HEADER = 0xe0;
+    private static final int SEQUENCE_HEADER = 0xd0;
+
+    private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+    private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+    private static final int BYTE_GROUP_SIZE = 16;
+    private static final int BYTE_GROUP_DECODE_LIMIT = 24;
+    private static final int TAIL_MAX_SIZE = 32;
+
+    /**
+     * decodes a vertex buffer of count vertices of stride bytes into dst.
+     * @param dst the destination array
+     * @param dstOffset the offset of the first vertex in dst
+     * @param count the number of vertices
+     * @param stride the size of a vertex in bytes, a multiple of 4 up to 256
+     * @param src the encoded data
+     * @param srcOffset the offset of the encoded data in src
+     * @param srcLength the length of the encoded data
+     * @throws GLTFException if the data is invalid
+     */
+    public static void decodeVertexBuffer(byte[] dst, int dstOffset, int count, int stride,
+                                          byte[] src, int srcOffset, int srcLength)
+        throws GLTFException
+    {
+        if(stride <= 0 || stride > 256 || stride % 4 != 0)
+            throw new GLTFException("invalid meshopt vertex size " + stride);
+        int end = srcOffset + srcLength;
+        if(srcLength < 1 || (src[srcOffset] & 0xFF) != VERTEX_HEADER)
+            throw new GLTFException("unsupported meshopt vertex codec");
+        int pos = srcOffset + 1;
+        int tailSize = Math.max(stride, TAIL_MAX_SIZE);
+        if(end - pos < tailSize)
+            throw truncated();
+        // the first vertex ends the tail, after its padding, as the base
+        // of the deltas
+        byte[] lastVertex = new byte[stride];
+        System.arraycopy(src, end - stride, lastVertex, 0, stride);
+
+        int blockSize = Math.min((VERTEX_BLOCK_SIZE_BYTES / stride) & ~(BYTE_GROUP_SIZE - 1), VERTEX_BLOCK_MAX_SIZE);
+        byte[] column = new byte[blockSize];
+        for (int vertexOffset = 0; vertexOffset < count; vertexOffset += blockSize) {
+            int n = Math.min(blockSize, count - vertexOffset);
+            int nAligned = (n + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+            int out = dstOffset + vertexOffset * stride;
+            for (int k = 0; k < stride; k++) {
+                pos = decodeBytes(src, pos, end, column, nAligned);
+                // unzigzag and undo the delta of each byte column
+                int p = lastVertex[k];
+                for (int i = 0; i < n; i++) {
+                    int v = column[i] & 0xFF;
+                    p += (v >>> 1) ^ -(v & 1);
+                    dst[out + i * stride + k] = (byte) p;
+                }
+                lastVertex[k] = (byte) p;
+            }
+        }
+        if(end - pos != tailSize)
+            throw new GLTFException("invalid meshopt vertex data");
+    }
+
+    private static int decodeBytes(byte[] src, int pos, int end, byte[] out, int n) throws GLTFException {
+        int header = pos;
+        int headerSize = (n / BYTE_GROUP_SIZE + 3) / 4;
+        if(end - pos < headerSize)
+            throw truncated();
+        pos += headerSize;
+        for (int i = 0; i < n; i += BYTE_GROUP_SIZE) {
+            if(end - pos < BYTE_GROUP_DECODE_LIMIT)
+                throw truncated();
+            int group = i / BYTE_GROUP_SIZE;
+            int bitsLog2 = (src[header + group / 4] >> ((group % 4) * 2)) & 3;
+            switch (bitsLog2){
+                case 0:
+                    for (int j = 0; j < BYTE_GROUP_SIZE; j++) {
+                        out[i + j] = 0;
+                    }
+                    break;
+                case 1:
+                    pos = decodeBytesGroup(src, pos, out, i, 2);
+                    break;
+                case 2:
+                    pos = decodeBytesGroup(src, pos, out, i, 4);
+                    break;
+                default:
+                    System.arraycopy(src, pos, out, i, BYTE_GROUP_SIZE);
+                    pos += BYTE_GROUP_SIZE;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * decodes 16 values of bits bits each, most significant bits first;
+     * a value with all bits set is followed by an explicit byte.
+     */
+    private static int decodeBytesGroup(byte[] src, int pos, byte[] out, int outOffset, int bits){
+        int escape = (1 << bits) - 1;
+        int perByte = 8 / bits;
+        int extra = pos + BYTE_GROUP_SIZE * bits / 8;
+        for (int i = 0; i < BYTE_GROUP_SIZE; i++) {
+            int b = src[pos + i / perByte] & 0xFF;
+            int enc = (b >> (8 - bits * (i % perByte + 1))) & escape;
+            if(enc == escape)
+                out[outOffset + i] = src[extra++];
+            else
+                out[outOffset + i] = (byte) enc;
+        }
+        return extra;
+    }
+
+    /**
+     * decodes a triangle index buffer.
+     * @param dst the destination array
+     * @param dstOffset the offset of the first index in dst
+     * @param count the number of indices, a multiple of 3
+     * @param indexSize the size of an index: 2 or 4 bytes
+     * @param src the encoded data
+     * @param srcOffset the offset of the encoded data in src
+     * @param srcLength the length of the encoded data
+     * @throws GLTFException if the data is invalid
+     */
+    public static void decodeIndexBuffer(byte[] dst, int dstOffset, int count, int indexSize,
+                                         byte[] src, int srcOffset, int srcLength)
+        throws GLTFException
+    {
+        if(count % 3 != 0 || (indexSize != 2 && indexSize != 4))
+            throw new GLTFException("invalid meshopt triangle buffer");
+        if(srcLength < 1 + count / 3 + 16)
+            throw truncated();
+        int header = src[srcOffset] & 0xFF;
+        if((header & 0xF0) != INDEX_HEADER || (header & 0x0F) > 1)
+            throw new GLTFException("unsupported meshopt index codec");
+        int version = header & 0x0F;
+
+        int[] edgeFifo = new int[32];
+        int[] vertexFifo = new int[16];
+        Arrays.fill(edgeFifo, -1);
+        Arrays.fill(vertexFifo, -1);
+        int edgeFifoOffset = 0;
+        int vertexFifoOffset = 0;
+        int next = 0;
+        int last = 0;
+        int fecMax = version >= 1 ? 13 : 15;
+
+        int code = srcOffset + 1;
+        int[] data = {code + count / 3};
+        int dataSafeEnd = srcOffset + srcLength - 16;
+        int codeAuxTable = dataSafeEnd;
+
+        for (int i = 0; i < count; i += 3) {
+            if(data[0] > dataSafeEnd)
+                throw truncated();
+            int codeTri = src[code++] & 0xFF;
+            int a, b, c;
+            if(codeTri < 0xF0){
+                int fe = codeTri >> 4;
+                int edge = ((edgeFifoOffset - 1 - fe) & 15) * 2;
+                a = edgeFifo[edge];
+                b = edgeFifo[edge + 1];
+                int fec = codeTri & 15;
+                if(fec < fecMax){
+                    int fec0 = fec == 0 ? 1 : 0;
+                    c = fec0 == 1 ? next : vertexFifo[(vertexFifoOffset - 1 - fec) & 15];
+                    next += fec0;
+                    vertexFifo[vertexFifoOffset] = c;
+                    vertexFifoOffset = (vertexFifoOffset + fec0) & 15;
+                }else{
+                    // 13 and 14 code a delta of -1 and 1 from the last free index
+                    c = last = fec != 15 ? last + (fec - (fec ^ 3)) : decodeIndex(src, data, last);
+                    vertexFifo[vertexFifoOffset] = c;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, c, b);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, a, c);
+            }else{
+                int feb, fec;
+                if(codeTri < 0xFE){
+                    int codeAux = src[codeAuxTable + (codeTri & 15)] & 0xFF;
+                    feb = codeAux >> 4;
+                    fec = codeAux & 15;
+                    a = next++;
+                    b = feb == 0 ? next++ : vertexFifo[(vertexFifoOffset - feb) & 15];
+                    c = fec == 0 ? next++ : vertexFifo[(vertexFifoOffset - fec) & 15];
+                }else{
+                    int codeAux = src[data[0]++] & 0xFF;
+                    int fea = codeTri == 0xFE ? 0 : 15;
+                    feb = codeAux >> 4;
+                    fec = codeAux & 15;
+                    if(codeAux == 0)
+                        next = 0;
+                    a = fea == 0 ? next++ : 0;
+                    b = feb == 0 ? next++ : vertexFifo[(vertexFifoOffset - feb) & 15];
+                    c = fec == 0 ? next++ : vertexFifo[(vertexFifoOffset - fec) & 15];
+                    if(fea == 15)
+                        last = a = decodeIndex(src, data, last);
+                    if(feb == 15)
+                        last = b = decodeIndex(src, data, last);
+                    if(fec == 15)
+                        last = c = decodeIndex(src, data, last);
+                }
+                vertexFifo[vertexFifoOffset] = a;
+                vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                vertexFifo[vertexFifoOffset] = b;
+                vertexFifoOffset = (vertexFifoOffset + (feb == 0 || feb == 15 ? 1 : 0)) & 15;
+                vertexFifo[vertexFifoOffset] = c;
+                vertexFifoOffset = (vertexFifoOffset + (fec == 0 || fec == 15 ? 1 : 0)) & 15;
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, b, a);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, c, b);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, a, c);
+            }
+            writeIndex(dst, dstOffset, indexSize, i, a);
+            writeIndex(dst, dstOffset, indexSize, i + 1, b);
+            writeIndex(dst, dstOffset, indexSize, i + 2, c);
+        }
+        if(data[0] != dataSafeEnd)
+            throw new GLTFException("invalid meshopt triangle data");
+    }
+
+    private static int pushEdge(int[] edgeFifo, int offset, int a, int b){
+        edgeFifo[offset * 2] = a;
+        edgeFifo[offset * 2 + 1] = b;
+        return (offset + 1) & 15;
+    }
+
+    /**
+     * decodes a sequence of indices, each delta coded against one of two
+     * baselines.
+     * @param dst the destination array
+     * @param dstOffset the offset of the first index in dst
+     * @param count the number of indices
+     * @param indexSize the size of an index: 2 or 4 bytes
+     * @param src the encoded data
+     * @param srcOffset the offset of the encoded data in src
+     * @param srcLength the length of the encoded data
+     * @throws GLTFException if the data is invalid
+     */
+    public static void decodeIndexSequence(byte[] dst, int dstOffset, int count, int indexSize,
+                                           byte[] src, int srcOffset, int srcLength)
+        throws GLTFException
+    {
+        if(indexSize != 2 && indexSize != 4)
+            throw new GLTFException("invalid meshopt index size " + indexSize);
+        if(srcLength < 1 + count + 4)
+            throw truncated();
+        int header = src[srcOffset] & 0xFF;
+        if((header & 0xF0) != SEQUENCE_HEADER || (header & 0x0F) > 1)
+            throw new GLTFException("unsupported meshopt index sequence codec");
+        int[] data = {srcOffset + 1};
+        int dataSafeEnd = srcOffset + srcLength - 4;
+        int[] last = new int[2];
+        for (int i = 0; i < count; i++) {
+            if(data[0] >= dataSafeEnd)
+                throw truncated();
+            int v = decodeVByte(src, data);
+            int current = v & 1;
+            v >>>= 1;
+            int index = last[current] + ((v >>> 1) ^ -(v & 1));
+            last[current] = index;
+            writeIndex(dst, dstOffset, indexSize, i, index);
+        }
+        if(data[0] != dataSafeEnd)
+            throw new GLTFException("invalid meshopt index sequence data");
+    }
+
+    private static int decodeVByte(byte[] src, int[] pos){
+        int lead = src[pos[0]++] & 0xFF;
+        if(lead < 128)
+            return lead;
+        int result = lead & 127;
+        int shift = 7;
+        for (int i = 0; i < 4; i++) {
+            int b = src[pos[0]++] & 0xFF;
+            result |= (b & 127) << shift;
+            shift += 7;
+            if(b < 128)
+                break;
+        }
+        return result;
+    }
+
+    private static int decodeIndex(byte[] src, int[] pos, int last){
+        int v = decodeVByte(src, pos);
+        return last + ((v >>> 1) ^ -(v & 1));
+    }
+
+    private static void writeIndex(byte[] dst, int dstOffset, int indexSize, int i, int index){
+        int off = dstOffset + i * indexSize;
+        dst[off] = (byte) index;
+        dst[off + 1] = (byte) (index >>> 8);
+        if(indexSize == 4){
+            dst[off + 2] = (byte) (index >>> 16);
+            dst[off + 3] = (byte) (index >>> 24);
+        }
+    }
+
+    /**
+     * applies an EXT_meshopt_compression filter in place to decoded vertices.
+     * @param filter the filter name, see {@link GLTFMeshoptCompression}
+     * @param data the decoded vertices
+     * @param offset the offset of the first vertex in data
+     * @param count the number of vertices
+     * @param stride the size of a vertex in bytes
+     * @throws GLTFException if the filter does not apply to that stride
+     */
+    public static void applyFilter(String filter, byte[] data, int offset, int count, int stride)
+        throws GLTFException
+    {
+        switch (filter){
+            case GLTFMeshoptCompression.FILTER_NONE:
+                break;
+            case GLTFMeshoptCompression.FILTER_OCTAHEDRAL:
+                if(stride == 4)
+                    decodeFilterOct8(data, offset, count);
+                else if(stride == 8)
+                    decodeFilterOct16(data, offset, count);
+                else
+                    throw new GLTFException("invalid stride for the meshopt octahedral filter: " + stride);
+                break;
+            case GLTFMeshoptCompression.FILTER_QUATERNION:
+                if(stride != 8)
+                    throw new GLTFException("invalid stride for the meshopt quaternion filter: " + stride);
+                decodeFilterQuat(data, offset, count);
+                break;
+            case GLTFMeshoptCompression.FILTER_EXPONENTIAL:
+                if(stride % 4 != 0)
+                    throw new GLTFException("invalid stride for the meshopt exponential filter: " + stride);
+                decodeFilterExp(data, offset, count * stride / 4);
+                break;
+            default:
+                throw new GLTFException("unknown meshopt filter " + filter);
+        }
+    }
+
+    private static void decodeFilterOct8(byte[] data, int offset, int count){
+        for (int i = 0; i < count; i++) {
+            int o = offset + i * 4;
+            float x = data[o];
+            float y = data[o + 1];
+            float z = data[o + 2] - Math.abs(x) - Math.abs(y);
+            float t = Math.min(z, 0f);
+            x += x >= 0f ? t : -t;
+            y += y >= 0f ? t : -t;
+            float s = 127f / (float) Math.sqrt(x * x + y * y + z * z);
+            data[o] = (byte) roundSigned(x * s);
+            data[o + 1] = (byte) roundSigned(y * s);
+            data[o + 2] = (byte) roundSigned(z * s);
+        }
+    }
+
+    private static void decodeFilterOct16(byte[] data, int offset, int count){
+        for (int i = 0; i < count; i++) {
+            int o = offset + i * 8;
+            float x = getShort(data, o);
+            float y = getShort(data, o + 2);
+            float z = getShort(data, o + 4) - Math.abs(x) - Math.abs(y);
+            float t = Math.min(z, 0f);
+            x += x >= 0f ? t : -t;
+            y += y >= 0f ? t : -t;
+            float s = 32767f / (float) Math.sqrt(x * x + y * y + z * z);
+            putShort(data, o, roundSigned(x * s));
+            putShort(data, o + 2, roundSigned(y * s));
+            putShort(data, o + 4, roundSigned(z * s));
+        }
+    }
+
+    private static void decodeFilterQuat(byte[] data, int offset, int count){
+        final float scale = 1f / (float) Math.sqrt(2);
+        for (int i = 0; i < count; i++) {
+            int o = offset + i * 8;
+            int w3 = getShort(data, o + 6);
+            // the scale is stored in the high bits of the fourth component
+            float ss = scale / (w3 | 3);
+            float x = getShort(data, o) * ss;
+            float y = getShort(data, o + 2) * ss;
+            float z = getShort(data, o + 4) * ss;
+            float ww = 1f - x * x - y * y - z * z;
+            float w = (float) Math.sqrt(Math.max(ww, 0f));
+            // the two low bits give the index of the dropped component
+            int qc = w3 & 3;
+            putShort(data, o + ((qc + 1) & 3) * 2, roundSigned(x * 32767f));
+            putShort(data, o + ((qc + 2) & 3) * 2, roundSigned(y * 32767f));
+            putShort(data, o + ((qc + 3) & 3) * 2, roundSigned(z * 32767f));
+            putShort(data, o + (qc & 3) * 2, (int) (w * 32767f + 0.5f));
+        }
+    }
+
+    private static void decodeFilterExp(byte[] data, int offset, int count){
+        for (int i = 0; i < count; i++) {
+            int o = offset + i * 4;
+            int v = (data[o] & 0xFF) | (data[o + 1] & 0xFF) << 8 | (data[o + 2] & 0xFF) << 16 | data[o + 3] << 24;
+            // 24 bit signed mantissa, 8 bit signed exponent
+            int m = (v << 8) >> 8;
+            int e = v >> 24;
+            float f = Float.intBitsToFloat((e + 127) << 23) * m;
+            int bits = Float.floatToRawIntBits(f);
+            data[o] = (byte) bits;
+            data[o + 1] = (byte) (bits >>> 8);
+            data[o + 2] = (byte) (bits >>> 16);
+            data[o + 3] = (byte) (bits >>> 24);
+        }
+    }
+
+    private static int roundSigned(float v){
+        return (int) (v + (v >= 0f ? 0.5f : -0.5f));
+    }
+
+    private static short getShort(byte[] data, int o){
+        return (short) ((data[o] & 0xFF) | data[o + 1] << 8);
+    }
+
+    private static void putShort(byte[] data, int o, int v){
+        data[o] = (byte) v;
+        data[o + 1] = (byte) (v >>> 8);
+    }
+
+    private static GLTFException truncated(){
+        return new GLTFException("meshopt data is truncated");
+    }
+}
@@ -0,0 +1,99 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * The connectivity of an attribute whose values are split along seams,
+ * such as texture coordinates: edges marked as seams have no opposite
+ * corner, and each vertex of the base table is split into one attribute
+ * vertex per fan of corners between seams.
+ */
+class DracoAttributeCornerTable extends DracoCornerTable {
+    private final DracoCornerTable base;
+    private final boolean[] isEdgeOnSeam;
+    private final boolean[] isVertexOnSeam;
+    private final int[] attributeCornerToVertex;
+
+    DracoAttributeCornerTable(DracoCornerTable base) {
+        super(0, base.getNumVertices());
+        this.base = base;
+        this.isEdgeOnSeam = new boolean[base.getNumCorners()];
+        this.isVertexOnSeam = new boolean[base.getNumVertices()];
+        this.attributeCornerToVertex = new int[base.getNumCorners()];
+        Arrays.fill(this.attributeCornerToVertex, -1);
+    }
+
+    void addSeamEdge(int c){
+        this.isEdgeOnSeam[c] = true;
+        this.isVertexOnSeam[this.base.vertex(next(c))] = true;
+        this.isVertexOnSeam[this.base.vertex(previous(c))] = true;
+        int oppCorner = this.base.opposite(c);
+        if(oppCorner >= 0){
+            this.isEdgeOnSeam[oppCorner] = true;
+            this.isVertexOnSeam[this.base.vertex(next(oppCorner))] = true;
+            this.isVertexOnSeam[this.base.vertex(previous(oppCorner))] = true;
+        }
+    }
+
+    /**
+     * splits the vertices of the base table along the seams.
+     */
+    void recomputeVertices() throws GLTFException {
+        this.numVertices = 0;
+        for (int v = 0; v < this.base.getNumVertices(); v++) {
+            int c = this.base.leftMostCorner(v);
+            if(c < 0)
+                continue;
+            int firstVertex = addNewVertex();
+            int firstC = c;
+            if(this.isVertexOnSeam[v]){
+                int actC = swingLeft(firstC);
+                while (actC >= 0) {
+                    firstC = actC;
+                    actC = swingLeft(actC);
+                    if(actC == c)
+                        throw new GLTFException("invalid Draco attribute seams");
+                }
+            }
+            this.attributeCornerToVertex[firstC] = firstVertex;
+            this.vertexCorners[firstVertex] = firstC;
+            int actC = this.base.swingRight(firstC);
+            while (actC >= 0 && actC != firstC) {
+                if(this.isEdgeOnSeam[next(actC)]){
+                    firstVertex = addNewVertex();
+                    this.vertexCorners[firstVertex] = actC;
+                }
+                this.attributeCornerToVertex[actC] = firstVertex;
+                actC = this.base.swingRight(actC);
+            }
+        }
+    }
+
+    boolean isCornerOnSeam(int c){
+        return this.isVertexOnSeam[this.base.vertex(c)];
+    }
+
+    @Override
+    int getNumFaces(){
+        return this.base.getNumFaces();
+    }
+
+    @Override
+    int getNumCorners(){
+        return this.base.getNumCorners();
+    }
+
+    @Override
+    int vertex(int c){
+        return c < 0 ? -1 : this.attributeCornerToVertex[c];
+    }
+
+    @Override
+    int opposite(int c){
+        if(c < 0 || this.isEdgeOnSeam[c])
+            return -1;
+        return this.base.opposite(c);
+    }
+}
@@ -0,0 +1,221 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.List;
+
+/**
+ * Decodes a group of attributes that share a point sequencer. Each
+ * attribute is decoded in three passes over the group: its portable
+ * (integer) values, then the parameters of its transform, then the
+ * conversion to its final values.
+ */
+class DracoAttributesDecoder {
+    private static final int GENERIC = 0;
+    private static final int INTEGER = 1;
+    private static final int QUANTIZATION = 2;
+    private static final int NORMALS = 3;
+
+    private final DracoSequencer sequencer;
+    private DracoPointAttribute[] attributes;
+    private int[] decoderTypes;
+    private float[][] quantizationMins;
+    private float[] quantizationRanges;
+    private int[] quantizationBits;
+
+    DracoAttributesDecoder(DracoSequencer sequencer) {
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * reads the descriptors of the attributes of the group and adds them
+     * to the attributes of the mesh.
+     */
+    void decodeDecoderData(DracoBuffer buffer, List<DracoPointAttribute> meshAttributes) throws GLTFException {
+        int numAttributes = buffer.readVarInt();
+        if(numAttributes == 0)
+            throw new GLTFException("invalid Draco attribute count");
+        this.attributes = new DracoPointAttribute[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            int attributeType = buffer.readU8();
+            int dataType = buffer.readU8();
+            int numComponents = buffer.readU8();
+            boolean normalized = buffer.readU8() > 0;
+            int uniqueId = buffer.readVarInt();
+            if(DracoPointAttribute.getDataTypeLength(dataType) < 0 || numComponents == 0)
+                throw new GLTFException("invalid Draco attribute descriptor");
+            this.attributes[i] = new DracoPointAttribute(attributeType, dataType, numComponents, normalized, uniqueId);
+            meshAttributes.add(this.attributes[i]);
+        }
+        this.decoderTypes = new int[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            this.decoderTypes[i] = buffer.readU8();
+            DracoPointAttribute attribute = this.attributes[i];
+            switch (this.decoderTypes[i]){
+                case GENERIC:
+                    break;
+                case INTEGER:
+                    if(attribute.isFloat())
+                        throw new GLTFException("invalid Draco integer attribute");
+                    break;
+                case QUANTIZATION:
+                    if(attribute.dataType != DracoPointAttribute.DT_FLOAT32)
+                        throw new GLTFException("invalid Draco quantized attribute");
+                    break;
+                case NORMALS:
+                    if(attribute.dataType != DracoPointAttribute.DT_FLOAT32 || attribute.numComponents != 3)
+                        throw new GLTFException("invalid Draco normal attribute");
+                    break;
+                default:
+                    throw new GLTFException("unknown Draco attribute decoder " + this.decoderTypes[i]);
+            }
+        }
+    }
+
+    void decodeAttributes(DracoBuffer buffer, DracoPointAttribute[] meshAttributes) throws GLTFException {
+        int[] pointIds = this.sequencer.generateSequence();
+        int[] pointToValue = this.sequencer.getPointToValueMap();
+        for (DracoPointAttribute attribute : this.attributes) {
+            attribute.pointToValue = pointToValue;
+            attribute.numValues = pointIds.length;
+        }
+        for (int i = 0; i < this.attributes.length; i++) {
+            if(this.decoderTypes[i] == GENERIC)
+                decodeGenericValues(buffer, this.attributes[i]);
+            else
+                decodeIntegerValues(buffer, this.attributes[i], this.decoderTypes[i], pointIds, meshAttributes);
+        }
+        this.quantizationMins = new float[this.attributes.length][];
+        this.quantizationRanges = new float[this.attributes.length];
+        this.quantizationBits = new int[this.attributes.length];
+        for (int i = 0; i < this.attributes.length; i++) {
+            if(this.decoderTypes[i] == QUANTIZATION){
+                float[] mins = new float[this.attributes[i].numComponents];
+                for (int c = 0; c < mins.length; c++) {
+                    mins[c] = buffer.readFloat();
+                }
+                this.quantizationMins[i] = mins;
+                this.quantizationRanges[i] = buffer.readFloat();
+                this.quantizationBits[i] = buffer.readU8();
+                if(this.quantizationBits[i] < 1 || this.quantizationBits[i] > 30)
+                    throw new GLTFException("invalid Draco quantization: " + this.quantizationBits[i]);
+            }else if(this.decoderTypes[i] == NORMALS){
+                this.quantizationBits[i] = buffer.readU8();
+            }
+        }
+        for (int i = 0; i < this.attributes.length; i++) {
+            transformToOriginalFormat(i);
+        }
+    }
+
+    private void decodeGenericValues(DracoBuffer buffer, DracoPointAttribute attribute) throws GLTFException {
+        int n = attribute.numValues * attribute.numComponents;
+        int length = DracoPointAttribute.getDataTypeLength(attribute.dataType);
+        if((long) n * length > buffer.remaining())
+            throw new GLTFException("Draco data is truncated");
+        if(attribute.isFloat()){
+            attribute.floatValues = new float[n];
+            for (int i = 0; i < n; i++) {
+                if(length == 4){
+                    attribute.floatValues[i] = buffer.readFloat();
+                }else{
+                    long bits = (buffer.readS32() & 0xFFFFFFFFL) | (long) buffer.readS32() << 32;
+                    attribute.floatValues[i] = (float) Double.longBitsToDouble(bits);
+                }
+            }
+        }else{
+            attribute.intValues = new int[n];
+            boolean signed = attribute.dataType == DracoPointAttribute.DT_INT8
+                || attribute.dataType == DracoPointAttribute.DT_INT16;
+            for (int i = 0; i < n; i++) {
+                int value = 0;
+                for (int b = 0; b < Math.min(length, 4); b++) {
+                    value |= buffer.readU8() << (8 * b);
+                }
+                if(length > 4)
+                    buffer.advance(length - 4);
+                if(signed)
+                    value = length == 1 ? (byte) value : (short) value;
+                attribute.intValues[i] = value;
+            }
+        }
+    }
+
+    private void decodeIntegerValues(DracoBuffer buffer,
+                                     DracoPointAttribute attribute,
+                                     int decoderType,
+                                     int[] pointIds,
+                                     DracoPointAttribute[] meshAttributes)
+        throws GLTFException
+    {
+        DracoPrediction prediction = null;
+        int method = buffer.readS8();
+        if(method != DracoPrediction.NONE){
+            int transformType = buffer.readS8();
+            prediction = DracoPrediction.create(method, transformType, this.sequencer, meshAttributes);
+        }
+        int numComponents = decoderType == NORMALS ? 2 : attribute.numComponents;
+        int numValues = pointIds.length;
+        int[] values = new int[numValues * numComponents];
+        if(buffer.readU8() > 0){
+            DracoRAns.decodeSymbols(buffer, values.length, numComponents, values);
+        }else{
+            int numBytes = buffer.readU8();
+            if(numBytes < 1 || numBytes > 4 || (long) numBytes * values.length > buffer.remaining())
+                throw new GLTFException("invalid Draco raw integer values");
+            for (int i = 0; i < values.length; i++) {
+                int value = 0;
+                for (int b = 0; b < numBytes; b++) {
+                    value |= buffer.readU8() << (8 * b);
+                }
+                values[i] = value;
+            }
+        }
+        if(values.length > 0 && (prediction == null || !prediction.areCorrectionsPositive())){
+            for (int i = 0; i < values.length; i++) {
+                int v = values[i];
+                values[i] = (v >>> 1) ^ -(v & 1);
+            }
+        }
+        if(prediction != null){
+            prediction.decodePredictionData(buffer);
+            if(numValues > 0)
+                prediction.computeOriginalValues(values, numValues, numComponents, pointIds);
+        }
+        attribute.portableValues = values;
+    }
+
+    private void transformToOriginalFormat(int i) throws GLTFException {
+        DracoPointAttribute attribute = this.attributes[i];
+        switch (this.decoderTypes[i]){
+            case INTEGER:
+                attribute.intValues = attribute.portableValues;
+                break;
+            case QUANTIZATION: {
+                int maxQuantizedValue = (1 << this.quantizationBits[i]) - 1;
+                float delta = this.quantizationRanges[i] / maxQuantizedValue;
+                float[] mins = this.quantizationMins[i];
+                int nc = attribute.numComponents;
+                int[] portable = attribute.portableValues;
+                float[] values = new float[portable.length];
+                for (int v = 0; v < portable.length; v++) {
+                    values[v] = portable[v] * delta + mins[v % nc];
+                }
+                attribute.floatValues = values;
+                break;
+            }
+            case NORMALS: {
+                DracoOctahedron octahedron = new DracoOctahedron(this.quantizationBits[i]);
+                int[] portable = attribute.portableValues;
+                float[] values = new float[attribute.numValues * 3];
+                for (int v = 0; v < attribute.numValues; v++) {
+                    octahedron.quantizedToUnitVector(portable[2 * v], portable[2 * v + 1], values, 3 * v);
+                }
+                attribute.floatValues = values;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+}
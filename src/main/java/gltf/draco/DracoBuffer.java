@@ -0,0 +1,145 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+/**
+ * A cursor over a Draco bitstream. Multi-byte values are little-endian.
+ * It also provides the bit-level reading used by the edgebreaker
+ * symbols and the tagged symbol coding, where bits are read starting
+ * from the least significant bit of each byte.
+ */
+class DracoBuffer {
+    final byte[] data;
+    int pos;
+    final int end;
+    int version;
+
+    private int bitStart = -1;
+    private long bitOffset;
+
+    DracoBuffer(byte[] data, int pos, int end) {
+        this.data = data;
+        this.pos = pos;
+        this.end = end;
+    }
+
+    /**
+     * returns an independent cursor at the same position.
+     */
+    DracoBuffer copy(){
+        DracoBuffer returnVal = new DracoBuffer(this.data, this.pos, this.end);
+        returnVal.version = this.version;
+        return returnVal;
+    }
+
+    int remaining(){
+        return this.end - this.pos;
+    }
+
+    void advance(long n) throws GLTFException {
+        if(n < 0 || n > remaining())
+            throw new GLTFException("Draco data is truncated");
+        this.pos += (int) n;
+    }
+
+    private void require(int n) throws GLTFException {
+        if(n > remaining())
+            throw new GLTFException("Draco data is truncated");
+    }
+
+    int readU8() throws GLTFException {
+        require(1);
+        return this.data[this.pos++] & 0xFF;
+    }
+
+    int readS8() throws GLTFException {
+        require(1);
+        return this.data[this.pos++];
+    }
+
+    int readU16() throws GLTFException {
+        require(2);
+        int returnVal = (this.data[this.pos] & 0xFF) | (this.data[this.pos + 1] & 0xFF) << 8;
+        this.pos += 2;
+        return returnVal;
+    }
+
+    int readS32() throws GLTFException {
+        require(4);
+        int returnVal = (this.data[this.pos] & 0xFF)
+            | (this.data[this.pos + 1] & 0xFF) << 8
+            | (this.data[this.pos + 2] & 0xFF) << 16
+            | (this.data[this.pos + 3] & 0xFF) << 24;
+        this.pos += 4;
+        return returnVal;
+    }
+
+    float readFloat() throws GLTFException {
+        return Float.intBitsToFloat(readS32());
+    }
+
+    /**
+     * reads an unsigned LEB128 varint.
+     */
+    long readVarLong() throws GLTFException {
+        long returnVal = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readU8();
+            returnVal |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return returnVal;
+        }
+        throw new GLTFException("invalid varint in Draco data");
+    }
+
+    /**
+     * reads an unsigned LEB128 varint that must fit a non-negative int.
+     */
+    int readVarInt() throws GLTFException {
+        long returnVal = readVarLong();
+        if(returnVal > Integer.MAX_VALUE)
+            throw new GLTFException("Draco value out of range: " + returnVal);
+        return (int) returnVal;
+    }
+
+    /**
+     * starts reading bits at the current position.
+     * @param decodeSize whether the bit data is prefixed by its byte size
+     * @return the prefixed size, or -1 if decodeSize is false
+     */
+    long startBitDecoding(boolean decodeSize) throws GLTFException {
+        long size = -1;
+        if(decodeSize){
+            size = readVarLong();
+            if(size > remaining())
+                throw new GLTFException("Draco data is truncated");
+        }
+        this.bitStart = this.pos;
+        this.bitOffset = 0;
+        return size;
+    }
+
+    /**
+     * stops reading bits, moving the position past the last byte read.
+     */
+    void endBitDecoding() throws GLTFException {
+        advance((this.bitOffset + 7) / 8);
+        this.bitStart = -1;
+    }
+
+    /**
+     * reads nBits bits (at most 32), least significant bit first.
+     */
+    int readBits(int nBits) throws GLTFException {
+        int returnVal = 0;
+        for (int bit = 0; bit < nBits; bit++) {
+            long byteIdx = this.bitStart + (this.bitOffset >> 3);
+            if(byteIdx >= this.end)
+                throw new GLTFException("Draco data is truncated");
+            int b = (this.data[(int) byteIdx] >> (int) (this.bitOffset & 7)) & 1;
+            returnVal |= b << bit;
+            this.bitOffset++;
+        }
+        return returnVal;
+    }
+}
@@ -0,0 +1,107 @@
+package gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * The corner table of a triangle mesh: corner c belongs to face c / 3,
+ * and for each corner the table stores its vertex and the opposite
+ * corner across the edge facing it. Missing entries are -1.
+ */
+class DracoCornerTable {
+    final int[] cornerToVertex;
+    final int[] opposite;
+    int[] vertexCorners;
+    int numVertices;
+
+    DracoCornerTable(int numFaces, int expectedVertices) {
+        this.cornerToVertex = new int[numFaces * 3];
+        this.opposite = new int[numFaces * 3];
+        Arrays.fill(this.cornerToVertex, -1);
+        Arrays.fill(this.opposite, -1);
+        this.vertexCorners = new int[Math.max(expectedVertices, 1)];
+    }
+
+    int getNumFaces(){
+        return this.cornerToVertex.length / 3;
+    }
+
+    int getNumCorners(){
+        return this.cornerToVertex.length;
+    }
+
+    int getNumVertices(){
+        return this.numVertices;
+    }
+
+    static int next(int c){
+        if(c < 0)
+            return -1;
+        return c % 3 == 2 ? c - 2 : c + 1;
+    }
+
+    static int previous(int c){
+        if(c < 0)
+            return -1;
+        return c % 3 == 0 ? c + 2 : c - 1;
+    }
+
+    int vertex(int c){
+        return c < 0 ? -1 : this.cornerToVertex[c];
+    }
+
+    int opposite(int c){
+        return c < 0 ? -1 : this.opposite[c];
+    }
+
+    int leftMostCorner(int v){
+        return this.vertexCorners[v];
+    }
+
+    int swingLeft(int c){
+        return next(opposite(next(c)));
+    }
+
+    int swingRight(int c){
+        return previous(opposite(previous(c)));
+    }
+
+    /** the corner opposite to the edge on the left of c */
+    int getLeftCorner(int c){
+        return c < 0 ? -1 : opposite(previous(c));
+    }
+
+    /** the corner opposite to the edge on the right of c */
+    int getRightCorner(int c){
+        return c < 0 ? -1 : opposite(next(c));
+    }
+
+    boolean isOnBoundary(int v){
+        int c = leftMostCorner(v);
+        return c < 0 || swingLeft(c) < 0;
+    }
+
+    int addNewVertex(){
+        if(this.numVertices == this.vertexCorners.length)
+            this.vertexCorners = Arrays.copyOf(this.vertexCorners, this.vertexCorners.length * 2);
+        this.vertexCorners[this.numVertices] = -1;
+        return this.numVertices++;
+    }
+
+    void setLeftMostCorner(int v, int c){
+        if(v >= 0)
+            this.vertexCorners[v] = c;
+    }
+
+    void mapCornerToVertex(int c, int v){
+        this.cornerToVertex[c] = v;
+    }
+
+    void setOppositeCorners(int c0, int c1){
+        this.opposite[c0] = c1;
+        this.opposite[c1] = c0;
+    }
+
+    void makeVertexIsolated(int v){
+        this.vertexCorners[v] = -1;
+    }
+}
@@ -0,0 +1,445 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the connectivity of an edgebreaker encoded mesh (standard
+ * traversal) into a corner table, then splits its vertices into points
+ * wherever one of the other attributes has a seam.
+ */
+class DracoEdgebreakerDecoder {
+    private static final int TOPOLOGY_C = 0;
+    private static final int TOPOLOGY_S = 1;
+    private static final int TOPOLOGY_L = 3;
+    private static final int TOPOLOGY_R = 5;
+    private static final int TOPOLOGY_E = 7;
+    private static final int RIGHT_FACE_EDGE = 1;
+
+    private static final int STANDARD_ENCODING = 0;
+
+    /**
+     * the connectivity data kept for each non-position attribute.
+     */
+    static class AttributeData {
+        int decoderId = -1;
+        boolean isConnectivityUsed = true;
+        final List<Integer> seamCorners = new ArrayList<>();
+        DracoAttributeCornerTable connectivity;
+        final DracoEncodingData encodingData = new DracoEncodingData();
+    }
+
+    DracoCornerTable cornerTable;
+    AttributeData[] attributeData;
+    final DracoEncodingData posEncodingData = new DracoEncodingData();
+    int posDecoderId = -1;
+    /** the point of each corner */
+    int[] faces;
+    int numPoints;
+
+    private boolean[] isVertHole;
+    private int[] splitSourceSymbols;
+    private int[] splitSymbols;
+    private int[] splitSourceEdges;
+    private int numSplits;
+
+    private DracoBuffer symbolBuffer;
+    private final DracoRAns.BitDecoder startFaceDecoder = new DracoRAns.BitDecoder();
+    private DracoRAns.BitDecoder[] seamDecoders;
+
+    void decodeConnectivity(DracoBuffer buffer) throws GLTFException {
+        int traversalType = buffer.readU8();
+        if(traversalType != STANDARD_ENCODING)
+            throw new GLTFException("unsupported Draco edgebreaker traversal " + traversalType);
+        int numEncodedVertices = buffer.readVarInt();
+        int numFaces = buffer.readVarInt();
+        int numAttributeData = buffer.readU8();
+        int numEncodedSymbols = buffer.readVarInt();
+        int numEncodedSplitSymbols = buffer.readVarInt();
+        if(numFaces < numEncodedSymbols || (long) numFaces > numEncodedSymbols + numEncodedSymbols / 3L)
+            throw new GLTFException("invalid Draco face count");
+        if(numEncodedSplitSymbols > numEncodedSymbols)
+            throw new GLTFException("invalid Draco split symbol count");
+
+        this.attributeData = new AttributeData[numAttributeData];
+        for (int i = 0; i < numAttributeData; i++) {
+            this.attributeData[i] = new AttributeData();
+        }
+        int maxVertices = numEncodedVertices + numEncodedSplitSymbols;
+        this.cornerTable = new DracoCornerTable(numFaces, maxVertices);
+        this.isVertHole = new boolean[maxVertices];
+        Arrays.fill(this.isVertHole, true);
+
+        decodeTopologySplitEvents(buffer);
+
+        // the traversal symbols, then the start faces and the attribute
+        // seams, each in its own block
+        DracoBuffer traversalBuffer = buffer.copy();
+        this.symbolBuffer = traversalBuffer.copy();
+        long traversalSize = this.symbolBuffer.startBitDecoding(true);
+        traversalBuffer.pos = this.symbolBuffer.pos;
+        traversalBuffer.advance(traversalSize);
+        this.startFaceDecoder.startDecoding(traversalBuffer);
+        this.seamDecoders = new DracoRAns.BitDecoder[numAttributeData];
+        for (int i = 0; i < numAttributeData; i++) {
+            this.seamDecoders[i] = new DracoRAns.BitDecoder();
+            this.seamDecoders[i].startDecoding(traversalBuffer);
+        }
+
+        int numConnectivityVertices = decodeSymbols(numEncodedSymbols, maxVertices);
+        buffer.pos = traversalBuffer.pos;
+
+        if(numAttributeData > 0){
+            for (int c = 0; c < this.cornerTable.getNumCorners(); c += 3) {
+                decodeAttributeSeamsOnFace(c);
+            }
+        }
+        for (AttributeData data : this.attributeData) {
+            data.connectivity = new DracoAttributeCornerTable(this.cornerTable);
+            for (int c : data.seamCorners) {
+                data.connectivity.addSeamEdge(c);
+            }
+            data.connectivity.recomputeVertices();
+        }
+        this.posEncodingData.init(this.cornerTable.getNumVertices());
+        for (AttributeData data : this.attributeData) {
+            data.encodingData.init(Math.max(data.connectivity.getNumVertices(), this.cornerTable.getNumVertices()));
+        }
+        assignPointsToCorners(numConnectivityVertices);
+    }
+
+    private void decodeTopologySplitEvents(DracoBuffer buffer) throws GLTFException {
+        this.numSplits = buffer.readVarInt();
+        this.splitSourceSymbols = new int[this.numSplits];
+        this.splitSymbols = new int[this.numSplits];
+        this.splitSourceEdges = new int[this.numSplits];
+        if(this.numSplits == 0)
+            return;
+        int lastSourceSymbol = 0;
+        for (int i = 0; i < this.numSplits; i++) {
+            this.splitSourceSymbols[i] = buffer.readVarInt() + lastSourceSymbol;
+            this.splitSymbols[i] = this.splitSourceSymbols[i] - buffer.readVarInt();
+            lastSourceSymbol = this.splitSourceSymbols[i];
+        }
+        buffer.startBitDecoding(false);
+        for (int i = 0; i < this.numSplits; i++) {
+            this.splitSourceEdges[i] = buffer.readBits(1);
+        }
+        buffer.endBitDecoding();
+    }
+
+    private int readSymbol() throws GLTFException {
+        int symbol = this.symbolBuffer.readBits(1);
+        if(symbol != TOPOLOGY_C)
+            symbol |= this.symbolBuffer.readBits(2) << 1;
+        return symbol;
+    }
+
+    /**
+     * rebuilds the faces from the symbols, which are stored in the reverse
+     * order of the encoder traversal.
+     * @return the number of vertices of the corner table
+     */
+    private int decodeSymbols(int numSymbols, int maxVertices) throws GLTFException {
+        DracoCornerTable ct = this.cornerTable;
+        DracoIntStack activeCorners = new DracoIntStack();
+        Map<Integer, Integer> splitActiveCorners = new HashMap<>();
+        List<Integer> invalidVertices = new ArrayList<>();
+        boolean removeInvalidVertices = this.attributeData.length == 0;
+        int numFaces = 0;
+        for (int symbolId = 0; symbolId < numSymbols; symbolId++) {
+            int corner = 3 * numFaces++;
+            boolean checkTopologySplit = false;
+            int symbol = readSymbol();
+            if(symbol == TOPOLOGY_C){
+                int cornerA = activeCorners.peek();
+                int vertexX = ct.vertex(DracoCornerTable.next(cornerA));
+                int cornerB = DracoCornerTable.next(ct.leftMostCorner(vertexX));
+                if(cornerB < 0 || cornerA == cornerB || ct.opposite(cornerA) >= 0 || ct.opposite(cornerB) >= 0)
+                    throw invalid();
+                ct.setOppositeCorners(cornerA, corner + 1);
+                ct.setOppositeCorners(cornerB, corner + 2);
+                int vertAPrev = ct.vertex(DracoCornerTable.previous(cornerA));
+                int vertBNext = ct.vertex(DracoCornerTable.next(cornerB));
+                if(vertexX == vertAPrev || vertexX == vertBNext)
+                    throw invalid();
+                ct.mapCornerToVertex(corner, vertexX);
+                ct.mapCornerToVertex(corner + 1, vertBNext);
+                ct.mapCornerToVertex(corner + 2, vertAPrev);
+                ct.setLeftMostCorner(vertAPrev, corner + 2);
+                this.isVertHole[vertexX] = false;
+                activeCorners.set(corner);
+            }else if(symbol == TOPOLOGY_R || symbol == TOPOLOGY_L){
+                int cornerA = activeCorners.peek();
+                if(ct.opposite(cornerA) >= 0)
+                    throw invalid();
+                int oppCorner, cornerL, cornerR;
+                if(symbol == TOPOLOGY_R){
+                    oppCorner = corner + 2;
+                    cornerL = corner + 1;
+                    cornerR = corner;
+                }else{
+                    oppCorner = corner + 1;
+                    cornerL = corner;
+                    cornerR = corner + 2;
+                }
+                ct.setOppositeCorners(oppCorner, cornerA);
+                int newVertex = ct.addNewVertex();
+                if(ct.getNumVertices() > maxVertices)
+                    throw invalid();
+                ct.mapCornerToVertex(oppCorner, newVertex);
+                ct.setLeftMostCorner(newVertex, oppCorner);
+                int vertexR = ct.vertex(DracoCornerTable.previous(cornerA));
+                ct.mapCornerToVertex(cornerR, vertexR);
+                ct.setLeftMostCorner(vertexR, cornerR);
+                ct.mapCornerToVertex(cornerL, ct.vertex(DracoCornerTable.next(cornerA)));
+                activeCorners.set(corner);
+                checkTopologySplit = true;
+            }else if(symbol == TOPOLOGY_S){
+                int cornerB = activeCorners.pop();
+                Integer splitCorner = splitActiveCorners.get(symbolId);
+                if(splitCorner != null)
+                    activeCorners.push(splitCorner);
+                int cornerA = activeCorners.peek();
+                if(cornerA == cornerB || ct.opposite(cornerA) >= 0 || ct.opposite(cornerB) >= 0)
+                    throw invalid();
+                ct.setOppositeCorners(cornerA, corner + 2);
+                ct.setOppositeCorners(cornerB, corner + 1);
+                int vertexP = ct.vertex(DracoCornerTable.previous(cornerA));
+                ct.mapCornerToVertex(corner, vertexP);
+                ct.mapCornerToVertex(corner + 1, ct.vertex(DracoCornerTable.next(cornerA)));
+                int vertBPrev = ct.vertex(DracoCornerTable.previous(cornerB));
+                ct.mapCornerToVertex(corner + 2, vertBPrev);
+                ct.setLeftMostCorner(vertBPrev, corner + 2);
+                int cornerN = DracoCornerTable.next(cornerB);
+                int vertexN = ct.vertex(cornerN);
+                ct.setLeftMostCorner(vertexP, ct.leftMostCorner(vertexN));
+                // merge vertex n into vertex p
+                int firstCorner = cornerN;
+                while (cornerN >= 0) {
+                    ct.mapCornerToVertex(cornerN, vertexP);
+                    cornerN = ct.swingLeft(cornerN);
+                    if(cornerN == firstCorner)
+                        throw invalid();
+                }
+                ct.makeVertexIsolated(vertexN);
+                if(removeInvalidVertices)
+                    invalidVertices.add(vertexN);
+                activeCorners.set(corner);
+            }else if(symbol == TOPOLOGY_E){
+                int firstVertex = ct.addNewVertex();
+                ct.mapCornerToVertex(corner, firstVertex);
+                ct.mapCornerToVertex(corner + 1, ct.addNewVertex());
+                ct.mapCornerToVertex(corner + 2, ct.addNewVertex());
+                if(ct.getNumVertices() > maxVertices)
+                    throw invalid();
+                ct.setLeftMostCorner(firstVertex, corner);
+                ct.setLeftMostCorner(firstVertex + 1, corner + 1);
+                ct.setLeftMostCorner(firstVertex + 2, corner + 2);
+                activeCorners.push(corner);
+                checkTopologySplit = true;
+            }else{
+                throw invalid();
+            }
+
+            if(checkTopologySplit){
+                int encoderSymbolId = numSymbols - symbolId - 1;
+                while (this.numSplits > 0) {
+                    int last = this.numSplits - 1;
+                    if(this.splitSourceSymbols[last] > encoderSymbolId)
+                        throw invalid();
+                    if(this.splitSourceSymbols[last] != encoderSymbolId)
+                        break;
+                    int encoderSplitSymbolId = this.splitSymbols[last];
+                    if(encoderSplitSymbolId < 0)
+                        throw invalid();
+                    int actTopCorner = activeCorners.peek();
+                    int newActiveCorner = this.splitSourceEdges[last] == RIGHT_FACE_EDGE ?
+                        DracoCornerTable.next(actTopCorner)
+                        : DracoCornerTable.previous(actTopCorner);
+                    splitActiveCorners.put(numSymbols - encoderSplitSymbolId - 1, newActiveCorner);
+                    this.numSplits--;
+                }
+            }
+        }
+        if(ct.getNumVertices() > maxVertices)
+            throw invalid();
+
+        // the start faces close the remaining open boundaries
+        while (!activeCorners.isEmpty()) {
+            int corner = activeCorners.pop();
+            if(this.startFaceDecoder.decodeNextBit()){
+                if(numFaces >= ct.getNumFaces())
+                    throw invalid();
+                int vertN = ct.vertex(DracoCornerTable.next(corner));
+                int cornerB = DracoCornerTable.next(ct.leftMostCorner(vertN));
+                int vertX = ct.vertex(DracoCornerTable.next(cornerB));
+                int cornerC = DracoCornerTable.next(ct.leftMostCorner(vertX));
+                if(cornerB < 0 || cornerC < 0 || corner == cornerB || corner == cornerC || cornerB == cornerC
+                    || ct.opposite(corner) >= 0 || ct.opposite(cornerB) >= 0 || ct.opposite(cornerC) >= 0)
+                    throw invalid();
+                int vertP = ct.vertex(DracoCornerTable.next(cornerC));
+                int newCorner = 3 * numFaces++;
+                ct.setOppositeCorners(newCorner, corner);
+                ct.setOppositeCorners(newCorner + 1, cornerB);
+                ct.setOppositeCorners(newCorner + 2, cornerC);
+                ct.mapCornerToVertex(newCorner, vertX);
+                ct.mapCornerToVertex(newCorner + 1, vertP);
+                ct.mapCornerToVertex(newCorner + 2, vertN);
+                for (int ci = 0; ci < 3; ci++) {
+                    this.isVertHole[ct.vertex(newCorner + ci)] = false;
+                }
+            }
+        }
+        if(numFaces != ct.getNumFaces())
+            throw invalid();
+
+        // move the last valid vertices into the slots of the merged ones
+        int numVertices = ct.getNumVertices();
+        for (int invalidVertex : invalidVertices) {
+            int srcVertex = numVertices - 1;
+            while (ct.leftMostCorner(srcVertex) < 0) {
+                srcVertex = --numVertices - 1;
+            }
+            if(srcVertex < invalidVertex)
+                continue;
+            DracoVertexCorners it = new DracoVertexCorners(ct, ct.leftMostCorner(srcVertex));
+            for (; !it.end(); it.next()) {
+                ct.mapCornerToVertex(it.corner(), invalidVertex);
+            }
+            ct.setLeftMostCorner(invalidVertex, ct.leftMostCorner(srcVertex));
+            ct.makeVertexIsolated(srcVertex);
+            this.isVertHole[invalidVertex] = this.isVertHole[srcVertex];
+            this.isVertHole[srcVertex] = false;
+            numVertices--;
+        }
+        return numVertices;
+    }
+
+    private void decodeAttributeSeamsOnFace(int corner){
+        DracoCornerTable ct = this.cornerTable;
+        int[] corners = {corner, DracoCornerTable.next(corner), DracoCornerTable.previous(corner)};
+        int srcFace = corner / 3;
+        for (int c : corners) {
+            int oppCorner = ct.opposite(c);
+            if(oppCorner < 0){
+                // boundary edges are always seams
+                for (AttributeData data : this.attributeData) {
+                    data.seamCorners.add(c);
+                }
+                continue;
+            }
+            if(oppCorner / 3 < srcFace)
+                continue;
+            for (int i = 0; i < this.attributeData.length; i++) {
+                if(this.seamDecoders[i].decodeNextBit())
+                    this.attributeData[i].seamCorners.add(c);
+            }
+        }
+    }
+
+    /**
+     * creates one point per fan of corners sharing a vertex and the
+     * values of all attributes.
+     */
+    private void assignPointsToCorners(int numConnectivityVertices) throws GLTFException {
+        DracoCornerTable ct = this.cornerTable;
+        this.faces = new int[ct.getNumCorners()];
+        if(this.attributeData.length == 0){
+            for (int c = 0; c < this.faces.length; c++) {
+                this.faces[c] = ct.vertex(c);
+            }
+            this.numPoints = numConnectivityVertices;
+            return;
+        }
+        int nPoints = 0;
+        for (int v = 0; v < ct.getNumVertices(); v++) {
+            int c = ct.leftMostCorner(v);
+            if(c < 0)
+                continue;
+            int firstCorner = c;
+            if(!this.isVertHole[v]){
+                for (AttributeData data : this.attributeData) {
+                    if(!data.connectivity.isCornerOnSeam(c))
+                        continue;
+                    int vertexId = data.connectivity.vertex(c);
+                    int actC = ct.swingRight(c);
+                    boolean seamFound = false;
+                    while (actC != c) {
+                        if(actC < 0)
+                            throw invalid();
+                        if(data.connectivity.vertex(actC) != vertexId){
+                            firstCorner = actC;
+                            seamFound = true;
+                            break;
+                        }
+                        actC = ct.swingRight(actC);
+                    }
+                    if(seamFound)
+                        break;
+                }
+            }
+            c = firstCorner;
+            this.faces[c] = nPoints++;
+            int prevC = c;
+            c = ct.swingRight(c);
+            while (c >= 0 && c != firstCorner) {
+                boolean attributeSeam = false;
+                for (AttributeData data : this.attributeData) {
+                    if(data.connectivity.vertex(c) != data.connectivity.vertex(prevC)){
+                        attributeSeam = true;
+                        break;
+                    }
+                }
+                this.faces[c] = attributeSeam ? nPoints++ : this.faces[prevC];
+                prevC = c;
+                c = ct.swingRight(c);
+            }
+        }
+        this.numPoints = nPoints;
+    }
+
+    /**
+     * creates the point sequencer of an attributes decoder, reading its
+     * identifier data.
+     */
+    DracoSequencer createAttributesDecoder(int decoderId, DracoBuffer buffer) throws GLTFException {
+        int attDataId = buffer.readS8();
+        int decoderType = buffer.readU8();
+        if(attDataId >= 0){
+            if(attDataId >= this.attributeData.length)
+                throw invalid();
+            this.attributeData[attDataId].decoderId = decoderId;
+        }else{
+            if(this.posDecoderId >= 0)
+                throw invalid();
+            this.posDecoderId = decoderId;
+        }
+        int traversalMethod = buffer.readU8();
+        if(traversalMethod > DracoSequencer.TRAVERSAL_PREDICTION_DEGREE)
+            throw new GLTFException("unknown Draco traversal method " + traversalMethod);
+        if(decoderType == DracoSequencer.MESH_VERTEX_ATTRIBUTE){
+            DracoEncodingData encodingData;
+            if(attDataId < 0){
+                encodingData = this.posEncodingData;
+            }else{
+                encodingData = this.attributeData[attDataId].encodingData;
+                this.attributeData[attDataId].isConnectivityUsed = false;
+            }
+            return new DracoSequencer.Traversal(this.cornerTable, this.faces, this.numPoints, encodingData, traversalMethod);
+        }
+        if(traversalMethod != DracoSequencer.TRAVERSAL_DEPTH_FIRST || attDataId < 0)
+            throw invalid();
+        AttributeData data = this.attributeData[attDataId];
+        return new DracoSequencer.Traversal(data.connectivity, this.faces, this.numPoints, data.encodingData, traversalMethod);
+    }
+
+    private static GLTFException invalid(){
+        return new GLTFException("invalid Draco edgebreaker connectivity");
+    }
+}
@@ -0,0 +1,28 @@
+package gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * The order in which the values of an attribute were encoded: the
+ * encoded value of each vertex of the traversed corner table, and the
+ * corner through which each value was first reached.
+ */
+class DracoEncodingData {
+    int[] vertexToValue = new int[0];
+    int[] valueToCorner = new int[0];
+    int numValues;
+
+    void init(int numVertices){
+        this.vertexToValue = new int[numVertices];
+        Arrays.fill(this.vertexToValue, -1);
+        this.valueToCorner = new int[Math.max(numVertices, 1)];
+        this.numValues = 0;
+    }
+
+    void addValue(int vertex, int corner){
+        if(this.numValues == this.valueToCorner.length)
+            this.valueToCorner = Arrays.copyOf(this.valueToCorner, this.numValues * 2);
+        this.valueToCorner[this.numValues] = corner;
+        this.vertexToValue[vertex] = this.numValues++;
+    }
+}
@@ -0,0 +1,45 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * A growable stack of ints, used by the connectivity decoding and the
+ * mesh traversals.
+ */
+class DracoIntStack {
+    private int[] values = new int[64];
+    private int size = 0;
+
+    void push(int v){
+        if(this.size == this.values.length)
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        this.values[this.size++] = v;
+    }
+
+    int pop() throws GLTFException {
+        if(this.size == 0)
+            throw new GLTFException("invalid Draco connectivity");
+        return this.values[--this.size];
+    }
+
+    int peek() throws GLTFException {
+        if(this.size == 0)
+            throw new GLTFException("invalid Draco connectivity");
+        return this.values[this.size - 1];
+    }
+
+    /** replaces the top of the stack */
+    void set(int v){
+        this.values[this.size - 1] = v;
+    }
+
+    void clear(){
+        this.size = 0;
+    }
+
+    boolean isEmpty(){
+        return this.size == 0;
+    }
+}
@@ -0,0 +1,139 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A decoded Draco triangle mesh: the points of its triangles and the
+ * attributes of its points.
+ */
+class DracoMesh {
+    private static final int MESH_ENCODER = 1;
+    private static final int SEQUENTIAL_ENCODING = 0;
+    private static final int EDGEBREAKER_ENCODING = 1;
+    private static final int METADATA_FLAG = 0x8000;
+
+    /** three points per triangle */
+    int[] faces;
+    int numPoints;
+    DracoPointAttribute[] attributes;
+
+    DracoPointAttribute getAttributeByUniqueId(int uniqueId){
+        for (DracoPointAttribute attribute : this.attributes) {
+            if(attribute.uniqueId == uniqueId)
+                return attribute;
+        }
+        return null;
+    }
+
+    static DracoMesh decode(byte[] data, int offset, int length) throws GLTFException {
+        DracoBuffer buffer = new DracoBuffer(data, offset, offset + length);
+        if(length < 5 || data[offset] != 'D' || data[offset + 1] != 'R' || data[offset + 2] != 'A'
+            || data[offset + 3] != 'C' || data[offset + 4] != 'O')
+            throw new GLTFException("not a Draco bitstream");
+        buffer.advance(5);
+        int major = buffer.readU8();
+        int minor = buffer.readU8();
+        if(major != 2 || minor != 2)
+            throw new GLTFException("unsupported Draco bitstream version " + major + "." + minor);
+        buffer.version = (major << 8) | minor;
+        int encoderType = buffer.readU8();
+        if(encoderType != MESH_ENCODER)
+            throw new GLTFException("Draco bitstream is not a triangle mesh");
+        int method = buffer.readU8();
+        int flags = buffer.readU16();
+        if((flags & METADATA_FLAG) != 0)
+            skipMetadata(buffer);
+
+        DracoMesh mesh = new DracoMesh();
+        DracoEdgebreakerDecoder edgebreaker = null;
+        if(method == SEQUENTIAL_ENCODING){
+            mesh.decodeSequentialConnectivity(buffer);
+        }else if(method == EDGEBREAKER_ENCODING){
+            edgebreaker = new DracoEdgebreakerDecoder();
+            edgebreaker.decodeConnectivity(buffer);
+            mesh.faces = edgebreaker.faces;
+            mesh.numPoints = edgebreaker.numPoints;
+        }else{
+            throw new GLTFException("unknown Draco encoding method " + method);
+        }
+
+        int numDecoders = buffer.readU8();
+        DracoAttributesDecoder[] decoders = new DracoAttributesDecoder[numDecoders];
+        for (int i = 0; i < numDecoders; i++) {
+            DracoSequencer sequencer = edgebreaker == null
+                ? new DracoSequencer.Linear(mesh.numPoints)
+                : edgebreaker.createAttributesDecoder(i, buffer);
+            decoders[i] = new DracoAttributesDecoder(sequencer);
+        }
+        List<DracoPointAttribute> attributes = new ArrayList<>();
+        for (DracoAttributesDecoder decoder : decoders) {
+            decoder.decodeDecoderData(buffer, attributes);
+        }
+        mesh.attributes = attributes.toArray(new DracoPointAttribute[0]);
+        for (DracoAttributesDecoder decoder : decoders) {
+            decoder.decodeAttributes(buffer, mesh.attributes);
+        }
+        return mesh;
+    }
+
+    private void decodeSequentialConnectivity(DracoBuffer buffer) throws GLTFException {
+        int numFaces = buffer.readVarInt();
+        this.numPoints = buffer.readVarInt();
+        if((long) numFaces * 3 > Integer.MAX_VALUE)
+            throw new GLTFException("invalid Draco face count");
+        this.faces = new int[numFaces * 3];
+        int connectivityMethod = buffer.readU8();
+        if(connectivityMethod == 0){
+            // delta coded indices, the sign of each delta in its lowest bit
+            int[] encoded = new int[this.faces.length];
+            if(encoded.length > 0)
+                DracoRAns.decodeSymbols(buffer, encoded.length, 1, encoded);
+            int last = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                int diff = encoded[i] >>> 1;
+                last += (encoded[i] & 1) != 0 ? -diff : diff;
+                this.faces[i] = last;
+            }
+        }else{
+            for (int i = 0; i < this.faces.length; i++) {
+                if(this.numPoints < 256)
+                    this.faces[i] = buffer.readU8();
+                else if(this.numPoints < (1 << 16))
+                    this.faces[i] = buffer.readU16();
+                else if(this.numPoints < (1 << 21))
+                    this.faces[i] = buffer.readVarInt();
+                else
+                    this.faces[i] = buffer.readS32();
+            }
+        }
+        for (int point : this.faces) {
+            if(point < 0 || point >= this.numPoints)
+                throw new GLTFException("invalid Draco point index " + point);
+        }
+    }
+
+    private static void skipMetadata(DracoBuffer buffer) throws GLTFException {
+        int numAttributeMetadata = buffer.readVarInt();
+        for (int i = 0; i < numAttributeMetadata; i++) {
+            buffer.readVarInt();
+            skipMetadataElement(buffer);
+        }
+        skipMetadataElement(buffer);
+    }
+
+    private static void skipMetadataElement(DracoBuffer buffer) throws GLTFException {
+        int numEntries = buffer.readVarInt();
+        for (int i = 0; i < numEntries; i++) {
+            buffer.advance(buffer.readU8());
+            buffer.advance(buffer.readVarInt());
+        }
+        int numSubMetadata = buffer.readVarInt();
+        for (int i = 0; i < numSubMetadata; i++) {
+            buffer.advance(buffer.readU8());
+            skipMetadataElement(buffer);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+/**
+ * The octahedral encoding of unit vectors used by Draco for normals: a
+ * vector is projected onto the octahedron |x| + |y| + |z| = 1, whose
+ * surface is unfolded onto a square of quantized (s, t) coordinates.
+ */
+class DracoOctahedron {
+    final int quantizationBits;
+    final int maxQuantizedValue;
+    final int maxValue;
+    final int centerValue;
+    private final float dequantizationScale;
+
+    DracoOctahedron(int quantizationBits) throws GLTFException {
+        if(quantizationBits < 2 || quantizationBits > 30)
+            throw new GLTFException("invalid Draco normal quantization: " + quantizationBits);
+        this.quantizationBits = quantizationBits;
+        this.maxQuantizedValue = (1 << quantizationBits) - 1;
+        this.maxValue = this.maxQuantizedValue - 1;
+        this.centerValue = this.maxValue / 2;
+        this.dequantizationScale = 2f / this.maxValue;
+    }
+
+    void quantizedToUnitVector(int s, int t, float[] out, int offset){
+        float y = s * this.dequantizationScale - 1f;
+        float z = t * this.dequantizationScale - 1f;
+        float x = 1f - Math.abs(y) - Math.abs(z);
+        float xOffset = Math.max(-x, 0);
+        y += y < 0 ? xOffset : -xOffset;
+        z += z < 0 ? xOffset : -xOffset;
+        float normSquared = x * x + y * y + z * z;
+        if(normSquared < 1e-6f){
+            out[offset] = out[offset + 1] = out[offset + 2] = 0;
+        }else{
+            float d = 1f / (float) Math.sqrt(normSquared);
+            out[offset] = x * d;
+            out[offset + 1] = y * d;
+            out[offset + 2] = z * d;
+        }
+    }
+
+    /**
+     * scales an integer vector so that its absolute components sum up to
+     * centerValue.
+     */
+    void canonicalizeIntegerVector(int[] vec){
+        long absSum = (long) Math.abs(vec[0]) + Math.abs(vec[1]) + Math.abs(vec[2]);
+        if(absSum == 0){
+            vec[0] = this.centerValue;
+        }else{
+            vec[0] = (int) ((long) vec[0] * this.centerValue / absSum);
+            vec[1] = (int) ((long) vec[1] * this.centerValue / absSum);
+            int z = this.centerValue - Math.abs(vec[0]) - Math.abs(vec[1]);
+            vec[2] = vec[2] >= 0 ? z : -z;
+        }
+    }
+
+    /**
+     * converts a canonicalized integer vector to octahedral coordinates.
+     */
+    void integerVectorToOctahedralCoords(int[] vec, int[] out){
+        int s, t;
+        if(vec[0] >= 0){
+            s = vec[1] + this.centerValue;
+            t = vec[2] + this.centerValue;
+        }else{
+            s = vec[1] < 0 ? Math.abs(vec[2]) : this.maxValue - Math.abs(vec[2]);
+            t = vec[2] < 0 ? Math.abs(vec[1]) : this.maxValue - Math.abs(vec[1]);
+        }
+        if((s == 0 && t == 0) || (s == 0 && t == this.maxValue) || (s == this.maxValue && t == 0)){
+            s = this.maxValue;
+            t = this.maxValue;
+        }else if(s == 0 && t > this.centerValue){
+            t = this.centerValue - (t - this.centerValue);
+        }else if(s == this.maxValue && t < this.centerValue){
+            t = this.centerValue + (this.centerValue - t);
+        }else if(t == this.maxValue && s < this.centerValue){
+            s = this.centerValue + (this.centerValue - s);
+        }else if(t == 0 && s > this.centerValue){
+            s = this.centerValue - (s - this.centerValue);
+        }
+        out[0] = s;
+        out[1] = t;
+    }
+}
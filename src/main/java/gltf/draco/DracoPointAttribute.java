@@ -0,0 +1,79 @@
+package gltf.draco;
+
+/**
+ * A decoded Draco attribute. Its values are shared by the points through
+ * a point to value map; integer attributes are stored in intValues,
+ * floating point ones in floatValues.
+ */
+class DracoPointAttribute {
+    static final int POSITION = 0;
+    static final int NORMAL = 1;
+
+    static final int DT_INT8 = 1;
+    static final int DT_UINT8 = 2;
+    static final int DT_INT16 = 3;
+    static final int DT_UINT16 = 4;
+    static final int DT_INT32 = 5;
+    static final int DT_UINT32 = 6;
+    static final int DT_INT64 = 7;
+    static final int DT_UINT64 = 8;
+    static final int DT_FLOAT32 = 9;
+    static final int DT_FLOAT64 = 10;
+    static final int DT_BOOL = 11;
+
+    final int attributeType;
+    final int dataType;
+    final int numComponents;
+    final boolean normalized;
+    final int uniqueId;
+
+    /** the value of each point, or null if points and values match */
+    int[] pointToValue;
+    int numValues;
+    float[] floatValues;
+    int[] intValues;
+    /**
+     * the values in the integer form they were entropy coded in, for
+     * example quantized positions. Prediction schemes of other attributes
+     * read them.
+     */
+    int[] portableValues;
+
+    DracoPointAttribute(int attributeType, int dataType, int numComponents, boolean normalized, int uniqueId) {
+        this.attributeType = attributeType;
+        this.dataType = dataType;
+        this.numComponents = numComponents;
+        this.normalized = normalized;
+        this.uniqueId = uniqueId;
+    }
+
+    int getValueIndex(int point){
+        return this.pointToValue == null ? point : this.pointToValue[point];
+    }
+
+    boolean isFloat(){
+        return this.dataType == DT_FLOAT32 || this.dataType == DT_FLOAT64;
+    }
+
+    static int getDataTypeLength(int dataType){
+        switch (dataType){
+            case DT_INT8:
+            case DT_UINT8:
+            case DT_BOOL:
+                return 1;
+            case DT_INT16:
+            case DT_UINT16:
+                return 2;
+            case DT_INT32:
+            case DT_UINT32:
+            case DT_FLOAT32:
+                return 4;
+            case DT_INT64:
+            case DT_UINT64:
+            case DT_FLOAT64:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * The prediction schemes of Draco integer attributes. Each value was
+ * encoded as a correction to a prediction made from already decoded
+ * values; decoding recomputes the predictions in the same order and
+ * applies the corrections through the scheme's transform.
+ */
+class DracoPrediction {
+    static final int NONE = -2;
+    static final int DIFFERENCE = 0;
+    static final int PARALLELOGRAM = 1;
+    static final int CONSTRAINED_MULTI_PARALLELOGRAM = 4;
+    static final int TEX_COORDS_PORTABLE = 5;
+    static final int GEOMETRIC_NORMAL = 6;
+
+    static final int TRANSFORM_WRAP = 1;
+    static final int TRANSFORM_NORMAL_OCTAHEDRON = 2;
+    static final int TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED = 3;
+
+    private static final int MAX_NUM_PARALLELOGRAMS = 4;
+
+    private final int method;
+    private final Transform transform;
+    private final DracoCornerTable table;
+    private final DracoEncodingData encodingData;
+    /** the position attribute, for the schemes that predict from positions */
+    private DracoPointAttribute position;
+
+    private boolean[][] creaseEdges;
+    private boolean[] orientations;
+    private int numOrientations;
+    private final DracoRAns.BitDecoder flipDecoder = new DracoRAns.BitDecoder();
+
+    private DracoPrediction(int method, Transform transform, DracoSequencer sequencer) {
+        this.method = method;
+        this.transform = transform;
+        this.table = sequencer.getCornerTable();
+        this.encodingData = sequencer.getEncodingData();
+    }
+
+    /**
+     * creates the scheme of an attribute, falling back to difference
+     * coding when the mesh connectivity is not available, as the
+     * reference decoder does.
+     */
+    static DracoPrediction create(int method, int transformType, DracoSequencer sequencer, DracoPointAttribute[] attributes)
+        throws GLTFException
+    {
+        Transform transform;
+        switch (transformType){
+            case TRANSFORM_WRAP:
+                transform = new WrapTransform();
+                break;
+            case TRANSFORM_NORMAL_OCTAHEDRON:
+                transform = new OctahedronTransform(false);
+                break;
+            case TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED:
+                transform = new OctahedronTransform(true);
+                break;
+            default:
+                throw new GLTFException("unsupported Draco prediction transform " + transformType);
+        }
+        boolean normalTransform = transformType != TRANSFORM_WRAP;
+        boolean hasConnectivity = sequencer.getCornerTable() != null;
+        switch (method){
+            case DIFFERENCE:
+                break;
+            case PARALLELOGRAM:
+            case CONSTRAINED_MULTI_PARALLELOGRAM:
+            case TEX_COORDS_PORTABLE:
+                if(!hasConnectivity || normalTransform)
+                    method = DIFFERENCE;
+                break;
+            case GEOMETRIC_NORMAL:
+                if(!hasConnectivity || !normalTransform)
+                    method = DIFFERENCE;
+                break;
+            default:
+                throw new GLTFException("unsupported Draco prediction scheme " + method);
+        }
+        DracoPrediction returnVal = new DracoPrediction(method, transform, sequencer);
+        if(method == TEX_COORDS_PORTABLE || method == GEOMETRIC_NORMAL){
+            for (DracoPointAttribute attribute : attributes) {
+                if(attribute != null && attribute.attributeType == DracoPointAttribute.POSITION){
+                    returnVal.position = attribute;
+                    break;
+                }
+            }
+            if(returnVal.position == null || returnVal.position.portableValues == null
+                || returnVal.position.numComponents != 3)
+                throw new GLTFException("Draco prediction needs decoded integer positions");
+        }
+        return returnVal;
+    }
+
+    boolean areCorrectionsPositive(){
+        return this.transform.areCorrectionsPositive();
+    }
+
+    void decodePredictionData(DracoBuffer buffer) throws GLTFException {
+        switch (this.method){
+            case CONSTRAINED_MULTI_PARALLELOGRAM:
+                this.creaseEdges = new boolean[MAX_NUM_PARALLELOGRAMS][];
+                for (int i = 0; i < MAX_NUM_PARALLELOGRAMS; i++) {
+                    int numFlags = buffer.readVarInt();
+                    this.creaseEdges[i] = new boolean[numFlags];
+                    if(numFlags > 0){
+                        DracoRAns.BitDecoder decoder = new DracoRAns.BitDecoder();
+                        decoder.startDecoding(buffer);
+                        for (int j = 0; j < numFlags; j++) {
+                            this.creaseEdges[i][j] = decoder.decodeNextBit();
+                        }
+                    }
+                }
+                this.transform.decodeTransformData(buffer);
+                break;
+            case TEX_COORDS_PORTABLE: {
+                int n = buffer.readS32();
+                if(n < 0)
+                    throw new GLTFException("invalid Draco texture coordinate orientations");
+                this.orientations = new boolean[n];
+                this.numOrientations = n;
+                boolean lastOrientation = true;
+                DracoRAns.BitDecoder decoder = new DracoRAns.BitDecoder();
+                decoder.startDecoding(buffer);
+                for (int i = 0; i < n; i++) {
+                    if(!decoder.decodeNextBit())
+                        lastOrientation = !lastOrientation;
+                    this.orientations[i] = lastOrientation;
+                }
+                this.transform.decodeTransformData(buffer);
+                break;
+            }
+            case GEOMETRIC_NORMAL:
+                this.transform.decodeTransformData(buffer);
+                this.flipDecoder.startDecoding(buffer);
+                break;
+            default:
+                this.transform.decodeTransformData(buffer);
+        }
+    }
+
+    /**
+     * replaces the corrections in data by the original values.
+     * @param data the corrections, numComponents per value
+     * @param numValues the number of values
+     * @param pointIds the point of each value
+     */
+    void computeOriginalValues(int[] data, int numValues, int numComponents, int[] pointIds) throws GLTFException {
+        this.transform.init(numComponents);
+        switch (this.method){
+            case PARALLELOGRAM:
+                computeParallelogram(data, numComponents);
+                break;
+            case CONSTRAINED_MULTI_PARALLELOGRAM:
+                computeMultiParallelogram(data, numComponents);
+                break;
+            case TEX_COORDS_PORTABLE:
+                computeTexCoords(data, numComponents, pointIds);
+                break;
+            case GEOMETRIC_NORMAL:
+                computeGeometricNormals(data, numComponents, pointIds);
+                break;
+            default:
+                computeDifference(data, numValues, numComponents);
+        }
+    }
+
+    private void computeDifference(int[] data, int numValues, int numComponents){
+        int[] zero = new int[numComponents];
+        this.transform.computeOriginalValue(zero, 0, data, 0);
+        for (int i = 1; i < numValues; i++) {
+            this.transform.computeOriginalValue(data, (i - 1) * numComponents, data, i * numComponents);
+        }
+    }
+
+    /**
+     * predicts the value reached through corner c as the fourth corner of
+     * the parallelogram formed with the opposite triangle.
+     * @return false if the values of the opposite triangle are not known yet
+     */
+    private boolean predictParallelogram(int valueIdx, int c, int[] data, int numComponents, int[] out, int outOffset){
+        int oc = this.table.opposite(c);
+        if(oc < 0)
+            return false;
+        int[] vertexToValue = this.encodingData.vertexToValue;
+        int opp = vertexToValue[this.table.vertex(oc)];
+        int next = vertexToValue[this.table.vertex(DracoCornerTable.next(oc))];
+        int prev = vertexToValue[this.table.vertex(DracoCornerTable.previous(oc))];
+        if(opp >= valueIdx || next >= valueIdx || prev >= valueIdx)
+            return false;
+        for (int i = 0; i < numComponents; i++) {
+            long result = (long) data[next * numComponents + i] + data[prev * numComponents + i]
+                - data[opp * numComponents + i];
+            out[outOffset + i] = (int) result;
+        }
+        return true;
+    }
+
+    private void computeParallelogram(int[] data, int numComponents){
+        int[] pred = new int[numComponents];
+        this.transform.computeOriginalValue(pred, 0, data, 0);
+        int[] valueToCorner = this.encodingData.valueToCorner;
+        for (int p = 1; p < this.encodingData.numValues; p++) {
+            if(predictParallelogram(p, valueToCorner[p], data, numComponents, pred, 0))
+                this.transform.computeOriginalValue(pred, 0, data, p * numComponents);
+            else
+                this.transform.computeOriginalValue(data, (p - 1) * numComponents, data, p * numComponents);
+        }
+    }
+
+    private void computeMultiParallelogram(int[] data, int numComponents) throws GLTFException {
+        int[] pred = new int[MAX_NUM_PARALLELOGRAMS * numComponents];
+        int[] multiPred = new int[numComponents];
+        int[] creaseEdgePos = new int[MAX_NUM_PARALLELOGRAMS];
+        this.transform.computeOriginalValue(multiPred, 0, data, 0);
+        int[] valueToCorner = this.encodingData.valueToCorner;
+        for (int p = 1; p < this.encodingData.numValues; p++) {
+            int startCorner = valueToCorner[p];
+            int corner = startCorner;
+            int numParallelograms = 0;
+            boolean firstPass = true;
+            while (corner >= 0) {
+                if(predictParallelogram(p, corner, data, numComponents, pred, numParallelograms * numComponents)){
+                    if(++numParallelograms == MAX_NUM_PARALLELOGRAMS)
+                        break;
+                }
+                corner = firstPass ? this.table.swingLeft(corner) : this.table.swingRight(corner);
+                if(corner == startCorner)
+                    break;
+                if(corner < 0 && firstPass){
+                    firstPass = false;
+                    corner = this.table.swingRight(startCorner);
+                }
+            }
+            int numUsed = 0;
+            Arrays.fill(multiPred, 0);
+            if(numParallelograms > 0){
+                int context = numParallelograms - 1;
+                for (int i = 0; i < numParallelograms; i++) {
+                    int pos = creaseEdgePos[context]++;
+                    if(pos >= this.creaseEdges[context].length)
+                        throw new GLTFException("invalid Draco crease edges");
+                    if(!this.creaseEdges[context][pos]){
+                        numUsed++;
+                        for (int j = 0; j < numComponents; j++) {
+                            multiPred[j] += pred[i * numComponents + j];
+                        }
+                    }
+                }
+            }
+            if(numUsed == 0){
+                this.transform.computeOriginalValue(data, (p - 1) * numComponents, data, p * numComponents);
+            }else{
+                for (int j = 0; j < numComponents; j++) {
+                    multiPred[j] /= numUsed;
+                }
+                this.transform.computeOriginalValue(multiPred, 0, data, p * numComponents);
+            }
+        }
+    }
+
+    private long getPositionComponent(int valueIdx, int[] pointIds, int component){
+        int point = pointIds[valueIdx];
+        return this.position.portableValues[3 * this.position.getValueIndex(point) + component];
+    }
+
+    private void computeTexCoords(int[] data, int numComponents, int[] pointIds) throws GLTFException {
+        if(numComponents != 2)
+            throw new GLTFException("Draco texture coordinate prediction needs 2 components");
+        int[] pred = new int[2];
+        int[] vertexToValue = this.encodingData.vertexToValue;
+        int[] valueToCorner = this.encodingData.valueToCorner;
+        for (int p = 0; p < this.encodingData.numValues; p++) {
+            int c = valueToCorner[p];
+            int next = vertexToValue[this.table.vertex(DracoCornerTable.next(c))];
+            int prev = vertexToValue[this.table.vertex(DracoCornerTable.previous(c))];
+            if(!predictTexCoord(p, next, prev, data, pointIds, pred)){
+                // fall back to the previous values
+                int offset = -1;
+                if(prev < p)
+                    offset = prev * 2;
+                if(next < p)
+                    offset = next * 2;
+                else if(p > 0)
+                    offset = (p - 1) * 2;
+                pred[0] = offset < 0 ? 0 : data[offset];
+                pred[1] = offset < 0 ? 0 : data[offset + 1];
+            }
+            this.transform.computeOriginalValue(pred, 0, data, p * 2);
+        }
+    }
+
+    /**
+     * predicts a texture coordinate by mapping the shape of the triangle in
+     * position space onto the texture coordinates of its two other corners.
+     */
+    private boolean predictTexCoord(int p, int next, int prev, int[] data, int[] pointIds, int[] pred)
+        throws GLTFException
+    {
+        if(prev >= p || next >= p)
+            return false;
+        long nU = data[next * 2], nV = data[next * 2 + 1];
+        long pU = data[prev * 2], pV = data[prev * 2 + 1];
+        if(pU == nU && pV == nV){
+            pred[0] = (int) pU;
+            pred[1] = (int) pV;
+            return true;
+        }
+        long[] tip = new long[3], nextPos = new long[3], prevPos = new long[3];
+        for (int i = 0; i < 3; i++) {
+            tip[i] = getPositionComponent(p, pointIds, i);
+            nextPos[i] = getPositionComponent(next, pointIds, i);
+            prevPos[i] = getPositionComponent(prev, pointIds, i);
+        }
+        long[] pn = {prevPos[0] - nextPos[0], prevPos[1] - nextPos[1], prevPos[2] - nextPos[2]};
+        long pnNorm2Squared = pn[0] * pn[0] + pn[1] * pn[1] + pn[2] * pn[2];
+        if(pnNorm2Squared == 0)
+            return false;
+        long[] cn = {tip[0] - nextPos[0], tip[1] - nextPos[1], tip[2] - nextPos[2]};
+        long cnDotPn = pn[0] * cn[0] + pn[1] * cn[1] + pn[2] * cn[2];
+        long pnU = pU - nU, pnV = pV - nV;
+        long xU = nU * pnNorm2Squared + cnDotPn * pnU;
+        long xV = nV * pnNorm2Squared + cnDotPn * pnV;
+        long cxNorm2Squared = 0;
+        for (int i = 0; i < 3; i++) {
+            long xPos = nextPos[i] + (cnDotPn * pn[i]) / pnNorm2Squared;
+            long d = tip[i] - xPos;
+            cxNorm2Squared += d * d;
+        }
+        long norm = intSqrt(cxNorm2Squared * pnNorm2Squared);
+        long cxU = pnV * norm;
+        long cxV = -pnU * norm;
+        if(this.numOrientations == 0)
+            throw new GLTFException("invalid Draco texture coordinate orientations");
+        boolean orientation = this.orientations[--this.numOrientations];
+        if(orientation){
+            pred[0] = (int) ((xU + cxU) / pnNorm2Squared);
+            pred[1] = (int) ((xV + cxV) / pnNorm2Squared);
+        }else{
+            pred[0] = (int) ((xU - cxU) / pnNorm2Squared);
+            pred[1] = (int) ((xV - cxV) / pnNorm2Squared);
+        }
+        return true;
+    }
+
+    private static long intSqrt(long number){
+        if(number == 0)
+            return 0;
+        long actNumber = number;
+        long squareRoot = 1;
+        while (Long.compareUnsigned(actNumber, 2) >= 0) {
+            squareRoot *= 2;
+            actNumber = actNumber >>> 2;
+        }
+        do {
+            squareRoot = (squareRoot + Long.divideUnsigned(number, squareRoot)) >>> 1;
+        } while (Long.compareUnsigned(squareRoot * squareRoot, number) > 0);
+        return squareRoot;
+    }
+
+    private void computeGeometricNormals(int[] data, int numComponents, int[] pointIds) throws GLTFException {
+        if(numComponents != 2)
+            throw new GLTFException("Draco normal prediction needs 2 components");
+        DracoOctahedron octahedron = ((OctahedronTransform) this.transform).octahedron;
+        int[] valueToCorner = this.encodingData.valueToCorner;
+        int[] normal3d = new int[3];
+        int[] normalOct = new int[2];
+        long[] normal = new long[3];
+        for (int p = 0; p < this.encodingData.numValues; p++) {
+            int corner = valueToCorner[p];
+            // sum of the area-weighted normals of the triangles around the vertex
+            normal[0] = normal[1] = normal[2] = 0;
+            int centerValue = valueForCorner(corner);
+            DracoVertexCorners it = new DracoVertexCorners(this.table, corner);
+            for (; !it.end(); it.next()) {
+                int nextValue = valueForCorner(DracoCornerTable.next(it.corner()));
+                int prevValue = valueForCorner(DracoCornerTable.previous(it.corner()));
+                long[] dn = new long[3], dp = new long[3];
+                for (int i = 0; i < 3; i++) {
+                    long center = getPositionComponent(centerValue, pointIds, i);
+                    dn[i] = getPositionComponent(nextValue, pointIds, i) - center;
+                    dp[i] = getPositionComponent(prevValue, pointIds, i) - center;
+                }
+                normal[0] += dn[1] * dp[2] - dn[2] * dp[1];
+                normal[1] += dn[2] * dp[0] - dn[0] * dp[2];
+                normal[2] += dn[0] * dp[1] - dn[1] * dp[0];
+            }
+            long absSum = Math.abs(normal[0]) + Math.abs(normal[1]) + Math.abs(normal[2]);
+            long upperBound = 1 << 29;
+            if(absSum > upperBound){
+                long quotient = absSum / upperBound;
+                for (int i = 0; i < 3; i++) {
+                    normal[i] /= quotient;
+                }
+            }
+            for (int i = 0; i < 3; i++) {
+                normal3d[i] = (int) normal[i];
+            }
+            octahedron.canonicalizeIntegerVector(normal3d);
+            if(this.flipDecoder.decodeNextBit()){
+                normal3d[0] = -normal3d[0];
+                normal3d[1] = -normal3d[1];
+                normal3d[2] = -normal3d[2];
+            }
+            octahedron.integerVectorToOctahedralCoords(normal3d, normalOct);
+            this.transform.computeOriginalValue(normalOct, 0, data, p * 2);
+        }
+    }
+
+    private int valueForCorner(int c){
+        return this.encodingData.vertexToValue[this.table.vertex(c)];
+    }
+
+    /**
+     * applies a correction to a predicted value.
+     */
+    abstract static class Transform {
+        void init(int numComponents){
+        }
+
+        abstract void decodeTransformData(DracoBuffer buffer) throws GLTFException;
+
+        /**
+         * computes the value at data[offset] from its correction, stored at
+         * the same place, and the prediction pred[predOffset].
+         */
+        abstract void computeOriginalValue(int[] pred, int predOffset, int[] data, int offset);
+
+        boolean areCorrectionsPositive(){
+            return false;
+        }
+    }
+
+    /**
+     * wraps the values around a known [min, max] range, which keeps the
+     * corrections small.
+     */
+    static class WrapTransform extends Transform {
+        private int numComponents;
+        private int minValue;
+        private int maxValue;
+        private int maxDif;
+
+        @Override
+        void init(int numComponents){
+            this.numComponents = numComponents;
+        }
+
+        @Override
+        void decodeTransformData(DracoBuffer buffer) throws GLTFException {
+            this.minValue = buffer.readS32();
+            this.maxValue = buffer.readS32();
+            long dif = (long) this.maxValue - this.minValue;
+            if(dif < 0 || dif >= Integer.MAX_VALUE)
+                throw new GLTFException("invalid Draco wrap transform");
+            this.maxDif = (int) (1 + dif);
+        }
+
+        @Override
+        void computeOriginalValue(int[] pred, int predOffset, int[] data, int offset){
+            for (int i = 0; i < this.numComponents; i++) {
+                int predicted = Math.max(this.minValue, Math.min(this.maxValue, pred[predOffset + i]));
+                int value = predicted + data[offset + i];
+                if(value > this.maxValue)
+                    value -= this.maxDif;
+                else if(value < this.minValue)
+                    value += this.maxDif;
+                data[offset + i] = value;
+            }
+        }
+    }
+
+    /**
+     * applies corrections to octahedral normal coordinates, folding the
+     * outer triangles of the square onto the inner diamond so that
+     * corrections stay small. The canonicalized variant also rotates the
+     * prediction into the bottom left quadrant.
+     */
+    static class OctahedronTransform extends Transform {
+        private final boolean canonicalized;
+        DracoOctahedron octahedron;
+
+        OctahedronTransform(boolean canonicalized) {
+            this.canonicalized = canonicalized;
+        }
+
+        @Override
+        void decodeTransformData(DracoBuffer buffer) throws GLTFException {
+            int maxQuantizedValue = buffer.readS32();
+            // the canonicalized transform also stores the center value,
+            // which follows from the maximum
+            if(this.canonicalized)
+                buffer.readS32();
+            if(maxQuantizedValue <= 0 || maxQuantizedValue % 2 == 0)
+                throw new GLTFException("invalid Draco octahedron transform");
+            int quantizationBits = 32 - Integer.numberOfLeadingZeros(maxQuantizedValue);
+            this.octahedron = new DracoOctahedron(quantizationBits);
+        }
+
+        @Override
+        boolean areCorrectionsPositive(){
+            return true;
+        }
+
+        @Override
+        void computeOriginalValue(int[] pred, int predOffset, int[] data, int offset){
+            int center = this.octahedron.centerValue;
+            int[] p = {pred[predOffset] - center, pred[predOffset + 1] - center};
+            boolean inDiamond = Math.abs(p[0]) + Math.abs(p[1]) <= center;
+            if(!inDiamond)
+                invertDiamond(p);
+            int[] orig;
+            if(this.canonicalized){
+                boolean inBottomLeft = (p[0] == 0 && p[1] == 0) || (p[0] < 0 && p[1] <= 0);
+                int rotationCount = getRotationCount(p);
+                if(!inBottomLeft)
+                    p = rotate(p, rotationCount);
+                orig = new int[]{modMax(p[0] + data[offset]), modMax(p[1] + data[offset + 1])};
+                if(!inBottomLeft)
+                    orig = rotate(orig, (4 - rotationCount) % 4);
+            }else{
+                orig = new int[]{modMax(p[0] + data[offset]), modMax(p[1] + data[offset + 1])};
+            }
+            if(!inDiamond)
+                invertDiamond(orig);
+            data[offset] = orig[0] + center;
+            data[offset + 1] = orig[1] + center;
+        }
+
+        private int modMax(int x){
+            if(x > this.octahedron.centerValue)
+                return x - this.octahedron.maxQuantizedValue;
+            if(x < -this.octahedron.centerValue)
+                return x + this.octahedron.maxQuantizedValue;
+            return x;
+        }
+
+        private void invertDiamond(int[] p){
+            int signS, signT;
+            if(p[0] >= 0 && p[1] >= 0){
+                signS = 1;
+                signT = 1;
+            }else if(p[0] <= 0 && p[1] <= 0){
+                signS = -1;
+                signT = -1;
+            }else{
+                signS = p[0] > 0 ? 1 : -1;
+                signT = p[1] > 0 ? 1 : -1;
+            }
+            int cornerS = signS * this.octahedron.centerValue;
+            int cornerT = signT * this.octahedron.centerValue;
+            int s = 2 * p[0] - cornerS;
+            int t = 2 * p[1] - cornerT;
+            if(signS * signT >= 0){
+                int temp = s;
+                s = -t;
+                t = -temp;
+            }else{
+                int temp = s;
+                s = t;
+                t = temp;
+            }
+            p[0] = (s + cornerS) / 2;
+            p[1] = (t + cornerT) / 2;
+        }
+
+        private static int getRotationCount(int[] p){
+            if(p[0] == 0){
+                if(p[1] == 0)
+                    return 0;
+                return p[1] > 0 ? 3 : 1;
+            }
+            if(p[0] > 0)
+                return p[1] >= 0 ? 2 : 1;
+            return p[1] <= 0 ? 0 : 3;
+        }
+
+        private static int[] rotate(int[] p, int rotationCount){
+            switch (rotationCount){
+                case 1:
+                    return new int[]{p[1], -p[0]};
+                case 2:
+                    return new int[]{-p[0], -p[1]};
+                case 3:
+                    return new int[]{-p[1], p[0]};
+                default:
+                    return p;
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+/**
+ * The rANS entropy decoders of Draco: the multi-symbol decoder used for
+ * integer values (DecodeSymbols in the reference implementation) and the
+ * binary decoder used for flags.
+ */
+class DracoRAns {
+    private static final int TAGGED_SYMBOLS = 0;
+    private static final int RAW_SYMBOLS = 1;
+    private static final int IO_BASE = 256;
+
+    /**
+     * decodes numValues unsigned symbols into out.
+     * @param numComponents the number of components per value, used by
+     *                      the tagged scheme
+     */
+    static void decodeSymbols(DracoBuffer buffer, int numValues, int numComponents, int[] out)
+        throws GLTFException
+    {
+        if(numValues == 0)
+            return;
+        int scheme = buffer.readU8();
+        if(scheme == TAGGED_SYMBOLS){
+            SymbolDecoder tagDecoder = new SymbolDecoder(buffer, 5);
+            tagDecoder.startDecoding(buffer);
+            buffer.startBitDecoding(false);
+            for (int i = 0; i < numValues; i += numComponents) {
+                int bitLength = tagDecoder.decodeSymbol();
+                for (int j = 0; j < numComponents && i + j < numValues; j++) {
+                    out[i + j] = buffer.readBits(bitLength);
+                }
+            }
+            buffer.endBitDecoding();
+        }else if(scheme == RAW_SYMBOLS){
+            int maxBitLength = buffer.readU8();
+            if(maxBitLength < 1 || maxBitLength > 18)
+                throw new GLTFException("invalid Draco symbol bit length " + maxBitLength);
+            SymbolDecoder decoder = new SymbolDecoder(buffer, maxBitLength);
+            decoder.startDecoding(buffer);
+            for (int i = 0; i < numValues; i++) {
+                out[i] = decoder.decodeSymbol();
+            }
+        }else{
+            throw new GLTFException("unknown Draco symbol coding " + scheme);
+        }
+    }
+
+    /**
+     * reads the rANS state stored at the end of an encoded block.
+     * @return {state, bufOffset}
+     */
+    private static int[] readInitialState(byte[] data, int start, int size, int lBase, boolean allowFourBytes)
+        throws GLTFException
+    {
+        if(size < 1)
+            throw new GLTFException("empty Draco rANS block");
+        int last = data[start + size - 1] & 0xFF;
+        int x = last >> 6;
+        int state, offset;
+        if(x == 0){
+            offset = size - 1;
+            state = last & 0x3F;
+        }else if(x == 1 && size >= 2){
+            offset = size - 2;
+            state = readLE(data, start + offset, 2) & 0x3FFF;
+        }else if(x == 2 && size >= 3){
+            offset = size - 3;
+            state = readLE(data, start + offset, 3) & 0x3FFFFF;
+        }else if(x == 3 && allowFourBytes && size >= 4){
+            offset = size - 4;
+            state = readLE(data, start + offset, 4) & 0x3FFFFFFF;
+        }else{
+            throw new GLTFException("invalid Draco rANS block");
+        }
+        state += lBase;
+        if((long) state >= (long) lBase * IO_BASE)
+            throw new GLTFException("invalid Draco rANS state");
+        return new int[]{state, offset};
+    }
+
+    private static int readLE(byte[] data, int off, int n){
+        int returnVal = 0;
+        for (int i = 0; i < n; i++) {
+            returnVal |= (data[off + i] & 0xFF) << (8 * i);
+        }
+        return returnVal;
+    }
+
+    /**
+     * the multi-symbol rANS decoder, with its probability table.
+     */
+    static class SymbolDecoder {
+        private final int precision;
+        private final int lBase;
+        private final int[] probs;
+        private final int[] cumProbs;
+        private final int[] lookup;
+        private byte[] data;
+        private int start;
+        private int offset;
+        private int state;
+
+        SymbolDecoder(DracoBuffer buffer, int uniqueSymbolsBitLength) throws GLTFException {
+            int precisionBits = Math.max(12, Math.min(20, (3 * uniqueSymbolsBitLength) / 2));
+            this.precision = 1 << precisionBits;
+            this.lBase = this.precision * 4;
+            int numSymbols = buffer.readVarInt();
+            if(numSymbols == 0)
+                throw new GLTFException("empty Draco symbol table");
+            this.probs = new int[numSymbols];
+            for (int i = 0; i < numSymbols; i++) {
+                int probData = buffer.readU8();
+                int token = probData & 3;
+                if(token == 3){
+                    int zeros = probData >> 2;
+                    if(i + zeros >= numSymbols)
+                        throw new GLTFException("invalid Draco symbol table");
+                    i += zeros;
+                }else{
+                    int prob = probData >> 2;
+                    for (int b = 0; b < token; b++) {
+                        prob |= buffer.readU8() << (8 * (b + 1) - 2);
+                    }
+                    this.probs[i] = prob;
+                }
+            }
+            this.cumProbs = new int[numSymbols];
+            this.lookup = new int[this.precision];
+            int cumProb = 0;
+            for (int i = 0; i < numSymbols; i++) {
+                this.cumProbs[i] = cumProb;
+                if(this.probs[i] > this.precision - cumProb)
+                    throw new GLTFException("invalid Draco symbol probabilities");
+                for (int j = cumProb; j < cumProb + this.probs[i]; j++) {
+                    this.lookup[j] = i;
+                }
+                cumProb += this.probs[i];
+            }
+            if(cumProb != this.precision)
+                throw new GLTFException("invalid Draco symbol probabilities");
+        }
+
+        void startDecoding(DracoBuffer buffer) throws GLTFException {
+            long size = buffer.readVarLong();
+            if(size > buffer.remaining())
+                throw new GLTFException("Draco data is truncated");
+            this.data = buffer.data;
+            this.start = buffer.pos;
+            int[] init = readInitialState(buffer.data, buffer.pos, (int) size, this.lBase, true);
+            this.state = init[0];
+            this.offset = init[1];
+            buffer.advance(size);
+        }
+
+        int decodeSymbol(){
+            while (this.state < this.lBase && this.offset > 0) {
+                this.state = this.state * IO_BASE + (this.data[this.start + --this.offset] & 0xFF);
+            }
+            int quot = this.state / this.precision;
+            int rem = this.state % this.precision;
+            int symbol = this.lookup[rem];
+            this.state = quot * this.probs[symbol] + rem - this.cumProbs[symbol];
+            return symbol;
+        }
+    }
+
+    /**
+     * the binary rANS decoder, with a fixed probability of zero per block.
+     */
+    static class BitDecoder {
+        private static final int L_BASE = 4096;
+        private int probZero;
+        private byte[] data;
+        private int start;
+        private int offset;
+        private int state;
+
+        void startDecoding(DracoBuffer buffer) throws GLTFException {
+            this.probZero = buffer.readU8();
+            long size = buffer.readVarLong();
+            if(size > buffer.remaining())
+                throw new GLTFException("Draco data is truncated");
+            this.data = buffer.data;
+            this.start = buffer.pos;
+            int[] init = readInitialState(buffer.data, buffer.pos, (int) size, L_BASE, false);
+            this.state = init[0];
+            this.offset = init[1];
+            buffer.advance(size);
+        }
+
+        boolean decodeNextBit(){
+            int p = 256 - this.probZero;
+            if(this.state < L_BASE && this.offset > 0){
+                this.state = this.state * IO_BASE + (this.data[this.start + --this.offset] & 0xFF);
+            }
+            int quot = this.state >>> 8;
+            int rem = this.state & 0xFF;
+            int xn = quot * p;
+            boolean returnVal = rem < p;
+            if(returnVal)
+                this.state = xn + rem;
+            else
+                this.state = this.state - xn - p;
+            return returnVal;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package gltf.draco;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * Generates the order in which the points of an attributes decoder were
+ * encoded, and maps each point to its decoded attribute value.
+ */
+abstract class DracoSequencer {
+    static final int MESH_VERTEX_ATTRIBUTE = 0;
+    static final int TRAVERSAL_DEPTH_FIRST = 0;
+    static final int TRAVERSAL_PREDICTION_DEGREE = 1;
+
+    /**
+     * @return the point of each encoded value, in encoding order
+     */
+    abstract int[] generateSequence() throws GLTFException;
+
+    /**
+     * @return the value index of each point, or null for the identity
+     */
+    abstract int[] getPointToValueMap() throws GLTFException;
+
+    /**
+     * the connectivity used by mesh prediction schemes, or null if the
+     * values were not encoded along the mesh connectivity.
+     */
+    DracoCornerTable getCornerTable(){
+        return null;
+    }
+
+    DracoEncodingData getEncodingData(){
+        return null;
+    }
+
+    /**
+     * the sequencer of point clouds and sequentially encoded meshes:
+     * values are stored in point order.
+     */
+    static class Linear extends DracoSequencer {
+        private final int numPoints;
+
+        Linear(int numPoints) {
+            this.numPoints = numPoints;
+        }
+
+        @Override
+        int[] generateSequence(){
+            int[] returnVal = new int[this.numPoints];
+            for (int i = 0; i < this.numPoints; i++) {
+                returnVal[i] = i;
+            }
+            return returnVal;
+        }
+
+        @Override
+        int[] getPointToValueMap(){
+            return null;
+        }
+    }
+
+    /**
+     * the sequencer of edgebreaker meshes: values are stored in the order
+     * their vertices are reached by a traversal of the corner table,
+     * depth-first or by highest prediction degree.
+     */
+    static class Traversal extends DracoSequencer {
+        private static final int MAX_PRIORITY = 3;
+
+        private final DracoCornerTable table;
+        private final int[] faces;
+        private final DracoEncodingData encodingData;
+        private final int method;
+        private final int numMeshPoints;
+
+        private boolean[] visitedFaces;
+        private boolean[] visitedVertices;
+        private int[] points;
+        private int numPoints;
+
+        Traversal(DracoCornerTable table, int[] faces, int numMeshPoints, DracoEncodingData encodingData, int method) {
+            this.table = table;
+            this.faces = faces;
+            this.numMeshPoints = numMeshPoints;
+            this.encodingData = encodingData;
+            this.method = method;
+        }
+
+        @Override
+        DracoCornerTable getCornerTable(){
+            return this.table;
+        }
+
+        @Override
+        DracoEncodingData getEncodingData(){
+            return this.encodingData;
+        }
+
+        @Override
+        int[] generateSequence() throws GLTFException {
+            this.visitedFaces = new boolean[this.table.getNumFaces()];
+            this.visitedVertices = new boolean[this.table.getNumVertices()];
+            this.points = new int[Math.max(this.table.getNumVertices(), 1)];
+            this.numPoints = 0;
+            if(this.method == TRAVERSAL_PREDICTION_DEGREE){
+                int[] predictionDegree = new int[this.table.getNumVertices()];
+                DracoIntStack[] stacks = {new DracoIntStack(), new DracoIntStack(), new DracoIntStack()};
+                for (int f = 0; f < this.table.getNumFaces(); f++) {
+                    traversePredictionDegree(3 * f, predictionDegree, stacks);
+                }
+            }else{
+                DracoIntStack stack = new DracoIntStack();
+                for (int f = 0; f < this.table.getNumFaces(); f++) {
+                    traverseDepthFirst(3 * f, stack);
+                }
+            }
+            return Arrays.copyOf(this.points, this.numPoints);
+        }
+
+        @Override
+        int[] getPointToValueMap() throws GLTFException {
+            int[] returnVal = new int[this.numMeshPoints];
+            for (int c = 0; c < this.faces.length; c++) {
+                int vertex = this.table.vertex(c);
+                if(vertex < 0)
+                    throw new GLTFException("invalid Draco attribute connectivity");
+                returnVal[this.faces[c]] = this.encodingData.vertexToValue[vertex];
+            }
+            return returnVal;
+        }
+
+        private boolean isFaceVisited(int corner){
+            return corner < 0 || this.visitedFaces[corner / 3];
+        }
+
+        private void visitVertex(int vertex, int corner){
+            if(this.visitedVertices[vertex])
+                return;
+            this.visitedVertices[vertex] = true;
+            if(this.numPoints == this.points.length)
+                this.points = Arrays.copyOf(this.points, this.numPoints * 2);
+            this.points[this.numPoints++] = this.faces[corner];
+            this.encodingData.addValue(vertex, corner);
+        }
+
+        private void traverseDepthFirst(int corner, DracoIntStack stack) throws GLTFException {
+            if(isFaceVisited(corner))
+                return;
+            int nextVertex = this.table.vertex(DracoCornerTable.next(corner));
+            int prevVertex = this.table.vertex(DracoCornerTable.previous(corner));
+            if(nextVertex < 0 || prevVertex < 0)
+                throw new GLTFException("invalid Draco attribute connectivity");
+            visitVertex(nextVertex, DracoCornerTable.next(corner));
+            visitVertex(prevVertex, DracoCornerTable.previous(corner));
+            stack.clear();
+            stack.push(corner);
+            while (!stack.isEmpty()) {
+                corner = stack.peek();
+                if(isFaceVisited(corner)){
+                    stack.pop();
+                    continue;
+                }
+                while (true) {
+                    this.visitedFaces[corner / 3] = true;
+                    int vertex = this.table.vertex(corner);
+                    if(vertex < 0)
+                        throw new GLTFException("invalid Draco attribute connectivity");
+                    if(!this.visitedVertices[vertex]){
+                        boolean onBoundary = this.table.isOnBoundary(vertex);
+                        visitVertex(vertex, corner);
+                        if(!onBoundary){
+                            corner = this.table.getRightCorner(corner);
+                            continue;
+                        }
+                    }
+                    int rightCorner = this.table.getRightCorner(corner);
+                    int leftCorner = this.table.getLeftCorner(corner);
+                    if(isFaceVisited(rightCorner)){
+                        if(isFaceVisited(leftCorner)){
+                            stack.pop();
+                            break;
+                        }
+                        corner = leftCorner;
+                    }else if(isFaceVisited(leftCorner)){
+                        corner = rightCorner;
+                    }else{
+                        // visit the right face first, then the left one
+                        stack.set(leftCorner);
+                        stack.push(rightCorner);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void traversePredictionDegree(int corner, int[] predictionDegree, DracoIntStack[] stacks) throws GLTFException {
+            if(isFaceVisited(corner))
+                return;
+            stacks[0].push(corner);
+            int bestPriority = 0;
+            visitVertex(this.table.vertex(DracoCornerTable.next(corner)), DracoCornerTable.next(corner));
+            visitVertex(this.table.vertex(DracoCornerTable.previous(corner)), DracoCornerTable.previous(corner));
+            visitVertex(this.table.vertex(corner), corner);
+            while (true) {
+                // pop the corner with the best priority
+                corner = -1;
+                for (int i = bestPriority; i < MAX_PRIORITY; i++) {
+                    if(!stacks[i].isEmpty()){
+                        corner = stacks[i].pop();
+                        bestPriority = i;
+                        break;
+                    }
+                }
+                if(corner < 0)
+                    break;
+                if(isFaceVisited(corner))
+                    continue;
+                while (true) {
+                    this.visitedFaces[corner / 3] = true;
+                    visitVertex(this.table.vertex(corner), corner);
+                    int rightCorner = this.table.getRightCorner(corner);
+                    int leftCorner = this.table.getLeftCorner(corner);
+                    boolean rightVisited = isFaceVisited(rightCorner);
+                    boolean leftVisited = isFaceVisited(leftCorner);
+                    if(!leftVisited){
+                        int priority = computePriority(leftCorner, predictionDegree);
+                        if(rightVisited && priority <= bestPriority){
+                            corner = leftCorner;
+                            continue;
+                        }
+                        stacks[priority].push(leftCorner);
+                        bestPriority = Math.min(bestPriority, priority);
+                    }
+                    if(!rightVisited){
+                        int priority = computePriority(rightCorner, predictionDegree);
+                        if(priority <= bestPriority){
+                            corner = rightCorner;
+                            continue;
+                        }
+                        stacks[priority].push(rightCorner);
+                        bestPriority = Math.min(bestPriority, priority);
+                    }
+                    break;
+                }
+            }
+        }
+
+        private int computePriority(int corner, int[] predictionDegree){
+            int vertex = this.table.vertex(corner);
+            if(this.visitedVertices[vertex])
+                return 0;
+            return ++predictionDegree[vertex] > 1 ? 1 : 2;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package gltf.draco;
+
+/**
+ * Iterates over the corners around a vertex: first swinging left from
+ * the start corner, then, if a boundary is reached, swinging right.
+ */
+class DracoVertexCorners {
+    private final DracoCornerTable table;
+    private final int startCorner;
+    private int corner;
+    private boolean leftTraversal = true;
+
+    DracoVertexCorners(DracoCornerTable table, int startCorner) {
+        this.table = table;
+        this.startCorner = startCorner;
+        this.corner = startCorner;
+    }
+
+    int corner(){
+        return this.corner;
+    }
+
+    boolean end(){
+        return this.corner < 0;
+    }
+
+    void next(){
+        if(this.leftTraversal){
+            this.corner = this.table.swingLeft(this.corner);
+            if(this.corner < 0){
+                this.corner = this.table.swingRight(this.startCorner);
+                this.leftTraversal = false;
+            }else if(this.corner == this.startCorner){
+                this.corner = -1;
+            }
+        }else{
+            this.corner = this.table.swingRight(this.corner);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package gltf.draco;
+
+import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFByteAccessor;
+import gltf.accessor.GLTFFloatAccessor;
+import gltf.accessor.GLTFIntAccessor;
+import gltf.accessor.GLTFShortAccessor;
+import gltf.exception.GLTFException;
+import gltf.mesh.GLTFDracoMeshCompression;
+import gltf.mesh.GLTFMesh;
+import gltf.mesh.GLTFMeshPrimitive;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes the primitives compressed with KHR_draco_mesh_compression. The
+ * decoded indices and attributes are written into the accessors of the
+ * primitive, which have no bufferView of their own, so the rest of the
+ * loader reads them like any uncompressed primitive.
+ */
+public class GLTFDracoDecoder {
+
+    /**
+     * decodes all the Draco compressed primitives of the meshes, in
+     * parallel across primitives.
+     * @param meshes the meshes
+     * @throws GLTFException if a primitive cannot be decoded
+     */
+    public static void decodeAll(GLTFMesh[] meshes) throws GLTFException {
+        List<GLTFMeshPrimitive> primitives = new ArrayList<>();
+        for (GLTFMesh mesh : meshes) {
+            if(mesh == null)
+                continue;
+            for (GLTFMeshPrimitive primitive : mesh.primitives) {
+                if(primitive != null && primitive.dracoCompression != null)
+                    primitives.add(primitive);
+            }
+        }
+        AtomicReference<GLTFException> error = new AtomicReference<>();
+        ParallelUtils.forEachChunk(primitives.size(), 1, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                try{
+                    decode(primitives.get(k));
+                }catch(GLTFException e){
+                    error.compareAndSet(null, e);
+                }
+            }
+        });
+        if(error.get() != null)
+            throw error.get();
+    }
+
+    /**
+     * decodes a Draco compressed primitive into its accessors.
+     * @param primitive the primitive
+     * @throws GLTFException if the compressed data is invalid, uses an
+     * unsupported Draco feature, or does not match the accessors
+     */
+    public static void decode(GLTFMeshPrimitive primitive) throws GLTFException {
+        GLTFDracoMeshCompression draco = primitive.dracoCompression;
+        if(draco == null)
+            return;
+        byte[] data = draco.bufferView.getBytes(0, draco.bufferView.byteLength);
+        DracoMesh mesh;
+        try{
+            mesh = DracoMesh.decode(data, 0, data.length);
+        }catch(RuntimeException e){
+            throw new GLTFException("invalid Draco data: " + e);
+        }
+
+        if(primitive.indicesAccessor == null)
+            throw new GLTFException("Draco compressed primitive has no indices accessor");
+        writeIndices(primitive.indicesAccessor, mesh.faces);
+
+        for (Map.Entry<String, Integer> entry : draco.attributes.entrySet()) {
+            GLTFAccessor accessor = primitive.attributes.getAccessor(entry.getKey());
+            if(accessor == null)
+                continue;
+            DracoPointAttribute attribute = mesh.getAttributeByUniqueId(entry.getValue());
+            if(attribute == null)
+                throw new GLTFException("missing Draco attribute " + entry.getValue() + " for " + entry.getKey());
+            writeAttribute(accessor, attribute, mesh.numPoints, entry.getKey());
+        }
+    }
+
+    private static void writeIndices(GLTFAccessor accessor, int[] faces) throws GLTFException {
+        if(accessor instanceof GLTFIntAccessor){
+            int[] out = ((GLTFIntAccessor) accessor).data;
+            if(out.length != faces.length)
+                throw indexCountMismatch(out.length, faces.length);
+            System.arraycopy(faces, 0, out, 0, faces.length);
+        }else if(accessor instanceof GLTFShortAccessor){
+            short[] out = ((GLTFShortAccessor) accessor).data;
+            if(out.length != faces.length)
+                throw indexCountMismatch(out.length, faces.length);
+            for (int i = 0; i < faces.length; i++) {
+                out[i] = (short) faces[i];
+            }
+        }else if(accessor instanceof GLTFByteAccessor){
+            byte[] out = ((GLTFByteAccessor) accessor).data;
+            if(out.length != faces.length)
+                throw indexCountMismatch(out.length, faces.length);
+            for (int i = 0; i < faces.length; i++) {
+                out[i] = (byte) faces[i];
+            }
+        }else{
+            throw new GLTFException("unsupported indices accessor for Draco data");
+        }
+    }
+
+    private static GLTFException indexCountMismatch(int expected, int actual){
+        return new GLTFException("Draco index count mismatch: expected " + expected + ", decoded " + actual);
+    }
+
+    private static void writeAttribute(GLTFAccessor accessor,
+                                       DracoPointAttribute attribute,
+                                       int numPoints,
+                                       String name)
+        throws GLTFException
+    {
+        int nc = attribute.numComponents;
+        int length;
+        if(accessor instanceof GLTFFloatAccessor)
+            length = ((GLTFFloatAccessor) accessor).data.length;
+        else if(accessor instanceof GLTFShortAccessor)
+            length = ((GLTFShortAccessor) accessor).data.length;
+        else if(accessor instanceof GLTFIntAccessor)
+            length = ((GLTFIntAccessor) accessor).data.length;
+        else if(accessor instanceof GLTFByteAccessor)
+            length = ((GLTFByteAccessor) accessor).data.length;
+        else
+            throw new GLTFException("unsupported accessor for Draco attribute " + name);
+        if(length != numPoints * nc)
+            throw new GLTFException("Draco attribute " + name + " size mismatch: expected "
+                + length + " values, decoded " + numPoints * nc);
+
+        if(accessor instanceof GLTFFloatAccessor){
+            float[] out = ((GLTFFloatAccessor) accessor).data;
+            float scale = attribute.normalized ? 1f / getNormalizationDivisor(attribute.dataType) : 1f;
+            for (int p = 0; p < numPoints; p++) {
+                int v = attribute.getValueIndex(p) * nc;
+                for (int c = 0; c < nc; c++) {
+                    out[p * nc + c] = attribute.floatValues != null ?
+                        attribute.floatValues[v + c]
+                        : attribute.intValues[v + c] * scale;
+                }
+            }
+        }else{
+            if(attribute.intValues == null)
+                throw new GLTFException("Draco attribute " + name + " is not an integer attribute");
+            short[] outShorts = accessor instanceof GLTFShortAccessor ? ((GLTFShortAccessor) accessor).data : null;
+            int[] outInts = accessor instanceof GLTFIntAccessor ? ((GLTFIntAccessor) accessor).data : null;
+            byte[] outBytes = accessor instanceof GLTFByteAccessor ? ((GLTFByteAccessor) accessor).data : null;
+            for (int p = 0; p < numPoints; p++) {
+                int v = attribute.getValueIndex(p) * nc;
+                for (int c = 0; c < nc; c++) {
+                    int value = attribute.intValues[v + c];
+                    if(outShorts != null)
+                        outShorts[p * nc + c] = (short) value;
+                    else if(outBytes != null)
+                        outBytes[p * nc + c] = (byte) value;
+                    else
+                        outInts[p * nc + c] = value;
+                }
+            }
+        }
+    }
+
+    private static float getNormalizationDivisor(int dataType){
+        switch (dataType){
+            case DracoPointAttribute.DT_INT8:
+                return 127f;
+            case DracoPointAttribute.DT_UINT8:
+                return 255f;
+            case DracoPointAttribute.DT_INT16:
+                return 32767f;
+            case DracoPointAttribute.DT_UINT16:
+                return 65535f;
+            default:
+                return 1f;
+        }
+    }
+}
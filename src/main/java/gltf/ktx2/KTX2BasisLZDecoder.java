@@ -0,0 +1,518 @@
+package gltf.ktx2;
+
+import gltf.exception.GLTFException;
+
+import java.util.Arrays;
+
+/**
+ * A transcoder of the BasisLZ supercompressed ETC1S images of KTX2
+ * textures into RGBA8 pixels. The endpoint and selector codebooks and
+ * the Huffman tables of the slices are decoded once, from the global
+ * data of the texture. A slice then codes, block by block, the index of
+ * an endpoint (a 5-bit base color and an intensity table) and of a
+ * selector (a 2-bit index per pixel), predicted from the neighbouring
+ * blocks and from a history of the recent selectors. The alpha of a
+ * texture with an alpha slice is the green channel of that slice.
+ * <p>
+ * Video textures, whose P-frames reference the previous image, are not
+ * supported, nor are the global selector codebooks of old encoders.
+ */
+class KTX2BasisLZDecoder {
+    private static final int GLOBAL_HEADER_LENGTH = 20;
+    private static final int IMAGE_DESC_LENGTH = 20;
+    private static final int IMAGE_FLAG_P_FRAME = 0x02;
+
+    private static final int MAX_SYMBOLS_LOG = 14;
+    private static final int MAX_CODE_SIZE = 16;
+    private static final int SMALL_ZERO_RUN_CODE = 17;
+    private static final int LARGE_ZERO_RUN_CODE = 18;
+    private static final int SMALL_REPEAT_CODE = 19;
+    private static final int LARGE_REPEAT_CODE = 20;
+    private static final int CODE_LENGTH_CODES = 21;
+    /** the order in which the code lengths of the code length codes are stored */
+    private static final int[] CODE_LENGTH_ORDER = {
+        SMALL_ZERO_RUN_CODE, LARGE_ZERO_RUN_CODE, SMALL_REPEAT_CODE, LARGE_REPEAT_CODE,
+        0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15, 16
+    };
+
+    /** the 5-bit color below which the first, then the second color delta table is used */
+    private static final int COLOR5_TABLE0_MAX = 9;
+    private static final int COLOR5_TABLE1_MAX = 21;
+
+    private static final int ENDPOINT_PRED_REPEAT_LAST_SYMBOL = 256;
+    private static final int ENDPOINT_PRED_MIN_REPEAT_COUNT = 3;
+    private static final int ENDPOINT_PRED_COUNT_VLC_BITS = 4;
+    private static final int SELECTOR_HISTORY_RLE_THRESHOLD = 3;
+    private static final int SELECTOR_HISTORY_RLE_TOTAL = 64;
+    private static final int SELECTOR_HISTORY_RLE_VLC_BITS = 7;
+
+    private static final int[][] ETC1_INTENSITIES = {
+        {-8, -2, 2, 8}, {-17, -5, 5, 17}, {-29, -9, 9, 29}, {-42, -13, 13, 42},
+        {-60, -18, 18, 60}, {-80, -24, 24, 80}, {-106, -33, 33, 106}, {-183, -47, 47, 183}
+    };
+
+    private final int imageCount;
+    private final int[] imageDescs;
+    /** the four ARGB colors of each endpoint */
+    private final int[] endpointColors;
+    /** the 2-bit selectors of each 4x4 block, pixel (x, y) at bit 2 * (x + 4 * y) */
+    private final int[] selectors;
+
+    private final HuffmanTable endpointPredModel;
+    private final HuffmanTable deltaEndpointModel;
+    private final HuffmanTable selectorModel;
+    private final HuffmanTable selectorHistoryRleModel;
+    private final int selectorHistorySize;
+
+    /**
+     * decodes the codebooks and tables of the global data of a texture.
+     * @param data the KTX2 file
+     * @param offset the offset of the supercompression global data
+     * @param length the length of the global data
+     * @param imageCount the number of images of the texture, all levels included
+     * @throws GLTFException if the global data is invalid
+     */
+    KTX2BasisLZDecoder(byte[] data, int offset, int length, int imageCount) throws GLTFException {
+        if(length < GLOBAL_HEADER_LENGTH + (long) IMAGE_DESC_LENGTH * imageCount)
+            throw new GLTFException("KTX2 BasisLZ global data is truncated");
+        int nEndpoints = u16(data, offset);
+        int nSelectors = u16(data, offset + 2);
+        long endpointsLength = u32(data, offset + 4);
+        long selectorsLength = u32(data, offset + 8);
+        long tablesLength = u32(data, offset + 12);
+        int p = offset + GLOBAL_HEADER_LENGTH;
+        this.imageCount = imageCount;
+        this.imageDescs = new int[5 * imageCount];
+        for (int i = 0; i < this.imageDescs.length; i++, p += 4) {
+            this.imageDescs[i] = (int) u32(data, p);
+        }
+        if(p - offset + endpointsLength + selectorsLength + tablesLength > length)
+            throw new GLTFException("KTX2 BasisLZ global data is truncated");
+        if(nEndpoints == 0 || nSelectors == 0)
+            throw new GLTFException("KTX2 BasisLZ codebooks are empty");
+
+        this.endpointColors = decodeEndpoints(new Bits(data, p, p + (int) endpointsLength), nEndpoints);
+        p += (int) endpointsLength;
+        this.selectors = decodeSelectors(new Bits(data, p, p + (int) selectorsLength), nSelectors);
+        p += (int) selectorsLength;
+
+        Bits tables = new Bits(data, p, p + (int) tablesLength);
+        this.endpointPredModel = tables.readHuffmanTable();
+        this.deltaEndpointModel = tables.readHuffmanTable();
+        this.selectorModel = tables.readHuffmanTable();
+        this.selectorHistoryRleModel = tables.readHuffmanTable();
+        this.selectorHistorySize = tables.read(13);
+    }
+
+    private static int u16(byte[] data, int p){
+        return (data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8;
+    }
+
+    private static long u32(byte[] data, int p){
+        return (u16(data, p) | (long) u16(data, p + 2) << 16);
+    }
+
+    private static GLTFException corrupted(){
+        return new GLTFException("corrupted KTX2 BasisLZ data");
+    }
+
+    /**
+     * decodes the endpoint codebook, delta coded from one endpoint to the
+     * next, into the four colors of each endpoint.
+     */
+    private static int[] decodeEndpoints(Bits bits, int nEndpoints) throws GLTFException {
+        HuffmanTable[] colorDeltaModels = {
+            bits.readHuffmanTable(), bits.readHuffmanTable(), bits.readHuffmanTable()
+        };
+        HuffmanTable intensityDeltaModel = bits.readHuffmanTable();
+        boolean grayscale = bits.read(1) != 0;
+        int[] prevColor = {16, 16, 16};
+        int prevIntensity = 0;
+        int[] returnVal = new int[4 * nEndpoints];
+        int[] color = new int[3];
+        for (int i = 0; i < nEndpoints; i++) {
+            prevIntensity = (prevIntensity + bits.decode(intensityDeltaModel)) & 7;
+            for (int c = 0; c < (grayscale ? 1 : 3); c++) {
+                int model = prevColor[c] <= COLOR5_TABLE0_MAX ? 0 : prevColor[c] <= COLOR5_TABLE1_MAX ? 1 : 2;
+                prevColor[c] = (prevColor[c] + bits.decode(colorDeltaModels[model])) & 31;
+                color[c] = prevColor[c];
+            }
+            if(grayscale){
+                color[1] = color[0];
+                color[2] = color[0];
+            }
+            int[] intensities = ETC1_INTENSITIES[prevIntensity];
+            for (int s = 0; s < 4; s++) {
+                int argb = 0xFF000000;
+                for (int c = 0; c < 3; c++) {
+                    int base = color[c] << 3 | color[c] >> 2;
+                    argb |= Math.max(0, Math.min(255, base + intensities[s])) << (16 - 8 * c);
+                }
+                returnVal[4 * i + s] = argb;
+            }
+        }
+        return returnVal;
+    }
+
+    /**
+     * decodes the selector codebook, stored as raw bytes or as the
+     * Huffman coded xor of each byte with the byte of the previous
+     * selector. A byte holds the four selectors of a row.
+     */
+    private static int[] decodeSelectors(Bits bits, int nSelectors) throws GLTFException {
+        boolean global = bits.read(1) != 0;
+        boolean hybrid = bits.read(1) != 0;
+        if(global || hybrid)
+            throw new GLTFException("KTX2 BasisLZ global selector codebooks are not supported");
+        boolean raw = bits.read(1) != 0;
+        HuffmanTable deltaModel = raw ? null : bits.readHuffmanTable();
+        int[] returnVal = new int[nSelectors];
+        int prev = 0;
+        for (int i = 0; i < nSelectors; i++) {
+            int selector = 0;
+            for (int row = 0; row < 4; row++) {
+                int b = raw || i == 0 ?
+                    bits.read(8)
+                    : (bits.decode(deltaModel) ^ prev >>> (8 * row)) & 0xFF;
+                selector |= b << (8 * row);
+            }
+            returnVal[i] = selector;
+            prev = selector;
+        }
+        return returnVal;
+    }
+
+    /**
+     * @return whether an image has an alpha slice
+     */
+    boolean hasAlpha(int imageIndex){
+        return imageIndex >= 0 && imageIndex < this.imageCount && this.imageDescs[5 * imageIndex + 4] != 0;
+    }
+
+    /**
+     * decodes an image, and its alpha slice if it has one.
+     * @param data the KTX2 file
+     * @param levelOffset the offset of the level of the image in data
+     * @param levelLength the length of that level
+     * @param imageIndex the index of the image among all the images of
+     *                   the texture, level 0 first
+     * @param pixels the ARGB pixels of the width x height image
+     * @throws GLTFException if the image data is invalid
+     */
+    void decodeImage(byte[] data, int levelOffset, int levelLength, int imageIndex,
+                        int width, int height, int[] pixels)
+        throws GLTFException
+    {
+        if(imageIndex < 0 || imageIndex >= this.imageCount)
+            throw new GLTFException("KTX2 BasisLZ image " + imageIndex + " does not exist");
+        int d = 5 * imageIndex;
+        if((this.imageDescs[d] & IMAGE_FLAG_P_FRAME) != 0)
+            throw new GLTFException("KTX2 BasisLZ video textures are not supported");
+        long rgbOffset = this.imageDescs[d + 1] & 0xFFFFFFFFL;
+        long rgbLength = this.imageDescs[d + 2] & 0xFFFFFFFFL;
+        long alphaOffset = this.imageDescs[d + 3] & 0xFFFFFFFFL;
+        long alphaLength = this.imageDescs[d + 4] & 0xFFFFFFFFL;
+        if(rgbLength == 0 || rgbOffset + rgbLength > levelLength || alphaOffset + alphaLength > levelLength)
+            throw new GLTFException("KTX2 BasisLZ image " + imageIndex + " is truncated");
+        decodeSlice(new Bits(data, levelOffset + (int) rgbOffset, levelOffset + (int) (rgbOffset + rgbLength)),
+            width, height, false, pixels);
+        if(alphaLength != 0)
+            decodeSlice(new Bits(data, levelOffset + (int) alphaOffset, levelOffset + (int) (alphaOffset + alphaLength)),
+                width, height, true, pixels);
+    }
+
+    /**
+     * decodes the blocks of a slice. The endpoint of a block is the one of
+     * its left, upper or upper left neighbour, or a delta from the
+     * previous block, as chosen by a symbol coding the predictions of a
+     * group of 2x2 blocks. The selector is either coded, or taken from the
+     * history of the recent selectors, possibly over a run of blocks.
+     * @param alpha whether the slice is the alpha slice: the green channel
+     *              of its colors then becomes the alpha of the pixels
+     */
+    private void decodeSlice(Bits bits, int width, int height, boolean alpha, int[] pixels)
+        throws GLTFException
+    {
+        int blocksX = (width + 3) >> 2;
+        int blocksY = (height + 3) >> 2;
+        int nEndpoints = this.endpointColors.length / 4;
+        int nSelectors = this.selectors.length;
+        int historySize = this.selectorHistorySize;
+        int rleSymbol = nSelectors + historySize;
+        int[] history = new int[historySize];
+        int historyRover = historySize / 2;
+        // the endpoints of the previous and current rows, and the
+        // prediction bits of the odd rows
+        int[] endpointRows = new int[2 * blocksX];
+        int[] predRows = new int[2 * blocksX];
+
+        int predBits = 0;
+        int prevPredSymbol = 0;
+        int predRepeatCount = 0;
+        int prevEndpoint = 0;
+        int rleCount = 0;
+        for (int by = 0; by < blocksY; by++) {
+            int row = (by & 1) * blocksX;
+            int prevRow = blocksX - row;
+            for (int bx = 0; bx < blocksX; bx++) {
+                if((bx & 1) == 0){
+                    if((by & 1) == 0){
+                        if(predRepeatCount > 0){
+                            predRepeatCount--;
+                            predBits = prevPredSymbol;
+                        }else{
+                            predBits = bits.decode(this.endpointPredModel);
+                            if(predBits == ENDPOINT_PRED_REPEAT_LAST_SYMBOL){
+                                predRepeatCount = bits.decodeVLC(ENDPOINT_PRED_COUNT_VLC_BITS)
+                                    + ENDPOINT_PRED_MIN_REPEAT_COUNT - 1;
+                                predBits = prevPredSymbol;
+                            }else{
+                                prevPredSymbol = predBits;
+                            }
+                        }
+                        predRows[prevRow + bx] = predBits >> 4;
+                    }else{
+                        predBits = predRows[row + bx];
+                    }
+                }
+                int endpoint;
+                switch (predBits & 3){
+                    case 0:     // left
+                        if(bx == 0)
+                            throw corrupted();
+                        endpoint = prevEndpoint;
+                        break;
+                    case 1:     // upper
+                        if(by == 0)
+                            throw corrupted();
+                        endpoint = endpointRows[prevRow + bx];
+                        break;
+                    case 2:     // upper left
+                        if(bx == 0 || by == 0)
+                            throw corrupted();
+                        endpoint = endpointRows[prevRow + bx - 1];
+                        break;
+                    default:
+                        endpoint = prevEndpoint + bits.decode(this.deltaEndpointModel);
+                        if(endpoint >= nEndpoints)
+                            endpoint -= nEndpoints;
+                        if(endpoint >= nEndpoints)
+                            throw corrupted();
+                }
+                predBits >>= 2;
+                endpointRows[row + bx] = endpoint;
+                prevEndpoint = endpoint;
+
+                int selectorSymbol;
+                if(rleCount > 0){
+                    rleCount--;
+                    selectorSymbol = nSelectors;
+                }else{
+                    selectorSymbol = bits.decode(this.selectorModel);
+                    if(selectorSymbol == rleSymbol){
+                        int run = bits.decode(this.selectorHistoryRleModel);
+                        rleCount = run == SELECTOR_HISTORY_RLE_TOTAL - 1 ?
+                            bits.decodeVLC(SELECTOR_HISTORY_RLE_VLC_BITS) + SELECTOR_HISTORY_RLE_THRESHOLD
+                            : run + SELECTOR_HISTORY_RLE_THRESHOLD;
+                        if(rleCount > blocksX * blocksY)
+                            throw corrupted();
+                        selectorSymbol = nSelectors;
+                        rleCount--;
+                    }
+                }
+                int selector;
+                if(selectorSymbol >= nSelectors){
+                    int h = selectorSymbol - nSelectors;
+                    if(h >= historySize)
+                        throw corrupted();
+                    selector = history[h];
+                    if(h != 0){
+                        // moves the used selector half way to the front
+                        history[h] = history[h / 2];
+                        history[h / 2] = selector;
+                    }
+                }else{
+                    selector = selectorSymbol;
+                    if(historySize > 0){
+                        history[historyRover++] = selector;
+                        if(historyRover == historySize)
+                            historyRover = historySize / 2;
+                    }
+                }
+                writeBlock(this.endpointColors, 4 * endpoint, this.selectors[selector],
+                    bx << 2, by << 2, width, height, alpha, pixels);
+            }
+        }
+    }
+
+    private static void writeBlock(int[] colors, int colorOffset, int selector,
+                                   int x0, int y0, int width, int height, boolean alpha, int[] pixels)
+    {
+        int w = Math.min(4, width - x0);
+        int h = Math.min(4, height - y0);
+        for (int y = 0; y < h; y++) {
+            int p = (y0 + y) * width + x0;
+            for (int x = 0; x < w; x++, p++) {
+                int color = colors[colorOffset + (selector >>> (2 * (x + 4 * y)) & 3)];
+                pixels[p] = alpha ?
+                    (pixels[p] & 0xFFFFFF) | (color & 0xFF00) << 16
+                    : color;
+            }
+        }
+    }
+
+    /**
+     * A canonical Huffman code, whose codes are stored bit reversed, as
+     * they are read least significant bit first.
+     */
+    private static class HuffmanTable {
+        /** the symbol and length of the code starting each maxLength bits, -1 if none */
+        private final int[] lookup;
+        private final int maxLength;
+
+        HuffmanTable(int[] codeSizes, int nSymbols) throws GLTFException {
+            int[] counts = new int[MAX_CODE_SIZE + 1];
+            int maxLength = 0;
+            for (int s = 0; s < nSymbols; s++) {
+                counts[codeSizes[s]]++;
+                maxLength = Math.max(maxLength, codeSizes[s]);
+            }
+            this.maxLength = maxLength;
+            if(maxLength == 0){
+                this.lookup = null;
+                return;
+            }
+            int[] nextCode = new int[MAX_CODE_SIZE + 1];
+            int code = 0;
+            counts[0] = 0;
+            for (int len = 1; len <= MAX_CODE_SIZE; len++) {
+                code = (code + counts[len - 1]) << 1;
+                nextCode[len] = code;
+            }
+            this.lookup = new int[1 << maxLength];
+            Arrays.fill(this.lookup, -1);
+            for (int s = 0; s < nSymbols; s++) {
+                int len = codeSizes[s];
+                if(len == 0)
+                    continue;
+                int c = nextCode[len]++;
+                if(c >= 1 << len)
+                    throw corrupted();
+                int reversed = Integer.reverse(c) >>> (32 - len);
+                for (int i = reversed; i < this.lookup.length; i += 1 << len) {
+                    this.lookup[i] = s << 5 | len;
+                }
+            }
+        }
+    }
+
+    /**
+     * reads bits from a byte range, least significant first. Bits past
+     * the end read as 0.
+     */
+    private static class Bits {
+        private final byte[] data;
+        private int pos;
+        private final int end;
+        private long buffer = 0;
+        private int count = 0;
+
+        Bits(byte[] data, int start, int end) throws GLTFException {
+            if(start < 0 || end > data.length || start > end)
+                throw new GLTFException("KTX2 BasisLZ data is truncated");
+            this.data = data;
+            this.pos = start;
+            this.end = end;
+        }
+
+        private void fill(int n){
+            while (this.count < n) {
+                long b = this.pos < this.end ? this.data[this.pos++] & 0xFF : 0;
+                this.buffer |= b << this.count;
+                this.count += 8;
+            }
+        }
+
+        int read(int n){
+            if(n == 0)
+                return 0;
+            fill(n);
+            int returnVal = (int) (this.buffer & ((1L << n) - 1));
+            this.buffer >>>= n;
+            this.count -= n;
+            return returnVal;
+        }
+
+        int decode(HuffmanTable table) throws GLTFException {
+            if(table.lookup == null)
+                throw corrupted();
+            fill(table.maxLength);
+            int entry = table.lookup[(int) (this.buffer & ((1L << table.maxLength) - 1))];
+            if(entry < 0)
+                throw corrupted();
+            int len = entry & 31;
+            this.buffer >>>= len;
+            this.count -= len;
+            return entry >>> 5;
+        }
+
+        /**
+         * reads a variable length number, in chunks of chunkBits bits each
+         * followed by a bit telling whether another chunk follows.
+         */
+        int decodeVLC(int chunkBits) throws GLTFException {
+            int returnVal = 0;
+            for (int shift = 0; ; shift += chunkBits) {
+                if(shift > 31)
+                    throw corrupted();
+                int chunk = read(chunkBits + 1);
+                returnVal |= (chunk & ((1 << chunkBits) - 1)) << shift;
+                if((chunk >> chunkBits) == 0)
+                    return returnVal;
+            }
+        }
+
+        /**
+         * reads a Huffman table: its code lengths are themselves Huffman
+         * coded, with codes for runs of zeros and repeats of the previous
+         * length.
+         */
+        HuffmanTable readHuffmanTable() throws GLTFException {
+            int nSymbols = read(MAX_SYMBOLS_LOG);
+            if(nSymbols == 0)
+                return new HuffmanTable(new int[0], 0);
+            int[] codeLengthSizes = new int[CODE_LENGTH_CODES];
+            int nCodeLengthCodes = read(5);
+            if(nCodeLengthCodes > CODE_LENGTH_CODES)
+                throw corrupted();
+            for (int i = 0; i < nCodeLengthCodes; i++) {
+                codeLengthSizes[CODE_LENGTH_ORDER[i]] = read(3);
+            }
+            HuffmanTable codeLengthTable = new HuffmanTable(codeLengthSizes, CODE_LENGTH_CODES);
+            int[] codeSizes = new int[nSymbols];
+            int cur = 0;
+            while (cur < nSymbols) {
+                int c = decode(codeLengthTable);
+                if(c <= MAX_CODE_SIZE){
+                    codeSizes[cur++] = c;
+                    continue;
+                }
+                int n;
+                if(c == SMALL_ZERO_RUN_CODE || c == LARGE_ZERO_RUN_CODE){
+                    n = c == SMALL_ZERO_RUN_CODE ? read(3) + 3 : read(7) + 11;
+                    if(cur + n > nSymbols)
+                        throw corrupted();
+                    cur += n;
+                    continue;
+                }
+                n = c == SMALL_REPEAT_CODE ? read(2) + 3 : read(7) + 7;
+                if(cur == 0 || codeSizes[cur - 1] == 0 || cur + n > nSymbols)
+                    throw corrupted();
+                for (int i = 0; i < n; i++, cur++) {
+                    codeSizes[cur] = codeSizes[cur - 1];
+                }
+            }
+            return new HuffmanTable(codeSizes, nSymbols);
+        }
+    }
+}
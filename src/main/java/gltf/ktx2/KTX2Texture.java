@@ -0,0 +1,423 @@
+package gltf.ktx2;
+
+import gltf.exception.GLTFException;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A KTX2 texture container, as referenced by KHR_texture_basisu. The
+ * header and level index are read first; a mip level is then decoded on
+ * its own, so that a texture displayed small only decompresses the level
+ * closest to its display size, never the full base level.
+ * <p>
+ * Levels may be supercompressed with Zstandard or ZLIB. The 8-bit
+ * uncompressed formats (R8, R8G8, R8G8B8, B8G8R8, R8G8B8A8 and B8G8R8A8,
+ * UNORM or SRGB) are decoded into RGBA8 images, and so are the Basis
+ * Universal formats: BasisLZ supercompressed ETC1S, by
+ * {@link KTX2BasisLZDecoder}, and UASTC, by {@link KTX2UASTCDecoder}.
+ * Other block compressed formats are recognized but not transcoded:
+ * {@link #isDecodable()} is false for them. Only the first layer, face
+ * and depth slice of a level is decoded.
+ */
+public class KTX2Texture {
+    public static final String FORMAT_NAME = "KTX2";
+    /** the length of the header and index, before the level index */
+    public static final int HEADER_LENGTH = 80;
+
+    public static final int SUPERCOMPRESSION_NONE = 0;
+    public static final int SUPERCOMPRESSION_BASISLZ = 1;
+    public static final int SUPERCOMPRESSION_ZSTD = 2;
+    public static final int SUPERCOMPRESSION_ZLIB = 3;
+
+    /** the Khronos data format color models of the Basis Universal formats */
+    public static final int COLOR_MODEL_ETC1S = 163;
+    public static final int COLOR_MODEL_UASTC = 166;
+
+    /** the UASTC channel ids of the data format descriptor with an alpha channel */
+    private static final int UASTC_CHANNEL_RGBA = 3;
+    private static final int UASTC_CHANNEL_RRRG = 5;
+
+    private static final byte[] IDENTIFIER = {
+        (byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+
+    public final int vkFormat;
+    public final int typeSize;
+    public final int width;
+    public final int height;
+    public final int depth;
+    public final int layerCount;
+    public final int faceCount;
+    /** the number of mip levels, at least 1 */
+    public final int levelCount;
+    public final int supercompressionScheme;
+    /** the color model of the data format descriptor, -1 if it was not read */
+    public final int colorModel;
+
+    private final byte[] data;
+    private final long[] levelOffsets;
+    private final long[] levelLengths;
+    private final long[] levelUncompressedLengths;
+    /** the channel id of the first sample of the data format descriptor, -1 if it was not read */
+    private final int channelId;
+    private final long globalDataOffset;
+    private final long globalDataLength;
+
+    private KTX2Texture(byte[] data, boolean headerOnly) throws GLTFException {
+        if(!isKTX2(data) || data.length < HEADER_LENGTH)
+            throw new GLTFException("not a KTX2 texture");
+        this.vkFormat = readInt(data, 12);
+        this.typeSize = readInt(data, 16);
+        this.width = readInt(data, 20);
+        // a 1D texture has a height of 0, and is read as one row
+        this.height = Math.max(1, readInt(data, 24));
+        this.depth = readInt(data, 28);
+        this.layerCount = readInt(data, 32);
+        this.faceCount = readInt(data, 36);
+        this.levelCount = Math.max(1, readInt(data, 40));
+        this.supercompressionScheme = readInt(data, 44);
+        if(this.width <= 0 || this.height <= 0 || this.levelCount > 32)
+            throw new GLTFException("invalid KTX2 header");
+        if(headerOnly){
+            this.data = null;
+            this.colorModel = -1;
+            this.levelOffsets = null;
+            this.levelLengths = null;
+            this.levelUncompressedLengths = null;
+            this.channelId = -1;
+            this.globalDataOffset = 0;
+            this.globalDataLength = 0;
+            return;
+        }
+        this.data = data;
+        int dfdOffset = readInt(data, 48);
+        int dfdLength = readInt(data, 52);
+        // the color model is the first byte after the total size and the
+        // descriptor block header
+        this.colorModel = dfdLength >= 16 && dfdOffset >= HEADER_LENGTH && (long) dfdOffset + 16 <= data.length ?
+            data[dfdOffset + 12] & 0xFF
+            : -1;
+        // the first sample follows the 24 bytes of the block header
+        this.channelId = dfdLength >= 32 && dfdOffset >= HEADER_LENGTH && (long) dfdOffset + 32 <= data.length ?
+            data[dfdOffset + 31] & 0x0F
+            : -1;
+        this.globalDataOffset = readLong(data, 64);
+        this.globalDataLength = readLong(data, 72);
+        if(this.globalDataOffset < 0 || this.globalDataLength < 0
+            || this.globalDataLength > data.length - this.globalDataOffset)
+            throw new GLTFException("KTX2 supercompression global data is truncated");
+        if(HEADER_LENGTH + 24L * this.levelCount > data.length)
+            throw new GLTFException("KTX2 level index is truncated");
+        this.levelOffsets = new long[this.levelCount];
+        this.levelLengths = new long[this.levelCount];
+        this.levelUncompressedLengths = new long[this.levelCount];
+        for (int i = 0; i < this.levelCount; i++) {
+            int p = HEADER_LENGTH + 24 * i;
+            this.levelOffsets[i] = readLong(data, p);
+            this.levelLengths[i] = readLong(data, p + 8);
+            this.levelUncompressedLengths[i] = readLong(data, p + 16);
+            if(this.levelOffsets[i] < 0 || this.levelLengths[i] < 0
+                || this.levelOffsets[i] + this.levelLengths[i] > data.length)
+                throw new GLTFException("KTX2 level " + i + " is truncated");
+        }
+    }
+
+    /**
+     * reads a KTX2 texture, its header and level index. The levels are
+     * decoded by {@link #decodeLevel(int)}.
+     * @param data the whole KTX2 file
+     * @throws GLTFException if the data is not a valid KTX2 texture
+     */
+    public static KTX2Texture read(byte[] data) throws GLTFException {
+        return new KTX2Texture(data, false);
+    }
+
+    /**
+     * reads the header of a KTX2 texture only, such as its size: the
+     * levels cannot be decoded.
+     * @param data at least the first {@link #HEADER_LENGTH} bytes of the file
+     * @throws GLTFException if the data is not a valid KTX2 header
+     */
+    public static KTX2Texture readHeader(byte[] data) throws GLTFException {
+        return new KTX2Texture(data, true);
+    }
+
+    /**
+     * @return whether the data starts with the KTX2 file identifier
+     */
+    public static boolean isKTX2(byte[] data){
+        if(data.length < IDENTIFIER.length)
+            return false;
+        for (int i = 0; i < IDENTIFIER.length; i++) {
+            if(data[i] != IDENTIFIER[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] data, int p){
+        return (data[p] & 0xFF)
+            | (data[p + 1] & 0xFF) << 8
+            | (data[p + 2] & 0xFF) << 16
+            | (data[p + 3] & 0xFF) << 24;
+    }
+
+    private static long readLong(byte[] data, int p){
+        return (readInt(data, p) & 0xFFFFFFFFL) | (long) readInt(data, p + 4) << 32;
+    }
+
+    /**
+     * returns the size of a level along a side of the base level.
+     */
+    public static int getLevelSize(int baseSize, int level){
+        return Math.max(1, baseSize >> level);
+    }
+
+    public int getLevelWidth(int level){
+        return getLevelSize(this.width, level);
+    }
+
+    public int getLevelHeight(int level){
+        return getLevelSize(this.height, level);
+    }
+
+    /**
+     * selects the smallest level whose larger side is at least
+     * maxDimension pixels, or the base level if none is.
+     * @param maxDimension the size the texture is displayed at, 0 for
+     *                     the base level
+     */
+    public static int selectLevel(int width, int height, int levelCount, int maxDimension){
+        if(maxDimension <= 0)
+            return 0;
+        int returnVal = 0;
+        for (int level = 1; level < levelCount; level++) {
+            if(Math.max(getLevelSize(width, level), getLevelSize(height, level)) < maxDimension)
+                break;
+            returnVal = level;
+        }
+        return returnVal;
+    }
+
+    public int selectLevel(int maxDimension){
+        return selectLevel(this.width, this.height, this.levelCount, maxDimension);
+    }
+
+    /**
+     * @return whether the texture is in a Basis Universal format
+     */
+    public boolean isBasisUniversal(){
+        return this.supercompressionScheme == SUPERCOMPRESSION_BASISLZ
+            || (this.vkFormat == 0 && (this.colorModel == COLOR_MODEL_ETC1S || this.colorModel == COLOR_MODEL_UASTC));
+    }
+
+    /**
+     * @return whether the texture is in the BasisLZ supercompressed ETC1S format
+     */
+    public boolean isETC1S(){
+        return this.supercompressionScheme == SUPERCOMPRESSION_BASISLZ
+            && this.vkFormat == 0
+            && this.colorModel == COLOR_MODEL_ETC1S;
+    }
+
+    /**
+     * @return whether the texture is in the UASTC format
+     */
+    public boolean isUASTC(){
+        return this.vkFormat == 0
+            && this.colorModel == COLOR_MODEL_UASTC
+            && this.supercompressionScheme != SUPERCOMPRESSION_BASISLZ;
+    }
+
+    /**
+     * @return whether the levels can be decoded by {@link #decodeLevel(int)}
+     */
+    public boolean isDecodable(){
+        if(isETC1S())
+            return true;
+        if(this.supercompressionScheme == SUPERCOMPRESSION_BASISLZ || this.supercompressionScheme > SUPERCOMPRESSION_ZLIB)
+            return false;
+        return isUASTC() || (!isBasisUniversal() && getBytesPerPixel(this.vkFormat) > 0);
+    }
+
+    /**
+     * returns the number of bytes per pixel of the supported formats.
+     * @return the size, or 0 if the format is not supported
+     */
+    private static int getBytesPerPixel(int vkFormat){
+        switch (vkFormat){
+            case 9:     // R8_UNORM
+            case 15:    // R8_SRGB
+                return 1;
+            case 16:    // R8G8_UNORM
+            case 22:    // R8G8_SRGB
+                return 2;
+            case 23:    // R8G8B8_UNORM
+            case 29:    // R8G8B8_SRGB
+            case 30:    // B8G8R8_UNORM
+            case 36:    // B8G8R8_SRGB
+                return 3;
+            case 37:    // R8G8B8A8_UNORM
+            case 43:    // R8G8B8A8_SRGB
+            case 44:    // B8G8R8A8_UNORM
+            case 50:    // B8G8R8A8_SRGB
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * returns the bytes of a level, decompressed if it is supercompressed.
+     * @throws GLTFException if the level cannot be decompressed
+     */
+    public byte[] getLevelData(int level) throws GLTFException {
+        if(this.data == null)
+            throw new GLTFException("the KTX2 levels were not read");
+        int offset = (int) this.levelOffsets[level];
+        int length = (int) this.levelLengths[level];
+        long uncompressed = this.supercompressionScheme == SUPERCOMPRESSION_NONE ?
+            length
+            : this.levelUncompressedLengths[level];
+        if(uncompressed > Integer.MAX_VALUE - 8)
+            throw new GLTFException("KTX2 level " + level + " is too large");
+        switch (this.supercompressionScheme){
+            case SUPERCOMPRESSION_NONE:
+                byte[] returnVal = new byte[length];
+                System.arraycopy(this.data, offset, returnVal, 0, length);
+                return returnVal;
+            case SUPERCOMPRESSION_ZSTD:
+                return KTX2ZstdDecoder.decompress(this.data, offset, length, (int) uncompressed);
+            case SUPERCOMPRESSION_ZLIB:
+                return inflate(offset, length, (int) uncompressed);
+            default:
+                throw new GLTFException("unsupported KTX2 supercompression scheme " + this.supercompressionScheme);
+        }
+    }
+
+    private byte[] inflate(int offset, int length, int size) throws GLTFException {
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(this.data, offset, length);
+            byte[] returnVal = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int read = inflater.inflate(returnVal, n, size - n);
+                if(read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += read;
+            }
+            if(n != size)
+                throw new GLTFException("KTX2 ZLIB data is truncated");
+            return returnVal;
+        }catch(DataFormatException e){
+            throw new GLTFException("invalid KTX2 ZLIB data: " + e.getMessage());
+        }finally{
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return whether the UASTC data has an alpha channel, true if the
+     * data format descriptor does not tell
+     */
+    private boolean hasUASTCAlpha(){
+        return this.channelId == -1 || this.channelId == UASTC_CHANNEL_RGBA || this.channelId == UASTC_CHANNEL_RRRG;
+    }
+
+    /**
+     * returns the number of images of a level: one per depth slice, face
+     * and layer.
+     */
+    private int getImageCount(int level){
+        return Math.max(1, this.layerCount) * Math.max(1, this.faceCount) * getLevelSize(Math.max(1, this.depth), level);
+    }
+
+    /**
+     * decodes the first image of a level into a TYPE_INT_ARGB image, or
+     * TYPE_INT_RGB if its format has no alpha. One and two channel
+     * formats are decoded as red, and red and green.
+     * @throws GLTFException if the texture is not decodable or its level
+     * data is invalid
+     */
+    public BufferedImage decodeLevel(int level) throws GLTFException {
+        if(!isDecodable())
+            throw new GLTFException(isBasisUniversal() ?
+                "unsupported Basis Universal KTX2 texture"
+                : "unsupported KTX2 format " + this.vkFormat);
+        if(this.data == null)
+            throw new GLTFException("the KTX2 levels were not read");
+        int w = getLevelWidth(level);
+        int h = getLevelHeight(level);
+        if(isETC1S())
+            return decodeETC1S(level, w, h);
+        if(isUASTC()){
+            BufferedImage returnVal = new BufferedImage(w, h,
+                hasUASTCAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            int[] pixels = ((DataBufferInt) returnVal.getRaster().getDataBuffer()).getData();
+            KTX2UASTCDecoder.decode(getLevelData(level), 0, w, h, pixels);
+            return returnVal;
+        }
+        int bpp = getBytesPerPixel(this.vkFormat);
+        byte[] bytes = getLevelData(level);
+        if((long) w * h * bpp > bytes.length)
+            throw new GLTFException("KTX2 level " + level + " is truncated");
+        boolean alpha = bpp == 4;
+        boolean bgr = this.vkFormat == 30 || this.vkFormat == 36 || this.vkFormat == 44 || this.vkFormat == 50;
+        BufferedImage returnVal = new BufferedImage(w, h,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) returnVal.getRaster().getDataBuffer()).getData();
+        int n = w * h;
+        for (int i = 0, p = 0; i < n; i++, p += bpp) {
+            int r, g = 0, b = 0, a = 0xFF;
+            switch (bpp){
+                case 1:
+                    r = bytes[p] & 0xFF;
+                    break;
+                case 2:
+                    r = bytes[p] & 0xFF;
+                    g = bytes[p + 1] & 0xFF;
+                    break;
+                default:
+                    r = bytes[p] & 0xFF;
+                    g = bytes[p + 1] & 0xFF;
+                    b = bytes[p + 2] & 0xFF;
+                    if(bpp == 4)
+                        a = bytes[p + 3] & 0xFF;
+                    if(bgr){
+                        int t = r;
+                        r = b;
+                        b = t;
+                    }
+            }
+            pixels[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+        return returnVal;
+    }
+
+    /**
+     * transcodes the first image of a level of an ETC1S texture. The
+     * global data holds the descriptors of the images of all the levels,
+     * level 0 first.
+     */
+    private BufferedImage decodeETC1S(int level, int w, int h) throws GLTFException {
+        int imageCount = 0;
+        int imageIndex = 0;
+        for (int l = 0; l < this.levelCount; l++) {
+            if(l == level)
+                imageIndex = imageCount;
+            imageCount += getImageCount(l);
+        }
+        KTX2BasisLZDecoder decoder = new KTX2BasisLZDecoder(this.data,
+            (int) this.globalDataOffset, (int) this.globalDataLength, imageCount);
+        BufferedImage returnVal = new BufferedImage(w, h,
+            decoder.hasAlpha(imageIndex) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) returnVal.getRaster().getDataBuffer()).getData();
+        decoder.decodeImage(this.data, (int) this.levelOffsets[level], (int) this.levelLengths[level],
+            imageIndex, w, h, pixels);
+        return returnVal;
+    }
+}
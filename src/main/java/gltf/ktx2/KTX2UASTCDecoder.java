@@ -0,0 +1,401 @@
+package gltf.ktx2;
+
+import gltf.exception.GLTFException;
+
+/**
+ * A transcoder of UASTC textures into RGBA8 pixels. UASTC blocks are 16
+ * bytes for 4x4 pixels, a subset of the LDR ASTC 4x4 block modes: after
+ * a variable length mode code and transcoding hints, which are skipped,
+ * each block holds its partition pattern, the endpoints of its subsets,
+ * packed as integer sequences with trits or quints, then its weights.
+ * They are decoded as ASTC does, with 8-bit endpoints interpolated in
+ * 16 bits. Solid color blocks hold their RGBA8 color.
+ */
+class KTX2UASTCDecoder {
+    private static final int BLOCK_LENGTH = 16;
+    private static final int MODE_SOLID_COLOR = 8;
+
+    /** the code and code length of each mode, read least significant bit first */
+    private static final int[][] MODE_CODES = {
+        {0x1, 4}, {0x35, 6}, {0x1D, 5}, {0x3, 5}, {0x13, 5}, {0xB, 5}, {0x1B, 5}, {0x7, 5},
+        {0x17, 5}, {0xF, 5}, {0x2, 3}, {0x0, 2}, {0x6, 3}, {0x1F, 5}, {0xD, 5}, {0x5, 7},
+        {0x15, 6}, {0x25, 6}, {0x9, 4}
+    };
+    private static final int[] WEIGHT_BITS = {4, 2, 3, 2, 2, 3, 2, 2, 0, 2, 4, 2, 3, 1, 2, 4, 2, 2, 5};
+    /** the ASTC integer sequence range of the endpoints */
+    private static final int[] ENDPOINT_RANGES = {19, 20, 8, 7, 12, 20, 18, 12, 0, 8, 13, 13, 19, 20, 20, 20, 20, 20, 11};
+    private static final int[] SUBSETS = {1, 1, 2, 3, 2, 1, 1, 2, 0, 2, 1, 1, 1, 1, 1, 1, 2, 1, 1};
+    private static final int[] PLANES = {1, 1, 1, 1, 1, 1, 2, 1, 0, 1, 1, 2, 1, 2, 1, 1, 1, 2, 1};
+    /** the components of the endpoints: 2 for luminance and alpha, 3 for RGB, 4 for RGBA */
+    private static final int[] COMPONENTS = {3, 3, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 2, 2, 2, 3};
+    /** the number of bits of the BC1, ETC1 and ETC2 transcoding hints */
+    private static final int[] HINT_BITS = {15, 15, 15, 15, 15, 15, 15, 15, 0, 23, 17, 17, 17, 23, 23, 23, 23, 23, 15};
+
+    /** the ASTC partition seeds of the 2 subset patterns */
+    private static final int[] SEEDS2 = {
+        28, 20, 16, 29, 91, 9, 107, 72, 149, 204, 50, 114, 496, 17, 78, 39,
+        252, 828, 43, 156, 116, 210, 476, 273, 684, 359, 246, 195, 694, 524
+    };
+    /** the ASTC partition seeds of the 3 subset patterns */
+    private static final int[] SEEDS3 = {260, 74, 32, 156, 183, 15, 745, 0, 335, 902, 254};
+    /** the ASTC partition seeds of the 2 subset patterns of mode 7 */
+    private static final int[] SEEDS7 = {
+        36, 48, 61, 137, 161, 183, 226, 281, 302, 307, 479, 495, 593, 594, 605, 799, 812, 988, 993
+    };
+
+    /** the bits of the last group of trits and of quints, by number of values in the group */
+    private static final int[] TRIT_GROUP_BITS = {0, 2, 4, 5, 7, 8};
+    private static final int[] QUINT_GROUP_BITS = {0, 3, 5, 7};
+
+    /** the mode of each value of the first 7 bits of a block */
+    private static final byte[] MODES = new byte[128];
+    private static final byte[][] PATTERNS2 = partitions(SEEDS2, 2);
+    private static final byte[][] PATTERNS3 = partitions(SEEDS3, 3);
+    private static final byte[][] PATTERNS7 = partitions(SEEDS7, 2);
+    /** the unquantized values of the endpoint ranges used by the modes */
+    private static final int[][] UNQUANTIZED = new int[21][];
+
+    static {
+        for (int i = 0; i < 128; i++) {
+            MODES[i] = -1;
+            for (int mode = 0; mode < MODE_CODES.length; mode++) {
+                if((i & ((1 << MODE_CODES[mode][1]) - 1)) == MODE_CODES[mode][0])
+                    MODES[i] = (byte) mode;
+            }
+        }
+        for (int mode = 0; mode < ENDPOINT_RANGES.length; mode++) {
+            int range = ENDPOINT_RANGES[mode];
+            if(mode == MODE_SOLID_COLOR || UNQUANTIZED[range] != null)
+                continue;
+            int levels = getLevels(range);
+            UNQUANTIZED[range] = new int[levels];
+            for (int v = 0; v < levels; v++) {
+                UNQUANTIZED[range][v] = unquantizeEndpoint(range, v);
+            }
+        }
+    }
+
+    private final byte[] data;
+    private long low;
+    private long high;
+    private int bit;
+    private final int[] endpoints = new int[18];
+    private final int[] weights = new int[32];
+    private final int[] colors = new int[3 * 2 * 4];
+    private final int[] tritsQuints = new int[4];
+
+    private KTX2UASTCDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * decodes the blocks of an image.
+     * @param data the level data
+     * @param offset the offset of the first block of the image
+     * @param pixels the ARGB pixels of the width x height image
+     * @throws GLTFException if the data is truncated or a block is invalid
+     */
+    static void decode(byte[] data, int offset, int width, int height, int[] pixels) throws GLTFException {
+        int blocksX = (width + 3) >> 2;
+        int blocksY = (height + 3) >> 2;
+        if(offset < 0 || offset + (long) BLOCK_LENGTH * blocksX * blocksY > data.length)
+            throw new GLTFException("KTX2 UASTC data is truncated");
+        KTX2UASTCDecoder decoder = new KTX2UASTCDecoder(data);
+        for (int by = 0, p = offset; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++, p += BLOCK_LENGTH) {
+                decoder.decodeBlock(p, bx << 2, by << 2, width, height, pixels);
+            }
+        }
+    }
+
+    /**
+     * returns the number of values of an ASTC integer sequence range.
+     */
+    private static int getLevels(int range){
+        return getBase(range) << getBits(range);
+    }
+
+    /**
+     * returns 1 for the ranges of bits only, else 3 or 5 for the ranges
+     * with a trit or a quint: above 2 values, the ranges cycle through
+     * 3 times, powers of two and 5 times powers of two.
+     */
+    private static int getBase(int range){
+        return range == 0 || range % 3 == 2 ? 1 : range % 3 == 1 ? 3 : 5;
+    }
+
+    /**
+     * returns the number of bits of each value of a range, besides its
+     * trit or quint.
+     */
+    private static int getBits(int range){
+        if(range == 0)
+            return 1;
+        return range % 3 == 2 ? (range + 4) / 3 : range % 3 == 1 ? (range - 1) / 3 : range / 3 - 1;
+    }
+
+    /**
+     * unquantizes an endpoint value to 8 bits, as the color endpoints of
+     * ASTC are: bits only values are bit replicated, and the values with
+     * a trit or quint are scrambled so that the flipped lowest bit mirrors
+     * the value.
+     */
+    private static int unquantizeEndpoint(int range, int v){
+        int n = getBits(range);
+        if(getBase(range) == 1)
+            return replicate(v, n, 8);
+        int d = v >> n;
+        int m = v & ((1 << n) - 1);
+        int a = (m & 1) != 0 ? 0x1FF : 0;
+        int x = m >> 1;
+        int b, c;
+        if(getBase(range) == 3){
+            switch (n){
+                case 1: b = 0; c = 204; break;
+                case 2: b = x << 8 | x << 4 | x << 2 | x << 1; c = 93; break;
+                case 3: b = x << 7 | x << 2 | x; c = 44; break;
+                case 4: b = x << 6 | x; c = 22; break;
+                case 5: b = x << 5 | x >> 2; c = 11; break;
+                default: b = x << 4 | x >> 4; c = 5;
+            }
+        }else{
+            switch (n){
+                case 1: b = 0; c = 113; break;
+                case 2: b = x << 8 | x << 3 | x << 2; c = 54; break;
+                case 3: b = x << 7 | x << 1 | x >> 1; c = 26; break;
+                case 4: b = x << 6 | x >> 1; c = 13; break;
+                default: b = x << 5 | x >> 3; c = 6;
+            }
+        }
+        int t = (d * c + b) ^ a;
+        return (a & 0x80) | t >> 2;
+    }
+
+    private static int replicate(int v, int bits, int toBits){
+        if(bits == 0)
+            return 0;
+        int returnVal = 0;
+        int shift = toBits - bits;
+        for (; shift > -bits; shift -= bits) {
+            returnVal |= shift >= 0 ? v << shift : v >> -shift;
+        }
+        return returnVal & ((1 << toBits) - 1);
+    }
+
+    /**
+     * unquantizes a weight of the given number of bits to [0, 64].
+     */
+    private static int unquantizeWeight(int v, int bits){
+        int returnVal = replicate(v, bits, 6);
+        return returnVal > 32 ? returnVal + 1 : returnVal;
+    }
+
+    /**
+     * computes the subset of each pixel of the 4x4 ASTC partitions of the
+     * given seeds.
+     */
+    private static byte[][] partitions(int[] seeds, int nPartitions){
+        byte[][] returnVal = new byte[seeds.length][16];
+        for (int i = 0; i < seeds.length; i++) {
+            for (int p = 0; p < 16; p++) {
+                returnVal[i][p] = (byte) selectPartition(seeds[i], p & 3, p >> 2, nPartitions);
+            }
+        }
+        return returnVal;
+    }
+
+    /**
+     * the partition function of ASTC, for a texel of a block of fewer
+     * than 31 texels.
+     */
+    private static int selectPartition(int seed, int x, int y, int nPartitions){
+        x <<= 1;
+        y <<= 1;
+        seed += (nPartitions - 1) * 1024;
+        int rnum = hash52(seed);
+        int[] s = new int[8];
+        for (int i = 0; i < 8; i++) {
+            int v = (rnum >>> (4 * i)) & 0xF;
+            s[i] = v * v;
+        }
+        int sh1, sh2;
+        if((seed & 1) != 0){
+            sh1 = (seed & 2) != 0 ? 4 : 5;
+            sh2 = nPartitions == 3 ? 6 : 5;
+        }else{
+            sh1 = nPartitions == 3 ? 6 : 5;
+            sh2 = (seed & 2) != 0 ? 4 : 5;
+        }
+        int a = ((s[0] >> sh1) * x + (s[1] >> sh2) * y + (rnum >>> 14)) & 0x3F;
+        int b = ((s[2] >> sh1) * x + (s[3] >> sh2) * y + (rnum >>> 10)) & 0x3F;
+        int c = nPartitions < 3 ? 0 : ((s[4] >> sh1) * x + (s[5] >> sh2) * y + (rnum >>> 6)) & 0x3F;
+        if(a >= b && a >= c)
+            return 0;
+        return b >= c ? 1 : 2;
+    }
+
+    private static int hash52(int p){
+        p ^= p >>> 15;
+        p *= 0xEEDE0891;
+        p ^= p >>> 5;
+        p += p << 16;
+        p ^= p >>> 7;
+        p ^= p >>> 3;
+        p ^= p << 6;
+        p ^= p >>> 17;
+        return p;
+    }
+
+    private int read(int n){
+        int returnVal;
+        if(this.bit >= 64)
+            returnVal = (int) (this.high >>> (this.bit - 64));
+        else if(this.bit + n <= 64)
+            returnVal = (int) (this.low >>> this.bit);
+        else
+            returnVal = (int) (this.low >>> this.bit | this.high << (64 - this.bit));
+        this.bit += n;
+        return returnVal & ((1 << n) - 1);
+    }
+
+    private long readLong(int p){
+        long returnVal = 0;
+        for (int i = 7; i >= 0; i--) {
+            returnVal = returnVal << 8 | (this.data[p + i] & 0xFF);
+        }
+        return returnVal;
+    }
+
+    private void decodeBlock(int p, int x0, int y0, int width, int height, int[] pixels) throws GLTFException {
+        this.low = readLong(p);
+        this.high = readLong(p + 8);
+        int mode = MODES[(int) (this.low & 0x7F)];
+        if(mode < 0)
+            throw new GLTFException("invalid KTX2 UASTC block mode");
+        this.bit = MODE_CODES[mode][1];
+        if(mode == MODE_SOLID_COLOR){
+            int r = read(8), g = read(8), b = read(8), a = read(8);
+            int color = a << 24 | r << 16 | g << 8 | b;
+            for (int y = y0; y < Math.min(height, y0 + 4); y++) {
+                for (int x = x0; x < Math.min(width, x0 + 4); x++) {
+                    pixels[y * width + x] = color;
+                }
+            }
+            return;
+        }
+        this.bit += HINT_BITS[mode];
+
+        int nSubsets = SUBSETS[mode];
+        byte[] pattern = null;
+        if(nSubsets > 1){
+            byte[][] patterns = mode == 7 ? PATTERNS7 : nSubsets == 3 ? PATTERNS3 : PATTERNS2;
+            int index = read(nSubsets == 3 ? 4 : 5);
+            if(index >= patterns.length)
+                throw new GLTFException("invalid KTX2 UASTC partition pattern");
+            pattern = patterns[index];
+        }
+        // the component whose weights are in the second plane
+        int ccs = -1;
+        if(mode == 6 || mode == 11 || mode == 13)
+            ccs = read(2);
+        else if(mode == 17)
+            ccs = 3;
+
+        int nComponents = COMPONENTS[mode];
+        readEndpoints(ENDPOINT_RANGES[mode], nComponents * 2 * nSubsets);
+        int weightBits = WEIGHT_BITS[mode];
+        int nPlanes = PLANES[mode];
+        for (int i = 0; i < 16 * nPlanes; i++) {
+            // the first weight of each subset and plane has an implicit
+            // most significant bit of 0
+            boolean anchor = pattern == null ? i < nPlanes : isAnchor(pattern, i);
+            this.weights[i] = unquantizeWeight(read(anchor ? weightBits - 1 : weightBits), weightBits);
+        }
+        if(this.bit > 8 * BLOCK_LENGTH)
+            throw new GLTFException("invalid KTX2 UASTC block");
+
+        int[] unquantized = UNQUANTIZED[ENDPOINT_RANGES[mode]];
+        for (int s = 0; s < nSubsets; s++) {
+            for (int e = 0; e < 2; e++) {
+                int o = 8 * s + 4 * e;
+                int v = 2 * nComponents * s + e;
+                if(nComponents == 2){
+                    int l = unquantized[this.endpoints[v]];
+                    this.colors[o] = l;
+                    this.colors[o + 1] = l;
+                    this.colors[o + 2] = l;
+                    this.colors[o + 3] = unquantized[this.endpoints[v + 2]];
+                }else{
+                    for (int c = 0; c < 4; c++) {
+                        this.colors[o + c] = c < nComponents ? unquantized[this.endpoints[v + 2 * c]] : 255;
+                    }
+                }
+            }
+        }
+
+        for (int y = 0; y < Math.min(4, height - y0); y++) {
+            for (int x = 0; x < Math.min(4, width - x0); x++) {
+                int i = 4 * y + x;
+                int o = pattern == null ? 0 : 8 * pattern[i];
+                int w0 = this.weights[nPlanes * i];
+                int w1 = this.weights[nPlanes * i + nPlanes - 1];
+                int argb = 0;
+                for (int c = 0; c < 4; c++) {
+                    int value = interpolate(this.colors[o + c], this.colors[o + 4 + c], c == ccs ? w1 : w0);
+                    argb |= value << (c == 3 ? 24 : 16 - 8 * c);
+                }
+                pixels[(y0 + y) * width + x0 + x] = argb;
+            }
+        }
+    }
+
+    private static boolean isAnchor(byte[] pattern, int i){
+        for (int j = 0; j < i; j++) {
+            if(pattern[j] == pattern[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int interpolate(int e0, int e1, int w){
+        e0 = e0 << 8 | e0;
+        e1 = e1 << 8 | e1;
+        return ((e0 * (64 - w) + e1 * w + 32) >> 6) >> 8;
+    }
+
+    /**
+     * reads the endpoint values: the trits or quints of all the values
+     * come first, packed 5 trits to 8 bits or 3 quints to 7 bits, the
+     * last group with only the bits it needs, then the low bits of each
+     * value.
+     */
+    private void readEndpoints(int range, int nValues) throws GLTFException {
+        int bits = getBits(range);
+        int base = getBase(range);
+        int groupSize = base == 3 ? 5 : 3;
+        int nGroups = base == 1 ? 0 : (nValues + groupSize - 1) / groupSize;
+        for (int g = 0; g < nGroups; g++) {
+            int nInGroup = Math.min(groupSize, nValues - g * groupSize);
+            this.tritsQuints[g] = read(base == 3 ? TRIT_GROUP_BITS[nInGroup] : QUINT_GROUP_BITS[nInGroup]);
+        }
+        int levels = getLevels(range);
+        int group = 0;
+        int remaining = 0;
+        int accumulator = 0;
+        for (int i = 0; i < nValues; i++) {
+            int value = read(bits);
+            if(base != 1){
+                if(remaining == 0){
+                    accumulator = this.tritsQuints[group++];
+                    remaining = groupSize;
+                }
+                value |= (accumulator % base) << bits;
+                accumulator /= base;
+                remaining--;
+            }
+            if(value >= levels)
+                throw new GLTFException("invalid KTX2 UASTC endpoint");
+            this.endpoints[i] = value;
+        }
+    }
+}
@@ -0,0 +1,781 @@
+package gltf.ktx2;
+
+import gltf.exception.GLTFException;
+
+/**
+ * A decoder of Zstandard frames (RFC 8878), used for the Zstandard
+ * supercompression of KTX2 textures: raw, RLE and compressed blocks,
+ * Huffman coded literals and FSE coded sequences. Skippable frames are
+ * skipped; frames using a dictionary are not supported, and content
+ * checksums are not verified.
+ */
+class KTX2ZstdDecoder {
+    private static final int MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+    private static final int MAX_LL_SYMBOL = 35;
+    private static final int MAX_ML_SYMBOL = 52;
+    private static final int MAX_OF_SYMBOL = 31;
+    private static final int MAX_LL_LOG = 9;
+    private static final int MAX_ML_LOG = 9;
+    private static final int MAX_OF_LOG = 8;
+    private static final int MAX_HUFFMAN_BITS = 11;
+
+    private static final int[] LL_BASE = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 0x80, 0x100, 0x200, 0x400, 0x800, 0x1000,
+        0x2000, 0x4000, 0x8000, 0x10000
+    };
+    private static final int[] LL_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16
+    };
+    private static final int[] ML_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 0x83, 0x103, 0x203, 0x403, 0x803,
+        0x1003, 0x2003, 0x4003, 0x8003, 0x10003
+    };
+    private static final int[] ML_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16
+    };
+
+    private static final FseTable LL_DEFAULT = FseTable.build(new int[]{
+        4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+        2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+        -1, -1, -1, -1
+    }, 36, 6);
+    private static final FseTable ML_DEFAULT = FseTable.build(new int[]{
+        1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+        -1, -1, -1, -1, -1
+    }, 53, 6);
+    private static final FseTable OF_DEFAULT = FseTable.build(new int[]{
+        1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+    }, 29, 5);
+
+    private final byte[] src;
+    private int pos;
+    private final int end;
+    private final byte[] dst;
+    private int out;
+
+    // the state of the current frame, which carries over from block to block
+    private int frameStart;
+    private final int[] rep = new int[3];
+    private int huffmanBits;
+    private byte[] huffmanSymbols;
+    private byte[] huffmanLengths;
+    private FseTable llTable;
+    private FseTable ofTable;
+    private FseTable mlTable;
+    private byte[] literals = new byte[0];
+
+    private KTX2ZstdDecoder(byte[] src, int offset, int length, byte[] dst) {
+        this.src = src;
+        this.pos = offset;
+        this.end = offset + length;
+        this.dst = dst;
+    }
+
+    /**
+     * decompresses the frames of src into an array of the given size.
+     * @param src the compressed data
+     * @param offset the offset of the data in src
+     * @param length the length of the data
+     * @param size the size of the decompressed data
+     * @return the decompressed data
+     * @throws GLTFException if the data is invalid or not of the given size
+     */
+    public static byte[] decompress(byte[] src, int offset, int length, int size) throws GLTFException {
+        if(offset < 0 || length < 0 || offset + length > src.length)
+            throw new GLTFException("invalid Zstandard data range");
+        byte[] returnVal = new byte[size];
+        KTX2ZstdDecoder decoder = new KTX2ZstdDecoder(src, offset, length, returnVal);
+        decoder.decodeFrames();
+        if(decoder.out != size)
+            throw new GLTFException("Zstandard data decompressed to " + decoder.out + " bytes instead of " + size);
+        return returnVal;
+    }
+
+    private static GLTFException corrupted(){
+        return new GLTFException("corrupted Zstandard data");
+    }
+
+    private void require(int p, int n, int limit) throws GLTFException {
+        if(n < 0 || p + n > limit)
+            throw corrupted();
+    }
+
+    private int u8(int p){
+        return this.src[p] & 0xFF;
+    }
+
+    private int u16(int p){
+        return u8(p) | u8(p + 1) << 8;
+    }
+
+    private int u32(int p){
+        return u16(p) | u16(p + 2) << 16;
+    }
+
+    private void ensureOut(int n) throws GLTFException {
+        if(n < 0 || n > this.dst.length - this.out)
+            throw new GLTFException("Zstandard data decompresses to more than " + this.dst.length + " bytes");
+    }
+
+    private void decodeFrames() throws GLTFException {
+        while (this.pos < this.end) {
+            require(this.pos, 4, this.end);
+            int magic = u32(this.pos);
+            if((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC){
+                require(this.pos, 8, this.end);
+                long size = u32(this.pos + 4) & 0xFFFFFFFFL;
+                this.pos += 8;
+                if(size > this.end - this.pos)
+                    throw corrupted();
+                this.pos += (int) size;
+                continue;
+            }
+            if(magic != MAGIC)
+                throw new GLTFException("not a Zstandard frame");
+            this.pos += 4;
+            decodeFrame();
+        }
+    }
+
+    private void decodeFrame() throws GLTFException {
+        require(this.pos, 1, this.end);
+        int descriptor = u8(this.pos++);
+        int contentSizeFlag = descriptor >>> 6;
+        boolean singleSegment = (descriptor & 0x20) != 0;
+        boolean checksum = (descriptor & 0x04) != 0;
+        int dictionaryFlag = descriptor & 0x03;
+        if((descriptor & 0x08) != 0)
+            throw corrupted();
+        // the window size does not matter, as the whole output is kept
+        if(!singleSegment)
+            this.pos++;
+        int dictionarySize = dictionaryFlag == 3 ? 4 : dictionaryFlag;
+        require(this.pos, dictionarySize, this.end);
+        long dictionaryId = 0;
+        for (int i = dictionarySize - 1; i >= 0; i--) {
+            dictionaryId = dictionaryId << 8 | u8(this.pos + i);
+        }
+        if(dictionaryId != 0)
+            throw new GLTFException("Zstandard dictionaries are not supported");
+        this.pos += dictionarySize;
+        int contentSizeSize = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+        require(this.pos, contentSizeSize, this.end);
+        this.pos += contentSizeSize;
+
+        this.frameStart = this.out;
+        this.rep[0] = 1;
+        this.rep[1] = 4;
+        this.rep[2] = 8;
+        this.huffmanSymbols = null;
+        this.llTable = null;
+        this.ofTable = null;
+        this.mlTable = null;
+        boolean last = false;
+        while (!last) {
+            require(this.pos, 3, this.end);
+            int header = u16(this.pos) | u8(this.pos + 2) << 16;
+            this.pos += 3;
+            last = (header & 1) != 0;
+            int type = (header >>> 1) & 3;
+            int size = header >>> 3;
+            switch (type){
+                case 0:
+                    require(this.pos, size, this.end);
+                    ensureOut(size);
+                    System.arraycopy(this.src, this.pos, this.dst, this.out, size);
+                    this.out += size;
+                    this.pos += size;
+                    break;
+                case 1:
+                    require(this.pos, 1, this.end);
+                    ensureOut(size);
+                    java.util.Arrays.fill(this.dst, this.out, this.out + size, this.src[this.pos]);
+                    this.out += size;
+                    this.pos++;
+                    break;
+                case 2:
+                    require(this.pos, size, this.end);
+                    decodeCompressedBlock(this.pos, this.pos + size);
+                    this.pos += size;
+                    break;
+                default:
+                    throw corrupted();
+            }
+        }
+        if(checksum){
+            require(this.pos, 4, this.end);
+            this.pos += 4;
+        }
+    }
+
+    private void decodeCompressedBlock(int p, int blockEnd) throws GLTFException {
+        // literals section
+        require(p, 1, blockEnd);
+        int b0 = u8(p);
+        int literalsType = b0 & 3;
+        int sizeFormat = (b0 >>> 2) & 3;
+        int regenerated;
+        int compressed = 0;
+        int nStreams = 1;
+        if(literalsType <= 1){
+            switch (sizeFormat){
+                case 1:
+                    require(p, 2, blockEnd);
+                    regenerated = (b0 >>> 4) + (u8(p + 1) << 4);
+                    p += 2;
+                    break;
+                case 3:
+                    require(p, 3, blockEnd);
+                    regenerated = (b0 >>> 4) + (u8(p + 1) << 4) + (u8(p + 2) << 12);
+                    p += 3;
+                    break;
+                default:
+                    regenerated = b0 >>> 3;
+                    p += 1;
+            }
+        }else{
+            nStreams = sizeFormat == 0 ? 1 : 4;
+            switch (sizeFormat){
+                case 0:
+                case 1:
+                    require(p, 3, blockEnd);
+                    regenerated = (b0 >>> 4) | (u8(p + 1) & 0x3F) << 4;
+                    compressed = (u8(p + 1) >>> 6) | u8(p + 2) << 2;
+                    p += 3;
+                    break;
+                case 2:
+                    require(p, 4, blockEnd);
+                    regenerated = (b0 >>> 4) | u8(p + 1) << 4 | (u8(p + 2) & 3) << 12;
+                    compressed = (u8(p + 2) >>> 2) | u8(p + 3) << 6;
+                    p += 4;
+                    break;
+                default:
+                    require(p, 5, blockEnd);
+                    regenerated = (b0 >>> 4) | u8(p + 1) << 4 | (u8(p + 2) & 0x3F) << 12;
+                    compressed = (u8(p + 2) >>> 6) | u8(p + 3) << 2 | u8(p + 4) << 10;
+                    p += 5;
+            }
+        }
+
+        byte[] lits;
+        int litStart;
+        switch (literalsType){
+            case 0:
+                require(p, regenerated, blockEnd);
+                lits = this.src;
+                litStart = p;
+                p += regenerated;
+                break;
+            case 1:
+                require(p, 1, blockEnd);
+                lits = literalsBuffer(regenerated);
+                java.util.Arrays.fill(lits, 0, regenerated, this.src[p]);
+                litStart = 0;
+                p += 1;
+                break;
+            default:
+                require(p, compressed, blockEnd);
+                int compressedEnd = p + compressed;
+                if(literalsType == 2)
+                    p = readHuffmanTable(p, compressedEnd);
+                else if(this.huffmanSymbols == null)
+                    throw corrupted();
+                lits = literalsBuffer(regenerated);
+                litStart = 0;
+                if(nStreams == 1){
+                    decodeHuffmanStream(p, compressedEnd, lits, 0, regenerated);
+                }else{
+                    require(p, 6, compressedEnd);
+                    int size1 = u16(p);
+                    int size2 = u16(p + 2);
+                    int size3 = u16(p + 4);
+                    p += 6;
+                    int segment = (regenerated + 3) / 4;
+                    if(3 * segment > regenerated)
+                        throw corrupted();
+                    int s2 = p + size1;
+                    int s3 = s2 + size2;
+                    int s4 = s3 + size3;
+                    if(s4 > compressedEnd)
+                        throw corrupted();
+                    decodeHuffmanStream(p, s2, lits, 0, segment);
+                    decodeHuffmanStream(s2, s3, lits, segment, segment);
+                    decodeHuffmanStream(s3, s4, lits, 2 * segment, segment);
+                    decodeHuffmanStream(s4, compressedEnd, lits, 3 * segment, regenerated - 3 * segment);
+                }
+                p = compressedEnd;
+        }
+
+        // sequences section
+        require(p, 1, blockEnd);
+        int nSequences = u8(p++);
+        if(nSequences >= 128){
+            if(nSequences < 255){
+                require(p, 1, blockEnd);
+                nSequences = ((nSequences - 128) << 8) + u8(p++);
+            }else{
+                require(p, 2, blockEnd);
+                nSequences = u16(p) + 0x7F00;
+                p += 2;
+            }
+        }
+        if(nSequences == 0){
+            ensureOut(regenerated);
+            System.arraycopy(lits, litStart, this.dst, this.out, regenerated);
+            this.out += regenerated;
+            return;
+        }
+        require(p, 1, blockEnd);
+        int modes = u8(p++);
+        if((modes & 3) != 0)
+            throw corrupted();
+        int[] cursor = {p};
+        this.llTable = readSequenceTable(modes >>> 6, cursor, blockEnd, LL_DEFAULT, MAX_LL_SYMBOL, MAX_LL_LOG, this.llTable);
+        this.ofTable = readSequenceTable((modes >>> 4) & 3, cursor, blockEnd, OF_DEFAULT, MAX_OF_SYMBOL, MAX_OF_LOG, this.ofTable);
+        this.mlTable = readSequenceTable((modes >>> 2) & 3, cursor, blockEnd, ML_DEFAULT, MAX_ML_SYMBOL, MAX_ML_LOG, this.mlTable);
+        executeSequences(cursor[0], blockEnd, nSequences, lits, litStart, regenerated);
+    }
+
+    private byte[] literalsBuffer(int size){
+        if(this.literals.length < size)
+            this.literals = new byte[Math.max(size, 2 * this.literals.length)];
+        return this.literals;
+    }
+
+    private FseTable readSequenceTable(int mode, int[] cursor, int limit,
+                                       FseTable predefined, int maxSymbol, int maxLog,
+                                       FseTable previous)
+        throws GLTFException
+    {
+        switch (mode){
+            case 0:
+                return predefined;
+            case 1:
+                require(cursor[0], 1, limit);
+                int symbol = u8(cursor[0]++);
+                if(symbol > maxSymbol)
+                    throw corrupted();
+                return FseTable.rle(symbol);
+            case 2:
+                return readFseTable(cursor, limit, maxSymbol, maxLog);
+            default:
+                if(previous == null)
+                    throw corrupted();
+                return previous;
+        }
+    }
+
+    /**
+     * reads an FSE table description, a forward little-endian bitstream.
+     */
+    private FseTable readFseTable(int[] cursor, int limit, int maxSymbol, int maxLog) throws GLTFException {
+        ForwardBits bits = new ForwardBits(this.src, cursor[0], limit);
+        int log = bits.read(4) + 5;
+        if(log > maxLog)
+            throw corrupted();
+        int remaining = (1 << log) + 1;
+        int threshold = 1 << log;
+        int nbBits = log + 1;
+        int[] counts = new int[maxSymbol + 1];
+        int symbol = 0;
+        boolean previous0 = false;
+        while (remaining > 1 && symbol <= maxSymbol) {
+            if(previous0){
+                int n0 = symbol;
+                int repeat;
+                do{
+                    repeat = bits.read(2);
+                    n0 += repeat;
+                }while(repeat == 3);
+                if(n0 > maxSymbol)
+                    throw corrupted();
+                while (symbol < n0) {
+                    counts[symbol++] = 0;
+                }
+            }
+            int max = (2 * threshold - 1) - remaining;
+            int count;
+            int low = bits.peek(nbBits - 1);
+            if(low < max){
+                count = low;
+                bits.skip(nbBits - 1);
+            }else{
+                count = bits.peek(nbBits);
+                if(count >= threshold)
+                    count -= max;
+                bits.skip(nbBits);
+            }
+            count--;
+            remaining -= Math.abs(count);
+            counts[symbol++] = count;
+            previous0 = count == 0;
+            while (remaining < threshold) {
+                nbBits--;
+                threshold >>= 1;
+            }
+        }
+        if(remaining != 1 || bits.bytePosition() > limit)
+            throw corrupted();
+        cursor[0] = bits.bytePosition();
+        FseTable returnVal = FseTable.build(counts, symbol, log);
+        if(returnVal == null)
+            throw corrupted();
+        return returnVal;
+    }
+
+    private int readHuffmanTable(int p, int limit) throws GLTFException {
+        require(p, 1, limit);
+        int header = u8(p++);
+        int[] weights = new int[256];
+        int nWeights;
+        if(header < 128){
+            require(p, header, limit);
+            int[] cursor = {p};
+            FseTable table = readFseTable(cursor, p + header, 255, 6);
+            BackwardBits bits = new BackwardBits(this.src, cursor[0], p + header);
+            int state1 = bits.read(table.log);
+            int state2 = bits.read(table.log);
+            nWeights = 0;
+            while (true) {
+                if(nWeights > 253)
+                    throw corrupted();
+                weights[nWeights++] = table.symbols[state1];
+                state1 = table.newStates[state1] + bits.read(table.nbBits[state1]);
+                if(bits.overflowed()){
+                    weights[nWeights++] = table.symbols[state2];
+                    break;
+                }
+                weights[nWeights++] = table.symbols[state2];
+                state2 = table.newStates[state2] + bits.read(table.nbBits[state2]);
+                if(bits.overflowed()){
+                    weights[nWeights++] = table.symbols[state1];
+                    break;
+                }
+            }
+            p += header;
+        }else{
+            nWeights = header - 127;
+            int nBytes = (nWeights + 1) / 2;
+            require(p, nBytes, limit);
+            for (int i = 0; i < nWeights; i++) {
+                int b = u8(p + i / 2);
+                weights[i] = (i & 1) == 0 ? b >>> 4 : b & 0xF;
+            }
+            p += nBytes;
+        }
+
+        // the weight of the last symbol completes the sum to a power of 2
+        int total = 0;
+        for (int i = 0; i < nWeights; i++) {
+            if(weights[i] > MAX_HUFFMAN_BITS)
+                throw corrupted();
+            if(weights[i] > 0)
+                total += 1 << (weights[i] - 1);
+        }
+        if(total == 0)
+            throw corrupted();
+        int maxBits = 32 - Integer.numberOfLeadingZeros(total);
+        int leftover = (1 << maxBits) - total;
+        if(maxBits > MAX_HUFFMAN_BITS || Integer.bitCount(leftover) != 1)
+            throw corrupted();
+        weights[nWeights] = 32 - Integer.numberOfLeadingZeros(leftover);
+        int nSymbols = nWeights + 1;
+
+        int size = 1 << maxBits;
+        byte[] symbols = new byte[size];
+        byte[] lengths = new byte[size];
+        int position = 0;
+        for (int w = 1; w <= maxBits; w++) {
+            int length = 1 << (w - 1);
+            for (int s = 0; s < nSymbols; s++) {
+                if(weights[s] != w)
+                    continue;
+                java.util.Arrays.fill(symbols, position, position + length, (byte) s);
+                java.util.Arrays.fill(lengths, position, position + length, (byte) (maxBits + 1 - w));
+                position += length;
+            }
+        }
+        if(position != size)
+            throw corrupted();
+        this.huffmanBits = maxBits;
+        this.huffmanSymbols = symbols;
+        this.huffmanLengths = lengths;
+        return p;
+    }
+
+    private void decodeHuffmanStream(int start, int streamEnd, byte[] dst, int dstOffset, int count)
+        throws GLTFException
+    {
+        BackwardBits bits = new BackwardBits(this.src, start, streamEnd);
+        int maxBits = this.huffmanBits;
+        byte[] symbols = this.huffmanSymbols;
+        byte[] lengths = this.huffmanLengths;
+        for (int i = 0; i < count; i++) {
+            int v = bits.peek(maxBits);
+            dst[dstOffset + i] = symbols[v];
+            bits.skip(lengths[v]);
+        }
+        if(bits.remaining() != 0)
+            throw corrupted();
+    }
+
+    private void executeSequences(int start, int blockEnd, int nSequences,
+                                  byte[] lits, int litStart, int litCount)
+        throws GLTFException
+    {
+        FseTable ll = this.llTable;
+        FseTable of = this.ofTable;
+        FseTable ml = this.mlTable;
+        BackwardBits bits = new BackwardBits(this.src, start, blockEnd);
+        int llState = bits.read(ll.log);
+        int ofState = bits.read(of.log);
+        int mlState = bits.read(ml.log);
+        int litPos = 0;
+        byte[] dst = this.dst;
+        for (int i = 0; i < nSequences; i++) {
+            int ofCode = of.symbols[ofState];
+            int llCode = ll.symbols[llState];
+            int mlCode = ml.symbols[mlState];
+            if(ofCode > 30)
+                throw corrupted();
+            int offsetValue = (1 << ofCode) + bits.read(ofCode);
+            int matchLength = ML_BASE[mlCode] + bits.read(ML_BITS[mlCode]);
+            int literalsLength = LL_BASE[llCode] + bits.read(LL_BITS[llCode]);
+
+            int offset;
+            if(offsetValue > 3){
+                offset = offsetValue - 3;
+                this.rep[2] = this.rep[1];
+                this.rep[1] = this.rep[0];
+                this.rep[0] = offset;
+            }else{
+                int idx = offsetValue - 1 + (literalsLength == 0 ? 1 : 0);
+                if(idx == 0){
+                    offset = this.rep[0];
+                }else{
+                    offset = idx == 3 ? this.rep[0] - 1 : this.rep[idx];
+                    if(offset == 0)
+                        offset = 1;
+                    if(idx != 1)
+                        this.rep[2] = this.rep[1];
+                    this.rep[1] = this.rep[0];
+                    this.rep[0] = offset;
+                }
+            }
+
+            if(i < nSequences - 1){
+                llState = ll.newStates[llState] + bits.read(ll.nbBits[llState]);
+                mlState = ml.newStates[mlState] + bits.read(ml.nbBits[mlState]);
+                ofState = of.newStates[ofState] + bits.read(of.nbBits[ofState]);
+            }
+
+            if(literalsLength > litCount - litPos)
+                throw corrupted();
+            ensureOut(literalsLength);
+            System.arraycopy(lits, litStart + litPos, dst, this.out, literalsLength);
+            this.out += literalsLength;
+            litPos += literalsLength;
+
+            if(offset > this.out - this.frameStart)
+                throw corrupted();
+            ensureOut(matchLength);
+            int from = this.out - offset;
+            if(offset >= matchLength){
+                System.arraycopy(dst, from, dst, this.out, matchLength);
+                this.out += matchLength;
+            }else{
+                for (int k = 0; k < matchLength; k++) {
+                    dst[this.out++] = dst[from + k];
+                }
+            }
+        }
+        if(bits.remaining() != 0)
+            throw corrupted();
+        int rest = litCount - litPos;
+        ensureOut(rest);
+        System.arraycopy(lits, litStart + litPos, dst, this.out, rest);
+        this.out += rest;
+    }
+
+    /**
+     * an FSE decoding table.
+     */
+    private static class FseTable {
+        final int log;
+        final int[] symbols;
+        final int[] nbBits;
+        final int[] newStates;
+
+        private FseTable(int log) {
+            this.log = log;
+            this.symbols = new int[1 << log];
+            this.nbBits = new int[1 << log];
+            this.newStates = new int[1 << log];
+        }
+
+        static FseTable rle(int symbol){
+            FseTable returnVal = new FseTable(0);
+            returnVal.symbols[0] = symbol;
+            return returnVal;
+        }
+
+        /**
+         * builds the table of normalized counts, -1 meaning a probability
+         * lower than 1.
+         * @return the table, or null if the counts are invalid
+         */
+        static FseTable build(int[] counts, int nSymbols, int log){
+            FseTable returnVal = new FseTable(log);
+            int size = 1 << log;
+            int high = size - 1;
+            int[] next = new int[nSymbols];
+            for (int s = 0; s < nSymbols; s++) {
+                if(counts[s] == -1){
+                    if(high < 0)
+                        return null;
+                    returnVal.symbols[high--] = s;
+                    next[s] = 1;
+                }else{
+                    next[s] = counts[s];
+                }
+            }
+            int step = (size >>> 1) + (size >>> 3) + 3;
+            int mask = size - 1;
+            int position = 0;
+            for (int s = 0; s < nSymbols; s++) {
+                for (int i = 0; i < counts[s]; i++) {
+                    returnVal.symbols[position] = s;
+                    do{
+                        position = (position + step) & mask;
+                    }while(position > high);
+                }
+            }
+            if(position != 0)
+                return null;
+            for (int u = 0; u < size; u++) {
+                int s = returnVal.symbols[u];
+                int state = next[s]++;
+                if(state == 0)
+                    return null;
+                int nb = log - (31 - Integer.numberOfLeadingZeros(state));
+                returnVal.nbBits[u] = nb;
+                returnVal.newStates[u] = (state << nb) - size;
+            }
+            return returnVal;
+        }
+    }
+
+    /**
+     * reads bits from the start of a byte range, least significant first.
+     * Bits past the end read as 0.
+     */
+    private static class ForwardBits {
+        private final byte[] data;
+        private final int start;
+        private final int end;
+        private long bit = 0;
+
+        ForwardBits(byte[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        int peek(int n){
+            int returnVal = 0;
+            for (int i = 0; i < n; i++) {
+                long b = this.bit + i;
+                int index = this.start + (int) (b >>> 3);
+                if(index < this.end && (this.data[index] >> (b & 7) & 1) != 0)
+                    returnVal |= 1 << i;
+            }
+            return returnVal;
+        }
+
+        void skip(int n){
+            this.bit += n;
+        }
+
+        int read(int n){
+            int returnVal = peek(n);
+            skip(n);
+            return returnVal;
+        }
+
+        int bytePosition(){
+            return this.start + (int) ((this.bit + 7) >>> 3);
+        }
+    }
+
+    /**
+     * reads bits backwards from the end of a byte range, as the Huffman
+     * and FSE streams are written: the highest set bit of the last byte
+     * marks the start. Bits before the beginning read as 0.
+     */
+    private static class BackwardBits {
+        private final byte[] data;
+        private final int start;
+        private int remaining;
+
+        BackwardBits(byte[] data, int start, int end) throws GLTFException {
+            if(end <= start || data[end - 1] == 0)
+                throw corrupted();
+            this.data = data;
+            this.start = start;
+            this.remaining = (end - 1 - start) * 8 + (31 - Integer.numberOfLeadingZeros(data[end - 1] & 0xFF));
+        }
+
+        private long bitsAt(int bitPos, int n){
+            int b = this.start + (bitPos >>> 3);
+            int shift = bitPos & 7;
+            int nBytes = (shift + n + 7) >>> 3;
+            long v = 0;
+            for (int i = nBytes - 1; i >= 0; i--) {
+                v = v << 8 | (this.data[b + i] & 0xFF);
+            }
+            return (v >>> shift) & ((1L << n) - 1);
+        }
+
+        int peek(int n){
+            if(n == 0)
+                return 0;
+            int lo = this.remaining - n;
+            if(lo >= 0)
+                return (int) bitsAt(lo, n);
+            int available = n + lo;
+            return available > 0 ? (int) (bitsAt(0, available) << -lo) : 0;
+        }
+
+        void skip(int n){
+            this.remaining -= n;
+        }
+
+        int read(int n){
+            int returnVal = peek(n);
+            skip(n);
+            return returnVal;
+        }
+
+        int remaining(){
+            return this.remaining;
+        }
+
+        boolean overflowed(){
+            return this.remaining < 0;
+        }
+    }
+}
@@ -3,34 +3,32 @@ package gltf.material;
 import gltf.Constants;
 import gltf.buffer.GLTFBufferView;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class GLTFBufferViewImage extends GLTFImage{
+    public final GLTFBufferView bufferView;
+
     public GLTFBufferViewImage(int bufferViewIdx,
                                GLTFBufferView[] bufferViews,
                                String mimeType)
-            throws IOException
     {
-        super(readImage(bufferViews[bufferViewIdx]));
+        super(mimeType);
+        this.bufferView = bufferViews[bufferViewIdx];
     }
-    private static BufferedImage readImage(GLTFBufferView bv)
-            throws IOException
-    {
-        try {
-            return ImageIO.read(
-                new ByteArrayInputStream(
-                    bv.getBytes(0, bv.byteLength)
-                )
-            );
-        }catch(IOException ioe){
-            throw new IOException(
-                Constants.IMAGE_LOAD_ERROR_BINARY.replace(
-                    Constants.ILE_BINARY_SOURCE_PLACEHOLDER,
-                    bv.name)
-            );
-        }
+
+    @Override
+    public InputStream openStream() {
+        return this.bufferView.getInputStream();
+    }
+
+    @Override
+    protected IOException readError(IOException cause) {
+        return new IOException(
+            Constants.IMAGE_LOAD_ERROR_BINARY.replace(
+                Constants.ILE_BINARY_SOURCE_PLACEHOLDER,
+                this.bufferView.name),
+            cause
+        );
     }
 }
@@ -0,0 +1,300 @@
+package gltf.material;
+
+import gltf.utils.ParallelUtils;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Extracts single channels out of decoded images, such as the occlusion,
+ * roughness and metallic values glTF packs into one texture, and caches
+ * them per image and channel. All the channels needed from an image are
+ * extracted in one pass over its pixels, see
+ * {@link #extractMaterialChannels(GLTFMaterial)}.
+ * <p>
+ * The pixels of packed int images (TYPE_INT_ARGB, TYPE_INT_RGB...) and
+ * interleaved byte images (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, TYPE_BYTE_GRAY
+ * and the RGB(A) images of the PNG reader) are read straight from their
+ * DataBuffer; other images are read through getRGB. The channels of
+ * deduplicated images are shared, and the images are referenced weakly.
+ * The cached channels are not accounted for by {@link GLTFImageResidency}.
+ */
+public class GLTFChannelExtractor {
+    private static final GLTFChannelExtractor SHARED = new GLTFChannelExtractor();
+    private static final int N_CHANNELS = GLTFTextureChannel.values().length;
+
+    // GLTFImage does not override equals, so the keys are compared by identity
+    private final Map<GLTFImage, GLTFChannelImage[]> channels = new WeakHashMap<>();
+
+    /**
+     * @return the extractor shared by the whole process
+     */
+    public static GLTFChannelExtractor getShared(){
+        return SHARED;
+    }
+
+    /**
+     * returns a channel of an image, extracting it on the first call.
+     * @return the channel, or null if the format of the image is not supported
+     * @throws IOException if the image cannot be read
+     */
+    public GLTFChannelImage getChannel(GLTFImage image, GLTFTextureChannel channel) throws IOException {
+        return getChannels(image, channel)[0];
+    }
+
+    /**
+     * returns channels of an image. The channels not cached yet are
+     * extracted together, in one pass over the pixels.
+     * @return the channels, in the order requested, or nulls if the
+     * format of the image is not supported
+     * @throws IOException if the image cannot be read
+     */
+    public GLTFChannelImage[] getChannels(GLTFImage image, GLTFTextureChannel... channels) throws IOException {
+        image = image.getShared();
+        GLTFChannelImage[] returnVal = new GLTFChannelImage[channels.length];
+        List<GLTFTextureChannel> missing = new ArrayList<>();
+        synchronized (this.channels){
+            GLTFChannelImage[] cached = this.channels.get(image);
+            for (int i = 0; i < channels.length; i++) {
+                returnVal[i] = cached != null ? cached[channels[i].ordinal()] : null;
+                if(returnVal[i] == null && !missing.contains(channels[i]))
+                    missing.add(channels[i]);
+            }
+        }
+        if(missing.isEmpty())
+            return returnVal;
+        BufferedImage decoded = image.getImage();
+        if(decoded == null)
+            return returnVal;
+        GLTFChannelImage[] extracted = extract(decoded, missing.toArray(new GLTFTextureChannel[0]));
+        synchronized (this.channels){
+            GLTFChannelImage[] cached = this.channels.computeIfAbsent(image, i -> new GLTFChannelImage[N_CHANNELS]);
+            // another thread may have extracted the same channels meanwhile
+            for (GLTFChannelImage e : extracted) {
+                if(cached[e.channel.ordinal()] == null)
+                    cached[e.channel.ordinal()] = e;
+            }
+            for (int i = 0; i < channels.length; i++) {
+                returnVal[i] = cached[channels[i].ordinal()];
+            }
+        }
+        return returnVal;
+    }
+
+    /**
+     * extracts the channels the material reads from its occlusion and
+     * metallicRoughness textures. When both are the same image, its
+     * occlusion, roughness and metallic channels are extracted in one pass.
+     * @throws IOException if an image cannot be read
+     */
+    public void extractMaterialChannels(GLTFMaterial material) throws IOException {
+        GLTFImage occlusion = getImage(material.occlusionMap);
+        GLTFImage metallicRoughness = material.pbrMetallicRoughness != null ?
+            getImage(material.pbrMetallicRoughness.metallicRoughnessTexture)
+            : null;
+        if(occlusion != null && metallicRoughness != null
+            && occlusion.getShared() == metallicRoughness.getShared()){
+            getChannels(occlusion,
+                GLTFTextureChannel.OCCLUSION, GLTFTextureChannel.ROUGHNESS, GLTFTextureChannel.METALLIC);
+            return;
+        }
+        if(occlusion != null)
+            getChannel(occlusion, GLTFTextureChannel.OCCLUSION);
+        if(metallicRoughness != null)
+            getChannels(metallicRoughness, GLTFTextureChannel.ROUGHNESS, GLTFTextureChannel.METALLIC);
+    }
+
+    private static GLTFImage getImage(GLTFTextureInfo info){
+        return info != null && info.texture != null ? info.texture.source : null;
+    }
+
+    /**
+     * drops the cached channels of an image.
+     */
+    public void remove(GLTFImage image){
+        synchronized (this.channels){
+            this.channels.remove(image.getShared());
+        }
+    }
+
+    /**
+     * extracts channels of an image in one pass over its pixels, rows
+     * being read in parallel. A missing alpha channel reads as 255.
+     * @return the channels, in the order requested
+     */
+    public static GLTFChannelImage[] extract(BufferedImage image, GLTFTextureChannel... channels){
+        int w = image.getWidth();
+        int h = image.getHeight();
+        byte[][] outs = new byte[channels.length][w * h];
+        WritableRaster raster = image.getRaster();
+        ColorModel cm = image.getColorModel();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        boolean direct = raster.getSampleModelTranslateX() == 0
+            && raster.getSampleModelTranslateY() == 0
+            && db.getNumBanks() == 1
+            && !cm.isAlphaPremultiplied();
+        if(!(direct && (extractPacked(raster, cm, channels, outs) || extractInterleaved(raster, cm, channels, outs))))
+            extractRGB(image, channels, outs);
+        GLTFChannelImage[] returnVal = new GLTFChannelImage[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            returnVal[c] = new GLTFChannelImage(channels[c], w, h, outs[c]);
+        }
+        return returnVal;
+    }
+
+    /**
+     * reads the channels of pixels packed into ints, 8 bits per channel.
+     * @return false if the image is not stored that way
+     */
+    private static boolean extractPacked(WritableRaster raster, ColorModel cm,
+                                         GLTFTextureChannel[] channels, byte[][] outs)
+    {
+        if(!(raster.getDataBuffer() instanceof DataBufferInt)
+            || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+            || !(cm instanceof DirectColorModel))
+            return false;
+        DirectColorModel dcm = (DirectColorModel) cm;
+        int[] shifts = new int[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            int mask;
+            switch (channels[c]){
+                case RED: mask = dcm.getRedMask(); break;
+                case GREEN: mask = dcm.getGreenMask(); break;
+                case BLUE: mask = dcm.getBlueMask(); break;
+                default: mask = dcm.getAlphaMask();
+            }
+            if(mask == 0){
+                // no alpha: opaque
+                shifts[c] = -1;
+                Arrays.fill(outs[c], (byte) 0xFF);
+            }else if(Integer.bitCount(mask) == 8 && (mask >>> Integer.numberOfTrailingZeros(mask)) == 0xFF){
+                shifts[c] = Integer.numberOfTrailingZeros(mask);
+            }else{
+                return false;
+            }
+        }
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+        int[] pixels = db.getData();
+        int offset = db.getOffset();
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int w = raster.getWidth();
+        ParallelUtils.forEachChunk(raster.getHeight(), 16, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int row = offset + y * stride;
+                for (int c = 0; c < shifts.length; c++) {
+                    int shift = shifts[c];
+                    if(shift < 0)
+                        continue;
+                    byte[] out = outs[c];
+                    for (int x = 0, o = y * w; x < w; x++, o++) {
+                        out[o] = (byte) (pixels[row + x] >>> shift);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * reads the channels of pixels interleaved in bytes, one byte per
+     * channel, in the RGB or gray color spaces.
+     * @return false if the image is not stored that way
+     */
+    private static boolean extractInterleaved(WritableRaster raster, ColorModel cm,
+                                              GLTFTextureChannel[] channels, byte[][] outs)
+    {
+        if(!(raster.getDataBuffer() instanceof DataBufferByte)
+            || !(raster.getSampleModel() instanceof PixelInterleavedSampleModel)
+            || !(cm instanceof ComponentColorModel))
+            return false;
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+        for (int size : sm.getSampleSize()) {
+            if(size != 8)
+                return false;
+        }
+        int colorType = cm.getColorSpace().getType();
+        int nColors = cm.getNumColorComponents();
+        boolean gray = colorType == ColorSpace.TYPE_GRAY && nColors == 1;
+        if(!gray && !(colorType == ColorSpace.TYPE_RGB && nColors == 3))
+            return false;
+        int[] bandOffsets = sm.getBandOffsets();
+        int[] offsets = new int[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            int band = channels[c] == GLTFTextureChannel.ALPHA ?
+                (cm.hasAlpha() ? nColors : -1)
+                : (gray ? 0 : channels[c].ordinal());
+            if(band < 0){
+                offsets[c] = -1;
+                Arrays.fill(outs[c], (byte) 0xFF);
+            }else{
+                offsets[c] = bandOffsets[band];
+            }
+        }
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        byte[] bytes = db.getData();
+        int offset = db.getOffset();
+        int stride = sm.getScanlineStride();
+        int pixelStride = sm.getPixelStride();
+        int w = raster.getWidth();
+        ParallelUtils.forEachChunk(raster.getHeight(), 16, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int row = offset + y * stride;
+                for (int c = 0; c < offsets.length; c++) {
+                    if(offsets[c] < 0)
+                        continue;
+                    byte[] out = outs[c];
+                    for (int x = 0, o = y * w, i = row + offsets[c]; x < w; x++, o++, i += pixelStride) {
+                        out[o] = bytes[i];
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * reads the channels of any image through getRGB, a row at a time.
+     */
+    private static void extractRGB(BufferedImage image, GLTFTextureChannel[] channels, byte[][] outs){
+        int w = image.getWidth();
+        int[] shifts = new int[channels.length];
+        for (int c = 0; c < channels.length; c++) {
+            switch (channels[c]){
+                case RED: shifts[c] = 16; break;
+                case GREEN: shifts[c] = 8; break;
+                case BLUE: shifts[c] = 0; break;
+                default: shifts[c] = 24;
+            }
+        }
+        ParallelUtils.forEachChunk(image.getHeight(), 16, (start, end) -> {
+            int[] argb = new int[w];
+            for (int y = start; y < end; y++) {
+                image.getRGB(0, y, w, 1, argb, 0, w);
+                for (int c = 0; c < shifts.length; c++) {
+                    byte[] out = outs[c];
+                    int shift = shifts[c];
+                    for (int x = 0, o = y * w; x < w; x++, o++) {
+                        out[o] = (byte) (argb[x] >>> shift);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package gltf.material;
+
+/**
+ * One channel of a decoded image, as extracted by
+ * {@link GLTFChannelExtractor}: one unsigned byte per pixel, row by row.
+ */
+public class GLTFChannelImage {
+    public final GLTFTextureChannel channel;
+    public final int width;
+    public final int height;
+    /** the values of the pixels, width * height bytes, row by row */
+    public final byte[] data;
+
+    public GLTFChannelImage(GLTFTextureChannel channel, int width, int height, byte[] data) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    /**
+     * @return the value of a pixel, from 0 to 255
+     */
+    public int get(int x, int y){
+        return this.data[y * this.width + x] & 0xFF;
+    }
+
+    /**
+     * @return the value of a pixel, from 0 to 1
+     */
+    public float getFloat(int x, int y){
+        return get(x, y) / 255f;
+    }
+}
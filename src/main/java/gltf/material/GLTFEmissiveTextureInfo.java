@@ -5,7 +5,13 @@ import com.alibaba.fastjson.JSONObject;
 
 public class GLTFEmissiveTextureInfo extends GLTFTextureInfo{
     public GLTFEmissiveTextureInfo(GLTFTexture texture, int texCoord, JSONObject extras) {
-        super(texture, texCoord, extras);
+        this(texture, texCoord, null, extras);
+    }
+    public GLTFEmissiveTextureInfo(GLTFTexture texture,
+                                   int texCoord,
+                                   GLTFTextureTransform transform,
+                                   JSONObject extras) {
+        super(texture, texCoord, transform, extras);
     }
     public static GLTFEmissiveTextureInfo fromJSONObject(JSONObject jObj, GLTFTexture[] textures) throws GLTFException {
         try{
@@ -14,6 +20,7 @@ public class GLTFEmissiveTextureInfo extends GLTFTextureInfo{
                 jObj.containsKey("texCoord") ?
                     jObj.getIntValue("texCoord")
                     : 0,
+                GLTFTextureTransform.fromTextureInfo(jObj),
                 jObj.containsKey("extras") ?
                     jObj.getJSONObject("extras")
                     : null
@@ -2,34 +2,47 @@ package gltf.material;
 
 import gltf.Constants;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class GLTFExternalImage extends GLTFImage{
     protected final String relativePath;
 
-    public GLTFExternalImage(String path, String gltfRootDir)
+    /**
+     * references an image file, which is only read when used.
+     * @throws IOException if the file does not exist
+     */
+    public GLTFExternalImage(String path, String gltfRootDir, String mimeType)
             throws IOException
     {
-        super(readImage(gltfRootDir + "/" + path));
+        super(mimeType);
         this.relativePath = gltfRootDir + "/" + path;
-
+        if(!new File(this.relativePath).isFile())
+            throw readError(new IOException("no such file"));
     }
-    private static BufferedImage readImage(String relativePath)
+
+    public GLTFExternalImage(String path, String gltfRootDir)
             throws IOException
     {
-        try{
-            return ImageIO.read(new File(relativePath));
-        }catch(IOException ioe){
-            throw new IOException(
-                Constants.IMAGE_LOAD_ERROR_EXTERNAL
-                    .replace(
-                            Constants.ILE_EXTERNAL_SOURCE_PLACHOLDER,
-                            relativePath
-                    )
-            );
-        }
+        this(path, gltfRootDir, null);
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return new FileInputStream(this.relativePath);
+    }
+
+    @Override
+    protected IOException readError(IOException cause) {
+        return new IOException(
+            Constants.IMAGE_LOAD_ERROR_EXTERNAL
+                .replace(
+                        Constants.ILE_EXTERNAL_SOURCE_PLACHOLDER,
+                        this.relativePath
+                ),
+            cause
+        );
     }
 }
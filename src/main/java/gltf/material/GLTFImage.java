@@ -2,24 +2,387 @@ package gltf.material;
 
 import gltf.buffer.GLTFBufferView;
 import gltf.exception.GLTFException;
+import gltf.ktx2.KTX2Texture;
+import gltf.utils.HashUtils;
+import gltf.utils.ImageUtils;
 import com.alibaba.fastjson.JSONObject;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Iterator;
 
+/**
+ * An image, kept encoded until it is used. Reading an asset only
+ * references the image bytes; {@link #getImage()} decodes them the first
+ * time it is called, and the size and format are read from the image
+ * header without decoding the pixels. Tools which never use the
+ * textures never pay for decoding them.
+ * <p>
+ * Besides the formats of ImageIO, KTX2 textures are decoded by
+ * {@link KTX2Texture}, from the mip level closest to the maximum
+ * dimension.
+ */
 public abstract class GLTFImage {
-    public final BufferedImage image;
-    public GLTFImage(BufferedImage image){
-        this.image = image;
+    /** the mime type declared by the asset, or null */
+    public final String mimeType;
+
+    private volatile BufferedImage image;
+    private volatile boolean decoded = false;
+    private volatile long decodeNanos = -1;
+    private volatile int maxDimension = 0;
+    private volatile GLTFImageResidency residency = null;
+    private boolean evicted = false;
+    private volatile GLTFImage shared = null;
+    private volatile boolean sharedByOthers = false;
+    private long contentHash;
+    private long encodedLength = -1;
+    private int width = -1;
+    private int height = -1;
+    private int levelCount = 1;
+    private String formatName = null;
+
+    public GLTFImage(String mimeType){
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * opens a stream over the encoded image, to decode it elsewhere
+     * than in {@link #getImage()}.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * wraps a read error into an exception naming the source of the image.
+     */
+    protected abstract IOException readError(IOException cause);
+
+    /**
+     * returns the decoded image, decoding it on the first call, or again
+     * after a {@link GLTFImageResidency} evicted it. Concurrent callers
+     * wait for a single decoding.
+     * @return the image, or null if no ImageIO reader supports its format
+     * @throws IOException if the image cannot be read
+     */
+    public BufferedImage getImage() throws IOException {
+        GLTFImage shared = this.shared;
+        if(shared != null)
+            return shared.getImage();
+        BufferedImage returnVal;
+        boolean reDecoded = false;
+        synchronized (this){
+            if(!this.decoded){
+                long start = System.nanoTime();
+                this.image = decode();
+                this.decodeNanos = System.nanoTime() - start;
+                this.decoded = true;
+                reDecoded = this.evicted;
+                this.evicted = false;
+            }
+            returnVal = this.image;
+        }
+        // outside of the lock, as the residency locks the images it evicts
+        GLTFImageResidency residency = this.residency;
+        if(residency != null && returnVal != null)
+            residency.access(this, returnVal, reDecoded);
+        return returnVal;
+    }
+
+    /**
+     * drops the decoded pixels, which the next {@link #getImage()}
+     * decodes again from the encoded image.
+     */
+    void evict(){
+        synchronized (this){
+            if(!this.decoded)
+                return;
+            this.image = null;
+            this.decoded = false;
+            this.evicted = true;
+        }
+    }
+
+    /**
+     * sets the residency accounting for the decoded pixels of the image,
+     * which may evict them to stay within its budget.
+     * @param residency the residency, or null
+     */
+    public void setResidency(GLTFImageResidency residency){
+        GLTFImageResidency previous = this.residency;
+        this.residency = residency;
+        if(previous != null && previous != residency)
+            previous.remove(this);
+    }
+
+    /**
+     * decodes a new copy of the image, without caching it, downscaled
+     * to the maximum dimension if one is set. A downscaled image is
+     * subsampled while it is read, to at most twice the target size,
+     * then box filtered to the target size: the pixels of a large image
+     * are never all decoded. A KTX2 texture is read from the smallest mip
+     * level at least as large as the target size, then box filtered.
+     * @return the image, or null if no ImageIO reader supports its format,
+     * or if it is a KTX2 texture in a format which cannot be decoded
+     * @throws IOException if the image cannot be read
+     */
+    public BufferedImage decode() throws IOException {
+        try(InputStream in = openStream()){
+            byte[] head = in.readNBytes(KTX2Texture.HEADER_LENGTH);
+            if(KTX2Texture.isKTX2(head)){
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                bytes.write(head);
+                in.transferTo(bytes);
+                return decodeKTX2(bytes.toByteArray());
+            }
+            return decodeImageIO(new SequenceInputStream(new ByteArrayInputStream(head), in));
+        }catch(IOException ioe){
+            throw readError(ioe);
+        }
+    }
+
+    private BufferedImage decodeImageIO(InputStream in) throws IOException {
+        try(ImageInputStream iis = ImageIO.createImageInputStream(in)){
+            Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : null;
+            if(readers == null || !readers.hasNext())
+                return null;
+            ImageReader reader = readers.next();
+            try{
+                reader.setInput(iis, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                int max = this.maxDimension;
+                if(max <= 0 || Math.max(w, h) <= max)
+                    return reader.read(0);
+                int step = Math.max(1, Math.max(w, h) / (2 * max));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage subsampled = reader.read(0, param);
+                double scale = (double) max / Math.max(w, h);
+                return ImageUtils.boxFilter(subsampled,
+                    Math.max(1, Math.min(subsampled.getWidth(), (int) Math.round(w * scale))),
+                    Math.max(1, Math.min(subsampled.getHeight(), (int) Math.round(h * scale))));
+            }finally{
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage decodeKTX2(byte[] bytes) throws IOException {
+        BufferedImage returnVal;
+        try{
+            KTX2Texture texture = KTX2Texture.read(bytes);
+            if(!texture.isDecodable())
+                return null;
+            returnVal = texture.decodeLevel(texture.selectLevel(this.maxDimension));
+        }catch(GLTFException e){
+            throw new IOException(e.getMessage(), e);
+        }
+        int max = this.maxDimension;
+        int w = returnVal.getWidth();
+        int h = returnVal.getHeight();
+        if(max <= 0 || Math.max(w, h) <= max)
+            return returnVal;
+        double scale = (double) max / Math.max(w, h);
+        return ImageUtils.boxFilter(returnVal,
+            Math.max(1, (int) Math.round(w * scale)),
+            Math.max(1, (int) Math.round(h * scale)));
+    }
+
+    /**
+     * sets the size the image is downscaled to when decoded: its larger
+     * side will be at most maxDimension pixels. It has no effect on an
+     * image decoded already.
+     * <p>
+     * Images are only deduplicated with images of the same maximum
+     * dimension, so it must be set before {@link GLTFImageDeduplicator
+     * deduplicating} the image: once the image shares its decoded pixels
+     * with other images, it cannot be changed.
+     * @param maxDimension the maximum width and height, 0 for no limit
+     * @throws IllegalStateException if the image shares its decoded
+     * pixels and maxDimension differs from its maximum dimension
+     */
+    public void setMaxDimension(int maxDimension){
+        if(maxDimension != this.maxDimension && (this.shared != null || this.sharedByOthers))
+            throw new IllegalStateException("the maximum dimension of an image must be set before it is deduplicated");
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension(){
+        return this.maxDimension;
+    }
+
+    /**
+     * @return whether the image was decoded already
+     */
+    public boolean isDecoded(){
+        GLTFImage shared = this.shared;
+        return shared != null ? shared.isDecoded() : this.decoded;
+    }
+
+    /**
+     * makes the image use the decoded pixels of another image with the
+     * same encoded bytes, see {@link GLTFImageDeduplicator}.
+     */
+    void shareWith(GLTFImage image){
+        image.sharedByOthers = true;
+        synchronized (this){
+            this.shared = image;
+            this.image = null;
+            this.decoded = false;
+        }
+        GLTFImageResidency residency = this.residency;
+        if(residency != null)
+            residency.remove(this);
+    }
+
+    /**
+     * returns the image whose decoded pixels this image uses: the image
+     * it was deduplicated to, or itself.
+     */
+    public GLTFImage getShared(){
+        GLTFImage shared = this.shared;
+        return shared != null ? shared : this;
+    }
+
+    /**
+     * reads the encoded bytes of the image.
+     */
+    public byte[] readEncodedBytes() throws IOException {
+        try(InputStream in = openStream()){
+            return in.readAllBytes();
+        }catch(IOException ioe){
+            throw readError(ioe);
+        }
+    }
+
+    /**
+     * returns a 64-bit hash of the encoded bytes, computed on the first call.
+     */
+    public synchronized long getContentHash() throws IOException {
+        if(this.encodedLength == -1){
+            byte[] bytes = readEncodedBytes();
+            this.contentHash = HashUtils.hash64(bytes);
+            this.encodedLength = bytes.length;
+        }
+        return this.contentHash;
+    }
+
+    /**
+     * @return the number of encoded bytes
+     */
+    public synchronized long getEncodedLength() throws IOException {
+        getContentHash();
+        return this.encodedLength;
+    }
+
+    /**
+     * @return the time the decoding took, in nanoseconds, or -1 if the
+     * image was not decoded yet
+     */
+    public long getDecodeTimeNanos(){
+        return this.decodeNanos;
+    }
+
+    /**
+     * returns the memory taken while decoding the image, estimated at 4
+     * bytes per pixel from its size, or from its subsampled size if it
+     * is downscaled, or from the size of the mip level read for a KTX2
+     * texture.
+     */
+    public long getDecodedByteEstimate() throws IOException {
+        readHeader();
+        int max = this.maxDimension;
+        if(KTX2Texture.FORMAT_NAME.equals(this.formatName)){
+            int level = KTX2Texture.selectLevel(this.width, this.height, this.levelCount, max);
+            return 4L * KTX2Texture.getLevelSize(this.width, level) * KTX2Texture.getLevelSize(this.height, level);
+        }
+        if(max <= 0 || Math.max(this.width, this.height) <= max)
+            return 4L * this.width * this.height;
+        int step = Math.max(1, Math.max(this.width, this.height) / (2 * max));
+        long w = (this.width + step - 1) / step;
+        long h = (this.height + step - 1) / step;
+        return 4L * w * h;
+    }
+
+    /**
+     * @return the width of the image, read from its header, before
+     * any downscaling
+     */
+    public int getWidth() throws IOException {
+        readHeader();
+        return this.width;
+    }
+
+    /**
+     * @return the height of the image, read from its header, before
+     * any downscaling
+     */
+    public int getHeight() throws IOException {
+        readHeader();
+        return this.height;
+    }
+
+    /**
+     * @return the name of the format of the image, such as "png",
+     * "JPEG" or "KTX2", read from its header
+     */
+    public String getFormatName() throws IOException {
+        readHeader();
+        return this.formatName;
+    }
+
+    private synchronized void readHeader() throws IOException {
+        if(this.formatName != null)
+            return;
+        try(InputStream in = openStream()){
+            byte[] head = in.readNBytes(KTX2Texture.HEADER_LENGTH);
+            if(KTX2Texture.isKTX2(head)){
+                KTX2Texture texture = KTX2Texture.readHeader(head);
+                this.width = texture.width;
+                this.height = texture.height;
+                this.levelCount = texture.levelCount;
+                this.formatName = KTX2Texture.FORMAT_NAME;
+                return;
+            }
+            readImageIOHeader(new SequenceInputStream(new ByteArrayInputStream(head), in));
+        }catch(GLTFException e){
+            throw readError(new IOException(e.getMessage(), e));
+        }catch(IOException ioe){
+            throw readError(ioe);
+        }
+    }
+
+    private void readImageIOHeader(InputStream in) throws IOException {
+        try(ImageInputStream iis = ImageIO.createImageInputStream(in)){
+            Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : null;
+            if(readers == null || !readers.hasNext())
+                throw new IOException("unsupported image format");
+            ImageReader reader = readers.next();
+            try{
+                reader.setInput(iis, true, true);
+                this.width = reader.getWidth(0);
+                this.height = reader.getHeight(0);
+                this.formatName = reader.getFormatName();
+            }finally{
+                reader.dispose();
+            }
+        }
     }
 
     /**
      * This function creates a GLTFImage object from the
-     * JSONObject passed in parameter
+     * JSONObject passed in parameter. The image is not decoded.
      * @param jObj
      * @param bufferViews
      * @return
-     * @throws IOException if the image cannot be created. from the source specified in the
+     * @throws GLTFException if the source of the image does not exist
      */
     public static GLTFImage fromJSONObject(JSONObject jObj,
                                            GLTFBufferView[] bufferViews,
@@ -30,7 +393,8 @@ public abstract class GLTFImage {
             try{
                 return new GLTFExternalImage(
                     jObj.getString("uri"),
-                    gltfDir
+                    gltfDir,
+                    jObj.getString("mimeType")
                 );
             }catch(IOException ioe){
                 GLTFException.throwGLTFExceptionWithCause(jObj);
@@ -43,8 +407,8 @@ public abstract class GLTFImage {
                     bufferViews,
                     jObj.getString("mimeType")
                 );
-            }catch(IOException ioe){
-                ioe.printStackTrace();
+            }catch(Exception e){
+                e.printStackTrace();
                 GLTFException.throwGLTFExceptionWithCause(jObj);
             }
         }
@@ -0,0 +1,157 @@
+package gltf.material;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes images concurrently on a bounded pool of threads. The memory
+ * taken by the images being decoded is bounded too: before decoding, an
+ * image reserves its estimated decoded size (4 bytes per pixel, read
+ * from its header) from a budget, and waits while the budget is taken by
+ * other decodes. An image larger than the whole budget is decoded alone.
+ * <p>
+ * Images already decoded are skipped, and the decode time of each image
+ * is available from {@link GLTFImage#getDecodeTimeNanos()}.
+ */
+public class GLTFImageDecoder {
+    /** the maximum number of images decoded at once */
+    public final int parallelism;
+    /** the maximum estimated size of the images being decoded at once, in bytes */
+    public final long maxInFlightBytes;
+
+    private final Object budgetLock = new Object();
+    private long inFlightBytes = 0;
+
+    public GLTFImageDecoder(int parallelism, long maxInFlightBytes) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /**
+     * creates a decoder with one thread per processor, whose budget is a
+     * quarter of the maximum heap size.
+     */
+    public GLTFImageDecoder() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * a task run on an image by {@link #forEach(GLTFImage[], ImageTask)}.
+     */
+    public interface ImageTask {
+        void run(GLTFImage image) throws IOException;
+    }
+
+    /**
+     * decodes the images, and returns once they are all decoded.
+     * @param images the images, which may contain nulls
+     * @throws IOException the first error, any other one being suppressed in it
+     */
+    public void decodeAll(GLTFImage[] images) throws IOException {
+        List<GLTFImage> pending = new ArrayList<>();
+        for (GLTFImage image : images) {
+            if(image != null && !image.isDecoded())
+                pending.add(image);
+        }
+        runAll(pending, GLTFImage::getImage);
+    }
+
+    /**
+     * runs a task on each image, concurrently and within the budget of
+     * the decoder, as if the task decoded the image: for the tasks which
+     * decode images elsewhere than in {@link GLTFImage#getImage()}, such
+     * as into the images of a UI toolkit. Returns once all the tasks
+     * are done.
+     * @param images the images, which may contain nulls
+     * @param task the task, run once per image
+     * @throws IOException the first error, any other one being suppressed in it
+     */
+    public void forEach(GLTFImage[] images, ImageTask task) throws IOException {
+        List<GLTFImage> pending = new ArrayList<>();
+        for (GLTFImage image : images) {
+            if(image != null)
+                pending.add(image);
+        }
+        runAll(pending, task);
+    }
+
+    private void runAll(List<GLTFImage> pending, ImageTask task) throws IOException {
+        if(pending.isEmpty())
+            return;
+        int nThreads = Math.min(this.parallelism, pending.size());
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "gltf-image-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try{
+            List<Future<?>> futures = new ArrayList<>();
+            for (GLTFImage image : pending) {
+                futures.add(executor.submit(() -> {
+                    run(image, task);
+                    return null;
+                }));
+            }
+            IOException error = null;
+            for (Future<?> future : futures) {
+                try{
+                    future.get();
+                }catch(ExecutionException ee){
+                    IOException ioe = ee.getCause() instanceof IOException ?
+                        (IOException) ee.getCause()
+                        : new IOException(ee.getCause());
+                    if(error == null)
+                        error = ioe;
+                    else
+                        error.addSuppressed(ioe);
+                }catch(InterruptedException ie){
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while decoding images", ie);
+                }
+            }
+            if(error != null)
+                throw error;
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(GLTFImage image, ImageTask task) throws IOException, InterruptedException {
+        // an unreadable header fails the task below, so it reserves nothing
+        long bytes;
+        try{
+            bytes = image.getDecodedByteEstimate();
+        }catch(IOException ioe){
+            bytes = 0;
+        }
+        reserve(bytes);
+        try{
+            task.run(image);
+        }finally{
+            release(bytes);
+        }
+    }
+
+    private void reserve(long bytes) throws InterruptedException {
+        synchronized (this.budgetLock){
+            while (this.inFlightBytes > 0 && this.inFlightBytes + bytes > this.maxInFlightBytes) {
+                this.budgetLock.wait();
+            }
+            this.inFlightBytes += bytes;
+        }
+    }
+
+    private void release(long bytes){
+        synchronized (this.budgetLock){
+            this.inFlightBytes -= bytes;
+            this.budgetLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package gltf.material;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps images with identical encoded bytes to one shared image, across
+ * assets. Images are hashed before being decoded, and images with equal
+ * hashes are compared byte for byte: a duplicate then uses the decoded
+ * pixels of the first image read with those bytes, which is decoded only
+ * once. Images downscaled to different sizes are not shared, and the
+ * {@link GLTFImage#setMaxDimension(int) maximum dimension} of a shared
+ * image cannot be changed afterwards.
+ * <p>
+ * The images are referenced weakly, so that closed assets can still be
+ * garbage collected.
+ */
+public class GLTFImageDeduplicator {
+    private static final GLTFImageDeduplicator SHARED = new GLTFImageDeduplicator();
+
+    private final Map<Long, List<WeakReference<GLTFImage>>> images = new HashMap<>();
+    private long duplicateCount = 0;
+
+    /**
+     * @return the deduplicator shared by the whole process
+     */
+    public static GLTFImageDeduplicator getShared(){
+        return SHARED;
+    }
+
+    /**
+     * deduplicates an image, which is not decoded again if an image
+     * with the same bytes was seen before. The encoded bytes are read
+     * and compared outside of the lock of the deduplicator, so that
+     * assets loaded concurrently do not wait for each other's reads.
+     * @return the image whose decoded pixels the image now uses
+     * @throws IOException if the encoded bytes cannot be read
+     */
+    public GLTFImage deduplicate(GLTFImage image) throws IOException {
+        if(image.getShared() != image)
+            return image.getShared();
+        long hash = image.getContentHash();
+        long length = image.getEncodedLength();
+        byte[] bytes = null;
+        // the candidates compared already, as images may be registered while comparing
+        Set<GLTFImage> compared = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (true) {
+            List<GLTFImage> candidates = new ArrayList<>();
+            synchronized (this){
+                List<WeakReference<GLTFImage>> references = this.images.computeIfAbsent(hash, h -> new ArrayList<>(1));
+                Iterator<WeakReference<GLTFImage>> it = references.iterator();
+                while (it.hasNext()) {
+                    GLTFImage candidate = it.next().get();
+                    if(candidate == null){
+                        it.remove();
+                        continue;
+                    }
+                    if(candidate == image)
+                        return image;
+                    if(!compared.contains(candidate))
+                        candidates.add(candidate);
+                }
+                if(candidates.isEmpty()){
+                    references.add(new WeakReference<>(image));
+                    return image;
+                }
+            }
+            for (GLTFImage candidate : candidates) {
+                compared.add(candidate);
+                if(candidate.getMaxDimension() != image.getMaxDimension()
+                    || candidate.getEncodedLength() != length)
+                    continue;
+                if(bytes == null)
+                    bytes = image.readEncodedBytes();
+                if(Arrays.equals(bytes, candidate.readEncodedBytes())){
+                    synchronized (this){
+                        // the maximum dimensions may have been set while comparing
+                        if(candidate.getMaxDimension() != image.getMaxDimension())
+                            continue;
+                        image.shareWith(candidate);
+                        this.duplicateCount++;
+                    }
+                    return candidate;
+                }
+            }
+        }
+    }
+
+    /**
+     * deduplicates images, such as all the images of an asset.
+     * @param images the images, which may contain nulls
+     */
+    public void deduplicateAll(GLTFImage[] images) throws IOException {
+        for (GLTFImage image : images) {
+            if(image != null)
+                deduplicate(image);
+        }
+    }
+
+    /**
+     * @return the number of images found to be duplicates so far
+     */
+    public synchronized long getDuplicateCount(){
+        return this.duplicateCount;
+    }
+}
@@ -0,0 +1,137 @@
+package gltf.material;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the decoded pixels of images within a memory budget, across any
+ * number of assets: the images share one residency through
+ * {@link GLTFImage#setResidency(GLTFImageResidency)} (or
+ * GLTFAsset.setImageResidency). Every {@link GLTFImage#getImage()} marks
+ * the image as recently used; when the decoded images take more than
+ * the budget, the least recently used ones are evicted, and are decoded
+ * again from their encoded bytes when next used.
+ * <p>
+ * The image just used is never evicted, so an image larger than the
+ * whole budget stays resident alone.
+ */
+public class GLTFImageResidency {
+    /** the resident images and their size in bytes, least recently used first */
+    private final LinkedHashMap<GLTFImage, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long residentBytes = 0;
+    private long evictionCount = 0;
+    private long reDecodeCount = 0;
+
+    /**
+     * @param budgetBytes the maximum size of the decoded images, in bytes
+     */
+    public GLTFImageResidency(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * records a use of an image, then evicts images if over budget.
+     * @param reDecoded whether the image was decoded again after an eviction
+     */
+    void access(GLTFImage image, BufferedImage decoded, boolean reDecoded){
+        List<GLTFImage> evicted;
+        synchronized (this){
+            if(reDecoded)
+                this.reDecodeCount++;
+            if(this.resident.get(image) == null){
+                long bytes = getByteSize(decoded);
+                this.resident.put(image, bytes);
+                this.residentBytes += bytes;
+            }
+            evicted = collectEvicted();
+        }
+        // the images are evicted outside of the lock, as GLTFImage.getImage
+        // holds its own lock while decoding
+        for (GLTFImage e : evicted) {
+            e.evict();
+        }
+    }
+
+    private List<GLTFImage> collectEvicted(){
+        List<GLTFImage> returnVal = new ArrayList<>();
+        Iterator<Map.Entry<GLTFImage, Long>> it = this.resident.entrySet().iterator();
+        // the most recently used image is the last entry: it is kept
+        while (this.residentBytes > this.budgetBytes && this.resident.size() > 1 + returnVal.size()) {
+            Map.Entry<GLTFImage, Long> eldest = it.next();
+            returnVal.add(eldest.getKey());
+            this.residentBytes -= eldest.getValue();
+            this.evictionCount++;
+        }
+        for (GLTFImage image : returnVal) {
+            this.resident.remove(image);
+        }
+        return returnVal;
+    }
+
+    /**
+     * stops accounting for an image, without evicting it, such as when
+     * its asset is closed.
+     */
+    public synchronized void remove(GLTFImage image){
+        Long bytes = this.resident.remove(image);
+        if(bytes != null)
+            this.residentBytes -= bytes;
+    }
+
+    /**
+     * changes the budget, evicting images if the decoded ones take more.
+     */
+    public void setBudgetBytes(long budgetBytes){
+        List<GLTFImage> evicted;
+        synchronized (this){
+            this.budgetBytes = budgetBytes;
+            evicted = collectEvicted();
+        }
+        for (GLTFImage e : evicted) {
+            e.evict();
+        }
+    }
+
+    public synchronized long getBudgetBytes(){
+        return this.budgetBytes;
+    }
+
+    /**
+     * @return the size of the decoded images accounted for, in bytes
+     */
+    public synchronized long getResidentBytes(){
+        return this.residentBytes;
+    }
+
+    public synchronized int getResidentCount(){
+        return this.resident.size();
+    }
+
+    /**
+     * @return the number of images evicted so far
+     */
+    public synchronized long getEvictionCount(){
+        return this.evictionCount;
+    }
+
+    /**
+     * @return the number of evicted images decoded again so far
+     */
+    public synchronized long getReDecodeCount(){
+        return this.reDecodeCount;
+    }
+
+    /**
+     * returns the memory taken by the pixels of an image.
+     */
+    public static long getByteSize(BufferedImage image){
+        DataBuffer db = image.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+}
@@ -35,6 +35,27 @@ public class GLTFMaterial {
         this.alphaCutoff = alphaCutoff;
     }
 
+    /**
+     * returns the texture infos of the material: base color,
+     * metallicRoughness, normal, occlusion and emissive, skipping the
+     * absent ones.
+     */
+    public GLTFTextureInfo[] getTextureInfos(){
+        GLTFTextureInfo[] all = {
+            this.pbrMetallicRoughness != null ? this.pbrMetallicRoughness.baseColorTexture : null,
+            this.pbrMetallicRoughness != null ? this.pbrMetallicRoughness.metallicRoughnessTexture : null,
+            this.normalMap,
+            this.occlusionMap,
+            this.emissiveMap
+        };
+        int n = 0;
+        for (GLTFTextureInfo info : all) {
+            if(info != null)
+                all[n++] = info;
+        }
+        return java.util.Arrays.copyOf(all, n);
+    }
+
     public static GLTFMaterial fromJSONObject(JSONObject jObj, GLTFTexture[] textures) {
         //TODO code this method
         try{
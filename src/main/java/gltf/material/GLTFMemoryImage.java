@@ -0,0 +1,70 @@
+package gltf.material;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An image built in memory rather than read from an asset, such as a
+ * page of a texture atlas. It is always decoded, and is never evicted;
+ * its encoded bytes are a PNG, encoded only if they are read.
+ */
+public class GLTFMemoryImage extends GLTFImage {
+    public final String name;
+    private final BufferedImage image;
+    private byte[] png = null;
+
+    public GLTFMemoryImage(BufferedImage image, String name) {
+        super("image/png");
+        this.image = image;
+        this.name = name;
+    }
+
+    @Override
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    @Override
+    public BufferedImage decode() {
+        return this.image;
+    }
+
+    @Override
+    public boolean isDecoded() {
+        return true;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    @Override
+    public long getDecodedByteEstimate() {
+        return 4L * this.image.getWidth() * this.image.getHeight();
+    }
+
+    @Override
+    public synchronized InputStream openStream() throws IOException {
+        if(this.png == null){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(this.image, "png", out);
+            this.png = out.toByteArray();
+        }
+        return new ByteArrayInputStream(this.png);
+    }
+
+    @Override
+    protected IOException readError(IOException cause) {
+        return new IOException("Could not encode the image " + this.name, cause);
+    }
+}
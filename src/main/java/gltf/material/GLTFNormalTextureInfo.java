@@ -9,7 +9,15 @@ public class GLTFNormalTextureInfo extends GLTFTextureInfo{
                                     int texCoord,
                                     float scale,
                                     JSONObject extras) {
-        super(texture, texCoord, extras);
+        this(texture, texCoord, scale, null, extras);
+    }
+
+    protected GLTFNormalTextureInfo(GLTFTexture texture,
+                                    int texCoord,
+                                    float scale,
+                                    GLTFTextureTransform transform,
+                                    JSONObject extras) {
+        super(texture, texCoord, transform, extras);
     }
 
     public static GLTFNormalTextureInfo fromJSONObject(JSONObject jObj,
@@ -25,6 +33,7 @@ public class GLTFNormalTextureInfo extends GLTFTextureInfo{
                 jObj.containsKey("scale") ?
                     jObj.getFloatValue("scale")
                     : 1,
+                GLTFTextureTransform.fromTextureInfo(jObj),
                 jObj.containsKey("extras") ?
                     jObj.getJSONObject("extras")
                     : null
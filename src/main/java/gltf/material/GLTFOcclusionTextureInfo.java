@@ -8,7 +8,14 @@ public class GLTFOcclusionTextureInfo extends GLTFTextureInfo{
     public final float strength;
 
     public GLTFOcclusionTextureInfo(GLTFTexture texture, int texCoordIdx, float strength, JSONObject extras) {
-        super(texture, texCoordIdx, extras);
+        this(texture, texCoordIdx, strength, null, extras);
+    }
+    public GLTFOcclusionTextureInfo(GLTFTexture texture,
+                                    int texCoordIdx,
+                                    float strength,
+                                    GLTFTextureTransform transform,
+                                    JSONObject extras) {
+        super(texture, texCoordIdx, transform, extras);
         this.strength = strength;
     }
     public GLTFOcclusionTextureInfo(int textureIdx,
@@ -16,11 +23,20 @@ public class GLTFOcclusionTextureInfo extends GLTFTextureInfo{
                                     Float strength,
                                     JSONObject extras,
                                     GLTFTexture[] textures){
+        this(textureIdx, texCoordIdx, strength, null, extras, textures);
+    }
+    public GLTFOcclusionTextureInfo(int textureIdx,
+                                    int texCoordIdx,
+                                    Float strength,
+                                    GLTFTextureTransform transform,
+                                    JSONObject extras,
+                                    GLTFTexture[] textures){
         this(textures[textureIdx],
             texCoordIdx == -1 ?
                 0
                 : texCoordIdx,
             strength,
+            transform,
             extras);
     }
     public static GLTFOcclusionTextureInfo fromJSONObject(JSONObject jObj, GLTFTexture[] textures) throws GLTFException {
@@ -33,6 +49,7 @@ public class GLTFOcclusionTextureInfo extends GLTFTextureInfo{
                 jObj.containsKey("Strength") ?
                     jObj.getFloatValue("strength")
                     : 1,
+                GLTFTextureTransform.fromTextureInfo(jObj),
                 jObj.containsKey("extras") ?
                     jObj.getJSONObject("extras")
                     : null,
@@ -4,19 +4,39 @@ import com.alibaba.fastjson.JSONObject;
 
 public class GLTFTexture {
     public final GLTFTextureSampler sampler;
+    /**
+     * the image of the texture. With KHR_texture_basisu, it is the
+     * fallback image if the asset has one, else the KTX2 image.
+     */
     public final GLTFImage source;
+    /** the KTX2 image of the KHR_texture_basisu extension, or null */
+    public final GLTFImage basisuSource;
     public final String name;
     public final JSONObject extras;
 
     public GLTFTexture(GLTFTextureSampler sampler, GLTFImage source, String name, JSONObject extras) {
+        this(sampler, source, null, name, extras);
+    }
+
+    public GLTFTexture(GLTFTextureSampler sampler,
+                       GLTFImage source,
+                       GLTFImage basisuSource,
+                       String name,
+                       JSONObject extras)
+    {
         this.sampler = sampler;
-        this.source = source;
+        this.source = source != null ? source : basisuSource;
+        this.basisuSource = basisuSource;
         this.name = name;
         this.extras = extras;
     }
     public static GLTFTexture fromJSONObject(JSONObject jObj,
                                              GLTFImage[] images,
                                              GLTFTextureSampler[] samplers){
+        JSONObject extensions = jObj.getJSONObject("extensions");
+        JSONObject basisu = extensions != null ?
+            extensions.getJSONObject("KHR_texture_basisu")
+            : null;
         return new GLTFTexture(
             jObj.containsKey("sampler") ?
                 samplers[jObj.getIntValue("sampler")]
@@ -24,6 +44,9 @@ public class GLTFTexture {
             jObj.containsKey("source") ?
                 images[jObj.getIntValue("source")]
                 : null,
+            basisu != null && basisu.containsKey("source") ?
+                images[basisu.getIntValue("source")]
+                : null,
             jObj.containsKey("name") ?
                 jObj.getString("name")
                 : "",
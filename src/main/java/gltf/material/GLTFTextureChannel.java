@@ -0,0 +1,19 @@
+package gltf.material;
+
+/**
+ * A color channel of a texture. glTF packs the occlusion, roughness and
+ * metallic values of a material into the red, green and blue channels.
+ */
+public enum GLTFTextureChannel {
+    RED,
+    GREEN,
+    BLUE,
+    ALPHA;
+
+    /** the channel of the occlusion texture holding the occlusion */
+    public static final GLTFTextureChannel OCCLUSION = RED;
+    /** the channel of the metallicRoughness texture holding the roughness */
+    public static final GLTFTextureChannel ROUGHNESS = GREEN;
+    /** the channel of the metallicRoughness texture holding the metalness */
+    public static final GLTFTextureChannel METALLIC = BLUE;
+}
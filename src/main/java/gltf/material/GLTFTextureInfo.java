@@ -6,17 +6,38 @@ import com.alibaba.fastjson.JSONObject;
 public class GLTFTextureInfo {
     public final GLTFTexture texture;
     public final int texCoordIdx;
+    /** the KHR_texture_transform extension of the texture info, or null */
+    public final GLTFTextureTransform transform;
     public final JSONObject extras;
 
     public GLTFTextureInfo(GLTFTexture texture,
                            int texCoordIdx,
                            JSONObject extras)
+    {
+        this(texture, texCoordIdx, null, extras);
+    }
+
+    public GLTFTextureInfo(GLTFTexture texture,
+                           int texCoordIdx,
+                           GLTFTextureTransform transform,
+                           JSONObject extras)
     {
         this.texture = texture;
         this.texCoordIdx = texCoordIdx;
+        this.transform = transform;
         this.extras = extras;
     }
 
+    /**
+     * returns the texCoord set the texture is sampled with, which its
+     * KHR_texture_transform extension may override.
+     */
+    public int getTexCoordIdx(){
+        return this.transform != null && this.transform.texCoordIdx != -1 ?
+            this.transform.texCoordIdx
+            : this.texCoordIdx;
+    }
+
     public static GLTFTextureInfo fromJSONObject(JSONObject jObj, GLTFTexture[] textures) throws GLTFException {
         try{
             return new GLTFTextureInfo(
@@ -24,6 +45,7 @@ public class GLTFTextureInfo {
                 jObj.containsKey("texCoord") ?
                     jObj.getIntValue("texCoord")
                     : 0,
+                GLTFTextureTransform.fromTextureInfo(jObj),
                 jObj.containsKey("extras") ?
                     jObj.getJSONObject("extras")
                     : null
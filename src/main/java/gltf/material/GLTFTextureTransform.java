@@ -0,0 +1,165 @@
+package gltf.material;
+
+import gltf.exception.GLTFException;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * the KHR_texture_transform extension of a texture info: an offset, a
+ * rotation and a scale applied to the texture coordinates, such as to
+ * select a region of a texture atlas. The transformed coordinates are
+ * T * R * S * (u, v, 1), as in the extension specification.
+ * <p>
+ * Renderers without UV transforms, such as JavaFX, use texture
+ * coordinates with the transform baked in, see
+ * {@link gltf.mesh.GLTFMeshPrimitive#getTexCoords(GLTFTextureInfo)}.
+ * Transforms are compared by value, so that texture infos with equal
+ * transforms share their baked coordinates.
+ */
+public class GLTFTextureTransform {
+    public final float[] offset;
+    /**
+     * the rotation, in radians, counter-clockwise on the texture image,
+     * whose v axis points down: (u, v) = (1, 0) goes to (cos, -sin)
+     */
+    public final float rotation;
+    public final float[] scale;
+    /** the texCoord set overriding the one of the texture info, or -1 */
+    public final int texCoordIdx;
+    public final JSONObject extras;
+
+    public GLTFTextureTransform(float[] offset,
+                                float rotation,
+                                float[] scale,
+                                int texCoordIdx,
+                                JSONObject extras)
+    {
+        this.offset = offset;
+        this.rotation = rotation;
+        this.scale = scale;
+        this.texCoordIdx = texCoordIdx;
+        this.extras = extras;
+    }
+
+    /**
+     * @return whether the transform leaves the coordinates unchanged
+     */
+    public boolean isIdentity(){
+        return this.offset[0] == 0 && this.offset[1] == 0
+            && this.rotation == 0
+            && this.scale[0] == 1 && this.scale[1] == 1;
+    }
+
+    /**
+     * returns the transform as a 2x3 matrix, row by row: u' = m[0] * u +
+     * m[1] * v + m[2] and v' = m[3] * u + m[4] * v + m[5]. This is the
+     * column-major rotation mat3(cos, -sin, 0, sin, cos, 0, 0, 0, 1) of
+     * the extension specification, between the scale and the offset.
+     */
+    public float[] getMatrix(){
+        float c = (float) Math.cos(this.rotation);
+        float s = (float) Math.sin(this.rotation);
+        return new float[]{
+            c * this.scale[0], s * this.scale[1], this.offset[0],
+            -s * this.scale[0], c * this.scale[1], this.offset[1]
+        };
+    }
+
+    /**
+     * transforms UV pairs. The loop has no branches, so that it can be
+     * vectorized; src and dst may be the same array.
+     * @param src the UV pairs
+     * @param dst receives the transformed pairs, at least as long as src
+     */
+    public void apply(float[] src, float[] dst){
+        float[] m = getMatrix();
+        float m00 = m[0], m01 = m[1], m02 = m[2];
+        float m10 = m[3], m11 = m[4], m12 = m[5];
+        int n = src.length & ~1;
+        for (int i = 0; i < n; i += 2) {
+            float u = src[i];
+            float v = src[i + 1];
+            dst[i] = m00 * u + m01 * v + m02;
+            dst[i + 1] = m10 * u + m11 * v + m12;
+        }
+    }
+
+    /**
+     * returns transformed UV pairs: src itself if the transform is the
+     * identity, else a new array.
+     */
+    public float[] apply(float[] src){
+        if(isIdentity())
+            return src;
+        float[] returnVal = new float[src.length];
+        apply(src, returnVal);
+        return returnVal;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this == o)
+            return true;
+        if(!(o instanceof GLTFTextureTransform))
+            return false;
+        GLTFTextureTransform t = (GLTFTextureTransform) o;
+        return Arrays.equals(this.offset, t.offset)
+            && this.rotation == t.rotation
+            && Arrays.equals(this.scale, t.scale);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * (31 * Arrays.hashCode(this.offset) + Float.hashCode(this.rotation))
+            + Arrays.hashCode(this.scale);
+    }
+
+    /**
+     * reads the KHR_texture_transform extension of a texture info.
+     * @param jObj the texture info
+     * @return the transform, or null if the texture info has none
+     */
+    public static GLTFTextureTransform fromTextureInfo(JSONObject jObj) throws GLTFException {
+        JSONObject extensions = jObj.getJSONObject("extensions");
+        JSONObject transform = extensions != null ?
+            extensions.getJSONObject("KHR_texture_transform")
+            : null;
+        return transform != null ?
+            fromJSONObject(transform)
+            : null;
+    }
+
+    public static GLTFTextureTransform fromJSONObject(JSONObject jObj) throws GLTFException {
+        try{
+            float[] offset = {0, 0};
+            float[] scale = {1, 1};
+            JSONArray jOffset = jObj.getJSONArray("offset");
+            for (int i = 0; jOffset != null && i < 2; i++) {
+                offset[i] = jOffset.getFloatValue(i);
+            }
+            JSONArray jScale = jObj.getJSONArray("scale");
+            for (int i = 0; jScale != null && i < 2; i++) {
+                scale[i] = jScale.getFloatValue(i);
+            }
+            return new GLTFTextureTransform(
+                offset,
+                jObj.containsKey("rotation") ?
+                    jObj.getFloatValue("rotation")
+                    : 0,
+                scale,
+                jObj.containsKey("texCoord") ?
+                    jObj.getIntValue("texCoord")
+                    : -1,
+                jObj.containsKey("extras") ?
+                    jObj.getJSONObject("extras")
+                    : null
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,307 @@
+package gltf.math;
+
+/**
+ * A mutable column-major 4x4 float matrix, as used by GLTF.
+ * <p>
+ * The static methods are the kernels the instance methods delegate to:
+ * they work on matrices stored at an offset of any float array, so that
+ * packed arrays of matrices (joint palettes, node transforms) can be
+ * processed without allocating. The kernels read their inputs before
+ * writing the output, which may therefore be one of the inputs.
+ */
+public class Mat4f {
+    public static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1
+    };
+
+    public final float[] m = new float[16];
+
+    public Mat4f() {
+        identity(this.m, 0);
+    }
+
+    public Mat4f(float[] m, int mo) {
+        System.arraycopy(m, mo, this.m, 0, 16);
+    }
+
+    public Mat4f identity(){
+        identity(this.m, 0);
+        return this;
+    }
+
+    public Mat4f set(Mat4f other){
+        System.arraycopy(other.m, 0, this.m, 0, 16);
+        return this;
+    }
+
+    public Mat4f set(float[] m, int mo){
+        System.arraycopy(m, mo, this.m, 0, 16);
+        return this;
+    }
+
+    /**
+     * sets this matrix to a * b. Either may be this matrix.
+     */
+    public Mat4f mul(Mat4f a, Mat4f b){
+        mul(a.m, 0, b.m, 0, this.m, 0);
+        return this;
+    }
+
+    /**
+     * sets this matrix to the inverse of m, which may be this matrix.
+     * @return whether m was invertible; if not, this matrix is the identity
+     */
+    public boolean invert(Mat4f m){
+        return invert(m.m, 0, this.m, 0);
+    }
+
+    public Mat4f setTRS(Vec3f t, Quatf r, Vec3f s){
+        fromTRS(t.v, 0, r.q, 0, s.v, 0, this.m, 0);
+        return this;
+    }
+
+    /**
+     * decomposes this matrix into a translation, a rotation and a scale.
+     * See {@link #decompose(float[], int, float[], int, float[], int, float[], int)}.
+     */
+    public void decompose(Vec3f t, Quatf r, Vec3f s){
+        decompose(this.m, 0, t.v, 0, r.q, 0, s.v, 0);
+    }
+
+    /**
+     * transforms a point by this matrix, in place.
+     */
+    public Vec3f transformPoint(Vec3f p){
+        transformPoints(this.m, 0, p.v, 0, p.v, 0, 1);
+        return p;
+    }
+
+    /**
+     * transforms a direction by the upper-left 3x3 part of this matrix, in place.
+     */
+    public Vec3f transformDirection(Vec3f d){
+        transformDirections(this.m, 0, d.v, 0, d.v, 0, 1);
+        return d;
+    }
+
+    public float determinant3x3(){
+        return determinant3x3(this.m, 0);
+    }
+
+    // --- kernels ---
+
+    public static void identity(float[] out, int oo){
+        System.arraycopy(IDENTITY, 0, out, oo, 16);
+    }
+
+    /**
+     * out = a * b. out may be a or b, at the same offset.
+     */
+    public static void mul(float[] a, int ao, float[] b, int bo, float[] out, int oo){
+        float a0 = a[ao], a1 = a[ao + 1], a2 = a[ao + 2], a3 = a[ao + 3];
+        float a4 = a[ao + 4], a5 = a[ao + 5], a6 = a[ao + 6], a7 = a[ao + 7];
+        float a8 = a[ao + 8], a9 = a[ao + 9], a10 = a[ao + 10], a11 = a[ao + 11];
+        float a12 = a[ao + 12], a13 = a[ao + 13], a14 = a[ao + 14], a15 = a[ao + 15];
+        for (int col = 0; col < 4; col++) {
+            int c = bo + 4 * col;
+            float b0 = b[c], b1 = b[c + 1], b2 = b[c + 2], b3 = b[c + 3];
+            int o = oo + 4 * col;
+            out[o] = a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+            out[o + 1] = a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+            out[o + 2] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+            out[o + 3] = a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+        }
+    }
+
+    /**
+     * out = a * b, for affine matrices (last row 0, 0, 0, 1). out may be
+     * a or b, at the same offset. Cheaper than
+     * {@link #mul(float[], int, float[], int, float[], int)}, and the case
+     * of every node transform.
+     */
+    public static void mulAffine(float[] a, int ao, float[] b, int bo, float[] out, int oo){
+        float a0 = a[ao], a1 = a[ao + 1], a2 = a[ao + 2];
+        float a4 = a[ao + 4], a5 = a[ao + 5], a6 = a[ao + 6];
+        float a8 = a[ao + 8], a9 = a[ao + 9], a10 = a[ao + 10];
+        float a12 = a[ao + 12], a13 = a[ao + 13], a14 = a[ao + 14];
+        for (int col = 0; col < 4; col++) {
+            int c = bo + 4 * col;
+            float b0 = b[c], b1 = b[c + 1], b2 = b[c + 2];
+            float w = col == 3 ? 1f : 0f;
+            int o = oo + 4 * col;
+            out[o] = a0 * b0 + a4 * b1 + a8 * b2 + a12 * w;
+            out[o + 1] = a1 * b0 + a5 * b1 + a9 * b2 + a13 * w;
+            out[o + 2] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * w;
+            out[o + 3] = w;
+        }
+    }
+
+    /**
+     * composes a translation, a rotation quaternion (x, y, z, w) and a
+     * scale into a matrix: out = T * R * S.
+     */
+    public static void fromTRS(float tx, float ty, float tz,
+                               float x, float y, float z, float w,
+                               float sx, float sy, float sz,
+                               float[] out, int oo){
+        float x2 = x + x, y2 = y + y, z2 = z + z;
+        float xx = x * x2, xy = x * y2, xz = x * z2;
+        float yy = y * y2, yz = y * z2, zz = z * z2;
+        float wx = w * x2, wy = w * y2, wz = w * z2;
+        out[oo] = (1 - (yy + zz)) * sx;
+        out[oo + 1] = (xy + wz) * sx;
+        out[oo + 2] = (xz - wy) * sx;
+        out[oo + 3] = 0;
+        out[oo + 4] = (xy - wz) * sy;
+        out[oo + 5] = (1 - (xx + zz)) * sy;
+        out[oo + 6] = (yz + wx) * sy;
+        out[oo + 7] = 0;
+        out[oo + 8] = (xz + wy) * sz;
+        out[oo + 9] = (yz - wx) * sz;
+        out[oo + 10] = (1 - (xx + yy)) * sz;
+        out[oo + 11] = 0;
+        out[oo + 12] = tx;
+        out[oo + 13] = ty;
+        out[oo + 14] = tz;
+        out[oo + 15] = 1;
+    }
+
+    /**
+     * composes a translation (t[to..to+2]), a rotation quaternion
+     * (r[ro..ro+3], x, y, z, w) and a scale (s[so..so+2]) into a matrix.
+     */
+    public static void fromTRS(float[] t, int to, float[] r, int ro, float[] s, int so, float[] out, int oo){
+        fromTRS(t[to], t[to + 1], t[to + 2],
+            r[ro], r[ro + 1], r[ro + 2], r[ro + 3],
+            s[so], s[so + 1], s[so + 2],
+            out, oo);
+    }
+
+    /**
+     * inverts a matrix. out may be m, at the same offset.
+     * @return whether m was invertible; if not, out is set to the identity
+     */
+    public static boolean invert(float[] m, int mo, float[] out, int oo){
+        float a00 = m[mo], a01 = m[mo + 1], a02 = m[mo + 2], a03 = m[mo + 3];
+        float a10 = m[mo + 4], a11 = m[mo + 5], a12 = m[mo + 6], a13 = m[mo + 7];
+        float a20 = m[mo + 8], a21 = m[mo + 9], a22 = m[mo + 10], a23 = m[mo + 11];
+        float a30 = m[mo + 12], a31 = m[mo + 13], a32 = m[mo + 14], a33 = m[mo + 15];
+        float b00 = a00 * a11 - a01 * a10;
+        float b01 = a00 * a12 - a02 * a10;
+        float b02 = a00 * a13 - a03 * a10;
+        float b03 = a01 * a12 - a02 * a11;
+        float b04 = a01 * a13 - a03 * a11;
+        float b05 = a02 * a13 - a03 * a12;
+        float b06 = a20 * a31 - a21 * a30;
+        float b07 = a20 * a32 - a22 * a30;
+        float b08 = a20 * a33 - a23 * a30;
+        float b09 = a21 * a32 - a22 * a31;
+        float b10 = a21 * a33 - a23 * a31;
+        float b11 = a22 * a33 - a23 * a32;
+        float det = b00 * b11 - b01 * b10 + b02 * b09 + b03 * b08 - b04 * b07 + b05 * b06;
+        if(det == 0f){
+            identity(out, oo);
+            return false;
+        }
+        float invDet = 1f / det;
+        out[oo] = (a11 * b11 - a12 * b10 + a13 * b09) * invDet;
+        out[oo + 1] = (a02 * b10 - a01 * b11 - a03 * b09) * invDet;
+        out[oo + 2] = (a31 * b05 - a32 * b04 + a33 * b03) * invDet;
+        out[oo + 3] = (a22 * b04 - a21 * b05 - a23 * b03) * invDet;
+        out[oo + 4] = (a12 * b08 - a10 * b11 - a13 * b07) * invDet;
+        out[oo + 5] = (a00 * b11 - a02 * b08 + a03 * b07) * invDet;
+        out[oo + 6] = (a32 * b02 - a30 * b05 - a33 * b01) * invDet;
+        out[oo + 7] = (a20 * b05 - a22 * b02 + a23 * b01) * invDet;
+        out[oo + 8] = (a10 * b10 - a11 * b08 + a13 * b06) * invDet;
+        out[oo + 9] = (a01 * b08 - a00 * b10 - a03 * b06) * invDet;
+        out[oo + 10] = (a30 * b04 - a31 * b02 + a33 * b00) * invDet;
+        out[oo + 11] = (a21 * b02 - a20 * b04 - a23 * b00) * invDet;
+        out[oo + 12] = (a11 * b07 - a10 * b09 - a12 * b06) * invDet;
+        out[oo + 13] = (a00 * b09 - a01 * b07 + a02 * b06) * invDet;
+        out[oo + 14] = (a31 * b01 - a30 * b03 - a32 * b00) * invDet;
+        out[oo + 15] = (a20 * b03 - a21 * b01 + a22 * b00) * invDet;
+        return true;
+    }
+
+    /**
+     * decomposes an affine matrix without shear into a translation, a
+     * rotation quaternion (x, y, z, w) and a scale, such that
+     * m = T * R * S. A mirroring matrix gets a negative x scale.
+     */
+    public static void decompose(float[] m, int mo,
+                                 float[] t, int to,
+                                 float[] r, int ro,
+                                 float[] s, int so){
+        t[to] = m[mo + 12];
+        t[to + 1] = m[mo + 13];
+        t[to + 2] = m[mo + 14];
+        float sx = (float) Math.sqrt(m[mo] * m[mo] + m[mo + 1] * m[mo + 1] + m[mo + 2] * m[mo + 2]);
+        float sy = (float) Math.sqrt(m[mo + 4] * m[mo + 4] + m[mo + 5] * m[mo + 5] + m[mo + 6] * m[mo + 6]);
+        float sz = (float) Math.sqrt(m[mo + 8] * m[mo + 8] + m[mo + 9] * m[mo + 9] + m[mo + 10] * m[mo + 10]);
+        if(determinant3x3(m, mo) < 0)
+            sx = -sx;
+        s[so] = sx;
+        s[so + 1] = sy;
+        s[so + 2] = sz;
+        float ix = sx != 0 ? 1f / sx : 0f, iy = sy != 0 ? 1f / sy : 0f, iz = sz != 0 ? 1f / sz : 0f;
+        Quatf.fromRotationMatrix(
+            m[mo] * ix, m[mo + 4] * iy, m[mo + 8] * iz,
+            m[mo + 1] * ix, m[mo + 5] * iy, m[mo + 9] * iz,
+            m[mo + 2] * ix, m[mo + 6] * iy, m[mo + 10] * iz,
+            r, ro);
+    }
+
+    /**
+     * returns the determinant of the upper-left 3x3 part of a matrix. A
+     * negative value means the matrix mirrors geometry, which flips the
+     * winding order of triangles.
+     */
+    public static float determinant3x3(float[] m, int mo){
+        return m[mo] * (m[mo + 5] * m[mo + 10] - m[mo + 9] * m[mo + 6])
+            - m[mo + 4] * (m[mo + 1] * m[mo + 10] - m[mo + 9] * m[mo + 2])
+            + m[mo + 8] * (m[mo + 1] * m[mo + 6] - m[mo + 5] * m[mo + 2]);
+    }
+
+    /**
+     * transforms count xyz points. dst may be src, at the same offset.
+     */
+    public static void transformPoints(float[] m, int mo,
+                                       float[] src, int so,
+                                       float[] dst, int dstOffset,
+                                       int count){
+        float m0 = m[mo], m1 = m[mo + 1], m2 = m[mo + 2];
+        float m4 = m[mo + 4], m5 = m[mo + 5], m6 = m[mo + 6];
+        float m8 = m[mo + 8], m9 = m[mo + 9], m10 = m[mo + 10];
+        float m12 = m[mo + 12], m13 = m[mo + 13], m14 = m[mo + 14];
+        for (int i = 0; i < count; i++) {
+            int s = so + 3 * i, d = dstOffset + 3 * i;
+            float x = src[s], y = src[s + 1], z = src[s + 2];
+            dst[d] = m0 * x + m4 * y + m8 * z + m12;
+            dst[d + 1] = m1 * x + m5 * y + m9 * z + m13;
+            dst[d + 2] = m2 * x + m6 * y + m10 * z + m14;
+        }
+    }
+
+    /**
+     * transforms count xyz directions by the upper-left 3x3 part of the
+     * matrix, without translating them. dst may be src, at the same offset.
+     */
+    public static void transformDirections(float[] m, int mo,
+                                           float[] src, int so,
+                                           float[] dst, int dstOffset,
+                                           int count){
+        float m0 = m[mo], m1 = m[mo + 1], m2 = m[mo + 2];
+        float m4 = m[mo + 4], m5 = m[mo + 5], m6 = m[mo + 6];
+        float m8 = m[mo + 8], m9 = m[mo + 9], m10 = m[mo + 10];
+        for (int i = 0; i < count; i++) {
+            int s = so + 3 * i, d = dstOffset + 3 * i;
+            float x = src[s], y = src[s + 1], z = src[s + 2];
+            dst[d] = m0 * x + m4 * y + m8 * z;
+            dst[d + 1] = m1 * x + m5 * y + m9 * z;
+            dst[d + 2] = m2 * x + m6 * y + m10 * z;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package gltf.math;
+
+/**
+ * A mutable rotation quaternion, stored as (x, y, z, w) like the GLTF
+ * rotation property. As for {@link Mat4f}, the instance methods delegate
+ * to static kernels working at an offset of any float array.
+ */
+public class Quatf {
+    public final float[] q = {0, 0, 0, 1};
+
+    public Quatf() {
+    }
+
+    public Quatf(float x, float y, float z, float w) {
+        set(x, y, z, w);
+    }
+
+    public Quatf set(float x, float y, float z, float w){
+        this.q[0] = x;
+        this.q[1] = y;
+        this.q[2] = z;
+        this.q[3] = w;
+        return this;
+    }
+
+    public Quatf set(float[] q, int qo){
+        System.arraycopy(q, qo, this.q, 0, 4);
+        return this;
+    }
+
+    public Quatf identity(){
+        return set(0, 0, 0, 1);
+    }
+
+    public float x(){ return this.q[0]; }
+    public float y(){ return this.q[1]; }
+    public float z(){ return this.q[2]; }
+    public float w(){ return this.q[3]; }
+
+    /**
+     * sets this quaternion to a * b, the rotation b followed by a.
+     * Either may be this quaternion.
+     */
+    public Quatf mul(Quatf a, Quatf b){
+        mul(a.q, 0, b.q, 0, this.q, 0);
+        return this;
+    }
+
+    public Quatf normalize(){
+        normalize(this.q, 0);
+        return this;
+    }
+
+    /**
+     * sets this quaternion to the spherical interpolation of a and b.
+     */
+    public Quatf slerp(Quatf a, Quatf b, float u){
+        slerp(a.q, 0, b.q, 0, u, this.q, 0);
+        return this;
+    }
+
+    /**
+     * rotates a vector by this quaternion, in place.
+     */
+    public Vec3f rotate(Vec3f v){
+        rotate(this.q, 0, v.v, 0, v.v, 0);
+        return v;
+    }
+
+    // --- kernels ---
+
+    /**
+     * out = a * b. out may be a or b, at the same offset.
+     */
+    public static void mul(float[] a, int ao, float[] b, int bo, float[] out, int oo){
+        float ax = a[ao], ay = a[ao + 1], az = a[ao + 2], aw = a[ao + 3];
+        float bx = b[bo], by = b[bo + 1], bz = b[bo + 2], bw = b[bo + 3];
+        out[oo] = aw * bx + ax * bw + ay * bz - az * by;
+        out[oo + 1] = aw * by - ax * bz + ay * bw + az * bx;
+        out[oo + 2] = aw * bz + ax * by - ay * bx + az * bw;
+        out[oo + 3] = aw * bw - ax * bx - ay * by - az * bz;
+    }
+
+    public static void normalize(float[] q, int qo){
+        float x = q[qo], y = q[qo + 1], z = q[qo + 2], w = q[qo + 3];
+        float len = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if(len > 0f){
+            float inv = 1f / len;
+            q[qo] = x * inv;
+            q[qo + 1] = y * inv;
+            q[qo + 2] = z * inv;
+            q[qo + 3] = w * inv;
+        }
+    }
+
+    /**
+     * interpolates two quaternions along the shortest arc. out may be a
+     * or b, at the same offset.
+     */
+    public static void slerp(float[] a, int ao, float[] b, int bo, float u, float[] out, int oo){
+        float ax = a[ao], ay = a[ao + 1], az = a[ao + 2], aw = a[ao + 3];
+        float bx = b[bo], by = b[bo + 1], bz = b[bo + 2], bw = b[bo + 3];
+        float dot = ax * bx + ay * by + az * bz + aw * bw;
+        // take the shortest path
+        if(dot < 0f){
+            dot = -dot;
+            bx = -bx; by = -by; bz = -bz; bw = -bw;
+        }
+        float s0, s1;
+        if(dot > 0.9995f){
+            s0 = 1f - u;
+            s1 = u;
+        }else{
+            float theta = (float) Math.acos(dot);
+            float sin = (float) Math.sin(theta);
+            s0 = (float) Math.sin((1f - u) * theta) / sin;
+            s1 = (float) Math.sin(u * theta) / sin;
+        }
+        out[oo] = s0 * ax + s1 * bx;
+        out[oo + 1] = s0 * ay + s1 * by;
+        out[oo + 2] = s0 * az + s1 * bz;
+        out[oo + 3] = s0 * aw + s1 * bw;
+        normalize(out, oo);
+    }
+
+    /**
+     * rotates an xyz vector by a unit quaternion. out may be v, at the same offset.
+     */
+    public static void rotate(float[] q, int qo, float[] v, int vo, float[] out, int oo){
+        float qx = q[qo], qy = q[qo + 1], qz = q[qo + 2], qw = q[qo + 3];
+        float vx = v[vo], vy = v[vo + 1], vz = v[vo + 2];
+        // t = 2 * cross(q.xyz, v); v' = v + w * t + cross(q.xyz, t)
+        float tx = 2 * (qy * vz - qz * vy);
+        float ty = 2 * (qz * vx - qx * vz);
+        float tz = 2 * (qx * vy - qy * vx);
+        out[oo] = vx + qw * tx + (qy * tz - qz * ty);
+        out[oo + 1] = vy + qw * ty + (qz * tx - qx * tz);
+        out[oo + 2] = vz + qw * tz + (qx * ty - qy * tx);
+    }
+
+    /**
+     * converts a pure rotation matrix, given row by row, to a quaternion.
+     */
+    public static void fromRotationMatrix(float m00, float m01, float m02,
+                                          float m10, float m11, float m12,
+                                          float m20, float m21, float m22,
+                                          float[] out, int oo){
+        float trace = m00 + m11 + m22;
+        float x, y, z, w;
+        if(trace > 0f){
+            float s = (float) Math.sqrt(trace + 1f) * 2f;
+            w = 0.25f * s;
+            x = (m21 - m12) / s;
+            y = (m02 - m20) / s;
+            z = (m10 - m01) / s;
+        }else if(m00 > m11 && m00 > m22){
+            float s = (float) Math.sqrt(1f + m00 - m11 - m22) * 2f;
+            w = (m21 - m12) / s;
+            x = 0.25f * s;
+            y = (m01 + m10) / s;
+            z = (m02 + m20) / s;
+        }else if(m11 > m22){
+            float s = (float) Math.sqrt(1f + m11 - m00 - m22) * 2f;
+            w = (m02 - m20) / s;
+            x = (m01 + m10) / s;
+            y = 0.25f * s;
+            z = (m12 + m21) / s;
+        }else{
+            float s = (float) Math.sqrt(1f + m22 - m00 - m11) * 2f;
+            w = (m10 - m01) / s;
+            x = (m02 + m20) / s;
+            y = (m12 + m21) / s;
+            z = 0.25f * s;
+        }
+        out[oo] = x;
+        out[oo + 1] = y;
+        out[oo + 2] = z;
+        out[oo + 3] = w;
+        normalize(out, oo);
+    }
+}
@@ -0,0 +1,102 @@
+package gltf.math;
+
+/**
+ * A mutable 3 component float vector. As for {@link Mat4f}, the
+ * components are kept in an array so that the array kernels apply.
+ */
+public class Vec3f {
+    public final float[] v = new float[3];
+
+    public Vec3f() {
+    }
+
+    public Vec3f(float x, float y, float z) {
+        set(x, y, z);
+    }
+
+    public Vec3f set(float x, float y, float z){
+        this.v[0] = x;
+        this.v[1] = y;
+        this.v[2] = z;
+        return this;
+    }
+
+    public Vec3f set(float[] v, int vo){
+        System.arraycopy(v, vo, this.v, 0, 3);
+        return this;
+    }
+
+    public Vec3f set(Vec3f other){
+        return set(other.v, 0);
+    }
+
+    public float x(){ return this.v[0]; }
+    public float y(){ return this.v[1]; }
+    public float z(){ return this.v[2]; }
+
+    public Vec3f add(Vec3f other){
+        this.v[0] += other.v[0];
+        this.v[1] += other.v[1];
+        this.v[2] += other.v[2];
+        return this;
+    }
+
+    public Vec3f sub(Vec3f other){
+        this.v[0] -= other.v[0];
+        this.v[1] -= other.v[1];
+        this.v[2] -= other.v[2];
+        return this;
+    }
+
+    public Vec3f scale(float s){
+        this.v[0] *= s;
+        this.v[1] *= s;
+        this.v[2] *= s;
+        return this;
+    }
+
+    public float dot(Vec3f other){
+        return this.v[0] * other.v[0] + this.v[1] * other.v[1] + this.v[2] * other.v[2];
+    }
+
+    /**
+     * sets this vector to a x b. Either may be this vector.
+     */
+    public Vec3f cross(Vec3f a, Vec3f b){
+        cross(a.v, 0, b.v, 0, this.v, 0);
+        return this;
+    }
+
+    public float length(){
+        return (float) Math.sqrt(dot(this));
+    }
+
+    public Vec3f normalize(){
+        normalize(this.v, 0);
+        return this;
+    }
+
+    // --- kernels ---
+
+    /**
+     * out = a x b. out may be a or b, at the same offset.
+     */
+    public static void cross(float[] a, int ao, float[] b, int bo, float[] out, int oo){
+        float ax = a[ao], ay = a[ao + 1], az = a[ao + 2];
+        float bx = b[bo], by = b[bo + 1], bz = b[bo + 2];
+        out[oo] = ay * bz - az * by;
+        out[oo + 1] = az * bx - ax * bz;
+        out[oo + 2] = ax * by - ay * bx;
+    }
+
+    public static void normalize(float[] v, int vo){
+        float x = v[vo], y = v[vo + 1], z = v[vo + 2];
+        float len = (float) Math.sqrt(x * x + y * y + z * z);
+        if(len > 0f){
+            float inv = 1f / len;
+            v[vo] = x * inv;
+            v[vo + 1] = y * inv;
+            v[vo + 2] = z * inv;
+        }
+    }
+}
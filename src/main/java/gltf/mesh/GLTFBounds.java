@@ -0,0 +1,121 @@
+package gltf.mesh;
+
+/**
+ * An immutable bounding volume: an axis-aligned bounding box together
+ * with a bounding sphere enclosing the same geometry.
+ */
+public class GLTFBounds {
+    public final float[] min;
+    public final float[] max;
+    public final float[] center;
+    public final float radius;
+
+    public GLTFBounds(float[] min, float[] max, float[] center, float radius) {
+        this.min = min;
+        this.max = max;
+        this.center = center;
+        this.radius = radius;
+    }
+
+    /**
+     * computes the bounds of a VEC3 point stream. The sphere is centered
+     * on the box and sized to the farthest point.
+     * @param positions the VEC3 points
+     * @return the bounds, or null if there are no points
+     */
+    public static GLTFBounds fromPositions(float[] positions){
+        int n = positions.length / 3;
+        if(n == 0)
+            return null;
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < n * 3; i += 3) {
+            float x = positions[i], y = positions[i + 1], z = positions[i + 2];
+            minX = Math.min(minX, x); minY = Math.min(minY, y); minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x); maxY = Math.max(maxY, y); maxZ = Math.max(maxZ, z);
+        }
+        float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+        float maxDistSq = 0;
+        for (int i = 0; i < n * 3; i += 3) {
+            float dx = positions[i] - cx, dy = positions[i + 1] - cy, dz = positions[i + 2] - cz;
+            maxDistSq = Math.max(maxDistSq, dx * dx + dy * dy + dz * dz);
+        }
+        return new GLTFBounds(
+            new float[]{minX, minY, minZ},
+            new float[]{maxX, maxY, maxZ},
+            new float[]{cx, cy, cz},
+            (float) Math.sqrt(maxDistSq)
+        );
+    }
+
+    /**
+     * transforms the bounds by a column-major matrix. The box of the
+     * result encloses the transformed box; the sphere radius is scaled
+     * by the largest axis scale of the matrix.
+     * @param m the column-major float[16] matrix
+     * @return the transformed bounds
+     */
+    public GLTFBounds transform(float[] m){
+        float[] newMin = new float[3];
+        float[] newMax = new float[3];
+        for (int i = 0; i < 3; i++) {
+            newMin[i] = newMax[i] = m[12 + i];
+            for (int j = 0; j < 3; j++) {
+                float a = m[4 * j + i] * this.min[j];
+                float b = m[4 * j + i] * this.max[j];
+                newMin[i] += Math.min(a, b);
+                newMax[i] += Math.max(a, b);
+            }
+        }
+        float cx = this.center[0], cy = this.center[1], cz = this.center[2];
+        float[] newCenter = {
+            m[0] * cx + m[4] * cy + m[8] * cz + m[12],
+            m[1] * cx + m[5] * cy + m[9] * cz + m[13],
+            m[2] * cx + m[6] * cy + m[10] * cz + m[14]
+        };
+        float sx = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+        float sy = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+        float sz = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+        float scale = (float) Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+        return new GLTFBounds(newMin, newMax, newCenter, this.radius * scale);
+    }
+
+    /**
+     * returns bounds enclosing both bounds. Either one may be null.
+     * @return the union, or null if both are null
+     */
+    public static GLTFBounds union(GLTFBounds a, GLTFBounds b){
+        if(a == null)
+            return b;
+        if(b == null)
+            return a;
+        float[] min = {
+            Math.min(a.min[0], b.min[0]), Math.min(a.min[1], b.min[1]), Math.min(a.min[2], b.min[2])
+        };
+        float[] max = {
+            Math.max(a.max[0], b.max[0]), Math.max(a.max[1], b.max[1]), Math.max(a.max[2], b.max[2])
+        };
+        float dx = b.center[0] - a.center[0], dy = b.center[1] - a.center[1], dz = b.center[2] - a.center[2];
+        float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if(d + b.radius <= a.radius)
+            return new GLTFBounds(min, max, a.center, a.radius);
+        if(d + a.radius <= b.radius)
+            return new GLTFBounds(min, max, b.center, b.radius);
+        float radius = (d + a.radius + b.radius) * 0.5f;
+        float t = (radius - a.radius) / d;
+        float[] center = {a.center[0] + dx * t, a.center[1] + dy * t, a.center[2] + dz * t};
+        return new GLTFBounds(min, max, center, radius);
+    }
+
+    public float getSizeX(){
+        return this.max[0] - this.min[0];
+    }
+
+    public float getSizeY(){
+        return this.max[1] - this.min[1];
+    }
+
+    public float getSizeZ(){
+        return this.max[2] - this.min[2];
+    }
+}
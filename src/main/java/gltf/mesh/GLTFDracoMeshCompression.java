@@ -0,0 +1,45 @@
+package gltf.mesh;
+
+import gltf.buffer.GLTFBufferView;
+import gltf.exception.GLTFException;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * the KHR_draco_mesh_compression extension of a mesh primitive: the
+ * bufferView holding the compressed mesh, and the Draco attribute id of
+ * each GLTF attribute.
+ */
+public class GLTFDracoMeshCompression {
+    public final GLTFBufferView bufferView;
+    public final Map<String, Integer> attributes;
+
+    public GLTFDracoMeshCompression(GLTFBufferView bufferView, Map<String, Integer> attributes) {
+        this.bufferView = bufferView;
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    public static GLTFDracoMeshCompression fromJSONObject(JSONObject jObj,
+                                                          GLTFBufferView[] bufferViews)
+        throws GLTFException
+    {
+        try{
+            JSONObject jAttributes = jObj.getJSONObject("attributes");
+            Map<String, Integer> attributes = new LinkedHashMap<>();
+            for (String name : jAttributes.keySet()) {
+                attributes.put(name, jAttributes.getIntValue(name));
+            }
+            return new GLTFDracoMeshCompression(
+                bufferViews[jObj.getIntValue("bufferView")],
+                attributes
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
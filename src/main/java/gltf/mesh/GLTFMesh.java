@@ -1,20 +1,48 @@
 package gltf.mesh;
 
 import gltf.accessor.GLTFAccessor;
+import gltf.buffer.GLTFBufferView;
 import gltf.exception.GLTFException;
 import gltf.material.GLTFMaterial;
+import gltf.utils.JSONUtils;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
 public class GLTFMesh {
     public final GLTFMeshPrimitive[] primitives;
+    /** the default morph target weights, empty if the mesh has none */
+    public final float[] weights;
 
     public GLTFMesh(GLTFMeshPrimitive[] primitives) {
+        this(primitives, new float[]{});
+    }
+
+    public GLTFMesh(GLTFMeshPrimitive[] primitives, float[] weights) {
         this.primitives = primitives;
+        this.weights = weights;
+    }
+    /**
+     * returns the union of the local bounds of the primitives, cached
+     * after the first call.
+     * @return the local bounds, or null if no primitive has positions
+     */
+    public GLTFBounds getLocalBounds(){
+        if(!localBoundsComputed){
+            for (GLTFMeshPrimitive primitive : this.primitives) {
+                if(primitive != null)
+                    localBounds = GLTFBounds.union(localBounds, primitive.getLocalBounds());
+            }
+            localBoundsComputed = true;
+        }
+        return localBounds;
     }
+    private GLTFBounds localBounds = null;
+    private boolean localBoundsComputed = false;
+
     public static GLTFMesh fromJSONObject(JSONObject jObj,
                                           GLTFAccessor[] accessors,
-                                          GLTFMaterial[] materials)
+                                          GLTFMaterial[] materials,
+                                          GLTFBufferView[] bufferViews)
         throws GLTFException
     {
         try{
@@ -24,11 +52,16 @@ public class GLTFMesh {
                 primitives[i] = GLTFMeshPrimitive.fromJSONObject(
                     jarr.getJSONObject(i),
                     accessors,
-                    materials
+                    materials,
+                    bufferViews
                 );
             }
+            JSONArray weights = jObj.getJSONArray("weights");
             return new GLTFMesh(
-                primitives
+                primitives,
+                weights == null ?
+                    new float[]{}
+                    : JSONUtils.JSONToFloatArray(weights)
             );
         }catch(Exception e){
             e.printStackTrace();
@@ -0,0 +1,106 @@
+package gltf.mesh;
+
+import gltf.GLTFNode;
+import gltf.material.GLTFMaterial;
+
+/**
+ * A batch of primitives sharing the same material, with the world
+ * transforms of their nodes baked into the vertex data. Built by
+ * {@link GLTFMeshBatcher}.
+ *
+ * The faces of the batch are made of consecutive ranges, one range per
+ * source primitive instance, so that a face picked in the batch can be
+ * mapped back to the node and primitive it came from.
+ */
+public class GLTFMeshBatch {
+    /** the index of the material in the asset, or -1 for a texture atlas material */
+    public final int materialIdx;
+    public final GLTFMaterial material;
+    /** world-space VEC3 positions */
+    public final float[] positions;
+    /**
+     * VEC2 texture coordinates, one pair per position, those of the base
+     * color texture with its KHR_texture_transform baked in, or remapped
+     * into a texture atlas
+     */
+    public final float[] texCoords;
+    /** triangle list, three vertex indices per face */
+    public final int[] triangles;
+
+    /** index of the first face of each source range, in ascending order */
+    public final int[] rangeFirstFace;
+    public final GLTFNode[] rangeNodes;
+    public final GLTFMeshPrimitive[] rangePrimitives;
+
+    public GLTFMeshBatch(int materialIdx,
+                         GLTFMaterial material,
+                         float[] positions,
+                         float[] texCoords,
+                         int[] triangles,
+                         int[] rangeFirstFace,
+                         GLTFNode[] rangeNodes,
+                         GLTFMeshPrimitive[] rangePrimitives)
+    {
+        this.materialIdx = materialIdx;
+        this.material = material;
+        this.positions = positions;
+        this.texCoords = texCoords;
+        this.triangles = triangles;
+        this.rangeFirstFace = rangeFirstFace;
+        this.rangeNodes = rangeNodes;
+        this.rangePrimitives = rangePrimitives;
+    }
+
+    public int getFaceCount(){
+        return this.triangles.length / 3;
+    }
+
+    public int getVertexCount(){
+        return this.positions.length / 3;
+    }
+
+    /**
+     * returns the index of the source range a face of the batch belongs to.
+     * @param faceIdx the index of the face in the batch
+     * @return the range index, usable with rangeNodes and rangePrimitives
+     */
+    public int getRangeForFace(int faceIdx){
+        int lo = 0, hi = this.rangeFirstFace.length - 1;
+        while(lo < hi){
+            int mid = (lo + hi + 1) >>> 1;
+            if(this.rangeFirstFace[mid] <= faceIdx)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * returns the node a face of the batch was taken from.
+     * @param faceIdx the index of the face in the batch
+     * @return the source node
+     */
+    public GLTFNode getNodeForFace(int faceIdx){
+        return this.rangeNodes[getRangeForFace(faceIdx)];
+    }
+
+    /**
+     * returns the primitive a face of the batch was taken from.
+     * @param faceIdx the index of the face in the batch
+     * @return the source primitive
+     */
+    public GLTFMeshPrimitive getPrimitiveForFace(int faceIdx){
+        return this.rangePrimitives[getRangeForFace(faceIdx)];
+    }
+
+    /**
+     * converts a face index of the batch into the index of the same
+     * triangle in its source primitive.
+     * @param faceIdx the index of the face in the batch
+     * @return the index of the triangle in the source primitive
+     */
+    public int getSourceTriangle(int faceIdx){
+        return faceIdx - this.rangeFirstFace[getRangeForFace(faceIdx)];
+    }
+}
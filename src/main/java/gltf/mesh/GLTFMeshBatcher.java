@@ -0,0 +1,231 @@
+package gltf.mesh;
+
+import gltf.GLTFNode;
+import gltf.GLTFNodeTraversal;
+import gltf.GLTFScene;
+import gltf.material.GLTFMaterial;
+import gltf.math.Mat4f;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static batching: bakes the world transform of every node of a scene
+ * into the vertex data of its primitives, then merges all the primitives
+ * that share a material into as few batches as the vertex and face
+ * limits allow. This collapses scenes made of thousands of small parts
+ * into a handful of meshes.
+ *
+ * Batching is meant for static geometry: once baked, moving a node
+ * requires batching the scene again.
+ */
+public class GLTFMeshBatcher {
+    /**
+     * the largest number of vertices a JavaFX TriangleMesh can hold:
+     * points are stored 3 floats per vertex in a single array.
+     */
+    public static final int JFX_MAX_VERTICES = (Integer.MAX_VALUE - 8) / 3;
+    /**
+     * the largest number of faces a JavaFX TriangleMesh can hold:
+     * faces are stored as 3 point/texCoord index pairs in a single array.
+     */
+    public static final int JFX_MAX_FACES = (Integer.MAX_VALUE - 8) / 6;
+
+    private static class Instance {
+        final GLTFNode node;
+        final GLTFMeshPrimitive primitive;
+        final int materialIdx;
+        final GLTFMaterial material;
+        final float[] texCoords;
+        final float[] worldMatrix;
+        final int[] triangles;
+        final int nVertices;
+
+        Instance(GLTFNode node, GLTFMeshPrimitive primitive, GLTFTextureAtlas atlas, float[] worldMatrix, int[] triangles) {
+            this.node = node;
+            this.primitive = primitive;
+            if(atlas != null && atlas.contains(primitive)){
+                this.materialIdx = -1;
+                this.material = atlas.getMaterial(primitive);
+                this.texCoords = atlas.getTexCoords(primitive);
+            }else{
+                this.materialIdx = primitive.materialIdx;
+                this.material = primitive.material;
+                this.texCoords = primitive.getBaseColorTexCoords();
+            }
+            this.worldMatrix = worldMatrix;
+            this.triangles = triangles;
+            this.nVertices = primitive.attributes.positionsAccessor.data.length / 3;
+        }
+    }
+
+    /**
+     * batches a scene with the JavaFX TriangleMesh limits.
+     * @param scene the scene to batch
+     * @return the batches, grouped by material in order of first appearance
+     */
+    public static GLTFMeshBatch[] batch(GLTFScene scene){
+        return batch(scene, JFX_MAX_VERTICES, JFX_MAX_FACES);
+    }
+
+    /**
+     * batches a scene.
+     * @param scene the scene to batch
+     * @param maxVertices the maximum number of vertices per batch
+     * @param maxFaces the maximum number of faces per batch
+     * @return the batches, grouped by material in order of first appearance.
+     * A single primitive larger than the limits gets a batch of its own.
+     */
+    public static GLTFMeshBatch[] batch(GLTFScene scene, int maxVertices, int maxFaces){
+        return batch(scene, null, maxVertices, maxFaces);
+    }
+
+    /**
+     * batches a scene with the JavaFX TriangleMesh limits, merging the
+     * primitives which share a consolidated material of a texture atlas.
+     * @param scene the scene to batch
+     * @param atlas the atlas built for the meshes of the scene, or null
+     * @return the batches, grouped by material in order of first appearance
+     */
+    public static GLTFMeshBatch[] batch(GLTFScene scene, GLTFTextureAtlas atlas){
+        return batch(scene, atlas, JFX_MAX_VERTICES, JFX_MAX_FACES);
+    }
+
+    /**
+     * batches a scene, merging the primitives which share a consolidated
+     * material of a texture atlas, with their texture coordinates
+     * remapped into the atlas.
+     * @param scene the scene to batch
+     * @param atlas the atlas built for the meshes of the scene, or null
+     * @param maxVertices the maximum number of vertices per batch
+     * @param maxFaces the maximum number of faces per batch
+     * @return the batches, grouped by material in order of first appearance.
+     * A single primitive larger than the limits gets a batch of its own.
+     * @throws IllegalArgumentException if the scene is of a compact asset,
+     * as batches reference the GLTFNode objects of their primitives
+     */
+    public static GLTFMeshBatch[] batch(GLTFScene scene, GLTFTextureAtlas atlas, int maxVertices, int maxFaces){
+        if(scene.isCompact())
+            throw new IllegalArgumentException("cannot batch a scene whose nodes are in a GLTFNodeStore");
+        // keyed by material rather than index, as atlas materials have none
+        Map<Object, List<Instance>> byMaterial = new LinkedHashMap<>();
+        collect(scene.nodes, atlas, byMaterial);
+
+        List<List<Instance>> groups = new ArrayList<>();
+        for (List<Instance> instances : byMaterial.values()) {
+            List<Instance> current = new ArrayList<>();
+            long nVertices = 0, nFaces = 0;
+            for (Instance instance : instances) {
+                int faces = instance.triangles.length / 3;
+                if(!current.isEmpty()
+                    && (nVertices + instance.nVertices > maxVertices || nFaces + faces > maxFaces)){
+                    groups.add(current);
+                    current = new ArrayList<>();
+                    nVertices = 0;
+                    nFaces = 0;
+                }
+                current.add(instance);
+                nVertices += instance.nVertices;
+                nFaces += faces;
+            }
+            if(!current.isEmpty())
+                groups.add(current);
+        }
+
+        GLTFMeshBatch[] batches = new GLTFMeshBatch[groups.size()];
+        ParallelUtils.forEachChunk(batches.length, 1, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                batches[i] = build(groups.get(i));
+            }
+        });
+        return batches;
+    }
+
+    private static void collect(GLTFNode[] roots, GLTFTextureAtlas atlas, Map<Object, List<Instance>> byMaterial){
+        // an explicit-stack traversal, in the order of a recursive one
+        GLTFNodeTraversal traversal = GLTFNodeTraversal.fromRoots(roots);
+        float[][] worldMatrices = new float[traversal.nodes.length][];
+        traversal.traverse((nodeIdx, parentIdx, depth) -> {
+            GLTFNode node = traversal.nodes[nodeIdx];
+            float[] worldMatrix = node.computeLocalMatrix(new float[16]);
+            if(parentIdx != -1)
+                Mat4f.mul(worldMatrices[parentIdx], 0, worldMatrix, 0, worldMatrix, 0);
+            worldMatrices[nodeIdx] = worldMatrix;
+            if(node.mesh == null)
+                return;
+            for (GLTFMeshPrimitive primitive : node.mesh.primitives) {
+                if(primitive == null || primitive.attributes.positionsAccessor == null)
+                    continue;
+                int[] triangles = primitive.getTriangleIndices();
+                if(triangles == null)
+                    continue;
+                Instance instance = new Instance(node, primitive, atlas, worldMatrix, triangles);
+                Object key = instance.materialIdx != -1 || instance.material == null ?
+                    (Object) instance.materialIdx
+                    : instance.material;
+                byMaterial
+                    .computeIfAbsent(key, k -> new ArrayList<>())
+                    .add(instance);
+            }
+        }, null);
+    }
+
+    private static GLTFMeshBatch build(List<Instance> instances){
+        int nVertices = 0, nFaces = 0;
+        for (Instance instance : instances) {
+            nVertices += instance.nVertices;
+            nFaces += instance.triangles.length / 3;
+        }
+        float[] positions = new float[nVertices * 3];
+        float[] texCoords = new float[nVertices * 2];
+        int[] triangles = new int[nFaces * 3];
+        int[] rangeFirstFace = new int[instances.size()];
+        GLTFNode[] rangeNodes = new GLTFNode[instances.size()];
+        GLTFMeshPrimitive[] rangePrimitives = new GLTFMeshPrimitive[instances.size()];
+
+        int vertexBase = 0, faceBase = 0;
+        for (int r = 0; r < instances.size(); r++) {
+            Instance instance = instances.get(r);
+            float[] m = instance.worldMatrix;
+            Mat4f.transformPoints(m, 0,
+                    instance.primitive.attributes.positionsAccessor.data, 0,
+                    positions, 3 * vertexBase,
+                    instance.nVertices);
+            float[] uvs = instance.texCoords;
+            if(uvs != null){
+                System.arraycopy(uvs, 0, texCoords, 2 * vertexBase,
+                        Math.min(uvs.length, 2 * instance.nVertices));
+            }
+
+            // a mirroring transform flips the winding order of the faces
+            boolean flip = Mat4f.determinant3x3(m, 0) < 0;
+            int[] tris = instance.triangles;
+            int o = 3 * faceBase;
+            for (int t = 0; t < tris.length; t += 3) {
+                triangles[o + t] = tris[t] + vertexBase;
+                triangles[o + t + 1] = (flip ? tris[t + 2] : tris[t + 1]) + vertexBase;
+                triangles[o + t + 2] = (flip ? tris[t + 1] : tris[t + 2]) + vertexBase;
+            }
+
+            rangeFirstFace[r] = faceBase;
+            rangeNodes[r] = instance.node;
+            rangePrimitives[r] = instance.primitive;
+            vertexBase += instance.nVertices;
+            faceBase += tris.length / 3;
+        }
+        Instance first = instances.get(0);
+        return new GLTFMeshBatch(
+            first.materialIdx,
+            first.material,
+            positions,
+            texCoords,
+            triangles,
+            rangeFirstFace,
+            rangeNodes,
+            rangePrimitives
+        );
+    }
+}
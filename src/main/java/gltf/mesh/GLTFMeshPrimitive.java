@@ -2,27 +2,77 @@ package gltf.mesh;
 
 import gltf.exception.GLTFException;
 import gltf.material.GLTFMaterial;
+import gltf.material.GLTFTextureInfo;
+import gltf.material.GLTFTextureTransform;
 import gltf.exception.InvalidGLTFTypeException;
 import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFByteAccessor;
 import gltf.accessor.GLTFIntAccessor;
+import gltf.accessor.GLTFShortAccessor;
+import gltf.buffer.GLTFBufferView;
 import gltf.type.GLTFAccessorType;
 import gltf.type.GLTFComponentType;
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 public class GLTFMeshPrimitive {
+    public static final int MODE_POINTS = 0;
+    public static final int MODE_LINES = 1;
+    public static final int MODE_LINE_LOOP = 2;
+    public static final int MODE_LINE_STRIP = 3;
+    public static final int MODE_TRIANGLES = 4;
+    public static final int MODE_TRIANGLE_STRIP = 5;
+    public static final int MODE_TRIANGLE_FAN = 6;
+
     public final GLTFMeshPrimitiveAttributes attributes;
     public final int indicesAccessorIdx;
     public final int materialIdx;
     public final GLTFMaterial material;
     public final int meshMode;
     public final GLTFAccessor indicesAccessor;
+    /**
+     * the KHR_draco_mesh_compression extension of the primitive, or null.
+     * Its compressed data is decoded into the accessors of the primitive
+     * by {@link gltf.draco.GLTFDracoDecoder} when the asset is loaded.
+     */
+    public final GLTFDracoMeshCompression dracoCompression;
+    /** the morph targets of the primitive, empty if it has none */
+    public final GLTFMorphTarget[] targets;
+    public GLTFMeshPrimitive(GLTFMeshPrimitiveAttributes attributes,
+                             int indicesAccessorIdx,
+                             int materialIdx,
+                             int meshMode,
+                             GLTFAccessor[] accessors,
+                             GLTFMaterial[] materials) throws InvalidGLTFTypeException {
+        this(attributes, indicesAccessorIdx, materialIdx, meshMode, null, accessors, materials);
+    }
+
     public GLTFMeshPrimitive(GLTFMeshPrimitiveAttributes attributes,
                              int indicesAccessorIdx,
                              int materialIdx,
                              int meshMode,
+                             GLTFDracoMeshCompression dracoCompression,
+                             GLTFAccessor[] accessors,
+                             GLTFMaterial[] materials) throws InvalidGLTFTypeException {
+        this(attributes, indicesAccessorIdx, materialIdx, meshMode, dracoCompression,
+            new GLTFMorphTarget[0], accessors, materials);
+    }
+
+    public GLTFMeshPrimitive(GLTFMeshPrimitiveAttributes attributes,
+                             int indicesAccessorIdx,
+                             int materialIdx,
+                             int meshMode,
+                             GLTFDracoMeshCompression dracoCompression,
+                             GLTFMorphTarget[] targets,
                              GLTFAccessor[] accessors,
                              GLTFMaterial[] materials) throws InvalidGLTFTypeException {
         this.attributes = attributes;
+        this.dracoCompression = dracoCompression;
+        this.targets = targets;
 
         this.indicesAccessorIdx = indicesAccessorIdx;
         this.indicesAccessor = this.indicesAccessorIdx != -1 ?
@@ -34,7 +84,8 @@ public class GLTFMeshPrimitive {
                         new GLTFComponentType[]{
                                 GLTFComponentType.UNSIGNED_INT,
                                 GLTFComponentType.UNSIGNED_SHORT,
-                                GLTFComponentType.SHORT
+                                GLTFComponentType.SHORT,
+                                GLTFComponentType.UNSIGNED_BYTE
                         })
             : null;
 
@@ -44,11 +95,200 @@ public class GLTFMeshPrimitive {
 
     }
 
+    /**
+     * returns the vertex indices of the primitive, widened to ints.
+     * UNSIGNED_SHORT and UNSIGNED_BYTE indices are read as unsigned
+     * values. If the primitive has no indices accessor, the sequential
+     * indices 0..n-1 are returned, as per the GLTF specification.
+     * @return the vertex indices of the primitive
+     * @throws IllegalStateException if the indices accessor is of an
+     * unsupported type
+     */
+    public int[] getIndices(){
+        if(indices == null){
+            if(this.indicesAccessor == null){
+                int nVertices = this.attributes.positionsAccessor != null ?
+                    this.attributes.positionsAccessor.data.length / 3
+                    : 0;
+                int[] returnVal = new int[nVertices];
+                for (int i = 0; i < nVertices; i++) {
+                    returnVal[i] = i;
+                }
+                indices = returnVal;
+            }else if(this.indicesAccessor instanceof GLTFIntAccessor){
+                indices = ((GLTFIntAccessor) this.indicesAccessor).data;
+            }else if(this.indicesAccessor instanceof GLTFShortAccessor){
+                short[] data = ((GLTFShortAccessor) this.indicesAccessor).data;
+                int[] returnVal = new int[data.length];
+                for (int i = 0; i < data.length; i++) {
+                    returnVal[i] = data[i] & 0xFFFF;
+                }
+                indices = returnVal;
+            }else if(this.indicesAccessor instanceof GLTFByteAccessor){
+                byte[] data = ((GLTFByteAccessor) this.indicesAccessor).data;
+                int[] returnVal = new int[data.length];
+                for (int i = 0; i < data.length; i++) {
+                    returnVal[i] = data[i] & 0xFF;
+                }
+                indices = returnVal;
+            }else{
+                throw new IllegalStateException("unsupported indices accessor " + this.indicesAccessor);
+            }
+        }
+        return indices;
+    }
+    private int[] indices = null;
+
+    /**
+     * returns the vertex indices of the primitive as a triangle list,
+     * three indices per triangle. Triangle strips and fans are unrolled,
+     * keeping the winding order consistent.
+     * @return the triangle list, or null if the primitive is made of
+     * points or lines
+     */
+    public int[] getTriangleIndices(){
+        if(triangleIndices == null){
+            int[] idx = getIndices();
+            switch (this.meshMode){
+                case MODE_TRIANGLES:
+                    triangleIndices = idx;
+                    break;
+                case MODE_TRIANGLE_STRIP: {
+                    int nTris = Math.max(0, idx.length - 2);
+                    int[] returnVal = new int[nTris * 3];
+                    for (int i = 0; i < nTris; i++) {
+                        boolean even = (i & 1) == 0;
+                        returnVal[3 * i] = idx[i];
+                        returnVal[3 * i + 1] = even ? idx[i + 1] : idx[i + 2];
+                        returnVal[3 * i + 2] = even ? idx[i + 2] : idx[i + 1];
+                    }
+                    triangleIndices = returnVal;
+                    break;
+                }
+                case MODE_TRIANGLE_FAN: {
+                    int nTris = Math.max(0, idx.length - 2);
+                    int[] returnVal = new int[nTris * 3];
+                    for (int i = 0; i < nTris; i++) {
+                        returnVal[3 * i] = idx[i + 1];
+                        returnVal[3 * i + 1] = idx[i + 2];
+                        returnVal[3 * i + 2] = idx[0];
+                    }
+                    triangleIndices = returnVal;
+                    break;
+                }
+                default:
+                    return null;
+            }
+        }
+        return triangleIndices;
+    }
+    private int[] triangleIndices = null;
+
+    /**
+     * returns the tangents of the primitive as a VEC4 float stream
+     * (xyz + handedness in w), one per vertex. If the primitive has a
+     * TANGENT attribute, its data is returned; otherwise those of the
+     * generated tangent space, where a vertex the generator split keeps
+     * the tangent of its first corners. Renderers which can use the
+     * split vertices should use {@link #getTangentSpace()} instead.
+     * @return the tangents, or null if they cannot be generated
+     */
+    public float[] getTangents(){
+        if(this.attributes.tangentsAccessor != null)
+            return this.attributes.tangentsAccessor.data;
+        GLTFTangentSpace space = getTangentSpace();
+        if(space == null)
+            return null;
+        if(generatedTangents == null){
+            generatedTangents = space.isSplit() ?
+                Arrays.copyOf(space.tangents, 4 * space.sourceVertexCount)
+                : space.tangents;
+        }
+        return generatedTangents;
+    }
+    private float[] generatedTangents = null;
+
+    /**
+     * returns the MikkTSpace tangents of the primitive, generated once
+     * with {@link GLTFTangentGenerator} and kept for later calls.
+     * @return the tangent space, or null if it cannot be generated
+     */
+    public synchronized GLTFTangentSpace getTangentSpace(){
+        if(generatedTangentSpace == null)
+            generatedTangentSpace = GLTFTangentGenerator.generate(this);
+        return generatedTangentSpace;
+    }
+    private GLTFTangentSpace generatedTangentSpace = null;
+
+    /**
+     * returns the texture coordinates a texture is sampled with: those of
+     * the texCoord set of the texture info, with its KHR_texture_transform
+     * baked in. The transformed coordinates are computed on first use,
+     * or by {@link GLTFTextureTransformBaker} when the asset is loaded,
+     * and kept for later calls; texture infos with equal transforms
+     * share them. Without a transform, or with the identity, the
+     * coordinates of the attribute are returned without a copy.
+     * @param info the texture info, or null for TEXCOORD_0
+     * @return the UV pairs, or null if the texCoord set is absent
+     */
+    public float[] getTexCoords(GLTFTextureInfo info){
+        int set = info != null ? info.getTexCoordIdx() : 0;
+        float[] uvs = this.attributes.getTexCoords(set);
+        GLTFTextureTransform transform = info != null ? info.transform : null;
+        if(uvs == null || transform == null || transform.isIdentity())
+            return uvs;
+        synchronized (bakedTexCoords){
+            Map<GLTFTextureTransform, float[]> baked = bakedTexCoords.computeIfAbsent(set, s -> new HashMap<>());
+            float[] returnVal = baked.get(transform);
+            if(returnVal == null){
+                returnVal = transform.apply(uvs);
+                baked.put(transform, returnVal);
+            }
+            return returnVal;
+        }
+    }
+    /** the baked texture coordinates, by texCoord set and transform */
+    private final Map<Integer, Map<GLTFTextureTransform, float[]>> bakedTexCoords = new HashMap<>();
+
+    /**
+     * returns the texture coordinates of the base color texture of the
+     * material, see {@link #getTexCoords(GLTFTextureInfo)}, or those of
+     * TEXCOORD_0 if it has none.
+     */
+    public float[] getBaseColorTexCoords(){
+        GLTFTextureInfo info = this.material != null && this.material.pbrMetallicRoughness != null ?
+            this.material.pbrMetallicRoughness.baseColorTexture
+            : null;
+        return getTexCoords(info);
+    }
+
+    /**
+     * returns the bounds of the primitive in the local space of its mesh.
+     * They are computed from the vertex positions on first use, then cached.
+     * @return the local bounds, or null if the primitive has no positions
+     */
+    public GLTFBounds getLocalBounds(){
+        if(localBounds == null && this.attributes.positionsAccessor != null)
+            localBounds = GLTFBounds.fromPositions(this.attributes.positionsAccessor.data);
+        return localBounds;
+    }
+    private GLTFBounds localBounds = null;
+
     public static GLTFMeshPrimitive fromJSONObject(JSONObject jObj,
                                                    GLTFAccessor[] accessors,
-                                                   GLTFMaterial[] materials)
+                                                   GLTFMaterial[] materials,
+                                                   GLTFBufferView[] bufferViews)
         throws GLTFException {
         try{
+            JSONObject extensions = jObj.getJSONObject("extensions");
+            JSONObject draco = extensions != null ?
+                extensions.getJSONObject("KHR_draco_mesh_compression")
+                : null;
+            JSONArray jTargets = jObj.getJSONArray("targets");
+            GLTFMorphTarget[] targets = new GLTFMorphTarget[jTargets != null ? jTargets.size() : 0];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = GLTFMorphTarget.fromJSONObject(jTargets.getJSONObject(i), accessors);
+            }
             return new GLTFMeshPrimitive(
                 GLTFMeshPrimitiveAttributes.fromJSONObject(
                     jObj.getJSONObject("attributes"),
@@ -63,6 +303,10 @@ public class GLTFMeshPrimitive {
                 jObj.containsKey("mode") ?
                     jObj.getIntValue("mode")
                     : 4,
+                draco != null ?
+                    GLTFDracoMeshCompression.fromJSONObject(draco, bufferViews)
+                    : null,
+                targets,
                 accessors,
                 materials
             );
@@ -3,7 +3,9 @@ package gltf.mesh;
 import gltf.exception.GLTFException;
 import gltf.exception.InvalidGLTFTypeException;
 import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFByteAccessor;
 import gltf.accessor.GLTFFloatAccessor;
+import gltf.accessor.GLTFShortAccessor;
 import gltf.type.GLTFAccessorType;
 import gltf.type.GLTFComponentType;
 import com.alibaba.fastjson.JSONObject;
@@ -94,7 +96,7 @@ public class GLTFMeshPrimitiveAttributes {
 
         this.texCoords1AccessorIdx = texCoords1AccessorIdx;
         this.texCoords1Accessor = this.texCoords1AccessorIdx != -1 ?
-            accessors[texCoords0AccessorIdx].assertType(
+            accessors[texCoords1AccessorIdx].assertType(
                 new GLTFAccessorType[]{
                         GLTFAccessorType.VEC2
                 },
@@ -145,6 +147,57 @@ public class GLTFMeshPrimitiveAttributes {
             : null;
     }
 
+    /**
+     * returns the texture coordinates of the specified set as floats.
+     * Integer texture coordinates are normalized, as mandated by the
+     * GLTF specification.
+     * @param set the texCoord set: 0 for TEXCOORD_0, 1 for TEXCOORD_1
+     * @return the UV pairs, or null if the set is absent
+     */
+    public float[] getTexCoords(int set){
+        GLTFAccessor accessor = set == 0 ? this.texCoords0Accessor : this.texCoords1Accessor;
+        if(accessor instanceof GLTFFloatAccessor){
+            return ((GLTFFloatAccessor) accessor).data;
+        }
+        if(accessor instanceof GLTFShortAccessor){
+            short[] data = ((GLTFShortAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = (data[i] & 0xFFFF) / 65535f;
+            }
+            return returnVal;
+        }
+        if(accessor instanceof GLTFByteAccessor){
+            byte[] data = ((GLTFByteAccessor) accessor).data;
+            float[] returnVal = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                returnVal[i] = (data[i] & 0xFF) / 255f;
+            }
+            return returnVal;
+        }
+        return null;
+    }
+
+    /**
+     * returns the accessor of an attribute from its GLTF name.
+     * @param name the attribute name, for example "POSITION" or "TEXCOORD_0"
+     * @return the accessor, or null if the attribute is absent or not
+     * supported by this class
+     */
+    public GLTFAccessor getAccessor(String name){
+        switch (name){
+            case "POSITION": return this.positionsAccessor;
+            case "NORMAL": return this.normalsAccessor;
+            case "TANGENT": return this.tangentsAccessor;
+            case "TEXCOORD_0": return this.texCoords0Accessor;
+            case "TEXCOORD_1": return this.texCoords1Accessor;
+            case "COLOR_0": return this.color0Accessor;
+            case "JOINTS_0": return this.joints0Accessor;
+            case "WEIGHTS_0": return this.weights0Accessor;
+            default: return null;
+        }
+    }
+
     public static GLTFMeshPrimitiveAttributes fromJSONObject(JSONObject jObj,
                                                              GLTFAccessor[] accessors)
         throws GLTFException
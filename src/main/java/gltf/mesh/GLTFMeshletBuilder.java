@@ -0,0 +1,494 @@
+package gltf.mesh;
+
+import gltf.utils.ParallelUtils;
+
+import java.util.Arrays;
+
+/**
+ * Splits the triangles of primitives into meshlets: clusters of at most
+ * maxVertices vertices and maxTriangles triangles, grown greedily from a
+ * seed triangle by adding the adjacent triangle that brings the fewest
+ * new vertices. When no adjacent triangle is left, as at UV seams or
+ * between disconnected parts, the meshlet continues with the unused
+ * triangle whose centroid is nearest to its own, like meshoptimizer
+ * does, so that a meshlet is only closed at its limits. Clusters are
+ * therefore full and spatially compact, which keeps their bounding
+ * spheres and normal cones tight.
+ */
+public class GLTFMeshletBuilder {
+    public static final int DEFAULT_MAX_VERTICES = 64;
+    public static final int DEFAULT_MAX_TRIANGLES = 124;
+
+    /**
+     * builds the meshlets of all the primitives of the meshes, in parallel
+     * across primitives, with the default limits.
+     * @param meshes the meshes
+     * @return the meshlets, indexed like meshes[i].primitives[j]. Entries
+     * are null for primitives that are not made of triangles.
+     */
+    public static GLTFMeshlets[][] buildAll(GLTFMesh[] meshes){
+        GLTFMeshlets[][] returnVal = new GLTFMeshlets[meshes.length][];
+        int nPrimitives = 0;
+        for (int i = 0; i < meshes.length; i++) {
+            returnVal[i] = new GLTFMeshlets[meshes[i].primitives.length];
+            nPrimitives += meshes[i].primitives.length;
+        }
+        int[] meshIdxes = new int[nPrimitives];
+        int[] primitiveIdxes = new int[nPrimitives];
+        for (int i = 0, k = 0; i < meshes.length; i++) {
+            for (int j = 0; j < meshes[i].primitives.length; j++, k++) {
+                meshIdxes[k] = i;
+                primitiveIdxes[k] = j;
+            }
+        }
+        ParallelUtils.forEachChunk(nPrimitives, 1, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                GLTFMeshPrimitive primitive = meshes[meshIdxes[k]].primitives[primitiveIdxes[k]];
+                if(primitive != null)
+                    returnVal[meshIdxes[k]][primitiveIdxes[k]] = build(primitive);
+            }
+        });
+        return returnVal;
+    }
+
+    public static GLTFMeshlets build(GLTFMeshPrimitive primitive){
+        return build(primitive, DEFAULT_MAX_VERTICES, DEFAULT_MAX_TRIANGLES);
+    }
+
+    /**
+     * builds the meshlets of a primitive.
+     * @param primitive the primitive
+     * @param maxVertices the maximum number of vertices per meshlet, at most 256
+     * @param maxTriangles the maximum number of triangles per meshlet
+     * @return the meshlets, or null if the primitive has no positions
+     * or is not made of triangles
+     */
+    public static GLTFMeshlets build(GLTFMeshPrimitive primitive, int maxVertices, int maxTriangles){
+        if(maxVertices < 3 || maxVertices > 256 || maxTriangles < 1)
+            throw new IllegalArgumentException("invalid meshlet limits: "
+                + maxVertices + " vertices, " + maxTriangles + " triangles");
+        if(primitive.attributes.positionsAccessor == null)
+            return null;
+        int[] triangles = primitive.getTriangleIndices();
+        if(triangles == null)
+            return null;
+        float[] positions = primitive.attributes.positionsAccessor.data;
+        int nVertices = positions.length / 3;
+        int nTriangles = triangles.length / 3;
+
+        // vertex -> triangles adjacency, in compressed row form
+        int[] adjOffsets = new int[nVertices + 1];
+        for (int i = 0; i < nTriangles * 3; i++) {
+            adjOffsets[triangles[i] + 1]++;
+        }
+        for (int v = 0; v < nVertices; v++) {
+            adjOffsets[v + 1] += adjOffsets[v];
+        }
+        int[] adjTriangles = new int[nTriangles * 3];
+        int[] fill = Arrays.copyOf(adjOffsets, nVertices);
+        for (int i = 0; i < nTriangles * 3; i++) {
+            adjTriangles[fill[triangles[i]]++] = i / 3;
+        }
+
+        float[] centroids = new float[nTriangles * 3];
+        for (int t = 0; t < nTriangles; t++) {
+            for (int k = 0; k < 3; k++) {
+                float c = (positions[3 * triangles[3 * t] + k]
+                    + positions[3 * triangles[3 * t + 1] + k]
+                    + positions[3 * triangles[3 * t + 2] + k]) / 3f;
+                centroids[3 * t + k] = Float.isFinite(c) ? c : 0;
+            }
+        }
+        CentroidTree tree = new CentroidTree(centroids, nTriangles);
+
+        boolean[] used = new boolean[nTriangles];
+        int[] localSlots = new int[nVertices];
+        Arrays.fill(localSlots, -1);
+        int[] curVertices = new int[maxVertices];
+        int[] curTriangles = new int[maxTriangles];
+        float[] scratchNormals = new float[maxTriangles * 3];
+        boolean[] scratchValid = new boolean[maxTriangles];
+
+        int[] meshlets = new int[64];
+        int[] vertexRemap = new int[Math.max(16, nTriangles)];
+        byte[] localIndices = new byte[nTriangles * 3];
+        float[] spheres = new float[64];
+        float[] cones = new float[64];
+        int nMeshlets = 0, nRemap = 0, nLocalTriangles = 0;
+
+        int seed = nTriangles > 0 ? 0 : -1;
+        while(seed != -1){
+            int nCurVertices = 0, nCurTriangles = 0;
+            float sumX = 0, sumY = 0, sumZ = 0;
+            int next = seed;
+            seed = -1;
+            while(next != -1){
+                used[next] = true;
+                tree.remove(next);
+                curTriangles[nCurTriangles++] = next;
+                sumX += centroids[3 * next];
+                sumY += centroids[3 * next + 1];
+                sumZ += centroids[3 * next + 2];
+                for (int c = 0; c < 3; c++) {
+                    int v = triangles[3 * next + c];
+                    if(localSlots[v] == -1){
+                        localSlots[v] = nCurVertices;
+                        curVertices[nCurVertices++] = v;
+                    }
+                }
+                if(nCurTriangles == maxTriangles)
+                    break;
+
+                // pick the adjacent triangle adding the fewest new vertices
+                next = -1;
+                int bestNew = 4;
+                for (int i = 0; i < nCurVertices && bestNew > 0; i++) {
+                    int v = curVertices[i];
+                    for (int k = adjOffsets[v]; k < adjOffsets[v + 1]; k++) {
+                        int t = adjTriangles[k];
+                        if(used[t])
+                            continue;
+                        int newVertices = countNewVertices(triangles, t, localSlots);
+                        if(nCurVertices + newVertices > maxVertices)
+                            continue;
+                        if(newVertices < bestNew || newVertices == bestNew && t < next){
+                            bestNew = newVertices;
+                            next = t;
+                            if(bestNew == 0)
+                                break;
+                        }
+                    }
+                }
+                if(next == -1){
+                    // no adjacent triangle fits: continue with the nearest
+                    // one, or start the next meshlet from it
+                    int t = tree.nearest(sumX / nCurTriangles, sumY / nCurTriangles, sumZ / nCurTriangles);
+                    if(t == -1)
+                        break;
+                    if(nCurVertices + countNewVertices(triangles, t, localSlots) <= maxVertices)
+                        next = t;
+                    else
+                        seed = t;
+                }
+            }
+            if(seed == -1)
+                seed = tree.nearest(sumX / nCurTriangles, sumY / nCurTriangles, sumZ / nCurTriangles);
+
+            // emit the meshlet
+            if((nMeshlets + 1) * GLTFMeshlets.MESHLET_STRIDE > meshlets.length)
+                meshlets = Arrays.copyOf(meshlets, meshlets.length * 2);
+            if((nMeshlets + 1) * GLTFMeshlets.SPHERE_STRIDE > spheres.length)
+                spheres = Arrays.copyOf(spheres, spheres.length * 2);
+            if((nMeshlets + 1) * GLTFMeshlets.CONE_STRIDE > cones.length)
+                cones = Arrays.copyOf(cones, cones.length * 2);
+            if(nRemap + nCurVertices > vertexRemap.length)
+                vertexRemap = Arrays.copyOf(vertexRemap, Math.max(vertexRemap.length * 2, nRemap + nCurVertices));
+            int o = GLTFMeshlets.MESHLET_STRIDE * nMeshlets;
+            meshlets[o] = nRemap;
+            meshlets[o + 1] = nCurVertices;
+            meshlets[o + 2] = nLocalTriangles;
+            meshlets[o + 3] = nCurTriangles;
+            System.arraycopy(curVertices, 0, vertexRemap, nRemap, nCurVertices);
+            for (int i = 0; i < nCurTriangles; i++) {
+                int t = curTriangles[i];
+                for (int c = 0; c < 3; c++) {
+                    localIndices[3 * (nLocalTriangles + i) + c] = (byte) localSlots[triangles[3 * t + c]];
+                }
+            }
+            computeBounds(positions, triangles, curVertices, nCurVertices, curTriangles, nCurTriangles,
+                    spheres, GLTFMeshlets.SPHERE_STRIDE * nMeshlets,
+                    cones, GLTFMeshlets.CONE_STRIDE * nMeshlets,
+                    scratchNormals, scratchValid);
+            for (int i = 0; i < nCurVertices; i++) {
+                localSlots[curVertices[i]] = -1;
+            }
+            nRemap += nCurVertices;
+            nLocalTriangles += nCurTriangles;
+            nMeshlets++;
+        }
+
+        return new GLTFMeshlets(
+            primitive,
+            Arrays.copyOf(meshlets, nMeshlets * GLTFMeshlets.MESHLET_STRIDE),
+            Arrays.copyOf(vertexRemap, nRemap),
+            localIndices,
+            Arrays.copyOf(spheres, nMeshlets * GLTFMeshlets.SPHERE_STRIDE),
+            Arrays.copyOf(cones, nMeshlets * GLTFMeshlets.CONE_STRIDE)
+        );
+    }
+
+    private static int countNewVertices(int[] triangles, int t, int[] localSlots){
+        int a = triangles[3 * t], b = triangles[3 * t + 1], c = triangles[3 * t + 2];
+        int n = localSlots[a] == -1 ? 1 : 0;
+        if(localSlots[b] == -1 && b != a)
+            n++;
+        if(localSlots[c] == -1 && c != a && c != b)
+            n++;
+        return n;
+    }
+
+    /**
+     * computes the bounding sphere and the normal cone of a meshlet. The
+     * cone follows the meshoptimizer convention: the meshlet is back-facing
+     * when dot(normalize(apex - camera), axis) >= cutoff. normals and valid
+     * are scratch buffers of at least nTris triangles, reused across meshlets.
+     */
+    private static void computeBounds(float[] p,
+                                      int[] triangles,
+                                      int[] vertices, int nVertices,
+                                      int[] tris, int nTris,
+                                      float[] spheres, int so,
+                                      float[] cones, int co,
+                                      float[] normals, boolean[] valid)
+    {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < nVertices; i++) {
+            int v = vertices[i];
+            minX = Math.min(minX, p[3 * v]); maxX = Math.max(maxX, p[3 * v]);
+            minY = Math.min(minY, p[3 * v + 1]); maxY = Math.max(maxY, p[3 * v + 1]);
+            minZ = Math.min(minZ, p[3 * v + 2]); maxZ = Math.max(maxZ, p[3 * v + 2]);
+        }
+        float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+        float maxDistSq = 0;
+        for (int i = 0; i < nVertices; i++) {
+            int v = vertices[i];
+            float dx = p[3 * v] - cx, dy = p[3 * v + 1] - cy, dz = p[3 * v + 2] - cz;
+            maxDistSq = Math.max(maxDistSq, dx * dx + dy * dy + dz * dz);
+        }
+        spheres[so] = cx;
+        spheres[so + 1] = cy;
+        spheres[so + 2] = cz;
+        spheres[so + 3] = (float) Math.sqrt(maxDistSq);
+
+        // unit normals of the triangles
+        float ax = 0, ay = 0, az = 0;
+        for (int i = 0; i < nTris; i++) {
+            int t = tris[i];
+            int i0 = triangles[3 * t], i1 = triangles[3 * t + 1], i2 = triangles[3 * t + 2];
+            float e1x = p[3 * i1] - p[3 * i0], e1y = p[3 * i1 + 1] - p[3 * i0 + 1], e1z = p[3 * i1 + 2] - p[3 * i0 + 2];
+            float e2x = p[3 * i2] - p[3 * i0], e2y = p[3 * i2 + 1] - p[3 * i0 + 1], e2z = p[3 * i2 + 2] - p[3 * i0 + 2];
+            float nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+            float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            valid[i] = len != 0;
+            if(len == 0)
+                continue;
+            normals[3 * i] = nx / len;
+            normals[3 * i + 1] = ny / len;
+            normals[3 * i + 2] = nz / len;
+            ax += normals[3 * i]; ay += normals[3 * i + 1]; az += normals[3 * i + 2];
+        }
+        float axisLen = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        float minDot = 1;
+        if(axisLen > 0){
+            ax /= axisLen; ay /= axisLen; az /= axisLen;
+            for (int i = 0; i < nTris; i++) {
+                if(valid[i])
+                    minDot = Math.min(minDot, ax * normals[3 * i] + ay * normals[3 * i + 1] + az * normals[3 * i + 2]);
+            }
+        }
+        cones[co + 3] = ax;
+        cones[co + 4] = ay;
+        cones[co + 5] = az;
+        if(axisLen == 0 || minDot <= 0.1f){
+            // the normals spread over more than a hemisphere: never cull
+            cones[co] = cx;
+            cones[co + 1] = cy;
+            cones[co + 2] = cz;
+            cones[co + 6] = 1;
+            return;
+        }
+        // move the apex back along the axis until every triangle plane
+        // lies in front of it
+        float maxT = 0;
+        for (int i = 0; i < nTris; i++) {
+            if(!valid[i])
+                continue;
+            int i0 = triangles[3 * tris[i]];
+            float nx = normals[3 * i], ny = normals[3 * i + 1], nz = normals[3 * i + 2];
+            float dc = (cx - p[3 * i0]) * nx + (cy - p[3 * i0 + 1]) * ny + (cz - p[3 * i0 + 2]) * nz;
+            float dn = ax * nx + ay * ny + az * nz;
+            maxT = Math.max(maxT, dc / dn);
+        }
+        cones[co] = cx - ax * maxT;
+        cones[co + 1] = cy - ay * maxT;
+        cones[co + 2] = cz - az * maxT;
+        cones[co + 6] = (float) Math.sqrt(1 - minDot * minDot);
+    }
+
+    /**
+     * a kd-tree over the triangle centroids, from which the triangles are
+     * removed as they are assigned to meshlets. Every node counts its
+     * remaining triangles so that exhausted subtrees are skipped.
+     */
+    private static final class CentroidTree {
+        private static final int LEAF_SIZE = 8;
+
+        private final float[] centroids;
+        private final int[] order;
+        private final boolean[] removed;
+        private final int[] leafOf;
+        // per node: the triangle range in order, the split axis (-1 for a
+        // leaf), the split value, the children, the parent and the live count
+        private int[] lo, hi, axis, left, right, parent, live;
+        private float[] split;
+        private int nNodes;
+        // the state of the current nearest search
+        private int best;
+        private float bestDistSq;
+
+        CentroidTree(float[] centroids, int nTriangles){
+            this.centroids = centroids;
+            this.order = new int[nTriangles];
+            for (int t = 0; t < nTriangles; t++) {
+                this.order[t] = t;
+            }
+            this.removed = new boolean[nTriangles];
+            this.leafOf = new int[nTriangles];
+            int capacity = Math.max(1, 4 * nTriangles / LEAF_SIZE + 2);
+            this.lo = new int[capacity];
+            this.hi = new int[capacity];
+            this.axis = new int[capacity];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.parent = new int[capacity];
+            this.live = new int[capacity];
+            this.split = new float[capacity];
+            if(nTriangles > 0)
+                build(0, nTriangles, -1);
+        }
+
+        private int build(int from, int to, int parentNode){
+            int n = this.nNodes++;
+            if(n == this.lo.length)
+                grow();
+            this.lo[n] = from;
+            this.hi[n] = to;
+            this.parent[n] = parentNode;
+            this.live[n] = to - from;
+            if(to - from <= LEAF_SIZE){
+                this.axis[n] = -1;
+                for (int i = from; i < to; i++) {
+                    this.leafOf[this.order[i]] = n;
+                }
+                return n;
+            }
+            float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+            float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            for (int i = from; i < to; i++) {
+                for (int k = 0; k < 3; k++) {
+                    float c = this.centroids[3 * this.order[i] + k];
+                    min[k] = Math.min(min[k], c);
+                    max[k] = Math.max(max[k], c);
+                }
+            }
+            int a = 0;
+            for (int k = 1; k < 3; k++) {
+                if(max[k] - min[k] > max[a] - min[a])
+                    a = k;
+            }
+            int mid = (from + to) >>> 1;
+            select(from, to, mid, a);
+            this.axis[n] = a;
+            this.split[n] = this.centroids[3 * this.order[mid] + a];
+            int l = build(from, mid, n);
+            int r = build(mid, to, n);
+            this.left[n] = l;
+            this.right[n] = r;
+            return n;
+        }
+
+        private void grow(){
+            int capacity = this.lo.length * 2;
+            this.lo = Arrays.copyOf(this.lo, capacity);
+            this.hi = Arrays.copyOf(this.hi, capacity);
+            this.axis = Arrays.copyOf(this.axis, capacity);
+            this.left = Arrays.copyOf(this.left, capacity);
+            this.right = Arrays.copyOf(this.right, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.live = Arrays.copyOf(this.live, capacity);
+            this.split = Arrays.copyOf(this.split, capacity);
+        }
+
+        /**
+         * partially sorts order[from, to) along an axis so that order[k]
+         * holds the k-th centroid, smaller ones before it, larger after.
+         */
+        private void select(int from, int to, int k, int a){
+            int l = from, r = to - 1;
+            while(l < r){
+                float pivot = this.centroids[3 * this.order[(l + r) >>> 1] + a];
+                int i = l, j = r;
+                while(i <= j){
+                    while(this.centroids[3 * this.order[i] + a] < pivot)
+                        i++;
+                    while(this.centroids[3 * this.order[j] + a] > pivot)
+                        j--;
+                    if(i <= j){
+                        int tmp = this.order[i];
+                        this.order[i] = this.order[j];
+                        this.order[j] = tmp;
+                        i++;
+                        j--;
+                    }
+                }
+                if(k <= j)
+                    r = j;
+                else if(k >= i)
+                    l = i;
+                else
+                    return;
+            }
+        }
+
+        void remove(int t){
+            if(this.removed[t])
+                return;
+            this.removed[t] = true;
+            for (int n = this.leafOf[t]; n != -1; n = this.parent[n]) {
+                this.live[n]--;
+            }
+        }
+
+        /**
+         * @return the remaining triangle whose centroid is nearest to the
+         * point, or -1 if every triangle was removed
+         */
+        int nearest(float x, float y, float z){
+            if(this.nNodes == 0 || this.live[0] == 0)
+                return -1;
+            this.best = -1;
+            this.bestDistSq = Float.POSITIVE_INFINITY;
+            search(0, x, y, z);
+            return this.best;
+        }
+
+        private void search(int n, float x, float y, float z){
+            if(this.live[n] == 0)
+                return;
+            if(this.axis[n] == -1){
+                for (int i = this.lo[n]; i < this.hi[n]; i++) {
+                    int t = this.order[i];
+                    if(this.removed[t])
+                        continue;
+                    float dx = this.centroids[3 * t] - x;
+                    float dy = this.centroids[3 * t + 1] - y;
+                    float dz = this.centroids[3 * t + 2] - z;
+                    float d = dx * dx + dy * dy + dz * dz;
+                    if(this.best == -1 || d < this.bestDistSq){
+                        this.best = t;
+                        this.bestDistSq = d;
+                    }
+                }
+                return;
+            }
+            int a = this.axis[n];
+            float diff = (a == 0 ? x : a == 1 ? y : z) - this.split[n];
+            int near = diff < 0 ? this.left[n] : this.right[n];
+            int far = diff < 0 ? this.right[n] : this.left[n];
+            search(near, x, y, z);
+            if(this.best == -1 || diff * diff < this.bestDistSq)
+                search(far, x, y, z);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package gltf.mesh;
+
+/**
+ * The partition of a primitive into small clusters of triangles
+ * (meshlets), built by {@link GLTFMeshletBuilder}.
+ *
+ * Each meshlet references its own small set of vertices through
+ * vertexRemap, and its triangles through byte-sized indices into that
+ * set, stored in localIndices. Each meshlet also carries a bounding
+ * sphere and a normal cone, which allow rejecting meshlets outside the
+ * view frustum or facing away from the camera before drawing or even
+ * loading them.
+ *
+ * All coordinates are in the local space of the primitive's mesh.
+ */
+public class GLTFMeshlets {
+    /** number of ints per entry of the meshlets table */
+    public static final int MESHLET_STRIDE = 4;
+    /** number of floats per entry of the spheres table: center xyz, radius */
+    public static final int SPHERE_STRIDE = 4;
+    /** number of floats per entry of the cones table: apex xyz, axis xyz, cutoff */
+    public static final int CONE_STRIDE = 7;
+
+    public final GLTFMeshPrimitive primitive;
+    /**
+     * the meshlets table: for each meshlet, the offset of its vertices in
+     * vertexRemap, its vertex count, the offset of its triangles in
+     * localIndices (in triangles) and its triangle count.
+     */
+    public final int[] meshlets;
+    /** the primitive vertex indices referenced by the meshlets */
+    public final int[] vertexRemap;
+    /** three unsigned bytes per triangle, indexing the meshlet's vertices */
+    public final byte[] localIndices;
+    public final float[] spheres;
+    public final float[] cones;
+
+    public GLTFMeshlets(GLTFMeshPrimitive primitive,
+                        int[] meshlets,
+                        int[] vertexRemap,
+                        byte[] localIndices,
+                        float[] spheres,
+                        float[] cones)
+    {
+        this.primitive = primitive;
+        this.meshlets = meshlets;
+        this.vertexRemap = vertexRemap;
+        this.localIndices = localIndices;
+        this.spheres = spheres;
+        this.cones = cones;
+    }
+
+    public int getMeshletCount(){
+        return this.meshlets.length / MESHLET_STRIDE;
+    }
+
+    public int getTriangleCount(int meshlet){
+        return this.meshlets[MESHLET_STRIDE * meshlet + 3];
+    }
+
+    /**
+     * tests whether all the triangles of a meshlet face away from a
+     * camera, in which case the meshlet can be skipped when back faces
+     * are culled.
+     * @param meshlet the meshlet index
+     * @param cameraX the camera position, in the local space of the mesh
+     * @return true if the meshlet is entirely back-facing
+     */
+    public boolean isBackFacing(int meshlet, float cameraX, float cameraY, float cameraZ){
+        int o = CONE_STRIDE * meshlet;
+        float dx = this.cones[o] - cameraX;
+        float dy = this.cones[o + 1] - cameraY;
+        float dz = this.cones[o + 2] - cameraZ;
+        float len = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if(len == 0)
+            return false;
+        float d = (dx * this.cones[o + 3] + dy * this.cones[o + 4] + dz * this.cones[o + 5]) / len;
+        return d >= this.cones[o + 6];
+    }
+
+    /**
+     * tests whether the bounding sphere of a meshlet lies entirely outside
+     * one of a set of planes, typically the six planes of a view frustum.
+     * @param meshlet the meshlet index
+     * @param planes the planes (a, b, c, d), four floats each, with
+     *               a*x + b*y + c*z + d >= 0 on the inside and
+     *               (a, b, c) normalized
+     * @return true if the meshlet is outside
+     */
+    public boolean isOutside(int meshlet, float[] planes){
+        int o = SPHERE_STRIDE * meshlet;
+        float cx = this.spheres[o], cy = this.spheres[o + 1], cz = this.spheres[o + 2], r = this.spheres[o + 3];
+        for (int p = 0; p + 3 < planes.length; p += 4) {
+            if(planes[p] * cx + planes[p + 1] * cy + planes[p + 2] * cz + planes[p + 3] < -r)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * writes the triangles of a meshlet, as primitive vertex indices.
+     * @param meshlet the meshlet index
+     * @param out the destination array
+     * @param offset the position in out to write at
+     * @return the number of indices written
+     */
+    public int writeTriangles(int meshlet, int[] out, int offset){
+        int o = MESHLET_STRIDE * meshlet;
+        int vertexOffset = this.meshlets[o];
+        int triangleOffset = this.meshlets[o + 2];
+        int nIndices = this.meshlets[o + 3] * 3;
+        for (int i = 0; i < nIndices; i++) {
+            out[offset + i] = this.vertexRemap[vertexOffset + (this.localIndices[3 * triangleOffset + i] & 0xFF)];
+        }
+        return nIndices;
+    }
+
+    /**
+     * gathers the triangles of a subset of meshlets, for example the ones
+     * that passed culling, into a single triangle list.
+     * @param visibleMeshlets the meshlet indices
+     * @return the triangle list, as primitive vertex indices
+     */
+    public int[] getTriangles(int[] visibleMeshlets){
+        int n = 0;
+        for (int meshlet : visibleMeshlets) {
+            n += getTriangleCount(meshlet) * 3;
+        }
+        int[] returnVal = new int[n];
+        int offset = 0;
+        for (int meshlet : visibleMeshlets) {
+            offset += writeTriangles(meshlet, returnVal, offset);
+        }
+        return returnVal;
+    }
+}
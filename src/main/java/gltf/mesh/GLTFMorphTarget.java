@@ -0,0 +1,67 @@
+package gltf.mesh;
+
+import gltf.accessor.GLTFAccessor;
+import gltf.accessor.GLTFFloatAccessor;
+import gltf.exception.GLTFException;
+import gltf.exception.InvalidGLTFTypeException;
+import gltf.type.GLTFAccessorType;
+import gltf.type.GLTFComponentType;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * a morph target of a mesh primitive: per-vertex displacements of the
+ * positions, normals and tangents (xyz only), each of which may be null.
+ */
+public class GLTFMorphTarget {
+    public final GLTFFloatAccessor positionsAccessor;
+    public final GLTFFloatAccessor normalsAccessor;
+    public final GLTFFloatAccessor tangentsAccessor;
+
+    public GLTFMorphTarget(int positionsAccessorIdx,
+                           int normalsAccessorIdx,
+                           int tangentsAccessorIdx,
+                           GLTFAccessor[] accessors)
+        throws InvalidGLTFTypeException
+    {
+        this.positionsAccessor = getVec3Accessor(positionsAccessorIdx, accessors);
+        this.normalsAccessor = getVec3Accessor(normalsAccessorIdx, accessors);
+        this.tangentsAccessor = getVec3Accessor(tangentsAccessorIdx, accessors);
+    }
+
+    private static GLTFFloatAccessor getVec3Accessor(int idx, GLTFAccessor[] accessors)
+        throws InvalidGLTFTypeException
+    {
+        return idx != -1 ?
+            (GLTFFloatAccessor)(accessors[idx].assertType(
+                new GLTFAccessorType[]{
+                        GLTFAccessorType.VEC3
+                },
+                new GLTFComponentType[]{
+                        GLTFComponentType.FLOAT
+                }))
+            : null;
+    }
+
+    public static GLTFMorphTarget fromJSONObject(JSONObject jObj, GLTFAccessor[] accessors)
+        throws GLTFException
+    {
+        try{
+            return new GLTFMorphTarget(
+                jObj.containsKey("POSITION") ?
+                    jObj.getIntValue("POSITION")
+                    : -1,
+                jObj.containsKey("NORMAL") ?
+                    jObj.getIntValue("NORMAL")
+                    : -1,
+                jObj.containsKey("TANGENT") ?
+                    jObj.getIntValue("TANGENT")
+                    : -1,
+                accessors
+            );
+        }catch(Exception e){
+            e.printStackTrace();
+            GLTFException.throwGLTFExceptionWithCause(jObj);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,709 @@
+package gltf.mesh;
+
+import gltf.material.GLTFMaterial;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates tangents for primitives that do not provide a TANGENT
+ * attribute, with the MikkTSpace algorithm the GLTF specification asks
+ * for: the tangent follows the direction of increasing U, is orthonormal
+ * to the vertex normal, and its w component holds the handedness of the
+ * bitangent (bitangent = cross(normal, tangent.xyz) * tangent.w).
+ *
+ * This is a port of the reference implementation, mikktspace.c, for
+ * triangles and its default angular threshold. It evaluates the same
+ * float expressions in the same order, so that its tangents are
+ * bit-identical to those of the reference and normal maps baked against
+ * MikkTSpace render as they were baked:
+ * <ol>
+ * <li>corners with identical positions, normals and texture coordinates
+ * are welded, and triangles with two identical positions are set aside
+ * as degenerate;</li>
+ * <li>the normalized first order derivatives of every other triangle are
+ * evaluated, and triangles sharing a welded edge become neighbors;</li>
+ * <li>the triangles around every welded vertex are gathered into groups
+ * of connected triangles of the same orientation;</li>
+ * <li>each group is split into subgroups where the tangent spaces of its
+ * triangles diverge, and the angle-weighted average of a subgroup gives
+ * the tangent of its corners;</li>
+ * <li>the corners of degenerate triangles take the tangent of the same
+ * welded vertex in a good triangle.</li>
+ * </ol>
+ * Welding and edge matching use hash tables and buckets instead of the
+ * grids and quick sorts of the reference, which find the same classes and
+ * orders. Finally the vertices whose corners received different tangents
+ * are split, see {@link GLTFTangentSpace}.
+ *
+ * Without normals, the flat normals the specification asks for are used,
+ * one per face.
+ */
+public class GLTFTangentGenerator {
+    private static final int MIN_CHUNK = 4096;
+
+    private static final int MARK_DEGENERATE = 1;
+    private static final int GROUP_WITH_ANY = 4;
+    private static final int ORIENT_PRESERVING = 8;
+
+    /** the cosine of the default threshold of 180 degrees, computed as the reference does */
+    private static final float THRESHOLD_COS = (float) Math.cos((180f * (float) Math.PI) / 180f);
+
+    /**
+     * generates the tangents of a primitive, using the texCoord set
+     * referenced by the normal map of its material, if any.
+     * @param primitive the primitive to generate the tangents for
+     * @return the tangent space, or null if the primitive has no
+     * positions, no texture coordinates, or is not made of triangles
+     */
+    public static GLTFTangentSpace generate(GLTFMeshPrimitive primitive){
+        if(primitive.attributes.positionsAccessor == null)
+            return null;
+        int[] triangles = primitive.getTriangleIndices();
+        if(triangles == null)
+            return null;
+        GLTFMaterial material = primitive.material;
+        int texCoordSet = material != null && material.normalMap != null ?
+            material.normalMap.texCoordIdx
+            : 0;
+        float[] uvs = primitive.attributes.getTexCoords(texCoordSet);
+        if(uvs == null)
+            return null;
+        return generate(
+            primitive.attributes.positionsAccessor.data,
+            primitive.attributes.normalsAccessor != null ?
+                primitive.attributes.normalsAccessor.data
+                : null,
+            uvs,
+            triangles
+        );
+    }
+
+    /**
+     * generates tangents from raw vertex streams.
+     * @param positions the VEC3 positions
+     * @param normals the VEC3 normals, or null for flat normals
+     * @param uvs the VEC2 texture coordinates
+     * @param triangles the triangle list, three indices per triangle
+     * @return the tangent space
+     */
+    public static GLTFTangentSpace generate(float[] positions,
+                                            float[] normals,
+                                            float[] uvs,
+                                            int[] triangles)
+    {
+        return new Generation(positions, normals, uvs, triangles).run();
+    }
+
+    /**
+     * the state of one generation, with the triangle infos of the
+     * reference stored as parallel arrays.
+     */
+    private static class Generation {
+        final int nVertices;
+        final int nTriangles;
+        final int[] triangles;
+
+        // the attributes fetched per corner: those of the vertices, or
+        // one entry per corner when the normals are flat
+        final float[] pos;
+        final float[] nrm;
+        final float[] tex;
+        final int[] cornerKey;
+        final int nKeys;
+
+        /**
+         * the welded index of every corner: the first of its class of
+         * identical attributes, or nKeys + corner if it cannot be welded
+         */
+        int[] welded;
+        int[] goodTriangles;
+
+        int[] flags;
+        float[] vOs;
+        float[] vOt;
+        int[] neighbors;
+        int[] assignedGroups;
+
+        int nGroups;
+        int[] groupRepresentatives;
+        boolean[] groupOrientations;
+        int[] groupStarts;
+        int[] groupSizes;
+        int[] groupTriangles;
+
+        /** the tangent of every corner, and its orientation */
+        float[] spaces;
+        boolean[] orientations;
+
+        Generation(float[] positions, float[] normals, float[] uvs, int[] triangles) {
+            this.nVertices = positions.length / 3;
+            this.nTriangles = triangles.length / 3;
+            this.triangles = triangles;
+            if(normals != null){
+                this.pos = positions;
+                this.nrm = normals;
+                this.tex = uvs;
+                this.cornerKey = triangles;
+                this.nKeys = this.nVertices;
+            }else{
+                int nCorners = this.nTriangles * 3;
+                this.pos = new float[nCorners * 3];
+                this.nrm = new float[nCorners * 3];
+                this.tex = new float[nCorners * 2];
+                this.cornerKey = new int[nCorners];
+                this.nKeys = nCorners;
+                for (int c = 0; c < nCorners; c++) {
+                    System.arraycopy(positions, 3 * triangles[c], this.pos, 3 * c, 3);
+                    System.arraycopy(uvs, 2 * triangles[c], this.tex, 2 * c, 2);
+                    this.cornerKey[c] = c;
+                }
+                for (int t = 0; t < this.nTriangles; t++) {
+                    float[] p = this.pos;
+                    int o = 9 * t;
+                    float ax = p[o + 3] - p[o], ay = p[o + 4] - p[o + 1], az = p[o + 5] - p[o + 2];
+                    float bx = p[o + 6] - p[o], by = p[o + 7] - p[o + 1], bz = p[o + 8] - p[o + 2];
+                    float nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+                    float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                    if(len > 0){
+                        nx /= len; ny /= len; nz /= len;
+                    }
+                    for (int c = 0; c < 3; c++) {
+                        this.nrm[o + 3 * c] = nx;
+                        this.nrm[o + 3 * c + 1] = ny;
+                        this.nrm[o + 3 * c + 2] = nz;
+                    }
+                }
+            }
+        }
+
+        GLTFTangentSpace run(){
+            weld();
+            markDegenerates();
+            int[] good = this.goodTriangles;
+            this.vOs = new float[this.nTriangles * 3];
+            this.vOt = new float[this.nTriangles * 3];
+            ParallelUtils.forEachChunk(good.length, MIN_CHUNK, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    initTriangle(good[i]);
+                }
+            });
+            buildNeighbors();
+            buildGroups();
+
+            this.spaces = new float[this.nTriangles * 9];
+            this.orientations = new boolean[this.nTriangles * 3];
+            for (int c = 0; c < this.nTriangles * 3; c++) {
+                this.spaces[3 * c] = 1;
+            }
+            ParallelUtils.forEachChunk(this.nGroups, 64, (start, end) -> {
+                for (int g = start; g < end; g++) {
+                    generateGroup(g);
+                }
+            });
+            copyToDegenerates();
+            return split();
+        }
+
+        private int keyOf(int weldedIdx){
+            return weldedIdx < this.nKeys ? weldedIdx : this.cornerKey[weldedIdx - this.nKeys];
+        }
+
+        private static int hashBits(float f){
+            // -0 and 0 compare equal, so they must hash equal
+            return f == 0 ? 0 : Float.floatToIntBits(f);
+        }
+
+        /**
+         * whether the reference can weld a vertex: it never merges NaN
+         * attributes, nor positions which are not finite.
+         */
+        private boolean isWeldable(int k){
+            for (int c = 0; c < 3; c++) {
+                if(!Float.isFinite(this.pos[3 * k + c]) || Float.isNaN(this.nrm[3 * k + c]))
+                    return false;
+            }
+            return !Float.isNaN(this.tex[2 * k]) && !Float.isNaN(this.tex[2 * k + 1]);
+        }
+
+        private boolean isSame(int a, int b){
+            float[] p = this.pos, n = this.nrm, t = this.tex;
+            return p[3 * a] == p[3 * b] && p[3 * a + 1] == p[3 * b + 1] && p[3 * a + 2] == p[3 * b + 2]
+                && n[3 * a] == n[3 * b] && n[3 * a + 1] == n[3 * b + 1] && n[3 * a + 2] == n[3 * b + 2]
+                && t[2 * a] == t[2 * b] && t[2 * a + 1] == t[2 * b + 1];
+        }
+
+        private void weld(){
+            int[] canonical = new int[this.nKeys];
+            int size = Integer.highestOneBit(Math.max(2, this.nKeys * 2 - 1)) << 1;
+            int mask = size - 1;
+            int[] table = new int[size];
+            Arrays.fill(table, -1);
+            for (int k = 0; k < this.nKeys; k++) {
+                if(!isWeldable(k)){
+                    canonical[k] = -1;
+                    continue;
+                }
+                int h = 0;
+                for (int c = 0; c < 3; c++) {
+                    h = 31 * h + hashBits(this.pos[3 * k + c]);
+                    h = 31 * h + hashBits(this.nrm[3 * k + c]);
+                }
+                h = 31 * h + hashBits(this.tex[2 * k]);
+                h = 31 * h + hashBits(this.tex[2 * k + 1]);
+                h ^= h >>> 16;
+                for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+                    int e = table[slot];
+                    if(e == -1){
+                        table[slot] = k;
+                        canonical[k] = k;
+                        break;
+                    }
+                    if(isSame(e, k)){
+                        canonical[k] = e;
+                        break;
+                    }
+                }
+            }
+            this.welded = new int[this.nTriangles * 3];
+            for (int c = 0; c < this.welded.length; c++) {
+                int k = canonical[this.cornerKey[c]];
+                this.welded[c] = k != -1 ? k : this.nKeys + c;
+            }
+        }
+
+        private boolean isSamePosition(int a, int b){
+            int ka = keyOf(a), kb = keyOf(b);
+            float[] p = this.pos;
+            return p[3 * ka] == p[3 * kb] && p[3 * ka + 1] == p[3 * kb + 1] && p[3 * ka + 2] == p[3 * kb + 2];
+        }
+
+        private void markDegenerates(){
+            this.flags = new int[this.nTriangles];
+            int[] w = this.welded;
+            int nGood = 0;
+            for (int t = 0; t < this.nTriangles; t++) {
+                int i0 = w[3 * t], i1 = w[3 * t + 1], i2 = w[3 * t + 2];
+                if(isSamePosition(i0, i1) || isSamePosition(i0, i2) || isSamePosition(i1, i2))
+                    this.flags[t] = MARK_DEGENERATE;
+                else
+                    nGood++;
+            }
+            // the reference moves the good triangles first, keeping their order
+            this.goodTriangles = new int[nGood];
+            for (int t = 0, i = 0; t < this.nTriangles; t++) {
+                if(this.flags[t] == 0)
+                    this.goodTriangles[i++] = t;
+            }
+        }
+
+        private static boolean notZero(float f){
+            return Math.abs(f) > Float.MIN_NORMAL;
+        }
+
+        private void initTriangle(int f){
+            this.flags[f] |= GROUP_WITH_ANY;
+            int k0 = keyOf(this.welded[3 * f]);
+            int k1 = keyOf(this.welded[3 * f + 1]);
+            int k2 = keyOf(this.welded[3 * f + 2]);
+            float[] p = this.pos, tx = this.tex;
+            float t21x = tx[2 * k1] - tx[2 * k0];
+            float t21y = tx[2 * k1 + 1] - tx[2 * k0 + 1];
+            float t31x = tx[2 * k2] - tx[2 * k0];
+            float t31y = tx[2 * k2 + 1] - tx[2 * k0 + 1];
+            float d1x = p[3 * k1] - p[3 * k0], d1y = p[3 * k1 + 1] - p[3 * k0 + 1], d1z = p[3 * k1 + 2] - p[3 * k0 + 2];
+            float d2x = p[3 * k2] - p[3 * k0], d2y = p[3 * k2 + 1] - p[3 * k0 + 1], d2z = p[3 * k2 + 2] - p[3 * k0 + 2];
+
+            float signedAreaSTx2 = t21x * t31y - t21y * t31x;
+            float osx = t31y * d1x - t21y * d2x, osy = t31y * d1y - t21y * d2y, osz = t31y * d1z - t21y * d2z;
+            float otx = -t31x * d1x + t21x * d2x, oty = -t31x * d1y + t21x * d2y, otz = -t31x * d1z + t21x * d2z;
+
+            if(signedAreaSTx2 > 0)
+                this.flags[f] |= ORIENT_PRESERVING;
+            if(notZero(signedAreaSTx2)){
+                float absArea = Math.abs(signedAreaSTx2);
+                float lenOs = (float) Math.sqrt(osx * osx + osy * osy + osz * osz);
+                float lenOt = (float) Math.sqrt(otx * otx + oty * oty + otz * otz);
+                float sign = (this.flags[f] & ORIENT_PRESERVING) == 0 ? -1f : 1f;
+                if(notZero(lenOs)){
+                    float s = sign / lenOs;
+                    this.vOs[3 * f] = s * osx;
+                    this.vOs[3 * f + 1] = s * osy;
+                    this.vOs[3 * f + 2] = s * osz;
+                }
+                if(notZero(lenOt)){
+                    float s = sign / lenOt;
+                    this.vOt[3 * f] = s * otx;
+                    this.vOt[3 * f + 1] = s * oty;
+                    this.vOt[3 * f + 2] = s * otz;
+                }
+                // a good triangle has non-zero magnitudes
+                if(notZero(lenOs / absArea) && notZero(lenOt / absArea))
+                    this.flags[f] &= ~GROUP_WITH_ANY;
+            }
+        }
+
+        /**
+         * pairs the triangles sharing a welded edge in opposite
+         * directions. As in the reference, the triangles of an edge are
+         * paired in triangle order, each with the first free one.
+         */
+        private void buildNeighbors(){
+            int[] w = this.welded;
+            int[] good = this.goodTriangles;
+            this.neighbors = new int[this.nTriangles * 3];
+            Arrays.fill(this.neighbors, -1);
+
+            // bucket the edges by their smaller welded index
+            int nIds = this.nKeys + this.nTriangles * 3;
+            int[] offsets = new int[nIds + 1];
+            for (int f : good) {
+                for (int i = 0; i < 3; i++) {
+                    offsets[Math.min(w[3 * f + i], w[3 * f + (i < 2 ? i + 1 : 0)]) + 1]++;
+                }
+            }
+            for (int i = 0; i < nIds; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            // then sort each bucket by the larger index, then the triangle
+            long[] edges = new long[good.length * 3];
+            int[] fill = Arrays.copyOf(offsets, nIds);
+            for (int f : good) {
+                for (int i = 0; i < 3; i++) {
+                    int a = w[3 * f + i], b = w[3 * f + (i < 2 ? i + 1 : 0)];
+                    edges[fill[Math.min(a, b)]++] = ((long) Math.max(a, b) << 31) | f;
+                }
+            }
+            int[] edgeNums = new int[2];
+            for (int i0 = 0; i0 < nIds; i0++) {
+                int from = offsets[i0], to = offsets[i0 + 1];
+                if(to - from < 2)
+                    continue;
+                Arrays.sort(edges, from, to);
+                for (int e = from; e < to; e++) {
+                    int i1 = (int) (edges[e] >>> 31);
+                    int fA = (int) (edges[e] & 0x7FFFFFFF);
+                    int edgeA = getEdge(fA, i0, i1, edgeNums);
+                    int i0A = edgeNums[0], i1A = edgeNums[1];
+                    if(this.neighbors[3 * fA + edgeA] != -1)
+                        continue;
+                    for (int e2 = e + 1; e2 < to && (int) (edges[e2] >>> 31) == i1; e2++) {
+                        int fB = (int) (edges[e2] & 0x7FFFFFFF);
+                        int edgeB = getEdge(fB, i0, i1, edgeNums);
+                        if(i0A == edgeNums[1] && i1A == edgeNums[0] && this.neighbors[3 * fB + edgeB] == -1){
+                            this.neighbors[3 * fA + edgeA] = fB;
+                            this.neighbors[3 * fB + edgeB] = fA;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * returns the number of the edge of a triangle joining two welded
+         * indices, and stores its indices in the winding order.
+         */
+        private int getEdge(int f, int i0, int i1, int[] out){
+            int[] w = this.welded;
+            int a = w[3 * f], b = w[3 * f + 1], c = w[3 * f + 2];
+            if(a == i0 || a == i1){
+                if(b == i0 || b == i1){
+                    out[0] = a;
+                    out[1] = b;
+                    return 0;
+                }
+                out[0] = c;
+                out[1] = a;
+                return 2;
+            }
+            out[0] = b;
+            out[1] = c;
+            return 1;
+        }
+
+        private void buildGroups(){
+            int[] w = this.welded;
+            int maxGroups = this.goodTriangles.length * 3;
+            this.assignedGroups = new int[this.nTriangles * 3];
+            Arrays.fill(this.assignedGroups, -1);
+            this.groupRepresentatives = new int[maxGroups];
+            this.groupOrientations = new boolean[maxGroups];
+            this.groupStarts = new int[maxGroups];
+            this.groupSizes = new int[maxGroups];
+            this.groupTriangles = new int[maxGroups];
+            int[] stack = new int[16];
+            int offset = 0;
+            for (int f : this.goodTriangles) {
+                for (int i = 0; i < 3; i++) {
+                    if((this.flags[f] & GROUP_WITH_ANY) != 0 || this.assignedGroups[3 * f + i] != -1)
+                        continue;
+                    int g = this.nGroups++;
+                    this.groupRepresentatives[g] = w[3 * f + i];
+                    this.groupOrientations[g] = (this.flags[f] & ORIENT_PRESERVING) != 0;
+                    this.groupStarts[g] = offset;
+                    this.assignedGroups[3 * f + i] = g;
+                    this.groupTriangles[offset + this.groupSizes[g]++] = f;
+                    int left = this.neighbors[3 * f + i];
+                    int right = this.neighbors[3 * f + (i > 0 ? i - 1 : 2)];
+                    if(left >= 0)
+                        stack = assign(left, g, stack);
+                    if(right >= 0)
+                        stack = assign(right, g, stack);
+                    offset += this.groupSizes[g];
+                }
+            }
+        }
+
+        /**
+         * the recursive assignment of the reference, as a depth-first
+         * traversal with an explicit stack visiting the triangles in the
+         * same order.
+         * @return the stack, grown if needed
+         */
+        private int[] assign(int start, int g, int[] stack){
+            int[] w = this.welded;
+            int rep = this.groupRepresentatives[g];
+            boolean orientation = this.groupOrientations[g];
+            int size = 0;
+            stack[size++] = start;
+            while(size > 0){
+                int t = stack[--size];
+                int i = w[3 * t] == rep ? 0 : w[3 * t + 1] == rep ? 1 : 2;
+                if(this.assignedGroups[3 * t + i] != -1)
+                    continue;
+                if((this.flags[t] & GROUP_WITH_ANY) != 0
+                    && this.assignedGroups[3 * t] == -1
+                    && this.assignedGroups[3 * t + 1] == -1
+                    && this.assignedGroups[3 * t + 2] == -1){
+                    // the first group to reach such a triangle sets its orientation
+                    this.flags[t] = (this.flags[t] & ~ORIENT_PRESERVING) | (orientation ? ORIENT_PRESERVING : 0);
+                }
+                if(((this.flags[t] & ORIENT_PRESERVING) != 0) != orientation)
+                    continue;
+                this.groupTriangles[this.groupStarts[g] + this.groupSizes[g]++] = t;
+                this.assignedGroups[3 * t + i] = g;
+                int left = this.neighbors[3 * t + i];
+                int right = this.neighbors[3 * t + (i > 0 ? i - 1 : 2)];
+                if(size + 2 > stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                if(right >= 0)
+                    stack[size++] = right;
+                if(left >= 0)
+                    stack[size++] = left;
+            }
+            return stack;
+        }
+
+        /**
+         * projects a vector on the plane of a normal and normalizes it,
+         * as the reference does.
+         */
+        private static void project(float[] v, int o, float nx, float ny, float nz, float[] dst, int d){
+            float vx = v[o], vy = v[o + 1], vz = v[o + 2];
+            float dot = nx * vx + ny * vy + nz * vz;
+            vx = vx - dot * nx;
+            vy = vy - dot * ny;
+            vz = vz - dot * nz;
+            if(notZero(vx) || notZero(vy) || notZero(vz)){
+                float s = 1 / (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+                vx = s * vx;
+                vy = s * vy;
+                vz = s * vz;
+            }
+            dst[d] = vx;
+            dst[d + 1] = vy;
+            dst[d + 2] = vz;
+        }
+
+        private int cornerOf(int t, int g){
+            int[] a = this.assignedGroups;
+            return a[3 * t] == g ? 0 : a[3 * t + 1] == g ? 1 : 2;
+        }
+
+        /**
+         * splits a group into subgroups by the angular threshold and
+         * gives every corner of the group the tangent of its subgroup.
+         */
+        private void generateGroup(int g){
+            int start = this.groupStarts[g];
+            int size = this.groupSizes[g];
+            int rep = this.groupRepresentatives[g];
+            int k = keyOf(rep);
+            float nx = this.nrm[3 * k], ny = this.nrm[3 * k + 1], nz = this.nrm[3 * k + 2];
+            float[] os = new float[size * 3];
+            float[] ot = new float[size * 3];
+            for (int a = 0; a < size; a++) {
+                int t = this.groupTriangles[start + a];
+                project(this.vOs, 3 * t, nx, ny, nz, os, 3 * a);
+                project(this.vOt, 3 * t, nx, ny, nz, ot, 3 * a);
+            }
+            List<int[]> subGroups = new ArrayList<>();
+            List<float[]> subGroupSpaces = new ArrayList<>();
+            int[] members = new int[size];
+            for (int a = 0; a < size; a++) {
+                int f = this.groupTriangles[start + a];
+                int nMembers = 0;
+                for (int b = 0; b < size; b++) {
+                    int t = this.groupTriangles[start + b];
+                    boolean any = ((this.flags[f] | this.flags[t]) & GROUP_WITH_ANY) != 0;
+                    float cosS = os[3 * a] * os[3 * b] + os[3 * a + 1] * os[3 * b + 1] + os[3 * a + 2] * os[3 * b + 2];
+                    float cosT = ot[3 * a] * ot[3 * b] + ot[3 * a + 1] * ot[3 * b + 1] + ot[3 * a + 2] * ot[3 * b + 2];
+                    if(any || f == t || (cosS > THRESHOLD_COS && cosT > THRESHOLD_COS))
+                        members[nMembers++] = t;
+                }
+                Arrays.sort(members, 0, nMembers);
+                int l = 0;
+                while(l < subGroups.size() && !Arrays.equals(subGroups.get(l), 0, subGroups.get(l).length, members, 0, nMembers))
+                    l++;
+                if(l == subGroups.size()){
+                    int[] subGroup = Arrays.copyOf(members, nMembers);
+                    subGroups.add(subGroup);
+                    subGroupSpaces.add(evaluate(subGroup, rep, nx, ny, nz));
+                }
+                float[] space = subGroupSpaces.get(l);
+                int corner = 3 * f + cornerOf(f, g);
+                System.arraycopy(space, 0, this.spaces, 3 * corner, 3);
+                this.orientations[corner] = this.groupOrientations[g];
+            }
+        }
+
+        /**
+         * the angle-weighted average of the tangents of a subgroup at
+         * its welded vertex.
+         */
+        private float[] evaluate(int[] subGroup, int rep, float nx, float ny, float nz){
+            int[] w = this.welded;
+            float[] p = this.pos;
+            float[] s = new float[3];
+            float[] e = new float[6];
+            float rx = 0, ry = 0, rz = 0;
+            for (int f : subGroup) {
+                if((this.flags[f] & GROUP_WITH_ANY) != 0)
+                    continue;
+                int i = w[3 * f] == rep ? 0 : w[3 * f + 1] == rep ? 1 : 2;
+                project(this.vOs, 3 * f, nx, ny, nz, s, 0);
+
+                int k2 = keyOf(w[3 * f + (i < 2 ? i + 1 : 0)]);
+                int k1 = keyOf(w[3 * f + i]);
+                int k0 = keyOf(w[3 * f + (i > 0 ? i - 1 : 2)]);
+                float[] v = {
+                    p[3 * k0] - p[3 * k1], p[3 * k0 + 1] - p[3 * k1 + 1], p[3 * k0 + 2] - p[3 * k1 + 2],
+                    p[3 * k2] - p[3 * k1], p[3 * k2 + 1] - p[3 * k1 + 1], p[3 * k2 + 2] - p[3 * k1 + 2]
+                };
+                project(v, 0, nx, ny, nz, e, 0);
+                project(v, 3, nx, ny, nz, e, 3);
+
+                // weight the contribution by the angle between the two edges
+                float cos = e[0] * e[3] + e[1] * e[4] + e[2] * e[5];
+                cos = cos > 1 ? 1 : (cos < -1 ? -1 : cos);
+                float angle = (float) Math.acos(cos);
+                rx = rx + angle * s[0];
+                ry = ry + angle * s[1];
+                rz = rz + angle * s[2];
+            }
+            if(notZero(rx) || notZero(ry) || notZero(rz)){
+                float inv = 1 / (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+                rx = inv * rx;
+                ry = inv * ry;
+                rz = inv * rz;
+            }
+            return new float[]{rx, ry, rz};
+        }
+
+        /**
+         * gives the corners of degenerate triangles the tangent of the
+         * first corner of a good triangle with the same welded index.
+         */
+        private void copyToDegenerates(){
+            if(this.goodTriangles.length == this.nTriangles)
+                return;
+            int[] w = this.welded;
+            int[] first = new int[this.nKeys + this.nTriangles * 3];
+            Arrays.fill(first, -1);
+            for (int f : this.goodTriangles) {
+                for (int i = 0; i < 3; i++) {
+                    if(first[w[3 * f + i]] == -1)
+                        first[w[3 * f + i]] = 3 * f + i;
+                }
+            }
+            for (int t = 0; t < this.nTriangles; t++) {
+                if((this.flags[t] & MARK_DEGENERATE) == 0)
+                    continue;
+                for (int i = 0; i < 3; i++) {
+                    int src = first[w[3 * t + i]];
+                    if(src == -1)
+                        continue;
+                    System.arraycopy(this.spaces, 3 * src, this.spaces, 3 * (3 * t + i), 3);
+                    this.orientations[3 * t + i] = this.orientations[src];
+                }
+            }
+        }
+
+        /**
+         * writes the tangents per corner, then per vertex, splitting the
+         * vertices whose corners received different tangents.
+         */
+        private GLTFTangentSpace split(){
+            int nCorners = this.nTriangles * 3;
+            float[] cornerTangents = new float[nCorners * 4];
+            for (int c = 0; c < nCorners; c++) {
+                System.arraycopy(this.spaces, 3 * c, cornerTangents, 4 * c, 3);
+                cornerTangents[4 * c + 3] = this.orientations[c] ? 1f : -1f;
+            }
+
+            int[] outTriangles = new int[nCorners];
+            // the output vertices, each with the next vertex split from the same source
+            int[] remap = new int[this.nVertices + nCorners];
+            int[] nextSplit = new int[this.nVertices + nCorners];
+            float[] tangents = new float[(this.nVertices + nCorners) * 4];
+            boolean[] used = new boolean[this.nVertices];
+            for (int v = 0; v < this.nVertices; v++) {
+                remap[v] = v;
+                nextSplit[v] = -1;
+                tangents[4 * v] = 1;
+                tangents[4 * v + 3] = 1;
+            }
+            int nOut = this.nVertices;
+            for (int c = 0; c < nCorners; c++) {
+                int v = this.triangles[c];
+                int out = v;
+                if(!used[v]){
+                    used[v] = true;
+                    System.arraycopy(cornerTangents, 4 * c, tangents, 4 * v, 4);
+                }else{
+                    int last = v;
+                    while(out != -1 && !isSameTangent(tangents, out, cornerTangents, c)){
+                        last = out;
+                        out = nextSplit[out];
+                    }
+                    if(out == -1){
+                        out = nOut++;
+                        remap[out] = v;
+                        nextSplit[out] = -1;
+                        nextSplit[last] = out;
+                        System.arraycopy(cornerTangents, 4 * c, tangents, 4 * out, 4);
+                    }
+                }
+                outTriangles[c] = out;
+            }
+            return new GLTFTangentSpace(
+                Arrays.copyOf(tangents, nOut * 4),
+                cornerTangents,
+                Arrays.copyOf(remap, nOut),
+                outTriangles,
+                this.nVertices
+            );
+        }
+
+        private static boolean isSameTangent(float[] a, int v, float[] b, int c){
+            for (int i = 0; i < 4; i++) {
+                if(Float.floatToIntBits(a[4 * v + i]) != Float.floatToIntBits(b[4 * c + i]))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
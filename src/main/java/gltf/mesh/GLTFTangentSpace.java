@@ -0,0 +1,65 @@
+package gltf.mesh;
+
+/**
+ * The tangents generated for a primitive by {@link GLTFTangentGenerator}.
+ *
+ * MikkTSpace produces one tangent per triangle corner. The corners of a
+ * vertex only share a tangent where the tangent spaces of their faces
+ * agree, so a vertex on a UV seam, on a mirrored region or on a hard
+ * edge is split into one vertex per distinct tangent. The split vertices
+ * are appended after those of the primitive, so that the vertices of the
+ * primitive keep their index.
+ */
+public class GLTFTangentSpace {
+    /** the VEC4 tangents, xyz + handedness in w, one per output vertex */
+    public final float[] tangents;
+    /** the VEC4 tangents of every triangle corner, as the reference outputs them */
+    public final float[] cornerTangents;
+    /** the source vertex of every output vertex */
+    public final int[] vertexRemap;
+    /** the triangle list, three output vertex indices per triangle */
+    public final int[] triangles;
+    /** the number of vertices of the primitive */
+    public final int sourceVertexCount;
+
+    public GLTFTangentSpace(float[] tangents,
+                            float[] cornerTangents,
+                            int[] vertexRemap,
+                            int[] triangles,
+                            int sourceVertexCount)
+    {
+        this.tangents = tangents;
+        this.cornerTangents = cornerTangents;
+        this.vertexRemap = vertexRemap;
+        this.triangles = triangles;
+        this.sourceVertexCount = sourceVertexCount;
+    }
+
+    public int getVertexCount(){
+        return this.vertexRemap.length;
+    }
+
+    /**
+     * @return whether some vertices had to be split
+     */
+    public boolean isSplit(){
+        return this.vertexRemap.length > this.sourceVertexCount;
+    }
+
+    /**
+     * expands a vertex stream of the primitive to the output vertices.
+     * @param src the stream, such as the positions or the normals
+     * @param components the number of components per vertex
+     * @return src itself if no vertex was split, else a new stream
+     */
+    public float[] remap(float[] src, int components){
+        if(!isSplit())
+            return src;
+        float[] returnVal = new float[this.vertexRemap.length * components];
+        System.arraycopy(src, 0, returnVal, 0, Math.min(src.length, this.sourceVertexCount * components));
+        for (int v = this.sourceVertexCount; v < this.vertexRemap.length; v++) {
+            System.arraycopy(src, this.vertexRemap[v] * components, returnVal, v * components, components);
+        }
+        return returnVal;
+    }
+}
@@ -0,0 +1,82 @@
+package gltf.mesh;
+
+import gltf.material.GLTFMaterial;
+import gltf.material.GLTFMemoryImage;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Small base color textures packed into shared pages by
+ * {@link GLTFTextureAtlasBuilder}, with the primitives they were packed
+ * for. Every atlased primitive uses one of the consolidated materials,
+ * whose base color texture is a page, and texture coordinates remapped
+ * into its tile of the page. Primitives which used to differ only by
+ * their base color therefore share a material, and can be merged by
+ * {@link GLTFMeshBatcher#batch(gltf.GLTFScene, GLTFTextureAtlas)}.
+ */
+public class GLTFTextureAtlas {
+    /** the pages, images held in memory */
+    public final GLTFMemoryImage[] pages;
+    /** the consolidated materials, each sampling one of the pages */
+    public final GLTFMaterial[] materials;
+    /** the number of distinct tiles packed into the pages */
+    public final int tileCount;
+
+    private final Map<GLTFMeshPrimitive, Integer> materialIdxes;
+    private final Map<GLTFMeshPrimitive, float[]> texCoords;
+
+    GLTFTextureAtlas(GLTFMemoryImage[] pages,
+                     GLTFMaterial[] materials,
+                     int tileCount,
+                     IdentityHashMap<GLTFMeshPrimitive, Integer> materialIdxes,
+                     IdentityHashMap<GLTFMeshPrimitive, float[]> texCoords)
+    {
+        this.pages = pages;
+        this.materials = materials;
+        this.tileCount = tileCount;
+        this.materialIdxes = materialIdxes;
+        this.texCoords = texCoords;
+    }
+
+    /**
+     * @return whether the texture of the primitive was packed into the atlas
+     */
+    public boolean contains(GLTFMeshPrimitive primitive){
+        return this.materialIdxes.containsKey(primitive);
+    }
+
+    /**
+     * @return the number of primitives using the atlas
+     */
+    public int getPrimitiveCount(){
+        return this.materialIdxes.size();
+    }
+
+    /**
+     * @return the index of the consolidated material of the primitive
+     * in {@link #materials}, or -1 if it is not atlased
+     */
+    public int getMaterialIdx(GLTFMeshPrimitive primitive){
+        Integer returnVal = this.materialIdxes.get(primitive);
+        return returnVal != null ? returnVal : -1;
+    }
+
+    /**
+     * @return the consolidated material of the primitive, or its own
+     * material if it is not atlased
+     */
+    public GLTFMaterial getMaterial(GLTFMeshPrimitive primitive){
+        Integer idx = this.materialIdxes.get(primitive);
+        return idx != null ? this.materials[idx] : primitive.material;
+    }
+
+    /**
+     * @return the texture coordinates of the primitive remapped into its
+     * tile, or those of its base color texture if it is not atlased
+     */
+    public float[] getTexCoords(GLTFMeshPrimitive primitive){
+        float[] returnVal = this.texCoords.get(primitive);
+        return returnVal != null ? returnVal : primitive.getBaseColorTexCoords();
+    }
+}
@@ -0,0 +1,432 @@
+package gltf.mesh;
+
+import gltf.material.GLTFImage;
+import gltf.material.GLTFImageDecoder;
+import gltf.material.GLTFMaterial;
+import gltf.material.GLTFMemoryImage;
+import gltf.material.GLTFTexture;
+import gltf.material.GLTFTextureInfo;
+import gltf.material.GLTFpbrMetallicRoughness;
+import gltf.utils.ParallelUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the small base color textures of a scene into shared pages, so
+ * that scenes made of hundreds of parts, each with its own tiny texture,
+ * need a handful of materials, and their meshes can be merged.
+ * <p>
+ * A primitive is atlased when its material has no texture but the base
+ * color one, whose image is at most maxTileSize pixels on a side, and
+ * whose texture coordinates stay within [0, 1], as a tile cannot repeat.
+ * The base color factor is multiplied into the tile, as JavaFX multiplies
+ * the diffuse color and map, and a material without a base color texture
+ * gets a one pixel tile of its factor; materials which differ by nothing
+ * else then share a consolidated material.
+ * <p>
+ * Tiles are packed with the skyline bottom-left heuristic, tallest
+ * first, and surrounded by a gutter repeating their edge pixels, so that
+ * filtering does not bleed neighbouring tiles in.
+ */
+public class GLTFTextureAtlasBuilder {
+    /** the tolerance on texture coordinates outside of [0, 1] */
+    private static final float UV_TOLERANCE = 1e-3f;
+    private static final float[] WHITE = {1, 1, 1, 1};
+
+    /** the maximum width and height of a page */
+    public final int pageSize;
+    /** the maximum width and height of an image packed into the atlas */
+    public final int maxTileSize;
+    /** the number of pixels repeating the edges of a tile */
+    public final int gutter;
+
+    public GLTFTextureAtlasBuilder(int pageSize, int maxTileSize, int gutter) {
+        if(maxTileSize < 1 || gutter < 0 || maxTileSize + 2 * gutter > pageSize)
+            throw new IllegalArgumentException("tiles of " + maxTileSize + " pixels and a gutter of "
+                + gutter + " do not fit in pages of " + pageSize + " pixels");
+        this.pageSize = pageSize;
+        this.maxTileSize = maxTileSize;
+        this.gutter = gutter;
+    }
+
+    /**
+     * creates a builder of 2048 pixel pages, packing images of at most
+     * 256 pixels with a 2 pixel gutter.
+     */
+    public GLTFTextureAtlasBuilder() {
+        this(2048, 256, 2);
+    }
+
+    /**
+     * a distinct image and base color factor, packed once however many
+     * primitives use it.
+     */
+    private static class Tile {
+        final GLTFImage image;
+        final float[] factor;
+        BufferedImage pixels;
+        int width = 1;
+        int height = 1;
+        int page;
+        int x;
+        int y;
+
+        Tile(GLTFImage image, float[] factor) {
+            this.image = image;
+            this.factor = factor;
+        }
+    }
+
+    /**
+     * packs the base color textures of the primitives of the meshes.
+     * The images are decoded, in parallel, if they were not already.
+     * @param meshes the meshes, such as all the meshes of an asset
+     * @return the atlas, which may be empty
+     * @throws IOException if an image cannot be read
+     */
+    public GLTFTextureAtlas build(GLTFMesh[] meshes) throws IOException {
+        // the candidate primitives, and the tiles they use
+        Map<List<Object>, Tile> tiles = new LinkedHashMap<>();
+        IdentityHashMap<GLTFMeshPrimitive, Tile> primitiveTiles = new IdentityHashMap<>();
+        for (GLTFMesh mesh : meshes) {
+            if(mesh == null)
+                continue;
+            for (GLTFMeshPrimitive primitive : mesh.primitives) {
+                if(primitive == null || primitiveTiles.containsKey(primitive) || !isCandidate(primitive))
+                    continue;
+                GLTFImage image = getBaseColorImage(primitive.material);
+                float[] factor = primitive.material.pbrMetallicRoughness != null
+                    && primitive.material.pbrMetallicRoughness.baseColorFactor != null ?
+                    primitive.material.pbrMetallicRoughness.baseColorFactor
+                    : WHITE;
+                List<Object> key = Arrays.asList(image != null ? image.getShared() : null, toList(factor));
+                primitiveTiles.put(primitive, tiles.computeIfAbsent(key, k -> new Tile((GLTFImage) k.get(0), factor)));
+            }
+        }
+
+        // decode the images, dropping the primitives of unsupported ones
+        List<GLTFImage> images = new ArrayList<>();
+        for (Tile tile : tiles.values()) {
+            if(tile.image != null)
+                images.add(tile.image);
+        }
+        new GLTFImageDecoder().decodeAll(images.toArray(new GLTFImage[0]));
+        List<Tile> packed = new ArrayList<>();
+        for (Tile tile : tiles.values()) {
+            if(tile.image != null){
+                tile.pixels = tile.image.getImage();
+                if(tile.pixels == null)
+                    continue;
+                tile.width = tile.pixels.getWidth();
+                tile.height = tile.pixels.getHeight();
+            }
+            packed.add(tile);
+        }
+        primitiveTiles.values().removeIf(tile -> tile.image != null && tile.pixels == null);
+
+        List<int[]> pageSizes = pack(packed);
+        GLTFMemoryImage[] pages = render(packed, pageSizes);
+
+        // one consolidated material per page and remaining material properties
+        Map<List<Object>, Integer> materialIdxes = new LinkedHashMap<>();
+        List<GLTFMaterial> materials = new ArrayList<>();
+        IdentityHashMap<GLTFMeshPrimitive, Integer> primitiveMaterials = new IdentityHashMap<>();
+        IdentityHashMap<GLTFMeshPrimitive, float[]> texCoords = new IdentityHashMap<>();
+        for (Map.Entry<GLTFMeshPrimitive, Tile> entry : primitiveTiles.entrySet()) {
+            GLTFMeshPrimitive primitive = entry.getKey();
+            Tile tile = entry.getValue();
+            GLTFMaterial m = primitive.material;
+            GLTFpbrMetallicRoughness pbr = m.pbrMetallicRoughness;
+            List<Object> key = Arrays.asList(
+                tile.page,
+                m.doubleSided,
+                m.alphaMode,
+                m.alphaCutoff,
+                m.emissiveFactor != null ? toList(m.emissiveFactor) : null,
+                pbr != null ? pbr.metallicFactor : 1f,
+                pbr != null ? pbr.roughnessFactor : 1f
+            );
+            Integer idx = materialIdxes.get(key);
+            if(idx == null){
+                idx = materials.size();
+                materialIdxes.put(key, idx);
+                materials.add(consolidate(m, pages[tile.page], idx));
+            }
+            primitiveMaterials.put(primitive, idx);
+            int[] size = pageSizes.get(tile.page);
+            texCoords.put(primitive, remap(primitive, tile, size[0], size[1]));
+        }
+        return new GLTFTextureAtlas(
+            pages,
+            materials.toArray(new GLTFMaterial[0]),
+            packed.size(),
+            primitiveMaterials,
+            texCoords
+        );
+    }
+
+    private static List<Float> toList(float[] values){
+        List<Float> returnVal = new ArrayList<>(values.length);
+        for (float v : values) {
+            returnVal.add(v);
+        }
+        return returnVal;
+    }
+
+    private static GLTFImage getBaseColorImage(GLTFMaterial material){
+        GLTFTextureInfo info = material.pbrMetallicRoughness != null ?
+            material.pbrMetallicRoughness.baseColorTexture
+            : null;
+        return info != null && info.texture != null ? info.texture.source : null;
+    }
+
+    /**
+     * tells whether a primitive can use the atlas, from its material,
+     * the size of its base color image and its texture coordinates.
+     */
+    private boolean isCandidate(GLTFMeshPrimitive primitive) throws IOException {
+        GLTFMaterial m = primitive.material;
+        if(m == null || primitive.attributes.positionsAccessor == null
+            || m.normalMap != null || m.occlusionMap != null || m.emissiveMap != null
+            || (m.pbrMetallicRoughness != null && m.pbrMetallicRoughness.metallicRoughnessTexture != null))
+            return false;
+        GLTFTextureInfo info = m.pbrMetallicRoughness != null ? m.pbrMetallicRoughness.baseColorTexture : null;
+        if(info == null)
+            return true;
+        GLTFImage image = getBaseColorImage(m);
+        if(image == null || Math.max(image.getWidth(), image.getHeight()) > this.maxTileSize)
+            return false;
+        float[] uvs = primitive.getTexCoords(info);
+        if(uvs == null)
+            return false;
+        for (float uv : uvs) {
+            if(uv < -UV_TOLERANCE || uv > 1 + UV_TOLERANCE)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * a skyline of the top edges of the tiles packed into a page, as
+     * segments {x, y, width} from left to right.
+     */
+    private static class Skyline {
+        final List<int[]> segments = new ArrayList<>();
+        final int size;
+
+        Skyline(int size) {
+            this.size = size;
+            this.segments.add(new int[]{0, 0, size});
+        }
+
+        /**
+         * returns the lowest y at which a rectangle fits with its left
+         * side at segment i, or -1 if it does not fit.
+         */
+        private int fit(int i, int w, int h){
+            int x = this.segments.get(i)[0];
+            if(x + w > this.size)
+                return -1;
+            int y = 0;
+            int left = w;
+            for (int j = i; left > 0; j++) {
+                int[] s = this.segments.get(j);
+                y = Math.max(y, s[1]);
+                if(y + h > this.size)
+                    return -1;
+                left -= s[2];
+            }
+            return y;
+        }
+
+        /**
+         * places a rectangle as low, then as far left, as possible.
+         * @return its position {x, y}, or null if it does not fit
+         */
+        int[] insert(int w, int h){
+            int best = -1, bestY = Integer.MAX_VALUE;
+            for (int i = 0; i < this.segments.size(); i++) {
+                int y = fit(i, w, h);
+                if(y >= 0 && y < bestY){
+                    best = i;
+                    bestY = y;
+                }
+            }
+            if(best == -1)
+                return null;
+            int x = this.segments.get(best)[0];
+            this.segments.add(best, new int[]{x, bestY + h, w});
+            // shrink or remove the segments now below the rectangle
+            for (int i = best + 1; i < this.segments.size(); ) {
+                int[] s = this.segments.get(i);
+                int overlap = x + w - s[0];
+                if(overlap <= 0)
+                    break;
+                if(overlap < s[2]){
+                    s[0] += overlap;
+                    s[2] -= overlap;
+                    break;
+                }
+                this.segments.remove(i);
+            }
+            // merge the neighbours at the same height
+            for (int i = 0; i + 1 < this.segments.size(); ) {
+                int[] s = this.segments.get(i);
+                int[] next = this.segments.get(i + 1);
+                if(s[1] == next[1]){
+                    s[2] += next[2];
+                    this.segments.remove(i + 1);
+                }else{
+                    i++;
+                }
+            }
+            return new int[]{x, bestY};
+        }
+    }
+
+    /**
+     * places the tiles into pages, tallest first.
+     * @return the size of each page, cropped to its tiles
+     */
+    private List<int[]> pack(List<Tile> tiles){
+        List<Tile> order = new ArrayList<>(tiles);
+        Collections.sort(order, (a, b) -> a.height != b.height ?
+            Integer.compare(b.height, a.height)
+            : Integer.compare(b.width, a.width));
+        List<Skyline> skylines = new ArrayList<>();
+        List<int[]> returnVal = new ArrayList<>();
+        int g2 = 2 * this.gutter;
+        for (Tile tile : order) {
+            int[] position = null;
+            for (int p = 0; p < skylines.size() && position == null; p++) {
+                position = skylines.get(p).insert(tile.width + g2, tile.height + g2);
+                tile.page = p;
+            }
+            if(position == null){
+                Skyline skyline = new Skyline(this.pageSize);
+                skylines.add(skyline);
+                returnVal.add(new int[]{0, 0});
+                tile.page = skylines.size() - 1;
+                position = skyline.insert(tile.width + g2, tile.height + g2);
+            }
+            tile.x = position[0];
+            tile.y = position[1];
+            int[] size = returnVal.get(tile.page);
+            size[0] = Math.max(size[0], tile.x + tile.width + g2);
+            size[1] = Math.max(size[1], tile.y + tile.height + g2);
+        }
+        return returnVal;
+    }
+
+    /**
+     * draws the tiles into the pages, with the base color factors
+     * multiplied in and the edges repeated into the gutters. Tiles are
+     * drawn in parallel, as they do not overlap.
+     */
+    private GLTFMemoryImage[] render(List<Tile> tiles, List<int[]> pageSizes){
+        GLTFMemoryImage[] returnVal = new GLTFMemoryImage[pageSizes.size()];
+        int[][] pixels = new int[returnVal.length][];
+        for (int p = 0; p < returnVal.length; p++) {
+            BufferedImage page = new BufferedImage(pageSizes.get(p)[0], pageSizes.get(p)[1], BufferedImage.TYPE_INT_ARGB);
+            pixels[p] = ((DataBufferInt) page.getRaster().getDataBuffer()).getData();
+            returnVal[p] = new GLTFMemoryImage(page, "atlas page " + p);
+        }
+        int g = this.gutter;
+        ParallelUtils.forEachChunk(tiles.size(), 4, (start, end) -> {
+            for (int t = start; t < end; t++) {
+                Tile tile = tiles.get(t);
+                int w = tile.width;
+                int h = tile.height;
+                int[] src = tile.pixels != null ?
+                    tile.pixels.getRGB(0, 0, w, h, null, 0, w)
+                    : new int[]{0xFFFFFFFF};
+                multiply(src, tile.factor);
+                int[] dst = pixels[tile.page];
+                int stride = pageSizes.get(tile.page)[0];
+                for (int ty = -g; ty < h + g; ty++) {
+                    int sy = Math.min(h - 1, Math.max(0, ty));
+                    int row = (tile.y + g + ty) * stride + tile.x + g;
+                    for (int tx = -g; tx < w + g; tx++) {
+                        int sx = Math.min(w - 1, Math.max(0, tx));
+                        dst[row + tx] = src[sy * w + sx];
+                    }
+                }
+            }
+        });
+        return returnVal;
+    }
+
+    private static void multiply(int[] argb, float[] factor){
+        if(Arrays.equals(factor, WHITE))
+            return;
+        float r = factor[0], g = factor[1], b = factor[2], a = factor[3];
+        for (int i = 0; i < argb.length; i++) {
+            int p = argb[i];
+            argb[i] = Math.round((p >>> 24) * a) << 24
+                | Math.round(((p >> 16) & 0xFF) * r) << 16
+                | Math.round(((p >> 8) & 0xFF) * g) << 8
+                | Math.round((p & 0xFF) * b);
+        }
+    }
+
+    private static GLTFMaterial consolidate(GLTFMaterial m, GLTFMemoryImage page, int idx){
+        GLTFpbrMetallicRoughness pbr = m.pbrMetallicRoughness;
+        GLTFTexture texture = new GLTFTexture(null, page, page.name, null);
+        return new GLTFMaterial(
+            "atlas material " + idx,
+            m.doubleSided,
+            new GLTFpbrMetallicRoughness(
+                new GLTFTextureInfo(texture, 0, null),
+                null,
+                pbr != null ? pbr.metallicFactor : 1f,
+                pbr != null ? pbr.roughnessFactor : 1f,
+                null,
+                null
+            ),
+            null,
+            null,
+            null,
+            m.emissiveFactor,
+            m.alphaMode,
+            m.alphaCutoff
+        );
+    }
+
+    /**
+     * maps the texture coordinates of a primitive into its tile, or to
+     * the center of a one pixel tile for a material without texture.
+     */
+    private float[] remap(GLTFMeshPrimitive primitive, Tile tile, int pageWidth, int pageHeight){
+        int g = this.gutter;
+        if(tile.image == null){
+            float u = (tile.x + g + 0.5f) / pageWidth;
+            float v = (tile.y + g + 0.5f) / pageHeight;
+            float[] returnVal = new float[primitive.attributes.positionsAccessor.data.length / 3 * 2];
+            for (int i = 0; i < returnVal.length; i += 2) {
+                returnVal[i] = u;
+                returnVal[i + 1] = v;
+            }
+            return returnVal;
+        }
+        float[] uvs = primitive.getBaseColorTexCoords();
+        float ou = (float) (tile.x + g) / pageWidth;
+        float ov = (float) (tile.y + g) / pageHeight;
+        float su = (float) tile.width / pageWidth;
+        float sv = (float) tile.height / pageHeight;
+        float[] returnVal = new float[uvs.length];
+        for (int i = 0; i + 1 < uvs.length; i += 2) {
+            returnVal[i] = ou + Math.min(1f, Math.max(0f, uvs[i])) * su;
+            returnVal[i + 1] = ov + Math.min(1f, Math.max(0f, uvs[i + 1])) * sv;
+        }
+        return returnVal;
+    }
+}
@@ -0,0 +1,61 @@
+package gltf.mesh;
+
+import gltf.material.GLTFTextureInfo;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bakes the KHR_texture_transform extensions of the materials into the
+ * texture coordinates of the primitives using them, once, when the asset
+ * is loaded: renderers without UV transforms, such as JavaFX, then draw
+ * atlased textures right. A primitive whose material transforms its
+ * textures differently gets one UV stream per distinct transform; see
+ * {@link GLTFMeshPrimitive#getTexCoords(GLTFTextureInfo)}.
+ */
+public class GLTFTextureTransformBaker {
+
+    /**
+     * bakes the texture transforms of all the primitives, in parallel
+     * across primitives.
+     * @param meshes the meshes
+     */
+    public static void bakeAll(GLTFMesh[] meshes){
+        List<GLTFMeshPrimitive> primitives = new ArrayList<>();
+        for (GLTFMesh mesh : meshes) {
+            if(mesh == null)
+                continue;
+            for (GLTFMeshPrimitive primitive : mesh.primitives) {
+                if(primitive != null && hasTransform(primitive))
+                    primitives.add(primitive);
+            }
+        }
+        ParallelUtils.forEachChunk(primitives.size(), 1, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                bake(primitives.get(k));
+            }
+        });
+    }
+
+    /**
+     * bakes the texture transforms of the material of a primitive.
+     */
+    public static void bake(GLTFMeshPrimitive primitive){
+        if(primitive.material == null)
+            return;
+        for (GLTFTextureInfo info : primitive.material.getTextureInfos()) {
+            primitive.getTexCoords(info);
+        }
+    }
+
+    private static boolean hasTransform(GLTFMeshPrimitive primitive){
+        if(primitive.material == null)
+            return false;
+        for (GLTFTextureInfo info : primitive.material.getTextureInfos()) {
+            if(info.transform != null && !info.transform.isIdentity())
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package gltf.raycast;
+
+import gltf.GLTFNode;
+import gltf.mesh.GLTFMeshPrimitive;
+
+/**
+ * The closest intersection of a ray with the triangles of a scene,
+ * as returned by {@link GLTFSceneBVH#raycast(float[], float[])}.
+ */
+public class GLTFRayHit {
+    public final GLTFNode node;
+    public final GLTFMeshPrimitive primitive;
+    /** index of the triangle in {@link GLTFMeshPrimitive#getTriangleIndices()} */
+    public final int triangleIdx;
+    /** barycentric weight of the second vertex of the triangle */
+    public final float u;
+    /** barycentric weight of the third vertex of the triangle */
+    public final float v;
+    /** distance along the ray, in units of the ray direction length */
+    public final float distance;
+
+    public GLTFRayHit(GLTFNode node,
+                      GLTFMeshPrimitive primitive,
+                      int triangleIdx,
+                      float u,
+                      float v,
+                      float distance)
+    {
+        this.node = node;
+        this.primitive = primitive;
+        this.triangleIdx = triangleIdx;
+        this.u = u;
+        this.v = v;
+        this.distance = distance;
+    }
+
+    /**
+     * returns the barycentric weight of the first vertex of the triangle.
+     */
+    public float getW(){
+        return 1 - this.u - this.v;
+    }
+}
@@ -0,0 +1,499 @@
+package gltf.raycast;
+
+import gltf.GLTFNode;
+import gltf.GLTFNodeTraversal;
+import gltf.GLTFScene;
+import gltf.math.Mat4f;
+import gltf.mesh.GLTFMeshPrimitive;
+import gltf.utils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounding volume hierarchy over the world-space triangles of a scene,
+ * used to answer ray casts (picking, line of sight) without testing
+ * every triangle.
+ *
+ * The tree is built top-down with a binned surface area heuristic,
+ * subtrees being built in parallel on the common ForkJoinPool. Both the
+ * tree and the triangles are stored in flat arrays: the triangles are
+ * reordered so that every leaf references a contiguous range, and the
+ * two children of an inner node are stored next to each other.
+ *
+ * The triangles are snapshotted in world space when the BVH is built:
+ * moving nodes afterwards requires building it again.
+ */
+public class GLTFSceneBVH {
+    private static final int BIN_COUNT = 16;
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final int MAX_SAH_LEAF_SIZE = 16;
+    private static final int MAX_SAH_DEPTH = 64;
+    private static final int PARALLEL_THRESHOLD = 16384;
+    private static final float TRAVERSAL_COST = 1f;
+
+    private final GLTFNode[] instanceNodes;
+    private final GLTFMeshPrimitive[] instancePrimitives;
+
+    // triangles in leaf order
+    private final float[] triVertices;
+    private final int[] triInstances;
+    private final int[] triLocalIdxes;
+
+    // nodes: bounds, then either the first child (inner nodes,
+    // nodeCounts == 0) or the first triangle (leaves)
+    private final float[] nodeBounds;
+    private final int[] nodeFirsts;
+    private final int[] nodeCounts;
+    private final int nNodes;
+
+    private GLTFSceneBVH(GLTFNode[] instanceNodes,
+                         GLTFMeshPrimitive[] instancePrimitives,
+                         float[] triVertices,
+                         int[] triInstances,
+                         int[] triLocalIdxes,
+                         float[] nodeBounds,
+                         int[] nodeFirsts,
+                         int[] nodeCounts,
+                         int nNodes)
+    {
+        this.instanceNodes = instanceNodes;
+        this.instancePrimitives = instancePrimitives;
+        this.triVertices = triVertices;
+        this.triInstances = triInstances;
+        this.triLocalIdxes = triLocalIdxes;
+        this.nodeBounds = nodeBounds;
+        this.nodeFirsts = nodeFirsts;
+        this.nodeCounts = nodeCounts;
+        this.nNodes = nNodes;
+    }
+
+    public int getTriangleCount(){
+        return this.triInstances.length;
+    }
+
+    public int getNodeCount(){
+        return this.nNodes;
+    }
+
+    /**
+     * builds the BVH of all the triangles of a scene, in world space.
+     * Points and lines primitives are ignored.
+     * @param scene the scene
+     * @return the BVH
+     * @throws IllegalArgumentException if the scene is of a compact asset,
+     * as ray hits reference the GLTFNode objects of their primitives
+     */
+    public static GLTFSceneBVH build(GLTFScene scene){
+        if(scene.isCompact())
+            throw new IllegalArgumentException("cannot build the BVH of a scene whose nodes are in a GLTFNodeStore");
+        List<GLTFNode> nodes = new ArrayList<>();
+        List<GLTFMeshPrimitive> primitives = new ArrayList<>();
+        collect(scene.nodes, nodes, primitives);
+        int nInstances = nodes.size();
+        GLTFNode[] instanceNodes = nodes.toArray(new GLTFNode[0]);
+        GLTFMeshPrimitive[] instancePrimitives = primitives.toArray(new GLTFMeshPrimitive[0]);
+        int[] instanceFirstTri = new int[nInstances + 1];
+        for (int i = 0; i < nInstances; i++) {
+            instanceFirstTri[i + 1] = instanceFirstTri[i] + instancePrimitives[i].getTriangleIndices().length / 3;
+        }
+        int nTris = instanceFirstTri[nInstances];
+
+        // world-space triangles, in scene order
+        float[] vertices = new float[nTris * 9];
+        int[] triInstances = new int[nTris];
+        int[] triLocalIdxes = new int[nTris];
+        ParallelUtils.forEachChunk(nInstances, 1, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                float[] m = instanceNodes[i].getWorldMatrix();
+                float[] p = instancePrimitives[i].attributes.positionsAccessor.data;
+                int[] tris = instancePrimitives[i].getTriangleIndices();
+                int base = instanceFirstTri[i];
+                for (int t = 0; t < tris.length / 3; t++) {
+                    for (int c = 0; c < 3; c++) {
+                        Mat4f.transformPoints(m, 0, p, 3 * tris[3 * t + c], vertices, 9 * (base + t) + 3 * c, 1);
+                    }
+                    triInstances[base + t] = i;
+                    triLocalIdxes[base + t] = t;
+                }
+            }
+        });
+
+        Builder builder = new Builder(vertices, nTris);
+        if(nTris > 0)
+            ForkJoinPool.commonPool().invoke(builder.new Split(0, 0, nTris, 0));
+
+        // reorder the triangles so that every leaf is a contiguous range
+        int[] order = builder.triIdxes;
+        float[] sortedVertices = new float[nTris * 9];
+        int[] sortedInstances = new int[nTris];
+        int[] sortedLocalIdxes = new int[nTris];
+        ParallelUtils.forEachChunk(nTris, 8192, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int t = order[i];
+                System.arraycopy(vertices, 9 * t, sortedVertices, 9 * i, 9);
+                sortedInstances[i] = triInstances[t];
+                sortedLocalIdxes[i] = triLocalIdxes[t];
+            }
+        });
+        return new GLTFSceneBVH(
+            instanceNodes,
+            instancePrimitives,
+            sortedVertices,
+            sortedInstances,
+            sortedLocalIdxes,
+            builder.nodeBounds,
+            builder.nodeFirsts,
+            builder.nodeCounts,
+            nTris > 0 ? builder.nodeCounter.get() : 0
+        );
+    }
+
+    private static void collect(GLTFNode[] roots, List<GLTFNode> nodes, List<GLTFMeshPrimitive> primitives){
+        GLTFNodeTraversal traversal = GLTFNodeTraversal.fromRoots(roots);
+        traversal.traverse((nodeIdx, parentIdx, depth) -> {
+            GLTFNode node = traversal.nodes[nodeIdx];
+            if(node.mesh == null)
+                return;
+            for (GLTFMeshPrimitive primitive : node.mesh.primitives) {
+                if(primitive == null
+                    || primitive.attributes.positionsAccessor == null
+                    || primitive.getTriangleIndices() == null)
+                    continue;
+                nodes.add(node);
+                primitives.add(primitive);
+            }
+        }, null);
+    }
+
+    private static class Builder {
+        final float[] vertices;
+        final float[] centroids;
+        final float[] triBounds;
+        final int[] triIdxes;
+        final float[] nodeBounds;
+        final int[] nodeFirsts;
+        final int[] nodeCounts;
+        final AtomicInteger nodeCounter = new AtomicInteger(1);
+
+        Builder(float[] vertices, int nTris) {
+            this.vertices = vertices;
+            this.centroids = new float[nTris * 3];
+            this.triBounds = new float[nTris * 6];
+            this.triIdxes = new int[nTris];
+            int maxNodes = Math.max(1, 2 * nTris - 1);
+            this.nodeBounds = new float[maxNodes * 6];
+            this.nodeFirsts = new int[maxNodes];
+            this.nodeCounts = new int[maxNodes];
+            ParallelUtils.forEachChunk(nTris, 8192, (start, end) -> {
+                for (int t = start; t < end; t++) {
+                    triIdxes[t] = t;
+                    for (int a = 0; a < 3; a++) {
+                        float v0 = vertices[9 * t + a], v1 = vertices[9 * t + 3 + a], v2 = vertices[9 * t + 6 + a];
+                        float min = Math.min(v0, Math.min(v1, v2));
+                        float max = Math.max(v0, Math.max(v1, v2));
+                        triBounds[6 * t + a] = min;
+                        triBounds[6 * t + 3 + a] = max;
+                        centroids[3 * t + a] = (min + max) * 0.5f;
+                    }
+                }
+            });
+        }
+
+        class Split extends RecursiveAction {
+            final int node, start, end, depth;
+
+            Split(int node, int start, int end, int depth) {
+                this.node = node;
+                this.start = start;
+                this.end = end;
+                this.depth = depth;
+            }
+
+            @Override
+            protected void compute() {
+                int count = end - start;
+                float[] cMin = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+                float[] cMax = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                int nb = 6 * node;
+                for (int a = 0; a < 3; a++) {
+                    nodeBounds[nb + a] = Float.POSITIVE_INFINITY;
+                    nodeBounds[nb + 3 + a] = Float.NEGATIVE_INFINITY;
+                }
+                for (int i = start; i < end; i++) {
+                    int t = triIdxes[i];
+                    for (int a = 0; a < 3; a++) {
+                        nodeBounds[nb + a] = Math.min(nodeBounds[nb + a], triBounds[6 * t + a]);
+                        nodeBounds[nb + 3 + a] = Math.max(nodeBounds[nb + 3 + a], triBounds[6 * t + 3 + a]);
+                        cMin[a] = Math.min(cMin[a], centroids[3 * t + a]);
+                        cMax[a] = Math.max(cMax[a], centroids[3 * t + a]);
+                    }
+                }
+                if(count <= MAX_LEAF_SIZE){
+                    makeLeaf();
+                    return;
+                }
+
+                // binned SAH over the three axes
+                int bestAxis = -1, bestBin = -1;
+                float bestCost = Float.POSITIVE_INFINITY;
+                int[] binCounts = new int[BIN_COUNT];
+                float[] binBounds = new float[BIN_COUNT * 6];
+                float[] rightAreas = new float[BIN_COUNT];
+                int[] rightCounts = new int[BIN_COUNT];
+                for (int axis = 0; axis < 3; axis++) {
+                    float extent = cMax[axis] - cMin[axis];
+                    if(!(extent > 0))
+                        continue;
+                    float scale = BIN_COUNT / extent;
+                    java.util.Arrays.fill(binCounts, 0);
+                    for (int b = 0; b < BIN_COUNT; b++) {
+                        for (int a = 0; a < 3; a++) {
+                            binBounds[6 * b + a] = Float.POSITIVE_INFINITY;
+                            binBounds[6 * b + 3 + a] = Float.NEGATIVE_INFINITY;
+                        }
+                    }
+                    for (int i = start; i < end; i++) {
+                        int t = triIdxes[i];
+                        int b = binOf(centroids[3 * t + axis], cMin[axis], scale);
+                        binCounts[b]++;
+                        for (int a = 0; a < 3; a++) {
+                            binBounds[6 * b + a] = Math.min(binBounds[6 * b + a], triBounds[6 * t + a]);
+                            binBounds[6 * b + 3 + a] = Math.max(binBounds[6 * b + 3 + a], triBounds[6 * t + 3 + a]);
+                        }
+                    }
+                    // sweep from the right, then from the left
+                    float[] acc = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                        Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                    int accCount = 0;
+                    for (int b = BIN_COUNT - 1; b > 0; b--) {
+                        accCount += binCounts[b];
+                        grow(acc, binBounds, b);
+                        rightCounts[b - 1] = accCount;
+                        rightAreas[b - 1] = accCount > 0 ? area(acc, 0) : 0;
+                    }
+                    acc = new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                        Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                    accCount = 0;
+                    for (int b = 0; b < BIN_COUNT - 1; b++) {
+                        accCount += binCounts[b];
+                        grow(acc, binBounds, b);
+                        if(accCount == 0 || rightCounts[b] == 0)
+                            continue;
+                        float cost = accCount * area(acc, 0) + rightCounts[b] * rightAreas[b];
+                        if(cost < bestCost){
+                            bestCost = cost;
+                            bestAxis = axis;
+                            bestBin = b;
+                        }
+                    }
+                }
+
+                float leafCost = count * area(nodeBounds, nb);
+                float splitCost = TRAVERSAL_COST * area(nodeBounds, nb) + bestCost;
+                if(bestAxis == -1 && count <= MAX_SAH_LEAF_SIZE
+                    || splitCost >= leafCost && count <= MAX_SAH_LEAF_SIZE){
+                    makeLeaf();
+                    return;
+                }
+
+                int mid;
+                if(bestAxis == -1 || depth >= MAX_SAH_DEPTH){
+                    // coincident centroids or a degenerate tree: split the range in two halves
+                    mid = (start + end) >>> 1;
+                }else{
+                    float scale = BIN_COUNT / (cMax[bestAxis] - cMin[bestAxis]);
+                    int i = start, j = end - 1;
+                    while(i <= j){
+                        int t = triIdxes[i];
+                        if(binOf(centroids[3 * t + bestAxis], cMin[bestAxis], scale) <= bestBin){
+                            i++;
+                        }else{
+                            triIdxes[i] = triIdxes[j];
+                            triIdxes[j--] = t;
+                        }
+                    }
+                    mid = i;
+                    if(mid == start || mid == end)
+                        mid = (start + end) >>> 1;
+                }
+
+                int left = nodeCounter.getAndAdd(2);
+                nodeFirsts[node] = left;
+                nodeCounts[node] = 0;
+                Split leftSplit = new Split(left, start, mid, depth + 1);
+                Split rightSplit = new Split(left + 1, mid, end, depth + 1);
+                if(count > PARALLEL_THRESHOLD){
+                    invokeAll(leftSplit, rightSplit);
+                }else{
+                    leftSplit.compute();
+                    rightSplit.compute();
+                }
+            }
+
+            private void makeLeaf(){
+                nodeFirsts[node] = start;
+                nodeCounts[node] = end - start;
+            }
+        }
+
+        private static int binOf(float c, float min, float scale){
+            return Math.min(BIN_COUNT - 1, Math.max(0, (int) ((c - min) * scale)));
+        }
+
+        private static void grow(float[] acc, float[] bounds, int b){
+            for (int a = 0; a < 3; a++) {
+                acc[a] = Math.min(acc[a], bounds[6 * b + a]);
+                acc[3 + a] = Math.max(acc[3 + a], bounds[6 * b + 3 + a]);
+            }
+        }
+
+        private static float area(float[] bounds, int o){
+            float dx = bounds[o + 3] - bounds[o];
+            float dy = bounds[o + 4] - bounds[o + 1];
+            float dz = bounds[o + 5] - bounds[o + 2];
+            return 2 * (dx * dy + dy * dz + dz * dx);
+        }
+    }
+
+    /**
+     * casts a ray against the scene.
+     * @param origin the origin of the ray, in world space
+     * @param direction the direction of the ray, need not be normalized
+     * @return the closest hit, or null if the ray hits nothing
+     */
+    public GLTFRayHit raycast(float[] origin, float[] direction){
+        return raycast(origin, direction, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * casts a ray against the scene. Triangles are hit from both sides.
+     * This method is thread-safe.
+     * @param origin the origin of the ray, in world space
+     * @param direction the direction of the ray, need not be normalized
+     * @param maxDistance the maximum distance to search, in units of
+     *                    the direction length
+     * @return the closest hit, or null if the ray hits nothing
+     * within maxDistance
+     */
+    public GLTFRayHit raycast(float[] origin, float[] direction, float maxDistance){
+        if(this.nNodes == 0)
+            return null;
+        float ox = origin[0], oy = origin[1], oz = origin[2];
+        float dx = direction[0], dy = direction[1], dz = direction[2];
+        // avoid 0 * infinity in the slab tests
+        float idx = 1f / (dx != 0 ? dx : 1e-30f);
+        float idy = 1f / (dy != 0 ? dy : 1e-30f);
+        float idz = 1f / (dz != 0 ? dz : 1e-30f);
+
+        float best = maxDistance;
+        int bestTri = -1;
+        float bestU = 0, bestV = 0;
+
+        int[] stack = new int[64];
+        float[] stackDist = new float[64];
+        int sp = 0;
+        int node = 0;
+        float nodeDist = slab(0, ox, oy, oz, idx, idy, idz, best);
+        if(nodeDist == Float.POSITIVE_INFINITY)
+            return null;
+        float[] tv = this.triVertices;
+        while(true){
+            if(this.nodeCounts[node] > 0){
+                int first = this.nodeFirsts[node];
+                int last = first + this.nodeCounts[node];
+                for (int t = first; t < last; t++) {
+                    int o = 9 * t;
+                    float v0x = tv[o], v0y = tv[o + 1], v0z = tv[o + 2];
+                    float e1x = tv[o + 3] - v0x, e1y = tv[o + 4] - v0y, e1z = tv[o + 5] - v0z;
+                    float e2x = tv[o + 6] - v0x, e2y = tv[o + 7] - v0y, e2z = tv[o + 8] - v0z;
+                    float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+                    float det = e1x * px + e1y * py + e1z * pz;
+                    if(det > -1e-20f && det < 1e-20f)
+                        continue;
+                    float inv = 1f / det;
+                    float sx = ox - v0x, sy = oy - v0y, sz = oz - v0z;
+                    float u = (sx * px + sy * py + sz * pz) * inv;
+                    if(u < 0 || u > 1)
+                        continue;
+                    float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+                    float v = (dx * qx + dy * qy + dz * qz) * inv;
+                    if(v < 0 || u + v > 1)
+                        continue;
+                    float dist = (e2x * qx + e2y * qy + e2z * qz) * inv;
+                    if(dist >= 0 && dist < best){
+                        best = dist;
+                        bestTri = t;
+                        bestU = u;
+                        bestV = v;
+                    }
+                }
+            }else{
+                int left = this.nodeFirsts[node];
+                float dl = slab(left, ox, oy, oz, idx, idy, idz, best);
+                float dr = slab(left + 1, ox, oy, oz, idx, idy, idz, best);
+                int near = left, far = left + 1;
+                if(dr < dl){
+                    float tmp = dl; dl = dr; dr = tmp;
+                    near = left + 1; far = left;
+                }
+                if(dl != Float.POSITIVE_INFINITY){
+                    if(dr != Float.POSITIVE_INFINITY){
+                        if(sp == stack.length){
+                            stack = java.util.Arrays.copyOf(stack, sp * 2);
+                            stackDist = java.util.Arrays.copyOf(stackDist, sp * 2);
+                        }
+                        stack[sp] = far;
+                        stackDist[sp++] = dr;
+                    }
+                    node = near;
+                    continue;
+                }
+            }
+            // pop the next node still closer than the best hit
+            node = -1;
+            while(sp > 0){
+                sp--;
+                if(stackDist[sp] < best){
+                    node = stack[sp];
+                    break;
+                }
+            }
+            if(node == -1)
+                break;
+        }
+        if(bestTri == -1)
+            return null;
+        int instance = this.triInstances[bestTri];
+        return new GLTFRayHit(
+            this.instanceNodes[instance],
+            this.instancePrimitives[instance],
+            this.triLocalIdxes[bestTri],
+            bestU,
+            bestV,
+            best
+        );
+    }
+
+    /**
+     * returns the entry distance of the ray in the box of a node, or
+     * positive infinity if the ray misses it or enters it beyond maxDist.
+     */
+    private float slab(int node, float ox, float oy, float oz,
+                       float idx, float idy, float idz, float maxDist)
+    {
+        int o = 6 * node;
+        float[] b = this.nodeBounds;
+        float tx1 = (b[o] - ox) * idx, tx2 = (b[o + 3] - ox) * idx;
+        float ty1 = (b[o + 1] - oy) * idy, ty2 = (b[o + 4] - oy) * idy;
+        float tz1 = (b[o + 2] - oz) * idz, tz2 = (b[o + 5] - oz) * idz;
+        float tmin = Math.max(Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2)), Math.min(tz1, tz2));
+        float tmax = Math.min(Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2)), Math.max(tz1, tz2));
+        if(tmax < Math.max(tmin, 0) || tmin >= maxDist)
+            return Float.POSITIVE_INFINITY;
+        return Math.max(tmin, 0);
+    }
+}
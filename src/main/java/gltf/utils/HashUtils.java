@@ -0,0 +1,44 @@
+package gltf.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class HashUtils {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * a fast non-cryptographic 64-bit hash of bytes, reading them 8 at a
+     * time with a MurmurHash3-style mix. Equal hashes do not prove the
+     * bytes equal: compare them to be sure.
+     */
+    public static long hash64(byte[] data, int offset, int length){
+        ByteBuffer bb = ByteBuffer.wrap(data, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int end = offset + (length & ~7);
+        for (int i = offset; i < end; i += 8) {
+            long k = bb.getLong(i);
+            k *= C1;
+            k = Long.rotateLeft(k, 31);
+            k *= C2;
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        long k = 0;
+        for (int i = offset + length - 1; i >= end; i--) {
+            k = (k << 8) | (data[i] & 0xFF);
+        }
+        h ^= Long.rotateLeft(k * C1, 31) * C2;
+        // fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static long hash64(byte[] data){
+        return hash64(data, 0, data.length);
+    }
+}
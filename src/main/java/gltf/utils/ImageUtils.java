@@ -0,0 +1,84 @@
+package gltf.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+public class ImageUtils {
+    /**
+     * downscales an image with a box filter: every target pixel is the
+     * average of the source pixels it covers, partially covered pixels
+     * being weighted by their coverage. Colors are averaged premultiplied
+     * by their alpha, so that transparent pixels do not bleed into their
+     * neighbours. Rows are filtered in parallel.
+     * @param src the image to downscale
+     * @param width the target width, at most the source width
+     * @param height the target height, at most the source height
+     * @return a new TYPE_INT_ARGB image, or TYPE_INT_RGB if src is opaque
+     */
+    public static BufferedImage boxFilter(BufferedImage src, int width, int height){
+        int sw = src.getWidth();
+        int sh = src.getHeight();
+        boolean alpha = src.getColorModel().hasAlpha();
+        int[] pixels = src.getRGB(0, 0, sw, sh, null, 0, sw);
+        double sx = (double) sw / width;
+        double sy = (double) sh / height;
+
+        // horizontal pass: sh rows of width premultiplied pixels
+        float[] rows = new float[4 * width * sh];
+        ParallelUtils.forEachChunk(sh, 16, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                for (int x = 0; x < width; x++) {
+                    double x0 = x * sx;
+                    double x1 = Math.min(sw, (x + 1) * sx);
+                    float a = 0, r = 0, g = 0, b = 0;
+                    for (int i = (int) x0; i < x1; i++) {
+                        float w = (float) (Math.min(i + 1, x1) - Math.max(i, x0));
+                        int p = pixels[y * sw + i];
+                        float pa = alpha ? (p >>> 24) * w : 255f * w;
+                        a += pa;
+                        r += ((p >> 16) & 0xFF) * pa;
+                        g += ((p >> 8) & 0xFF) * pa;
+                        b += (p & 0xFF) * pa;
+                    }
+                    int o = 4 * (y * width + x);
+                    rows[o] = a;
+                    rows[o + 1] = r;
+                    rows[o + 2] = g;
+                    rows[o + 3] = b;
+                }
+            }
+        });
+
+        // vertical pass
+        BufferedImage returnVal = new BufferedImage(width, height,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] out = ((DataBufferInt) returnVal.getRaster().getDataBuffer()).getData();
+        float area = (float) (sx * sy);
+        ParallelUtils.forEachChunk(height, 16, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                double y0 = y * sy;
+                double y1 = Math.min(sh, (y + 1) * sy);
+                for (int x = 0; x < width; x++) {
+                    float a = 0, r = 0, g = 0, b = 0;
+                    for (int j = (int) y0; j < y1; j++) {
+                        float w = (float) (Math.min(j + 1, y1) - Math.max(j, y0));
+                        int o = 4 * (j * width + x);
+                        a += rows[o] * w;
+                        r += rows[o + 1] * w;
+                        g += rows[o + 2] * w;
+                        b += rows[o + 3] * w;
+                    }
+                    int pa = Math.min(255, Math.round(a / area));
+                    int p = 0;
+                    if(a > 0f){
+                        p = Math.min(255, Math.round(r / a)) << 16
+                            | Math.min(255, Math.round(g / a)) << 8
+                            | Math.min(255, Math.round(b / a));
+                    }
+                    out[y * width + x] = pa << 24 | p;
+                }
+            }
+        });
+        return returnVal;
+    }
+}
@@ -0,0 +1,109 @@
+package gltf.utils;
+
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelUtils {
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+
+    /**
+     * receives the bounds of one chunk of a larger index range.
+     */
+    public interface RangeConsumer {
+        void accept(int start, int end);
+    }
+
+    /**
+     * splits the index range [0, n) into chunks of at least minChunk
+     * elements and runs the consumer on every chunk, on the common
+     * ForkJoinPool. Ranges too small to be worth splitting are run on
+     * the calling thread.
+     * @param n the number of elements
+     * @param minChunk the minimum number of elements per chunk
+     * @param consumer the code to run on each chunk
+     */
+    public static void forEachChunk(int n, int minChunk, RangeConsumer consumer){
+        new ChunkRunner(minChunk, consumer).run(n);
+    }
+
+    /**
+     * Runs a consumer over chunks of an index range like
+     * {@link #forEachChunk(int, int, RangeConsumer)}, but keeps its chunk
+     * tasks from one run to the next: they are created by the first runs
+     * that need them, then re-armed, so that a runner called every frame
+     * does not allocate once warmed up. The first chunk is run on the
+     * calling thread. A runner must not be run by two threads at once.
+     */
+    public static final class ChunkRunner {
+        private final int minChunk;
+        private final RangeConsumer consumer;
+        private final Chunk[] chunks;
+
+        /**
+         * @param minChunk the minimum number of elements per chunk
+         * @param consumer the code to run on each chunk
+         */
+        public ChunkRunner(int minChunk, RangeConsumer consumer){
+            this.minChunk = Math.max(1, minChunk);
+            this.consumer = consumer;
+            this.chunks = new Chunk[Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR];
+        }
+
+        /**
+         * runs the consumer on every chunk of [0, n) and waits for all of
+         * them. If chunks throw, one of their exceptions is rethrown once
+         * every chunk is done.
+         * @param n the number of elements
+         */
+        public void run(int n){
+            if(n <= 0)
+                return;
+            int nMaxChunks = this.chunks.length;
+            int chunkSize = Math.max(this.minChunk, (n + nMaxChunks - 1) / nMaxChunks);
+            int nChunks = (n - 1) / chunkSize + 1;
+            if(nChunks == 1){
+                this.consumer.accept(0, n);
+                return;
+            }
+            for (int c = 1; c < nChunks; c++) {
+                Chunk chunk = this.chunks[c];
+                if(chunk == null)
+                    chunk = this.chunks[c] = new Chunk(this.consumer);
+                else
+                    chunk.reinitialize();
+                chunk.start = c * chunkSize;
+                chunk.end = Math.min(n, (c + 1) * chunkSize);
+                chunk.fork();
+            }
+            Throwable failure = null;
+            try{
+                this.consumer.accept(0, chunkSize);
+            }catch(RuntimeException | Error e){
+                failure = e;
+            }
+            for (int c = nChunks - 1; c >= 1; c--) {
+                Chunk chunk = this.chunks[c];
+                chunk.quietlyJoin();
+                if(failure == null && chunk.isCompletedAbnormally())
+                    failure = chunk.getException();
+            }
+            if(failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if(failure instanceof Error)
+                throw (Error) failure;
+        }
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final RangeConsumer consumer;
+        private int start, end;
+
+        private Chunk(RangeConsumer consumer){
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute(){
+            this.consumer.accept(this.start, this.end);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package gltf.buffer;
+
+import gltf.exception.GLTFException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the .bin fixtures were encoded by meshoptimizer 0.21, and the .raw
+ * files hold what its decoders return for them: vertices as they are,
+ * indices as 32-bit little endian values.
+ */
+class GLTFMeshoptDecoderTest {
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = GLTFMeshoptDecoderTest.class.getResourceAsStream("/meshopt/" + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * returns the low bytes of each 32-bit index of indices.
+     */
+    private static byte[] narrow(byte[] indices, int indexSize){
+        byte[] returnVal = new byte[indices.length / 4 * indexSize];
+        for (int i = 0; i < indices.length / 4; i++) {
+            System.arraycopy(indices, 4 * i, returnVal, indexSize * i, indexSize);
+        }
+        return returnVal;
+    }
+
+    // a grid of positions and colors, and bytes that are random, zero or
+    // close to each other
+    @ParameterizedTest
+    @CsvSource({"vertex_grid, 16", "vertex_noise, 12"})
+    void decodesVertexBuffers(String name, int stride) throws Exception {
+        byte[] src = readResource(name + ".bin");
+        byte[] expected = readResource(name + ".raw");
+        byte[] dst = new byte[expected.length + 8];
+        GLTFMeshoptDecoder.decodeVertexBuffer(dst, 8, expected.length / stride, stride, src, 0, src.length);
+        assertArrayEquals(expected, Arrays.copyOfRange(dst, 8, dst.length));
+    }
+
+    // a grid in vertex cache order, coded in both versions, and a soup of
+    // random triangles
+    @ParameterizedTest
+    @ValueSource(strings = {"triangles_v1", "triangles_v0", "triangles_soup"})
+    void decodesIndexBuffers(String name) throws Exception {
+        byte[] src = readResource(name + ".bin");
+        byte[] expected = readResource(name + ".raw");
+        int count = expected.length / 4;
+        byte[] dst = new byte[4 * count];
+        GLTFMeshoptDecoder.decodeIndexBuffer(dst, 0, count, 4, src, 0, src.length);
+        assertArrayEquals(expected, dst);
+        if(!name.equals("triangles_soup")){
+            byte[] shorts = new byte[2 * count];
+            GLTFMeshoptDecoder.decodeIndexBuffer(shorts, 0, count, 2, src, 0, src.length);
+            assertArrayEquals(narrow(expected, 2), shorts);
+        }
+    }
+
+    @Test
+    void decodesIndexSequences() throws Exception {
+        byte[] src = readResource("sequence.bin");
+        byte[] expected = readResource("sequence.raw");
+        byte[] dst = new byte[expected.length];
+        GLTFMeshoptDecoder.decodeIndexSequence(dst, 0, expected.length / 4, 4, src, 0, src.length);
+        assertArrayEquals(expected, dst);
+    }
+
+    // 8 and 12 bit octahedral normals, 12 bit quaternions and 15 bit
+    // exponential floats. The SIMD decoder of meshoptimizer rounds halves
+    // to even where the scalar one, which this decoder follows, rounds
+    // them up, so quaternion components may differ by 1.
+    @ParameterizedTest
+    @CsvSource({
+        "filter_oct8, OCTAHEDRAL, 4, 1, 0",
+        "filter_oct16, OCTAHEDRAL, 8, 2, 0",
+        "filter_quat, QUATERNION, 8, 2, 1",
+        "filter_exp, EXPONENTIAL, 12, 4, 0"
+    })
+    void appliesFilters(String name, String filter, int stride, int componentSize, int tolerance) throws Exception {
+        byte[] data = readResource(name + ".bin");
+        byte[] expected = readResource(name + ".raw");
+        GLTFMeshoptDecoder.applyFilter(filter, data, 0, data.length / stride, stride);
+        assertEquals(expected.length, data.length);
+        for (int i = 0; i < data.length; i += componentSize) {
+            long difference = readSigned(expected, i, componentSize) - readSigned(data, i, componentSize);
+            assertTrue(Math.abs(difference) <= tolerance, name + " component " + i / componentSize);
+        }
+    }
+
+    private static long readSigned(byte[] data, int offset, int size){
+        long returnVal = data[offset + size - 1];
+        for (int i = size - 2; i >= 0; i--) {
+            returnVal = returnVal << 8 | (data[offset + i] & 0xFF);
+        }
+        return returnVal;
+    }
+
+    @Test
+    void rejectsTruncatedData() throws Exception {
+        byte[] vertices = readResource("vertex_grid.bin");
+        byte[] indices = readResource("triangles_v1.bin");
+        assertThrows(GLTFException.class, () -> GLTFMeshoptDecoder.decodeVertexBuffer(
+            new byte[16000], 0, 1000, 16, vertices, 0, vertices.length / 2));
+        assertThrows(GLTFException.class, () -> GLTFMeshoptDecoder.decodeIndexBuffer(
+            new byte[9600], 0, 2400, 4, indices, 0, indices.length / 2));
+    }
+}
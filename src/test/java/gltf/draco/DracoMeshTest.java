@@ -0,0 +1,69 @@
+package gltf.draco;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * the fixtures are a 9x9 grid of 81 points and 128 triangles, with
+ * positions, normals, texture coordinates and UINT8 generic values,
+ * encoded by the glTF build of the Draco encoder. The .json files hold
+ * the faces and the values of each point as the Draco decoder of the
+ * same build decodes them.
+ */
+class DracoMeshTest {
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = DracoMeshTest.class.getResourceAsStream("/draco/" + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    // edgebreaker at speeds 0, 5 and 10, sequential with quantized and
+    // with raw floating point attributes
+    @ParameterizedTest
+    @ValueSource(strings = {"edgebreaker", "edgebreaker_slow", "edgebreaker_fast", "sequential", "sequential_raw"})
+    void decodesAsDraco(String name) throws Exception {
+        byte[] data = readResource(name + ".drc");
+        JSONObject expected = JSON.parseObject(new String(readResource(name + ".json"), StandardCharsets.UTF_8));
+
+        DracoMesh mesh = DracoMesh.decode(data, 0, data.length);
+        int numPoints = expected.getIntValue("numPoints");
+        assertEquals(numPoints, mesh.numPoints);
+        assertArrayEquals(expected.getJSONArray("faces").toJavaObject(int[].class), mesh.faces);
+
+        JSONArray attributes = expected.getJSONArray("attributes");
+        assertEquals(attributes.size(), mesh.attributes.length);
+        for (int i = 0; i < attributes.size(); i++) {
+            JSONObject attribute = attributes.getJSONObject(i);
+            DracoPointAttribute actual = mesh.getAttributeByUniqueId(attribute.getIntValue("uniqueId"));
+            assertNotNull(actual);
+            assertEquals(attribute.getIntValue("type"), actual.attributeType);
+            int nc = attribute.getIntValue("numComponents");
+            assertEquals(nc, actual.numComponents);
+            JSONArray values = attribute.getJSONArray("values");
+            for (int p = 0; p < numPoints; p++) {
+                int v = actual.getValueIndex(p) * nc;
+                for (int c = 0; c < nc; c++) {
+                    String message = name + " attribute " + i + " point " + p + " component " + c;
+                    // JSON has no negative zero, so floats are compared by value
+                    if(actual.isFloat())
+                        assertEquals(values.getFloatValue(p * nc + c), actual.floatValues[v + c], 0f, message);
+                    else
+                        assertEquals(values.getIntValue(p * nc + c), actual.intValues[v + c], message);
+                }
+            }
+        }
+    }
+}
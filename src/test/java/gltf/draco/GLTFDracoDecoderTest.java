@@ -0,0 +1,101 @@
+package gltf.draco;
+
+import gltf.GLTFAsset;
+import gltf.accessor.GLTFByteAccessor;
+import gltf.mesh.GLTFMeshPrimitive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class GLTFDracoDecoderTest {
+    private static final float[] POSITIONS = {
+        0, 0, 0,
+        1, 0, 0,
+        1, 1, 0,
+        0, 1, 0
+    };
+    private static final int[] JOINTS = {
+        0, 1, 2, 3,
+        200, 1, 0, 0,
+        255, 254, 128, 127,
+        3, 2, 1, 0
+    };
+    private static final int[] FACES = {0, 1, 2, 0, 2, 3};
+
+    /**
+     * a sequential Draco mesh: raw 8-bit indices, raw float positions and
+     * raw unsigned byte joints.
+     */
+    static byte[] sequentialMesh(){
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("DRACO".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[]{2, 2, 1, 0, 0, 0});
+        // 2 faces, 4 points, raw indices
+        out.writeBytes(new byte[]{2, 4, 1});
+        for (int face : FACES) {
+            out.write(face);
+        }
+        // one decoder of two attributes: POSITION FLOAT32 x3 id 0, GENERIC UINT8 x4 id 1
+        out.writeBytes(new byte[]{1, 2});
+        out.writeBytes(new byte[]{0, 9, 3, 0, 0});
+        out.writeBytes(new byte[]{4, 2, 4, 0, 1});
+        // generic decoders, the values stored as they are
+        out.writeBytes(new byte[]{0, 0});
+        ByteBuffer positions = ByteBuffer.allocate(4 * POSITIONS.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (float position : POSITIONS) {
+            positions.putFloat(position);
+        }
+        out.writeBytes(positions.array());
+        for (int joint : JOINTS) {
+            out.write(joint);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void decodesUnsignedByteJointsAndIndices(@TempDir Path dir) throws Exception {
+        byte[] draco = sequentialMesh();
+        Files.write(dir.resolve("draco.bin"), draco);
+        String gltf = "{"
+            + "\"asset\":{\"version\":\"2.0\"},"
+            + "\"extensionsUsed\":[\"KHR_draco_mesh_compression\"],"
+            + "\"buffers\":[{\"uri\":\"draco.bin\",\"byteLength\":" + draco.length + "}],"
+            + "\"bufferViews\":[{\"buffer\":0,\"byteLength\":" + draco.length + "}],"
+            + "\"accessors\":["
+            + "{\"componentType\":5121,\"count\":6,\"type\":\"SCALAR\"},"
+            + "{\"componentType\":5126,\"count\":4,\"type\":\"VEC3\",\"min\":[0,0,0],\"max\":[1,1,0]},"
+            + "{\"componentType\":5121,\"count\":4,\"type\":\"VEC4\"}],"
+            + "\"materials\":[{}],"
+            + "\"meshes\":[{\"primitives\":[{"
+            + "\"attributes\":{\"POSITION\":1,\"JOINTS_0\":2},\"indices\":0,\"material\":0,"
+            + "\"extensions\":{\"KHR_draco_mesh_compression\":"
+            + "{\"bufferView\":0,\"attributes\":{\"POSITION\":0,\"JOINTS_0\":1}}}}]}]"
+            + "}";
+        Path path = dir.resolve("draco.gltf");
+        Files.write(path, gltf.getBytes(StandardCharsets.UTF_8));
+
+        GLTFAsset asset = new GLTFAsset(path.toString());
+        GLTFMeshPrimitive primitive = asset.meshes[0].primitives[0];
+        assertArrayEquals(POSITIONS, primitive.attributes.positionsAccessor.data);
+
+        GLTFByteAccessor joints = assertInstanceOf(GLTFByteAccessor.class, primitive.attributes.joints0Accessor);
+        assertEquals(JOINTS.length, joints.data.length);
+        for (int i = 0; i < JOINTS.length; i++) {
+            assertEquals(JOINTS[i], joints.data[i] & 0xFF);
+        }
+        GLTFByteAccessor indices = assertInstanceOf(GLTFByteAccessor.class, primitive.indicesAccessor);
+        for (int i = 0; i < FACES.length; i++) {
+            assertEquals(FACES[i], indices.data[i] & 0xFF);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package gltf.jfx.example;
 
+import gltf.mesh.GLTFBounds;
 import javafx.application.Application;
 import javafx.geometry.Pos;
 import javafx.scene.*;
@@ -40,9 +41,11 @@ public class GLTFViewerExample extends Application {
             Group modelGroup = asset.build3DScene(asset.scenes[0]);
 
             // 2. 居中计算
-            double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
-                               Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
-            calculateWorldBounds(asset.scenes[0].nodes[0], new float[]{1,0,0,0, 0,1,0,0, 0,0,1,0, 0,0,0,1}, bounds);
+            GLTFBounds sceneBounds = asset.scenes[0].getWorldBounds();
+            double[] bounds = sceneBounds != null ?
+                    new double[]{sceneBounds.min[0], sceneBounds.min[1], sceneBounds.min[2],
+                                 sceneBounds.max[0], sceneBounds.max[1], sceneBounds.max[2]}
+                    : new double[6];
 
             double centerX = (bounds[0] + bounds[3]) / 2.0;
             double centerY = (bounds[1] + bounds[4]) / 2.0;
@@ -203,54 +206,5 @@ public class GLTFViewerExample extends Application {
         return g;
     }
 
-    private void calculateWorldBounds(gltf.GLTFNode node, float[] parentTransform, double[] bounds) {
-        float[] localTransform = node.transformationMatrix;
-        if (isDefaultMatrix(localTransform)) {
-            localTransform = computeTRSMatrix(node.translation, node.rotation, node.scale);
-        }
-        float[] worldTransform = multiplyMatrices(parentTransform, localTransform);
-        if (node.mesh != null) {
-            for (gltf.mesh.GLTFMeshPrimitive primitive : node.mesh.primitives) {
-                if (primitive.attributes.positionsAccessor != null) {
-                    float[] min = primitive.attributes.positionsAccessor.min, max = primitive.attributes.positionsAccessor.max;
-                    if (min != null && max != null) {
-                        float[][] corners = {{min[0],min[1],min[2]}, {max[0],max[1],max[2]}};
-                        for (float[] c : corners) {
-                            float[] p = transformPoint(worldTransform, c);
-                            bounds[0]=Math.min(bounds[0],p[0]); bounds[1]=Math.min(bounds[1],p[1]); bounds[2]=Math.min(bounds[2],p[2]);
-                            bounds[3]=Math.max(bounds[3],p[0]); bounds[4]=Math.max(bounds[4],p[1]); bounds[5]=Math.max(bounds[5],p[2]);
-                        }
-                    }
-                }
-            }
-        }
-        for (gltf.GLTFNode child : node.getChildren()) calculateWorldBounds(child, worldTransform, bounds);
-    }
-
-    private float[] multiplyMatrices(float[] a, float[] b) {
-        float[] res = new float[16];
-        for (int i=0; i<4; i++) for (int j=0; j<4; j++) for (int k=0; k<4; k++) res[i+j*4] += a[i+k*4]*b[k+j*4];
-        return res;
-    }
-
-    private float[] transformPoint(float[] m, float[] p) {
-        float w = m[3]*p[0] + m[7]*p[1] + m[11]*p[2] + m[15];
-        if (Math.abs(w) < 0.000001) w = 1.0f;
-        return new float[]{(m[0]*p[0]+m[4]*p[1]+m[8]*p[2]+m[12])/w, (m[1]*p[0]+m[5]*p[1]+m[9]*p[2]+m[13])/w, (m[2]*p[0]+m[6]*p[1]+m[10]*p[2]+m[14])/w};
-    }
-
-    private boolean isDefaultMatrix(float[] m) {
-        for (int i=0; i<16; i++) if (Math.abs(m[i]-((i%5==0)?1.0f:0.0f))>0.000001) return false;
-        return true;
-    }
-
-    private float[] computeTRSMatrix(float[] t, float[] r, float[] s) {
-        float x=r[0], y=r[1], z=r[2], w=r[3], x2=x+x, y2=y+y, z2=z+z, xx=x*x2, xy=x*y2, xz=x*z2, yy=y*y2, yz=y*z2, zz=z*z2, wx=w*x2, wy=w*y2, wz=w*z2;
-        float[] m = new float[16];
-        m[0]=(1-(yy+zz))*s[0]; m[1]=(xy+wz)*s[0]; m[2]=(xz-wy)*s[0]; m[4]=(xy-wz)*s[1]; m[5]=(1-(xx+zz))*s[1]; m[6]=(yz+wx)*s[1];
-        m[8]=(xz+wy)*s[2]; m[9]=(yz-wx)*s[2]; m[10]=(1-(xx+yy))*s[2]; m[12]=t[0]; m[13]=t[1]; m[14]=t[2]; m[15]=1;
-        return m;
-    }
-
     public static void main(String[] args) { launch(args); }
 }
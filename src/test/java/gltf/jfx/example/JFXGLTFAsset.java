@@ -2,16 +2,20 @@ package gltf.jfx.example;
 
 import gltf.GLTFAsset;
 import gltf.GLTFNode;
+import gltf.GLTFNodeTraversal;
 import gltf.GLTFScene;
-import gltf.accessor.GLTFFloatAccessor;
-import gltf.accessor.GLTFIntAccessor;
-import gltf.accessor.GLTFShortAccessor;
+import gltf.animation.GLTFMorphEngine;
+import gltf.animation.GLTFSkinningEngine;
 import gltf.exception.GLTFException;
+import gltf.material.GLTFImage;
+import gltf.material.GLTFImageDecoder;
 import gltf.material.GLTFMaterial;
 import gltf.mesh.GLTFMesh;
+import gltf.mesh.GLTFMeshBatch;
+import gltf.mesh.GLTFMeshBatcher;
 import gltf.mesh.GLTFMeshPrimitive;
+import gltf.mesh.GLTFTextureAtlas;
 import javafx.application.Application;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point3D;
@@ -23,27 +27,60 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
 import javafx.scene.transform.Affine;
-import javafx.scene.transform.MatrixType;
-import javafx.scene.transform.Translate;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class JFXGLTFAsset extends GLTFAsset {
+    /** decodes the textures of all the assets, so that their decoding memory is bounded together */
+    private static final GLTFImageDecoder TEXTURE_DECODER = new GLTFImageDecoder();
+
     public final Image[] images;
+    /** the JavaFX images of the textures, shared with the other assets */
+    public final JFXTextureCache textureCache = JFXTextureCache.getShared();
     public final PhongMaterial[] materials;
     public final Group[] meshes;
     public final Group[] scenesRoots;
 
     public JFXGLTFAsset(String filePath) throws IOException, GLTFException {
+        this(filePath, 0);
+    }
+
+    /**
+     * loads an asset whose textures are downscaled to a maximum dimension
+     * while decoding, see {@link GLTFAsset#setMaxTextureDimension(int)}.
+     * @param maxTextureDimension the maximum width and height, 0 for no limit
+     */
+    public JFXGLTFAsset(String filePath, int maxTextureDimension) throws IOException, GLTFException {
         super(filePath);
+        //before deduplicating, images downscaled to different sizes are not shared
+        setMaxTextureDimension(maxTextureDimension);
+        //textures already loaded by another asset are not decoded again
+        deduplicateImages();
+        //decode the textures in parallel, straight into JavaFX images, within
+        //the memory budget of the decoder shared by all the assets
+        GLTFImage[] sharedImages = new GLTFImage[super.images.length];
+        Set<GLTFImage> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < super.images.length; i++) {
+            if (super.images[i] != null && distinct.add(super.images[i].getShared())) {
+                sharedImages[i] = super.images[i].getShared();
+            }
+        }
+        Map<GLTFImage, Image> converted = Collections.synchronizedMap(new IdentityHashMap<>());
+        TEXTURE_DECODER.forEach(sharedImages, image -> converted.put(image, this.textureCache.get(image)));
         this.images = new Image[super.images.length];
         for (int i = 0; i < super.images.length; i++) {
-            this.images[i] = SwingFXUtils.toFXImage(super.images[i].image, null);
+            if (super.images[i] != null) {
+                this.images[i] = converted.get(super.images[i].getShared());
+            }
         }
         this.materials = new PhongMaterial[super.materials.length];
         for (int i = 0; i < super.materials.length; i++) {
             GLTFMaterial gltfMaterial = super.materials[i];
-            this.materials[i] = GLTFMaterialToPhongMaterial(gltfMaterial);
+            this.materials[i] = GLTFMaterialToPhongMaterial(gltfMaterial, this.textureCache);
         }
         this.meshes = new Group[super.meshes.length];
         for (int i = 0; i < super.meshes.length; i++) {
@@ -53,27 +90,32 @@ public class JFXGLTFAsset extends GLTFAsset {
         scenesRoots = new Group[super.scenes.length];
     }
 
-    public static PhongMaterial GLTFMaterialToPhongMaterial(GLTFMaterial gltfMaterial) {
+    public static PhongMaterial GLTFMaterialToPhongMaterial(GLTFMaterial gltfMaterial) throws IOException {
+        return GLTFMaterialToPhongMaterial(gltfMaterial, JFXTextureCache.getShared());
+    }
+
+    /**
+     * converts a material, taking its textures from a cache so that
+     * materials sharing a texture share its JavaFX image.
+     */
+    public static PhongMaterial GLTFMaterialToPhongMaterial(GLTFMaterial gltfMaterial,
+                                                          JFXTextureCache textureCache) throws IOException {
         PhongMaterial material = new PhongMaterial();
         if (gltfMaterial.normalMap != null) {
             material.setBumpMap(
-                    SwingFXUtils.toFXImage(
+                    textureCache.get(
                             gltfMaterial
                                     .normalMap
                                     .texture
-                                    .source
-                                    .image,
-                            null)
+                                    .source)
             );
         }
         if (gltfMaterial.emissiveMap != null) {
             material.setSelfIlluminationMap(
-                    SwingFXUtils.toFXImage(gltfMaterial.
+                    textureCache.get(gltfMaterial.
                                     emissiveMap
                                     .texture
-                                    .source
-                                    .image,
-                            null)
+                                    .source)
             );
             //TODO apply emissiveFactor
         }
@@ -81,13 +123,11 @@ public class JFXGLTFAsset extends GLTFAsset {
         if (gltfMaterial.pbrMetallicRoughness != null) {
             if (gltfMaterial.pbrMetallicRoughness.baseColorTexture != null) {
                 material.setDiffuseMap(
-                        SwingFXUtils.toFXImage(
+                        textureCache.get(
                                 gltfMaterial.pbrMetallicRoughness
                                         .baseColorTexture
                                         .texture
                                         .source
-                                        .image,
-                                null
                         )
                 );
                 //TODO apply diffuseFactor into diffuseColor maybe.
@@ -120,14 +160,10 @@ public class JFXGLTFAsset extends GLTFAsset {
 
         // 处理纹理坐标
         boolean hasTexCoords = false;
-        if (primitive.attributes.texCoords0Accessor != null) {
-            //TODO apply correct texCoord: TEXCOORD_0 or TEXCOORD_1 according to texCoord property.
-            //TODO apply correct data types (UNSIGNED_BYTE, FLOAT, UNSIGNED_SHORT)
-            returnVal.getTexCoords().addAll(
-                    ((GLTFFloatAccessor/*TODO PLACHOLDER FOR NOW*/)
-                            primitive.attributes.texCoords0Accessor)
-                            .data
-            );
+        //the texCoord set of the base color texture, its KHR_texture_transform baked in
+        float[] texCoords = primitive.getBaseColorTexCoords();
+        if (texCoords != null) {
+            returnVal.getTexCoords().addAll(texCoords);
             hasTexCoords = true;
         } else {
             // 如果没有纹理坐标，添加一个默认的 (0,0) 以防止索引越界
@@ -135,26 +171,15 @@ public class JFXGLTFAsset extends GLTFAsset {
         }
 
         if (primitive.indicesAccessor != null) {
-            if (primitive.indicesAccessor instanceof GLTFIntAccessor) {
-                int[] data = ((GLTFIntAccessor) primitive.indicesAccessor).data;
-                System.out.println("DEBUG: Indices (Int) count: " + data.length);
-                for (int i = 0; i < data.length; i++) {
-                    int tIndex = hasTexCoords ? data[i] : 0;
-                    returnVal.getFaces().addAll(
-                            data[i],
-                            tIndex
-                    );
-                }
-            } else if (primitive.indicesAccessor instanceof GLTFShortAccessor) {
-                short[] data = ((GLTFShortAccessor) primitive.indicesAccessor).data;
-                System.out.println("DEBUG: Indices (Short) count: " + data.length);
-                for (int i = 0; i < data.length; i++) {
-                    int tIndex = hasTexCoords ? data[i] : 0;
-                    returnVal.getFaces().addAll(
-                            data[i],
-                            tIndex
-                    );
-                }
+            //int, short or byte indices, widened to ints
+            int[] data = primitive.getIndices();
+            System.out.println("DEBUG: Indices count: " + data.length);
+            for (int i = 0; i < data.length; i++) {
+                int tIndex = hasTexCoords ? data[i] : 0;
+                returnVal.getFaces().addAll(
+                        data[i],
+                        tIndex
+                );
             }
         } else {
             System.out.println("No indices were given for the faces.");
@@ -166,6 +191,23 @@ public class JFXGLTFAsset extends GLTFAsset {
         return returnVal;
     }
 
+    /**
+     * writes the positions blended by a morph engine into the points of a
+     * TriangleMesh built by GLTFMeshPrimitiveToTriangleMesh, in place, so
+     * the mesh does not have to be rebuilt every frame.
+     */
+    public static void updateMorphedPoints(TriangleMesh mesh, GLTFMorphEngine engine) {
+        mesh.getPoints().set(0, engine.positions, 0, engine.positions.length);
+    }
+
+    /**
+     * writes the positions skinned by a skinning engine into the points
+     * of a TriangleMesh built by GLTFMeshPrimitiveToTriangleMesh, in place.
+     */
+    public static void updateSkinnedPoints(TriangleMesh mesh, GLTFSkinningEngine engine) {
+        mesh.getPoints().set(0, engine.positions, 0, engine.positions.length);
+    }
+
     public static Group GLTFMeshToGroup(GLTFMesh mesh, PhongMaterial[] materials) {
         Group returnVal = new Group();
         for (int i = 0; i < mesh.primitives.length; i++) {
@@ -205,6 +247,70 @@ public class JFXGLTFAsset extends GLTFAsset {
         return returnVal;
     }
 
+    /**
+     * 构建静态合批后的场景：共享同一材质的图元合并为尽可能少的 MeshView，
+     * 节点的世界变换已烘焙进顶点数据。每个 MeshView 的 userData 为其
+     * GLTFMeshBatch，可用 {@link GLTFMeshBatch#getNodeForFace(int)}
+     * 将拾取到的面映射回源节点。
+     *
+     * @param scene 要构建的场景
+     * @return 包含所有合批 MeshView 的 Group
+     */
+    public Group buildBatched3DScene(GLTFScene scene) {
+        return buildBatched3DScene(GLTFMeshBatcher.batch(scene), new IdentityHashMap<>());
+    }
+
+    /**
+     * 构建静态合批后的场景，并使用纹理图集：基础色纹理被打包进图集的图元
+     * 共享合并后的材质，因此可以合并进同一个 MeshView。
+     *
+     * @param scene 要构建的场景
+     * @param atlas 为该资源的网格构建的纹理图集，见 {@link gltf.mesh.GLTFTextureAtlasBuilder}
+     * @return 包含所有合批 MeshView 的 Group
+     */
+    public Group buildBatched3DScene(GLTFScene scene, GLTFTextureAtlas atlas) throws IOException {
+        Map<GLTFMaterial, PhongMaterial> atlasMaterials = new IdentityHashMap<>();
+        for (GLTFMaterial material : atlas.materials) {
+            atlasMaterials.put(material, GLTFMaterialToPhongMaterial(material, this.textureCache));
+        }
+        return buildBatched3DScene(GLTFMeshBatcher.batch(scene, atlas), atlasMaterials);
+    }
+
+    private Group buildBatched3DScene(GLTFMeshBatch[] batches, Map<GLTFMaterial, PhongMaterial> atlasMaterials) {
+        Group returnVal = new Group();
+        for (GLTFMeshBatch batch : batches) {
+            MeshView mv = new MeshView(GLTFMeshBatchToTriangleMesh(batch));
+            mv.setCullFace(javafx.scene.shape.CullFace.NONE);
+            if (batch.materialIdx >= 0 && batch.materialIdx < materials.length) {
+                mv.setMaterial(materials[batch.materialIdx]);
+            } else if (atlasMaterials.containsKey(batch.material)) {
+                mv.setMaterial(atlasMaterials.get(batch.material));
+            } else {
+                mv.setMaterial(new PhongMaterial(Color.RED));
+            }
+            mv.setUserData(batch);
+            returnVal.getChildren().add(mv);
+        }
+        returnVal.setScaleX(40);
+        returnVal.setScaleY(40);
+        returnVal.setScaleZ(40);
+        return returnVal;
+    }
+
+    public static TriangleMesh GLTFMeshBatchToTriangleMesh(GLTFMeshBatch batch) {
+        TriangleMesh returnVal = new TriangleMesh();
+        returnVal.getPoints().setAll(batch.positions);
+        returnVal.getTexCoords().setAll(batch.texCoords);
+        // 每个顶点恰有一个纹理坐标，因此面的 texCoord 索引与 point 索引相同
+        int[] faces = new int[batch.triangles.length * 2];
+        for (int i = 0; i < batch.triangles.length; i++) {
+            faces[2 * i] = batch.triangles[i];
+            faces[2 * i + 1] = batch.triangles[i];
+        }
+        returnVal.getFaces().setAll(faces);
+        return returnVal;
+    }
+
     /**
      * 计算节点在指定根节点（或场景）坐标系下的边界框。
      * 这是一个深度计算，通过将本地边界的所有顶点转换到目标坐标系来重新计算 AABB。
@@ -248,47 +354,35 @@ public class JFXGLTFAsset extends GLTFAsset {
         return new BoundingBox(minX, minY, minZ, maxX - minX, maxY - minY, maxZ - minZ);
     }
 
-    public Group build3dNode(GLTFNode node) {
-        Group returnVal = new Group();
+    private final float[] localMatrix = new float[16];
 
-        for (int i = 0; i < node.getChildren().length; i++) {
-            returnVal.getChildren().add(
-                    build3dNode(node.getChildren()[i])
-            );
-        }
-        if (node.mesh != null) {
-            returnVal.getChildren().add(GLTFMeshToGroup(node.mesh, materials));
-        }
-
-        //add the node's transform
-        Affine transformationMatrix = new Affine();
-        double[] mtx = new double[16];
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                mtx[i + 4 * j] = node.transformationMatrix[j + 4 * i];
-            }
-        }
-        try {
-            transformationMatrix.append(mtx, MatrixType.MT_3D_4x4, 0);
-        } catch (Exception e) {
-            //catch an error in the transformation
-            System.out.println(node.name);
-            for (int i = 0; i < 4; i++) {
-                for (int j = 0; j < 4; j++) {
-                    System.out.print(" " + mtx[4 * i + j]);
-                }
-                System.out.println("");
-            }
-            e.printStackTrace();
-        }
+    public Group build3dNode(GLTFNode node) {
+        //walk the hierarchy with an explicit stack, deep hierarchies would overflow the call stack
+        GLTFNodeTraversal traversal = GLTFNodeTraversal.fromRoots(new GLTFNode[]{node});
+        Group[] groups = new Group[traversal.nodes.length];
+        traversal.traverse(
+                (nodeIdx, parentIdx, depth) -> groups[nodeIdx] = new Group(),
+                (nodeIdx, parentIdx, depth) -> {
+                    //the children groups were added by their own post-visit
+                    GLTFNode n = traversal.nodes[nodeIdx];
+                    Group group = groups[nodeIdx];
+                    if (n.mesh != null) {
+                        group.getChildren().add(GLTFMeshToGroup(n.mesh, materials));
+                    }
 
-        transformationMatrix.append(new Translate(
-                node.translation[0],
-                node.translation[1],
-                node.translation[2]
-        ));
-        returnVal.getTransforms().add(transformationMatrix);
-        return returnVal;
+                    //add the node's transform: its matrix, or its TRS properties
+                    float[] m = n.computeLocalMatrix(this.localMatrix);
+                    Affine transformationMatrix = new Affine(
+                            m[0], m[4], m[8], m[12],
+                            m[1], m[5], m[9], m[13],
+                            m[2], m[6], m[10], m[14]
+                    );
+                    group.getTransforms().add(transformationMatrix);
+                    if (parentIdx != -1) {
+                        groups[parentIdx].getChildren().add(group);
+                    }
+                });
+        return groups[traversal.indexOf(node)];
     }
 
     public static void main(String[] args) {
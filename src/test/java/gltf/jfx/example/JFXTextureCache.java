@@ -0,0 +1,141 @@
+package gltf.jfx.example;
+
+import gltf.material.GLTFImage;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Converts the images of assets into JavaFX images, once per image:
+ * materials sharing a texture share its javafx Image, as do images
+ * deduplicated to the same {@link GLTFImage#getShared() shared image}.
+ * The images are referenced weakly, so that one cache can serve every
+ * asset of the process, see {@link #getShared()}.
+ * <p>
+ * PNG, JPEG, GIF and BMP images not decoded yet are decoded by JavaFX
+ * itself, straight from their encoded bytes and downscaled to their
+ * {@link GLTFImage#getMaxDimension() maximum dimension} while decoding,
+ * so no BufferedImage is made. The other images, such as KTX2 textures
+ * or images built in memory, are copied into a WritableImage one row at a
+ * time, as premultiplied BGRA bytes, the format JavaFX stores images in.
+ * Unlike SwingFXUtils.toFXImage, no intermediate copy of the whole image
+ * is made, and an image not decoded yet is decoded for JavaFX only,
+ * without keeping its BufferedImage in the GLTFImage.
+ */
+public class JFXTextureCache {
+    private static final JFXTextureCache SHARED = new JFXTextureCache();
+    /** the formats JavaFX decodes, as named by ImageIO */
+    private static final String[] FX_FORMATS = {"png", "jpeg", "gif", "bmp"};
+
+    // GLTFImage does not override equals, so the keys are compared by identity
+    private final Map<GLTFImage, Image> images = new WeakHashMap<>();
+
+    /**
+     * @return the cache shared by the whole process
+     */
+    public static JFXTextureCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * returns the JavaFX image of an image, converting it on the first call.
+     * Images may be converted from several threads; an image converted
+     * concurrently by two of them is only cached once.
+     * @return the JavaFX image, or null if its format is not supported
+     */
+    public Image get(GLTFImage image) throws IOException {
+        image = image.getShared();
+        synchronized (this.images){
+            Image returnVal = this.images.get(image);
+            if(returnVal != null)
+                return returnVal;
+        }
+        Image converted = toFXImage(image);
+        if(converted == null)
+            return null;
+        synchronized (this.images){
+            Image returnVal = this.images.putIfAbsent(image, converted);
+            return returnVal != null ? returnVal : converted;
+        }
+    }
+
+    /**
+     * converts an image into a new JavaFX image.
+     * @return the JavaFX image, or null if its format is not supported
+     */
+    public static Image toFXImage(GLTFImage image) throws IOException {
+        if(!image.isDecoded() && isFXFormat(image)){
+            int max = image.getMaxDimension();
+            boolean downscale = max > 0 && Math.max(image.getWidth(), image.getHeight()) > max;
+            Image returnVal;
+            try(InputStream in = image.openStream()){
+                returnVal = downscale ?
+                    new Image(in, max, max, true, true)
+                    : new Image(in);
+            }
+            if(!returnVal.isError())
+                return returnVal;
+            // a variant of the format JavaFX cannot read: decode it with ImageIO
+        }
+        BufferedImage decoded = image.isDecoded() ? image.getImage() : image.decode();
+        return decoded != null ? toFXImage(decoded) : null;
+    }
+
+    /**
+     * @return whether JavaFX can decode the image from its encoded bytes
+     */
+    private static boolean isFXFormat(GLTFImage image){
+        String format;
+        try{
+            format = image.getFormatName();
+        }catch(IOException ioe){
+            // unreadable or unsupported: left to decode(), which tells which
+            return false;
+        }
+        for (String fxFormat : FX_FORMATS) {
+            if(fxFormat.equalsIgnoreCase(format))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * copies a BufferedImage into a new JavaFX image, row by row.
+     */
+    public static WritableImage toFXImage(BufferedImage image){
+        int w = image.getWidth();
+        int h = image.getHeight();
+        WritableImage returnVal = new WritableImage(w, h);
+        PixelWriter writer = returnVal.getPixelWriter();
+        PixelFormat<java.nio.ByteBuffer> format = PixelFormat.getByteBgraPreInstance();
+        int[] argb = new int[w];
+        byte[] bgra = new byte[4 * w];
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, argb, 0, w);
+            for (int x = 0; x < w; x++) {
+                int p = argb[x];
+                int a = p >>> 24;
+                int o = 4 * x;
+                if(a == 255){
+                    bgra[o] = (byte) p;
+                    bgra[o + 1] = (byte) (p >> 8);
+                    bgra[o + 2] = (byte) (p >> 16);
+                }else{
+                    bgra[o] = (byte) (((p & 0xFF) * a + 127) / 255);
+                    bgra[o + 1] = (byte) ((((p >> 8) & 0xFF) * a + 127) / 255);
+                    bgra[o + 2] = (byte) ((((p >> 16) & 0xFF) * a + 127) / 255);
+                }
+                bgra[o + 3] = (byte) a;
+            }
+            writer.setPixels(0, y, w, 1, format, bgra, 0, 4 * w);
+        }
+        return returnVal;
+    }
+}
@@ -0,0 +1,63 @@
+package gltf.ktx2;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * the fixtures were encoded by libktx, the library of KTX-Software, and
+ * the .rgba files hold the RGBA8 pixels of all their levels, one after
+ * the other, as libktx transcodes them.
+ */
+class KTX2TextureTest {
+
+    static byte[] readResource(String name) throws IOException {
+        try (InputStream in = KTX2TextureTest.class.getResourceAsStream("/ktx2/" + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "etc1s_rgba, 37, 29, 2, true",
+        "etc1s_rgb, 20, 12, 1, true",
+        "uastc_rgba_zstd, 37, 29, 1, false",
+        "uastc_rgb, 32, 32, 1, false",
+        "uastc_la, 32, 32, 1, false",
+        "uastc_dual, 32, 32, 1, false"
+    })
+    void transcodesAsLibKTX(String name, int width, int height, int levelCount, boolean etc1s) throws Exception {
+        KTX2Texture texture = KTX2Texture.read(readResource(name + ".ktx2"));
+        byte[] expected = readResource(name + ".rgba");
+        assertEquals(width, texture.width);
+        assertEquals(height, texture.height);
+        assertEquals(levelCount, texture.levelCount);
+        assertEquals(etc1s, texture.isETC1S());
+        assertEquals(!etc1s, texture.isUASTC());
+
+        int p = 0;
+        for (int level = 0; level < levelCount; level++) {
+            BufferedImage image = texture.decodeLevel(level);
+            assertEquals(texture.getLevelWidth(level), image.getWidth());
+            assertEquals(texture.getLevelHeight(level), image.getHeight());
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++, p += 4) {
+                    int argb = (expected[p + 3] & 0xFF) << 24 | (expected[p] & 0xFF) << 16
+                        | (expected[p + 1] & 0xFF) << 8 | expected[p + 2] & 0xFF;
+                    int actual = image.getRGB(x, y);
+                    if(actual != argb)
+                        assertEquals(Integer.toHexString(argb), Integer.toHexString(actual),
+                            name + " level " + level + " pixel " + x + "," + y);
+                }
+            }
+        }
+        assertEquals(expected.length, p);
+    }
+}
@@ -0,0 +1,57 @@
+package gltf.ktx2;
+
+import gltf.exception.GLTFException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static gltf.ktx2.KTX2TextureTest.readResource;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * the frames were compressed by libzstd 1.5.4, with ZSTD_compress.
+ */
+class KTX2ZstdDecoderTest {
+
+    /**
+     * the content of the words frames: random words, longer than a block.
+     */
+    static byte[] words(int length){
+        String[] words = {"alpha", "beta", "gamma", "delta", "pixel", "texture", "\0\0", "ÿ"};
+        Random random = new Random(47);
+        StringBuilder builder = new StringBuilder(length + 8);
+        while (builder.length() < length) {
+            builder.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // the blocks of level 19 have raw, RLE, Huffman and treeless literals,
+    // those of level -5 only raw literals
+    @ParameterizedTest
+    @ValueSource(strings = {"words_19.zst", "words_fast5.zst"})
+    void decompressesAsLibzstd(String name) throws Exception {
+        byte[] frame = readResource(name);
+        byte[] expected = words(300000);
+        assertArrayEquals(expected, KTX2ZstdDecoder.decompress(frame, 0, frame.length, expected.length));
+    }
+
+    @Test
+    void decompressesRLEBlocks() throws Exception {
+        byte[] frame = readResource("rle.zst");
+        byte[] expected = new byte[500000];
+        Arrays.fill(expected, (byte) 7);
+        assertArrayEquals(expected, KTX2ZstdDecoder.decompress(frame, 0, frame.length, expected.length));
+    }
+
+    @Test
+    void rejectsTruncatedFrames() throws Exception {
+        byte[] frame = readResource("words_19.zst");
+        assertThrows(GLTFException.class, () -> KTX2ZstdDecoder.decompress(frame, 0, frame.length / 2, 300000));
+    }
+}